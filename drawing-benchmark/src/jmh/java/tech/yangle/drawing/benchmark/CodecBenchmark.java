@@ -0,0 +1,44 @@
+package tech.yangle.drawing.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import tech.yangle.drawing.core.DrawingDocument;
+import tech.yangle.drawing.core.io.DrawingCodec;
+
+/**
+ * 文档序列化
+ */
+@State(Scope.Thread)
+public class CodecBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int strokeCount;
+
+    private DrawingDocument mDocument;
+    private byte[] mEncoded;
+
+    @Setup
+    public void setUp() {
+        mDocument = Handwriting.document(strokeCount, 42);
+        mEncoded = DrawingCodec.encode(mDocument);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return DrawingCodec.encode(mDocument);
+    }
+
+    @Benchmark
+    public DrawingDocument decode() {
+        return DrawingCodec.decode(mEncoded);
+    }
+
+    @Benchmark
+    public DrawingDocument roundTrip() {
+        return DrawingCodec.decode(DrawingCodec.encode(mDocument));
+    }
+}
@@ -0,0 +1,103 @@
+package tech.yangle.drawing.benchmark;
+
+import java.util.Random;
+
+import tech.yangle.drawing.core.DrawingDocument;
+import tech.yangle.drawing.core.PenStyle;
+import tech.yangle.drawing.core.Stroke;
+
+/**
+ * 合成手写笔迹
+ * <p>
+ * 每一笔由若干连笔字形组成：水平前进叠加环形摆动，采样间隔模拟120Hz触控笔，
+ * 叠加数字化仪的抖动。固定随机种子，保证各次运行的输入一致
+ */
+final class Handwriting {
+
+    static final int WIDTH = 1600;
+    static final int HEIGHT = 2560;
+    // 行高|px
+    private static final float LINE_HEIGHT = 96;
+    // 字形大小|px
+    private static final float GLYPH_SIZE = 28;
+    // 抖动幅度|px
+    private static final float JITTER = 0.6f;
+
+    private Handwriting() {
+    }
+
+    /**
+     * 生成一页手写文档
+     *
+     * @param strokeCount 笔迹数量
+     * @param seed        随机种子
+     * @return 文档
+     */
+    static DrawingDocument document(int strokeCount, long seed) {
+        Random random = new Random(seed);
+        DrawingDocument document = new DrawingDocument(WIDTH, HEIGHT);
+        document.setBackgroundColor(0xFFFFFFFF);
+        float x = 40;
+        float y = LINE_HEIGHT;
+        for (int i = 0; i < strokeCount; i++) {
+            int penType = i % 20 == 19 ? PenStyle.ERASER
+                    : i % 7 == 6 ? PenStyle.TRANSLUCENT_PEN : PenStyle.STANDARD_PEN;
+            float[] points = stroke(random, x, y, 2 + random.nextInt(5));
+            Stroke stroke = newStroke(penType, points.length / 2);
+            for (int p = 0; p < points.length; p += 2) {
+                stroke.addPoint(points[p], points[p + 1]);
+            }
+            document.addStroke(stroke);
+            x += stroke.getRight() - stroke.getLeft() + GLYPH_SIZE;
+            if (x > WIDTH - 200) {
+                x = 40;
+                y += LINE_HEIGHT;
+                if (y > HEIGHT - LINE_HEIGHT) {
+                    y = LINE_HEIGHT;
+                }
+            }
+        }
+        return document;
+    }
+
+    /**
+     * 生成一笔的原始采样点
+     *
+     * @param random 随机源
+     * @param startX 起点x
+     * @param startY 基线y
+     * @param glyphs 连笔字形个数
+     * @return x0, y0, x1, y1 ...
+     */
+    static float[] stroke(Random random, float startX, float startY, int glyphs) {
+        // 每个字形约30个采样点
+        int samples = glyphs * 30;
+        float[] points = new float[samples * 2];
+        float phase = random.nextFloat() * 6.28f;
+        float size = GLYPH_SIZE * (0.8f + random.nextFloat() * 0.4f);
+        for (int i = 0; i < samples; i++) {
+            float t = i / 30f;
+            double angle = t * Math.PI * 2 + phase;
+            points[i * 2] = startX + t * size * 0.9f + (float) Math.cos(angle) * size * 0.35f
+                    + (random.nextFloat() - 0.5f) * JITTER * 2;
+            points[i * 2 + 1] = startY - size * 0.5f + (float) Math.sin(angle) * size * 0.5f
+                    + (random.nextFloat() - 0.5f) * JITTER * 2;
+        }
+        return points;
+    }
+
+    static Stroke newStroke(int penType, int capacity) {
+        switch (penType) {
+            case PenStyle.ERASER:
+                return new Stroke(penType, 0, PenStyle.ERASER_WIDTH_DP * 2, capacity);
+
+            case PenStyle.TRANSLUCENT_PEN:
+                return new Stroke(penType, (PenStyle.TRANSLUCENT_ALPHA << 24) | 0xFFEB3B,
+                        PenStyle.TRANSLUCENT_WIDTH_DP * 2, capacity);
+
+            case PenStyle.STANDARD_PEN:
+            default:
+                return new Stroke(penType, 0xFF000000, PenStyle.STANDARD_WIDTH_DP * 2, capacity);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package tech.yangle.drawing.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import tech.yangle.drawing.core.DrawingDocument;
+import tech.yangle.drawing.core.raster.Raster;
+import tech.yangle.drawing.core.raster.SoftwareRasterizer;
+
+/**
+ * 无界面光栅化：整页渲染、缩略图、PNG编码、打印分辨率流式编码
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RasterBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int strokeCount;
+
+    private DrawingDocument mDocument;
+    private SoftwareRasterizer mRasterizer;
+    private final OutputStream mSink = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    @Setup
+    public void setUp() {
+        mDocument = Handwriting.document(strokeCount, 42);
+        mRasterizer = new SoftwareRasterizer();
+    }
+
+    @Benchmark
+    public Raster renderFullPage() {
+        return mRasterizer.render(mDocument);
+    }
+
+    @Benchmark
+    public Raster renderThumbnail() {
+        return mRasterizer.render(mDocument, 0.125f);
+    }
+
+    @Benchmark
+    public void renderPng() throws IOException {
+        mRasterizer.renderPng(mDocument, 0.5f, mSink);
+    }
+
+    @Benchmark
+    public void renderPrintPng() throws IOException {
+        mRasterizer.renderPng(mDocument, 3f, mSink);
+    }
+}
@@ -0,0 +1,73 @@
+package tech.yangle.drawing.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+import tech.yangle.drawing.core.PenStyle;
+import tech.yangle.drawing.core.smooth.InkSmoother;
+import tech.yangle.drawing.core.smooth.SmoothingParams;
+
+/**
+ * 输入平滑：One Euro滤波加中点二次曲线拟合，gc.alloc.rate.norm应为0
+ */
+@State(Scope.Thread)
+public class SmoothingBenchmark {
+
+    // 120Hz采样间隔|ns
+    private static final long SAMPLE_INTERVAL = 8_333_333L;
+
+    @Param({"10", "100", "1000"})
+    public int strokeCount;
+
+    private float[][] mSamples;
+    private InkSmoother mSmoother;
+    private CountingSink mSink;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        mSamples = new float[strokeCount][];
+        for (int i = 0; i < strokeCount; i++) {
+            mSamples[i] = Handwriting.stroke(random, random.nextFloat() * Handwriting.WIDTH,
+                    random.nextFloat() * Handwriting.HEIGHT, 2 + random.nextInt(5));
+        }
+        mSmoother = new InkSmoother();
+        mSmoother.setParams(SmoothingParams.defaultFor(PenStyle.STANDARD_PEN));
+        mSink = new CountingSink();
+    }
+
+    @Benchmark
+    public int smooth() {
+        mSink.count = 0;
+        for (float[] samples : mSamples) {
+            long time = 0;
+            mSmoother.begin(samples[0], samples[1], time, mSink);
+            for (int i = 2; i < samples.length; i += 2) {
+                time += SAMPLE_INTERVAL;
+                mSmoother.add(samples[i], samples[i + 1], time);
+            }
+            mSmoother.finish();
+        }
+        return mSink.count;
+    }
+
+    /**
+     * 只累计输出，不保存点
+     */
+    private static final class CountingSink implements InkSmoother.PointSink {
+
+        int count;
+        float checksum;
+
+        @Override
+        public void onPoint(float x, float y) {
+            count++;
+            checksum += x + y;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,80 @@
+package tech.yangle.drawing.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+
+import tech.yangle.drawing.core.DrawingDocument;
+import tech.yangle.drawing.core.PenStyle;
+import tech.yangle.drawing.core.Stroke;
+import tech.yangle.drawing.core.StrokeHitTester;
+import tech.yangle.drawing.core.StrokeSimplifier;
+
+/**
+ * 笔迹几何：采样点写入、简化、命中检测
+ */
+@State(Scope.Thread)
+public class StrokeBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int strokeCount;
+
+    private float[][] mSamples;
+    private DrawingDocument mDocument;
+    private StrokeSimplifier mSimplifier;
+    private float[] mProbes;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        mSamples = new float[strokeCount][];
+        for (int i = 0; i < strokeCount; i++) {
+            mSamples[i] = Handwriting.stroke(random, random.nextFloat() * Handwriting.WIDTH,
+                    random.nextFloat() * Handwriting.HEIGHT, 2 + random.nextInt(5));
+        }
+        mDocument = Handwriting.document(strokeCount, 42);
+        mSimplifier = new StrokeSimplifier();
+        mProbes = new float[256];
+        for (int i = 0; i < mProbes.length; i += 2) {
+            mProbes[i] = random.nextFloat() * Handwriting.WIDTH;
+            mProbes[i + 1] = random.nextFloat() * Handwriting.HEIGHT;
+        }
+    }
+
+    /**
+     * 逐点写入，对应触控事件到笔迹模型
+     */
+    @Benchmark
+    public void ingest(Blackhole blackhole) {
+        for (float[] samples : mSamples) {
+            Stroke stroke = new Stroke(PenStyle.STANDARD_PEN, 0xFF000000, 8);
+            for (int i = 0; i < samples.length; i += 2) {
+                stroke.addPoint(samples[i], samples[i + 1]);
+            }
+            blackhole.consume(stroke);
+        }
+    }
+
+    @Benchmark
+    public void simplify(Blackhole blackhole) {
+        for (int i = 0; i < mDocument.getStrokeCount(); i++) {
+            blackhole.consume(mSimplifier.simplify(mDocument.getStroke(i), 1f));
+        }
+    }
+
+    /**
+     * 128次随机位置的最上层笔迹查找
+     */
+    @Benchmark
+    public void hitTest(Blackhole blackhole) {
+        for (int i = 0; i < mProbes.length; i += 2) {
+            blackhole.consume(StrokeHitTester.findStroke(mDocument, mProbes[i], mProbes[i + 1],
+                    4));
+        }
+    }
+}
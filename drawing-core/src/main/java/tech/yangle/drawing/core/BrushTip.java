@@ -0,0 +1,221 @@
+package tech.yangle.drawing.core;
+
+/**
+ * 笔刷笔尖
+ * <p>
+ * 笔尖是一张以中心为原点、与颜色无关的透明度蒙版，沿笔迹每隔一定间距盖印一次，绘制时由画笔颜色着色。
+ * 盖印位置和角度由{@link #walk}计算，画板上的StampAtlas和软件光栅化共用，两者结果一致
+ */
+public final class BrushTip {
+
+    /**
+     * 盖印角度的级数，覆盖360°
+     */
+    public static final int ANGLE_STEPS = 16;
+    private static final float TWO_PI = (float) (Math.PI * 2);
+
+    /**
+     * 铅笔：较硬的圆形笔尖带颗粒，随机旋转使颗粒不成行
+     */
+    public static final BrushTip PENCIL = new BrushTip(PenStyle.PENCIL, 0.15f, 0.55f, 1f, 0.7f,
+            0.6f, false, true);
+    /**
+     * 马克笔：扁平的硬边笔尖，长轴垂直于书写方向
+     */
+    public static final BrushTip MARKER = new BrushTip(PenStyle.MARKER, 0.1f, 0.25f, 0.35f, 0.85f,
+            0, true, false);
+    /**
+     * 喷枪：柔边圆形笔尖，低流量叠加
+     */
+    public static final BrushTip AIRBRUSH = new BrushTip(PenStyle.AIRBRUSH, 0.1f, 0.06f, 1f, 0,
+            0, false, false);
+
+    private final int mPenType;
+    // 盖印间距，相对笔尖直径
+    private final float mSpacing;
+    // 每次盖印的不透明度，0..1
+    private final float mFlow;
+    // 短轴与长轴之比
+    private final float mAspect;
+    // 边缘硬度，0为从中心开始衰减，1为硬边
+    private final float mHardness;
+    // 颗粒强度，0..1
+    private final float mGrain;
+    // 是否随书写方向旋转
+    private final boolean mFollowDirection;
+    // 是否随机旋转
+    private final boolean mRandomAngle;
+
+    private BrushTip(int penType, float spacing, float flow, float aspect, float hardness,
+                     float grain, boolean followDirection, boolean randomAngle) {
+        mPenType = penType;
+        mSpacing = spacing;
+        mFlow = flow;
+        mAspect = aspect;
+        mHardness = hardness;
+        mGrain = grain;
+        mFollowDirection = followDirection;
+        mRandomAngle = randomAngle;
+    }
+
+    /**
+     * 获取画笔类型对应的笔尖
+     *
+     * @param penType 画笔类型
+     * @return 笔尖，不是纹理笔刷时为null
+     */
+    public static BrushTip forPenType(int penType) {
+        switch (penType) {
+            case PenStyle.PENCIL:
+                return PENCIL;
+
+            case PenStyle.MARKER:
+                return MARKER;
+
+            case PenStyle.AIRBRUSH:
+                return AIRBRUSH;
+
+            default:
+                return null;
+        }
+    }
+
+    public int getPenType() {
+        return mPenType;
+    }
+
+    public float getSpacing() {
+        return mSpacing;
+    }
+
+    public float getFlow() {
+        return mFlow;
+    }
+
+    public boolean isFollowDirection() {
+        return mFollowDirection;
+    }
+
+    public boolean isRandomAngle() {
+        return mRandomAngle;
+    }
+
+    /**
+     * 盖印间距
+     *
+     * @param width 笔尖直径|px
+     * @return 间距|px，不小于1
+     */
+    public float getStampSpacing(float width) {
+        return Math.max(1, mSpacing * width);
+    }
+
+    /**
+     * 沿折线按间距计算盖印位置，位置只取决于折线和间距，分段计算与一次计算的结果一致
+     *
+     * @param points  坐标，x0, y0, x1, y1 ...
+     * @param from    起点下标
+     * @param to      终点下标（不含）
+     * @param spacing 盖印间距|px，见{@link #getStampSpacing}
+     * @param carry   距下一次盖印还需前进的距离|px，新笔迹为0
+     * @param stamper 接收盖印位置
+     * @return 下一段折线的carry
+     */
+    public float walk(float[] points, int from, int to, float spacing, float carry,
+                      Stamper stamper) {
+        if (to - from == 1) {
+            // 单点笔迹只在开始时盖印一次
+            if (carry <= 0) {
+                stamp(stamper, points[from * 2], points[from * 2 + 1], 0);
+                return spacing;
+            }
+            return carry;
+        }
+        for (int i = from; i < to - 1; i++) {
+            float ax = points[i * 2];
+            float ay = points[i * 2 + 1];
+            float vx = points[i * 2 + 2] - ax;
+            float vy = points[i * 2 + 3] - ay;
+            float length = (float) Math.sqrt(vx * vx + vy * vy);
+            if (length == 0) {
+                continue;
+            }
+            float angle = mFollowDirection ? (float) Math.atan2(vy, vx) : 0;
+            float t = carry;
+            while (t <= length) {
+                stamp(stamper, ax + vx * t / length, ay + vy * t / length, angle);
+                t += spacing;
+            }
+            carry = t - length;
+        }
+        return carry;
+    }
+
+    private void stamp(Stamper stamper, float x, float y, float angle) {
+        if (mRandomAngle) {
+            angle += hash(Float.floatToIntBits(x), Float.floatToIntBits(y)) * TWO_PI;
+        }
+        int index = Math.round(angle / TWO_PI * ANGLE_STEPS) % ANGLE_STEPS;
+        if (index < 0) {
+            index += ANGLE_STEPS;
+        }
+        stamper.stampAt(x, y, index);
+    }
+
+    /**
+     * 生成未旋转的蒙版，书写方向为x轴正方向
+     *
+     * @param size 笔尖直径|px
+     * @return size * size个像素，只有透明度通道有效
+     */
+    public int[] renderMask(int size) {
+        int[] pixels = new int[size * size];
+        float radius = size / 2f;
+        // 长轴沿y方向，即垂直于书写方向
+        float rx = Math.max(radius * mAspect, 0.5f);
+        // 硬边也保留约1px的抗锯齿过渡
+        float soft = Math.max(1 - mHardness, 1 / radius);
+        for (int y = 0; y < size; y++) {
+            float py = (y + 0.5f - radius) / radius;
+            for (int x = 0; x < size; x++) {
+                float px = (x + 0.5f - radius) / rx;
+                float d = (float) Math.sqrt(px * px + py * py);
+                if (d >= 1) {
+                    continue;
+                }
+                float a = Math.min(1, (1 - d) / soft);
+                a = a * a * (3 - 2 * a);
+                if (mGrain > 0) {
+                    a *= 1 - mGrain * hash(x, y);
+                }
+                pixels[y * size + x] = Math.round(a * 255) << 24;
+            }
+        }
+        return pixels;
+    }
+
+    /**
+     * 整数坐标的伪随机数，结果只取决于输入，重绘时与书写时一致
+     *
+     * @return 0..1
+     */
+    private static float hash(int x, int y) {
+        int h = x * 374761393 + y * 668265263;
+        h = (h ^ (h >>> 13)) * 1274126177;
+        return ((h ^ (h >>> 16)) & 0xffff) / 65536f;
+    }
+
+    /**
+     * 接收盖印位置
+     */
+    public interface Stamper {
+        /**
+         * 在指定位置盖印一次
+         *
+         * @param x          笔尖中心x坐标|px
+         * @param y          笔尖中心y坐标|px
+         * @param angleIndex 旋转角度的级数，0..ANGLE_STEPS-1，角度为 angleIndex * 360° / ANGLE_STEPS
+         */
+        void stampAt(float x, float y, int angleIndex);
+    }
+}
\ No newline at end of file
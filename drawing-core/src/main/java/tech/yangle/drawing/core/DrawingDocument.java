@@ -0,0 +1,106 @@
+package tech.yangle.drawing.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 画板文档，按绘制顺序保存全部笔迹
+ */
+public class DrawingDocument {
+
+    private int mWidth;
+    private int mHeight;
+    // 背景色，ARGB，默认透明
+    private int mBackgroundColor;
+    private final List<Stroke> mStrokes = new ArrayList<>();
+    // 修改版本号，笔迹每次增删都会递增
+    private long mRevision;
+
+    public DrawingDocument(int width, int height) {
+        mWidth = width;
+        mHeight = height;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * 设置画布尺寸
+     *
+     * @param width  画布宽度|px
+     * @param height 画布高度|px
+     */
+    public void setSize(int width, int height) {
+        mWidth = width;
+        mHeight = height;
+    }
+
+    public int getBackgroundColor() {
+        return mBackgroundColor;
+    }
+
+    public void setBackgroundColor(int backgroundColor) {
+        mBackgroundColor = backgroundColor;
+    }
+
+    /**
+     * 追加一条笔迹
+     *
+     * @param stroke 笔迹
+     */
+    public void addStroke(Stroke stroke) {
+        mStrokes.add(stroke);
+        mRevision++;
+    }
+
+    /**
+     * 替换一条笔迹，如移动、缩放后的笔迹，绘制顺序不变
+     *
+     * @param index  下标
+     * @param stroke 新笔迹
+     */
+    public void setStroke(int index, Stroke stroke) {
+        mStrokes.set(index, stroke);
+        mRevision++;
+    }
+
+    public int getStrokeCount() {
+        return mStrokes.size();
+    }
+
+    public Stroke getStroke(int index) {
+        return mStrokes.get(index);
+    }
+
+    /**
+     * 获取全部笔迹
+     *
+     * @return 只读列表
+     */
+    public List<Stroke> getStrokes() {
+        return Collections.unmodifiableList(mStrokes);
+    }
+
+    /**
+     * 清除全部笔迹
+     */
+    public void clear() {
+        mStrokes.clear();
+        mRevision++;
+    }
+
+    /**
+     * 获取修改版本号，用于判断缓存的光栅数据是否过期
+     *
+     * @return 版本号
+     */
+    public long getRevision() {
+        return mRevision;
+    }
+}
@@ -0,0 +1,97 @@
+package tech.yangle.drawing.core;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 套索选择：查找被多边形圈住的笔迹
+ * <p>
+ * 先用包围盒排除与套索不相交的笔迹，再对笔迹的采样点做射线法点在多边形内判断，
+ * 长笔迹等间隔抽取至多MAX_SAMPLES个点。落在套索内的采样点比例达到阈值即视为选中。
+ * 橡皮擦和填充不参与选择。结果缓冲在多次选择间复用，非线程安全
+ */
+public class LassoSelector {
+
+    /**
+     * 默认选中比例
+     */
+    public static final float DEFAULT_MIN_INSIDE = 0.75f;
+    // 单条笔迹最多测试的采样点数
+    private static final int MAX_SAMPLES = 64;
+
+    private int[] mSelected = new int[16];
+
+    /**
+     * 选择被套索圈住的笔迹
+     *
+     * @param strokes    笔迹，按绘制顺序
+     * @param polygon    套索顶点，x0, y0, x1, y1 ...，首尾自动闭合
+     * @param pointCount 顶点数
+     * @param minInside  落在套索内的采样点比例，0..1
+     * @return 选中笔迹的下标，升序
+     */
+    public int[] select(List<Stroke> strokes, float[] polygon, int pointCount, float minInside) {
+        if (pointCount < 3) {
+            return new int[0];
+        }
+        float left = Float.MAX_VALUE;
+        float top = Float.MAX_VALUE;
+        float right = -Float.MAX_VALUE;
+        float bottom = -Float.MAX_VALUE;
+        for (int i = 0; i < pointCount; i++) {
+            left = Math.min(left, polygon[i * 2]);
+            right = Math.max(right, polygon[i * 2]);
+            top = Math.min(top, polygon[i * 2 + 1]);
+            bottom = Math.max(bottom, polygon[i * 2 + 1]);
+        }
+        int count = 0;
+        for (int i = 0, size = strokes.size(); i < size; i++) {
+            Stroke stroke = strokes.get(i);
+            int points = stroke.getPointCount();
+            if (points == 0 || stroke.isEraser() || stroke.isFill()
+                    || stroke.getRight() < left || stroke.getLeft() > right
+                    || stroke.getBottom() < top || stroke.getTop() > bottom) {
+                continue;
+            }
+            int step = Math.max(1, points / MAX_SAMPLES);
+            int tested = 0;
+            int inside = 0;
+            for (int p = 0; p < points; p += step) {
+                tested++;
+                if (contains(polygon, pointCount, stroke.getX(p), stroke.getY(p))) {
+                    inside++;
+                }
+            }
+            if (inside >= tested * minInside) {
+                if (count == mSelected.length) {
+                    mSelected = Arrays.copyOf(mSelected, count * 2);
+                }
+                mSelected[count++] = i;
+            }
+        }
+        return Arrays.copyOf(mSelected, count);
+    }
+
+    /**
+     * 射线法判断点是否在多边形内（奇偶规则）
+     *
+     * @param polygon    顶点
+     * @param pointCount 顶点数
+     * @param x          x坐标
+     * @param y          y坐标
+     * @return true: 在多边形内
+     */
+    public static boolean contains(float[] polygon, int pointCount, float x, float y) {
+        boolean inside = false;
+        for (int i = 0, j = pointCount - 1; i < pointCount; j = i++) {
+            float xi = polygon[i * 2];
+            float yi = polygon[i * 2 + 1];
+            float xj = polygon[j * 2];
+            float yj = polygon[j * 2 + 1];
+            if ((yi > y) != (yj > y) && x < (xj - xi) * (y - yi) / (yj - yi) + xi) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,135 @@
+package tech.yangle.drawing.core;
+
+/**
+ * 与平台无关的画笔语义，对应drawing-library中的StandardPen、TranslucentPen、Eraser、BrushPen
+ */
+public final class PenStyle {
+
+    /**
+     * 橡皮擦
+     */
+    public static final int ERASER = -1;
+    /**
+     * 标准笔
+     */
+    public static final int STANDARD_PEN = 0;
+    /**
+     * 半透明笔
+     */
+    public static final int TRANSLUCENT_PEN = 1;
+    /**
+     * 填充，笔迹只有种子点一个点，宽度字段保存容差
+     */
+    public static final int FILL = 2;
+    /**
+     * 套索选择，只是画板的工具，不产生笔迹
+     */
+    public static final int LASSO = 3;
+    /**
+     * 铅笔，纹理笔刷：沿笔迹盖印带颗粒的笔尖
+     */
+    public static final int PENCIL = 4;
+    /**
+     * 马克笔，纹理笔刷：扁平笔尖随书写方向旋转
+     */
+    public static final int MARKER = 5;
+    /**
+     * 喷枪，纹理笔刷：柔边笔尖低流量叠加
+     */
+    public static final int AIRBRUSH = 6;
+
+    /**
+     * 橡皮擦默认宽度|dp
+     */
+    public static final float ERASER_WIDTH_DP = 28;
+    /**
+     * 标准笔默认宽度|dp
+     */
+    public static final float STANDARD_WIDTH_DP = 4;
+    /**
+     * 半透明笔默认宽度|dp
+     */
+    public static final float TRANSLUCENT_WIDTH_DP = 8;
+    /**
+     * 半透明笔默认透明度，0..255
+     */
+    public static final int TRANSLUCENT_ALPHA = 80;
+    /**
+     * 铅笔默认宽度|dp
+     */
+    public static final float PENCIL_WIDTH_DP = 3;
+    /**
+     * 马克笔默认宽度|dp
+     */
+    public static final float MARKER_WIDTH_DP = 12;
+    /**
+     * 喷枪默认宽度|dp
+     */
+    public static final float AIRBRUSH_WIDTH_DP = 32;
+    /**
+     * 填充默认容差，0..255，可吸收笔迹边缘的抗锯齿像素
+     */
+    public static final int FILL_TOLERANCE = 48;
+
+    private PenStyle() {
+    }
+
+    /**
+     * 是否为擦除类画笔
+     *
+     * @param penType 画笔类型
+     * @return true: 擦除 false: 着色
+     */
+    public static boolean isEraser(int penType) {
+        return penType == ERASER;
+    }
+
+    /**
+     * 是否为填充
+     *
+     * @param penType 画笔类型
+     * @return true: 填充 false: 描边
+     */
+    public static boolean isFill(int penType) {
+        return penType == FILL;
+    }
+
+    /**
+     * 是否为纹理笔刷
+     *
+     * @param penType 画笔类型
+     * @return true: 按笔尖盖印绘制 false: 实心描边
+     */
+    public static boolean isBrush(int penType) {
+        return penType >= PENCIL && penType <= AIRBRUSH;
+    }
+
+    /**
+     * 获取画笔默认宽度
+     *
+     * @param penType 画笔类型
+     * @return 默认宽度|dp
+     */
+    public static float defaultWidthDp(int penType) {
+        switch (penType) {
+            case ERASER:
+                return ERASER_WIDTH_DP;
+
+            case TRANSLUCENT_PEN:
+                return TRANSLUCENT_WIDTH_DP;
+
+            case PENCIL:
+                return PENCIL_WIDTH_DP;
+
+            case MARKER:
+                return MARKER_WIDTH_DP;
+
+            case AIRBRUSH:
+                return AIRBRUSH_WIDTH_DP;
+
+            case STANDARD_PEN:
+            default:
+                return STANDARD_WIDTH_DP;
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package tech.yangle.drawing.core;
+
+import java.util.Arrays;
+
+/**
+ * 一条笔迹，坐标点以float数组连续存放，避免每个点一个对象
+ * <p>
+ * 笔迹几何与PointPath一致：PointPath.savePointToPath以上一个点作为二次曲线的控制点，
+ * 退化为直线段，因此这里按折线存储和绘制
+ * <p>
+ * 可选记录每个点的采样时间，用于回放；时间以相对起始时间的毫秒偏移存放
+ * <p>
+ * 笔迹属于一个图层，默认为图层0
+ */
+public class Stroke {
+
+    private static final int INITIAL_CAPACITY = 32;
+
+    // 画笔类型 {@link PenStyle}
+    private final int mPenType;
+    // 画笔颜色，ARGB，包含透明度
+    private final int mColor;
+    // 画笔宽度|px
+    private final float mWidth;
+    // x0, y0, x1, y1 ...
+    private float[] mPoints;
+    private int mPointCount;
+    // 包围盒，不含画笔宽度
+    private float mLeft = Float.MAX_VALUE;
+    private float mTop = Float.MAX_VALUE;
+    private float mRight = -Float.MAX_VALUE;
+    private float mBottom = -Float.MAX_VALUE;
+    // 起始时间|ms，无时间信息时为-1
+    private long mStartTime = -1;
+    // 各点相对起始时间的偏移|ms，按需分配
+    private int[] mTimes;
+    // 所属图层编号
+    private int mLayer;
+    // 多级细节，首次使用时生成
+    private StrokeLod mLod;
+
+    public Stroke(int penType, int color, float width) {
+        this(penType, color, width, INITIAL_CAPACITY);
+    }
+
+    public Stroke(int penType, int color, float width, int capacity) {
+        mPenType = penType;
+        mColor = color;
+        mWidth = width;
+        mPoints = new float[Math.max(capacity, 1) * 2];
+    }
+
+    /**
+     * 追加坐标点
+     *
+     * @param x x坐标|px
+     * @param y y坐标|px
+     * @throws IllegalStateException 笔迹已记录采样时间
+     */
+    public void addPoint(float x, float y) {
+        if (mTimes != null) {
+            throw new IllegalStateException("Stroke has timed points");
+        }
+        appendPoint(x, y);
+    }
+
+    /**
+     * 追加带采样时间的坐标点，时间不早于上一个点
+     *
+     * @param x    x坐标|px
+     * @param y    y坐标|px
+     * @param time 采样时间|ms
+     * @throws IllegalStateException 笔迹已有不带时间的点
+     */
+    public void addPoint(float x, float y, long time) {
+        if (mTimes == null) {
+            if (mPointCount > 0) {
+                throw new IllegalStateException("Stroke already has untimed points");
+            }
+            mTimes = new int[mPoints.length / 2];
+            mStartTime = time;
+        } else if (mPointCount == mTimes.length) {
+            mTimes = Arrays.copyOf(mTimes, mTimes.length * 2);
+        }
+        int offset = (int) (time - mStartTime);
+        if (mPointCount > 0 && offset < mTimes[mPointCount - 1]) {
+            offset = mTimes[mPointCount - 1];
+        }
+        mTimes[mPointCount] = offset;
+        appendPoint(x, y);
+    }
+
+    private void appendPoint(float x, float y) {
+        int index = mPointCount * 2;
+        if (index + 2 > mPoints.length) {
+            mPoints = Arrays.copyOf(mPoints, mPoints.length * 2);
+        }
+        mPoints[index] = x;
+        mPoints[index + 1] = y;
+        mPointCount++;
+        mLod = null;
+        if (x < mLeft) mLeft = x;
+        if (x > mRight) mRight = x;
+        if (y < mTop) mTop = y;
+        if (y > mBottom) mBottom = y;
+    }
+
+    /**
+     * 是否记录了采样时间
+     *
+     * @return true: 有时间信息
+     */
+    public boolean hasTimes() {
+        return mTimes != null;
+    }
+
+    /**
+     * 起始时间
+     *
+     * @return 起始时间|ms，无时间信息时为-1
+     */
+    public long getStartTime() {
+        return mStartTime;
+    }
+
+    /**
+     * 结束时间，即最后一个点的采样时间
+     *
+     * @return 结束时间|ms，无时间信息时为-1
+     */
+    public long getEndTime() {
+        return mTimes == null || mPointCount == 0 ? mStartTime
+                : mStartTime + mTimes[mPointCount - 1];
+    }
+
+    /**
+     * 获取点的采样时间
+     *
+     * @param index 点下标
+     * @return 采样时间|ms，无时间信息时为-1
+     */
+    public long getTime(int index) {
+        return mTimes == null ? -1 : mStartTime + mTimes[index];
+    }
+
+    /**
+     * 生成缩放平移后的笔迹：x' = x * scale + dx，宽度同比缩放，采样时间不变
+     *
+     * @param scale 缩放比例
+     * @param dx    x方向平移|px
+     * @param dy    y方向平移|px
+     * @return 新笔迹
+     */
+    public Stroke transformed(float scale, float dx, float dy) {
+        float width = isFill() ? mWidth : mWidth * scale;
+        Stroke stroke = new Stroke(mPenType, mColor, width, Math.max(mPointCount, 1));
+        stroke.mLayer = mLayer;
+        for (int i = 0; i < mPointCount; i++) {
+            float x = mPoints[i * 2] * scale + dx;
+            float y = mPoints[i * 2 + 1] * scale + dy;
+            if (mTimes != null) {
+                stroke.addPoint(x, y, mStartTime + mTimes[i]);
+            } else {
+                stroke.addPoint(x, y);
+            }
+        }
+        return stroke;
+    }
+
+    /**
+     * 所属图层编号
+     *
+     * @return 图层编号
+     */
+    public int getLayer() {
+        return mLayer;
+    }
+
+    /**
+     * 设置所属图层，在提交前调用
+     *
+     * @param layer 图层编号
+     */
+    public void setLayer(int layer) {
+        mLayer = layer;
+    }
+
+    /**
+     * 获取多级细节，用于缩小绘制；在提交后调用
+     *
+     * @return 多级细节
+     */
+    public StrokeLod getLod() {
+        StrokeLod lod = mLod;
+        if (lod == null) {
+            // 多个线程同时生成时结果相同，StrokeLod只读，重复生成无害
+            lod = StrokeLod.build(this);
+            mLod = lod;
+        }
+        return lod;
+    }
+
+    public int getPenType() {
+        return mPenType;
+    }
+
+    public int getColor() {
+        return mColor;
+    }
+
+    public float getWidth() {
+        return mWidth;
+    }
+
+    public int getPointCount() {
+        return mPointCount;
+    }
+
+    public float getX(int index) {
+        return mPoints[index * 2];
+    }
+
+    public float getY(int index) {
+        return mPoints[index * 2 + 1];
+    }
+
+    /**
+     * 获取坐标数组，只读，有效长度为 getPointCount() * 2
+     *
+     * @return 坐标数组
+     */
+    public float[] getPoints() {
+        return mPoints;
+    }
+
+    public float getLeft() {
+        return mLeft;
+    }
+
+    public float getTop() {
+        return mTop;
+    }
+
+    public float getRight() {
+        return mRight;
+    }
+
+    public float getBottom() {
+        return mBottom;
+    }
+
+    /**
+     * 是否为擦除笔迹
+     *
+     * @return true: 擦除 false: 着色
+     */
+    public boolean isEraser() {
+        return PenStyle.isEraser(mPenType);
+    }
+
+    /**
+     * 是否为填充，填充的种子点为第一个点，容差保存在宽度中
+     *
+     * @return true: 填充
+     */
+    public boolean isFill() {
+        return PenStyle.isFill(mPenType);
+    }
+}
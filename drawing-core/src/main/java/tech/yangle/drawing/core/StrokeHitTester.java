@@ -0,0 +1,65 @@
+package tech.yangle.drawing.core;
+
+/**
+ * 笔迹命中检测
+ */
+public final class StrokeHitTester {
+
+    private StrokeHitTester() {
+    }
+
+    /**
+     * 坐标是否落在笔迹上
+     *
+     * @param stroke    笔迹
+     * @param x         x坐标|px
+     * @param y         y坐标|px
+     * @param tolerance 在画笔宽度之外额外允许的偏差|px
+     * @return true: 命中
+     */
+    public static boolean hitTest(Stroke stroke, float x, float y, float tolerance) {
+        int count = stroke.getPointCount();
+        // 填充没有描边几何，不参与命中
+        if (count == 0 || stroke.isFill()) {
+            return false;
+        }
+        float reach = stroke.getWidth() / 2 + tolerance;
+        if (x < stroke.getLeft() - reach || x > stroke.getRight() + reach
+                || y < stroke.getTop() - reach || y > stroke.getBottom() + reach) {
+            return false;
+        }
+        float reachSq = reach * reach;
+        float[] points = stroke.getPoints();
+        if (count == 1) {
+            float dx = x - points[0];
+            float dy = y - points[1];
+            return dx * dx + dy * dy <= reachSq;
+        }
+        for (int i = 0; i < count - 1; i++) {
+            if (StrokeSimplifier.distanceSq(x, y, points[i * 2], points[i * 2 + 1],
+                    points[i * 2 + 2], points[i * 2 + 3]) <= reachSq) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 查找坐标处最上层的着色笔迹，擦除笔迹不参与命中
+     *
+     * @param document  文档
+     * @param x         x坐标|px
+     * @param y         y坐标|px
+     * @param tolerance 在画笔宽度之外额外允许的偏差|px
+     * @return 笔迹下标，未命中返回-1
+     */
+    public static int findStroke(DrawingDocument document, float x, float y, float tolerance) {
+        for (int i = document.getStrokeCount() - 1; i >= 0; i--) {
+            Stroke stroke = document.getStroke(i);
+            if (!stroke.isEraser() && hitTest(stroke, x, y, tolerance)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
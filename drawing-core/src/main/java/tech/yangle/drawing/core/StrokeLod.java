@@ -0,0 +1,86 @@
+package tech.yangle.drawing.core;
+
+/**
+ * 笔迹的多级细节
+ * <p>
+ * 按逐级加倍的容差预先简化出若干级折线，缩小绘制时按缩放比例选择偏差不超过半个输出像素的最粗一级；
+ * 整条笔迹不足一个输出像素时只画一个点。软件光栅化缩小输出时的开销因此取决于输出像素，
+ * 而不是笔迹的总点数。各级在首次使用时生成，之后只读，可在多个线程间共享
+ */
+public final class StrokeLod {
+
+    /**
+     * 输出坐标系中允许的最大偏差|px
+     */
+    public static final float MAX_ERROR = 0.5f;
+    // 各级的简化容差|px，笔迹坐标系，逐级加倍
+    private static final float[] TOLERANCES = {1, 2, 4, 8, 16};
+    // 点数至少减少到上一级的3/4才单独保存一级，否则沿用上一级
+    private static final float MIN_REDUCTION = 0.75f;
+
+    private final Stroke mStroke;
+    // 与TOLERANCES一一对应，相邻级别可能是同一对象
+    private final Stroke[] mLevels;
+    // 笔迹的最大尺寸，含画笔宽度|px
+    private final float mExtent;
+
+    private StrokeLod(Stroke stroke, Stroke[] levels) {
+        mStroke = stroke;
+        mLevels = levels;
+        mExtent = Math.max(stroke.getRight() - stroke.getLeft(),
+                stroke.getBottom() - stroke.getTop()) + stroke.getWidth();
+    }
+
+    /**
+     * 生成笔迹的各级细节，填充和点数很少的笔迹不简化
+     *
+     * @param stroke 已提交的笔迹
+     * @return 多级细节
+     */
+    static StrokeLod build(Stroke stroke) {
+        if (stroke.isFill() || stroke.getPointCount() <= 2) {
+            return new StrokeLod(stroke, null);
+        }
+        StrokeSimplifier simplifier = new StrokeSimplifier();
+        Stroke[] levels = new Stroke[TOLERANCES.length];
+        Stroke previous = stroke;
+        for (int i = 0; i < TOLERANCES.length; i++) {
+            // 每级都从原始笔迹简化，偏差不会逐级累积
+            Stroke level = previous.getPointCount() <= 2 ? previous
+                    : simplifier.simplify(stroke, TOLERANCES[i]);
+            if (level.getPointCount() > previous.getPointCount() * MIN_REDUCTION) {
+                level = previous;
+            }
+            levels[i] = level;
+            previous = level;
+        }
+        return new StrokeLod(stroke, levels);
+    }
+
+    /**
+     * 按缩放比例选择绘制的级别
+     *
+     * @param scale 输出相对笔迹坐标的缩放比例
+     * @return 偏差不超过{@link #MAX_ERROR}个输出像素的最简折线，可能是原笔迹
+     */
+    public Stroke forScale(float scale) {
+        Stroke result = mStroke;
+        if (mLevels == null) {
+            return result;
+        }
+        for (int i = 0; i < TOLERANCES.length && TOLERANCES[i] * scale <= MAX_ERROR; i++) {
+            result = mLevels[i];
+        }
+        return result;
+    }
+
+    /**
+     * 整条笔迹（含画笔宽度）在输出中是否不足一个像素，此时只需画一个点
+     *
+     * @param scale 输出相对笔迹坐标的缩放比例
+     * @return true: 不足一个像素
+     */
+    public boolean isSubPixel(float scale) {
+        return !mStroke.isFill() && mStroke.getPointCount() > 0 && mExtent * scale < 1;
+    }
+}
\ No newline at end of file
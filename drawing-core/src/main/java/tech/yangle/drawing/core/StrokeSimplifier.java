@@ -0,0 +1,112 @@
+package tech.yangle.drawing.core;
+
+/**
+ * 笔迹简化，Ramer-Douglas-Peucker算法
+ * <p>
+ * 使用显式栈代替递归，长笔迹不会栈溢出；中间状态可复用，避免每次简化都分配
+ */
+public class StrokeSimplifier {
+
+    // 保留标记
+    private boolean[] mKeep = new boolean[0];
+    // 待处理区间栈，成对存放起止下标
+    private int[] mStack = new int[0];
+
+    /**
+     * 简化笔迹
+     *
+     * @param stroke    笔迹
+     * @param tolerance 允许的最大偏差|px，不大于0时原样复制
+     * @return 新笔迹，画笔属性不变
+     */
+    public Stroke simplify(Stroke stroke, float tolerance) {
+        int count = stroke.getPointCount();
+        if (count <= 2 || tolerance <= 0) {
+            return copy(stroke, count, null);
+        }
+        if (mKeep.length < count) {
+            mKeep = new boolean[count];
+            mStack = new int[count * 2];
+        }
+        boolean[] keep = mKeep;
+        int[] stack = mStack;
+        float[] points = stroke.getPoints();
+        float toleranceSq = tolerance * tolerance;
+        for (int i = 0; i < count; i++) {
+            keep[i] = false;
+        }
+        keep[0] = true;
+        keep[count - 1] = true;
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = count - 1;
+        while (top > 0) {
+            int end = stack[--top];
+            int start = stack[--top];
+            if (end - start < 2) {
+                continue;
+            }
+            float ax = points[start * 2];
+            float ay = points[start * 2 + 1];
+            float bx = points[end * 2];
+            float by = points[end * 2 + 1];
+            float maxDistSq = -1;
+            int index = -1;
+            for (int i = start + 1; i < end; i++) {
+                float d = distanceSq(points[i * 2], points[i * 2 + 1], ax, ay, bx, by);
+                if (d > maxDistSq) {
+                    maxDistSq = d;
+                    index = i;
+                }
+            }
+            if (maxDistSq > toleranceSq) {
+                keep[index] = true;
+                stack[top++] = start;
+                stack[top++] = index;
+                stack[top++] = index;
+                stack[top++] = end;
+            }
+        }
+        return copy(stroke, count, keep);
+    }
+
+    private static Stroke copy(Stroke stroke, int count, boolean[] keep) {
+        int kept = count;
+        if (keep != null) {
+            kept = 0;
+            for (int i = 0; i < count; i++) {
+                if (keep[i]) kept++;
+            }
+        }
+        Stroke result = new Stroke(stroke.getPenType(), stroke.getColor(), stroke.getWidth(),
+                kept);
+        result.setLayer(stroke.getLayer());
+        float[] points = stroke.getPoints();
+        for (int i = 0; i < count; i++) {
+            if (keep == null || keep[i]) {
+                result.addPoint(points[i * 2], points[i * 2 + 1]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 点到线段距离的平方
+     */
+    static float distanceSq(float px, float py, float ax, float ay, float bx, float by) {
+        float vx = bx - ax;
+        float vy = by - ay;
+        float wx = px - ax;
+        float wy = py - ay;
+        float lengthSq = vx * vx + vy * vy;
+        float t = lengthSq > 0 ? (wx * vx + wy * vy) / lengthSq : 0;
+        if (t < 0) {
+            t = 0;
+        } else if (t > 1) {
+            t = 1;
+        }
+        float dx = wx - t * vx;
+        float dy = wy - t * vy;
+        return dx * dx + dy * dy;
+    }
+}
@@ -0,0 +1,90 @@
+package tech.yangle.drawing.core.io;
+
+/**
+ * 字节读取器，与ByteWriter对应
+ */
+public class ByteReader {
+
+    private final byte[] mBuffer;
+    private final int mLimit;
+    private int mPosition;
+
+    public ByteReader(byte[] buffer) {
+        this(buffer, 0, buffer.length);
+    }
+
+    public ByteReader(byte[] buffer, int offset, int length) {
+        mBuffer = buffer;
+        mPosition = offset;
+        mLimit = offset + length;
+    }
+
+    public int readByte() {
+        require(1);
+        return mBuffer[mPosition++] & 0xFF;
+    }
+
+    public int readInt() {
+        require(4);
+        return ((mBuffer[mPosition++] & 0xFF) << 24) | ((mBuffer[mPosition++] & 0xFF) << 16)
+                | ((mBuffer[mPosition++] & 0xFF) << 8) | (mBuffer[mPosition++] & 0xFF);
+    }
+
+    public long readLong() {
+        long high = readInt() & 0xFFFFFFFFL;
+        return (high << 32) | (readInt() & 0xFFFFFFFFL);
+    }
+
+    public float readFloat() {
+        return Float.intBitsToFloat(readInt());
+    }
+
+    public int readVarInt() {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint at " + mPosition);
+    }
+
+    public long readVarLong() {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varlong at " + mPosition);
+    }
+
+    public int readSignedVarInt() {
+        int value = readVarInt();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public void readBytes(byte[] dst, int offset, int length) {
+        require(length);
+        System.arraycopy(mBuffer, mPosition, dst, offset, length);
+        mPosition += length;
+    }
+
+    public int getPosition() {
+        return mPosition;
+    }
+
+    public int remaining() {
+        return mLimit - mPosition;
+    }
+
+    private void require(int count) {
+        if (mPosition + count > mLimit) {
+            throw new IllegalArgumentException("Unexpected end of data at " + mPosition);
+        }
+    }
+}
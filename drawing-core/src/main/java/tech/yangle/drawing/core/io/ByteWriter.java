@@ -0,0 +1,115 @@
+package tech.yangle.drawing.core.io;
+
+import java.util.Arrays;
+
+/**
+ * 可增长的字节缓冲，支持变长整数
+ */
+public class ByteWriter {
+
+    private byte[] mBuffer;
+    private int mSize;
+
+    public ByteWriter() {
+        this(256);
+    }
+
+    public ByteWriter(int capacity) {
+        mBuffer = new byte[Math.max(capacity, 16)];
+    }
+
+    public void writeByte(int value) {
+        ensureCapacity(1);
+        mBuffer[mSize++] = (byte) value;
+    }
+
+    /**
+     * 定长4字节，大端
+     */
+    public void writeInt(int value) {
+        ensureCapacity(4);
+        mBuffer[mSize++] = (byte) (value >>> 24);
+        mBuffer[mSize++] = (byte) (value >>> 16);
+        mBuffer[mSize++] = (byte) (value >>> 8);
+        mBuffer[mSize++] = (byte) value;
+    }
+
+    /**
+     * 定长8字节，大端
+     */
+    public void writeLong(long value) {
+        writeInt((int) (value >>> 32));
+        writeInt((int) value);
+    }
+
+    public void writeFloat(float value) {
+        writeInt(Float.floatToIntBits(value));
+    }
+
+    /**
+     * 无符号变长整数，每字节7位
+     */
+    public void writeVarInt(int value) {
+        ensureCapacity(5);
+        while ((value & ~0x7F) != 0) {
+            mBuffer[mSize++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        mBuffer[mSize++] = (byte) value;
+    }
+
+    /**
+     * 无符号变长长整数，每字节7位
+     */
+    public void writeVarLong(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            mBuffer[mSize++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        mBuffer[mSize++] = (byte) value;
+    }
+
+    /**
+     * 有符号变长整数，zigzag编码，绝对值小的负数也只占一个字节
+     */
+    public void writeSignedVarInt(int value) {
+        writeVarInt((value << 1) ^ (value >> 31));
+    }
+
+    public void writeBytes(byte[] bytes, int offset, int length) {
+        ensureCapacity(length);
+        System.arraycopy(bytes, offset, mBuffer, mSize, length);
+        mSize += length;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * 清空内容，保留已分配的容量
+     */
+    public void reset() {
+        mSize = 0;
+    }
+
+    /**
+     * 获取内部缓冲，有效长度为size()
+     *
+     * @return 内部缓冲
+     */
+    public byte[] getBuffer() {
+        return mBuffer;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(mBuffer, mSize);
+    }
+
+    private void ensureCapacity(int extra) {
+        if (mSize + extra > mBuffer.length) {
+            mBuffer = Arrays.copyOf(mBuffer, Math.max(mBuffer.length * 2, mSize + extra));
+        }
+    }
+}
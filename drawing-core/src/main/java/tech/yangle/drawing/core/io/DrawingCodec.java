@@ -0,0 +1,193 @@
+package tech.yangle.drawing.core.io;
+
+import tech.yangle.drawing.core.DrawingDocument;
+import tech.yangle.drawing.core.Stroke;
+
+/**
+ * 文档二进制编解码，用于在设备与服务端之间传输笔迹
+ * <p>
+ * 坐标量化为1/8像素的定点数，首点存绝对值，其余点存与上一点的差值，均为zigzag变长整数，
+ * 手写笔迹每个点通常只占2~4字节；有采样时间时每个点再多约1字节。
+ * 版本3起每条笔迹记录所属图层，旧版本的笔迹属于图层0
+ */
+public final class DrawingCodec {
+
+    private static final int MAGIC = 0x44525700; // "DRW\0"
+    private static final int VERSION = 3;
+    // 版本1的笔迹没有时间信息
+    private static final int VERSION_UNTIMED = 1;
+    // 版本2的笔迹没有图层
+    private static final int VERSION_UNLAYERED = 2;
+    // 坐标量化精度，1/8像素
+    private static final float QUANTUM = 8f;
+
+    private DrawingCodec() {
+    }
+
+    /**
+     * 编码文档
+     *
+     * @param document 文档
+     * @return 字节数据
+     */
+    public static byte[] encode(DrawingDocument document) {
+        ByteWriter writer = new ByteWriter(64 + document.getStrokeCount() * 64);
+        writer.writeInt(MAGIC | VERSION);
+        writer.writeVarInt(document.getWidth());
+        writer.writeVarInt(document.getHeight());
+        writer.writeInt(document.getBackgroundColor());
+        writer.writeVarInt(document.getStrokeCount());
+        for (int i = 0; i < document.getStrokeCount(); i++) {
+            writeStroke(writer, document.getStroke(i));
+        }
+        return writer.toByteArray();
+    }
+
+    /**
+     * 解码文档
+     *
+     * @param data 字节数据
+     * @return 文档
+     * @throws IllegalArgumentException 数据格式错误
+     */
+    public static DrawingDocument decode(byte[] data) {
+        ByteReader reader = new ByteReader(data);
+        int header = reader.readInt();
+        if ((header & 0xFFFFFF00) != MAGIC) {
+            throw new IllegalArgumentException("Not a drawing document");
+        }
+        int version = header & 0xFF;
+        if (version < VERSION_UNTIMED || version > VERSION) {
+            throw new IllegalArgumentException("Unsupported version: " + version);
+        }
+        DrawingDocument document = new DrawingDocument(reader.readVarInt(), reader.readVarInt());
+        document.setBackgroundColor(reader.readInt());
+        int count = reader.readVarInt();
+        for (int i = 0; i < count; i++) {
+            document.addStroke(readStroke(reader, version));
+        }
+        return document;
+    }
+
+    /**
+     * 编码单条笔迹
+     *
+     * @param writer 输出
+     * @param stroke 笔迹
+     */
+    public static void writeStroke(ByteWriter writer, Stroke stroke) {
+        writer.writeSignedVarInt(stroke.getPenType());
+        writer.writeInt(stroke.getColor());
+        writer.writeFloat(stroke.getWidth());
+        writer.writeVarInt(stroke.getLayer());
+        writePoints(writer, stroke);
+        writeTimes(writer, stroke);
+    }
+
+    /**
+     * 解码单条笔迹
+     *
+     * @param reader 输入
+     * @return 笔迹
+     */
+    public static Stroke readStroke(ByteReader reader) {
+        return readStroke(reader, VERSION);
+    }
+
+    private static Stroke readStroke(ByteReader reader, int version) {
+        int penType = reader.readSignedVarInt();
+        int color = reader.readInt();
+        float width = reader.readFloat();
+        int layer = version > VERSION_UNLAYERED ? reader.readVarInt() : 0;
+        Stroke stroke = readPoints(reader, penType, color, width);
+        if (version != VERSION_UNTIMED) {
+            stroke = readTimes(reader, stroke);
+        }
+        stroke.setLayer(layer);
+        return stroke;
+    }
+
+    /**
+     * 编码采样时间：起始时间，随后是各点与上一点的时间差
+     */
+    private static void writeTimes(ByteWriter writer, Stroke stroke) {
+        if (!stroke.hasTimes()) {
+            writer.writeByte(0);
+            return;
+        }
+        writer.writeByte(1);
+        writer.writeVarLong(stroke.getStartTime());
+        long prev = stroke.getStartTime();
+        for (int i = 0; i < stroke.getPointCount(); i++) {
+            long time = stroke.getTime(i);
+            writer.writeVarLong(time - prev);
+            prev = time;
+        }
+    }
+
+    /**
+     * 解码采样时间，重建带时间的笔迹
+     */
+    private static Stroke readTimes(ByteReader reader, Stroke stroke) {
+        if (reader.readByte() == 0) {
+            return stroke;
+        }
+        int count = stroke.getPointCount();
+        Stroke timed = new Stroke(stroke.getPenType(), stroke.getColor(), stroke.getWidth(),
+                count);
+        long time = reader.readVarLong();
+        float[] points = stroke.getPoints();
+        for (int i = 0; i < count; i++) {
+            time += reader.readVarLong();
+            timed.addPoint(points[i * 2], points[i * 2 + 1], time);
+        }
+        return timed;
+    }
+
+    /**
+     * 只编码笔迹的坐标点，画笔属性由调用方另行传输
+     *
+     * @param writer 输出
+     * @param stroke 笔迹
+     */
+    public static void writePoints(ByteWriter writer, Stroke stroke) {
+        int count = stroke.getPointCount();
+        writer.writeVarInt(count);
+        float[] points = stroke.getPoints();
+        int prevX = 0;
+        int prevY = 0;
+        for (int i = 0; i < count; i++) {
+            int x = Math.round(points[i * 2] * QUANTUM);
+            int y = Math.round(points[i * 2 + 1] * QUANTUM);
+            writer.writeSignedVarInt(x - prevX);
+            writer.writeSignedVarInt(y - prevY);
+            prevX = x;
+            prevY = y;
+        }
+    }
+
+    /**
+     * 解码writePoints写入的坐标点
+     *
+     * @param reader  输入
+     * @param penType 画笔类型
+     * @param color   颜色
+     * @param width   宽度|px
+     * @return 笔迹
+     */
+    public static Stroke readPoints(ByteReader reader, int penType, int color, float width) {
+        int count = reader.readVarInt();
+        if (count < 0 || count > reader.remaining()) {
+            throw new IllegalArgumentException("Bad point count: " + count);
+        }
+        Stroke stroke = new Stroke(penType, color, width, count);
+        int x = 0;
+        int y = 0;
+        for (int i = 0; i < count; i++) {
+            x += reader.readSignedVarInt();
+            y += reader.readSignedVarInt();
+            stroke.addPoint(x / QUANTUM, y / QUANTUM);
+        }
+        return stroke;
+    }
+}
@@ -0,0 +1,377 @@
+package tech.yangle.drawing.core.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+import tech.yangle.drawing.core.DrawingDocument;
+import tech.yangle.drawing.core.Stroke;
+
+/**
+ * 只追加的笔迹日志，基于内存映射文件
+ * <p>
+ * 每条记录为 [长度][类型][内容][CRC32]，写入映射内存即完成提交，不需要系统调用；
+ * 进程崩溃后内核仍会把页缓存写回文件。恢复时顺序扫描记录，遇到长度为0或校验失败即停止，
+ * 因此写到一半的记录会被丢弃。需要抵御断电时调用sync()。
+ * <p>
+ * 变换记录以笔迹在文档中的下标引用已写入的笔迹，恢复时按顺序重放即可得到移动后的位置。
+ * <p>
+ * 日志同时按记录维护一份当前的文档。清空之前的笔迹、被变换替换的旧笔迹以及变换记录本身都是过时的记录，
+ * 会拖慢恢复；compact()把日志重写为当前文档的快照，每条现存笔迹一条记录。
+ * 非线程安全，应在同一个线程上使用
+ */
+public class StrokeJournal implements Closeable {
+
+    // 笔迹记录带采样时间和图层，旧版本的日志不再读取
+    private static final int MAGIC = 0x44524A33; // "DRJ3"
+    private static final int HEADER_SIZE = 16;
+    // 长度、类型、CRC
+    private static final int RECORD_OVERHEAD = 4 + 1 + 4;
+    private static final int INITIAL_CAPACITY = 256 * 1024;
+
+    private static final int TYPE_STROKE = 1;
+    private static final int TYPE_CLEAR = 2;
+    private static final int TYPE_TRANSFORM = 3;
+
+    private final File mFile;
+    private RandomAccessFile mRandomAccessFile;
+    private FileChannel mChannel;
+    private MappedByteBuffer mBuffer;
+    private final ByteWriter mWriter = new ByteWriter(1024);
+    private final CRC32 mCrc = new CRC32();
+    // 下一条记录的写入位置
+    private int mPosition;
+    // 最后一次清空记录之后的位置，之前的记录都已失效
+    private int mLiveStart;
+    // 已写入的记录数
+    private int mRecordCount;
+    // 按记录重放得到的当前文档，与恢复出的文档分开，后者交给调用方修改
+    private DrawingDocument mLive;
+    private DrawingDocument mRecovered;
+
+    private StrokeJournal(File file) {
+        mFile = file;
+    }
+
+    /**
+     * 打开日志，文件存在时先恢复其中的内容
+     *
+     * @param file   日志文件
+     * @param width  新建日志时记录的画布宽度
+     * @param height 新建日志时记录的画布高度
+     * @return 日志
+     * @throws IOException 打开失败
+     */
+    public static StrokeJournal open(File file, int width, int height) throws IOException {
+        StrokeJournal journal = new StrokeJournal(file);
+        if (file.length() >= HEADER_SIZE) {
+            journal.map(Math.max(INITIAL_CAPACITY, (int) file.length()));
+            if (journal.mBuffer.getInt(0) == MAGIC) {
+                journal.recover();
+                return journal;
+            }
+            journal.unmap();
+        }
+        journal.create(width, height);
+        return journal;
+    }
+
+    /**
+     * 打开日志时恢复出的文档，按记录顺序重放
+     *
+     * @return 文档，新建的日志没有笔迹
+     */
+    public DrawingDocument getRecoveredDocument() {
+        return mRecovered;
+    }
+
+    /**
+     * 追加一条笔迹
+     *
+     * @param stroke 笔迹
+     * @throws IOException 扩容失败
+     */
+    public void appendStroke(Stroke stroke) throws IOException {
+        mWriter.reset();
+        DrawingCodec.writeStroke(mWriter, stroke);
+        append(TYPE_STROKE, mWriter);
+        mLive.addStroke(stroke);
+    }
+
+    /**
+     * 追加一条清空记录
+     *
+     * @throws IOException 扩容失败
+     */
+    public void appendClear() throws IOException {
+        mWriter.reset();
+        append(TYPE_CLEAR, mWriter);
+        mLiveStart = mPosition;
+        mLive.clear();
+    }
+
+    /**
+     * 追加一条变换记录：指定下标的笔迹被替换为缩放平移后的笔迹
+     *
+     * @param indices 笔迹下标，升序
+     * @param scale   缩放比例
+     * @param dx      x方向平移|px
+     * @param dy      y方向平移|px
+     * @throws IOException 扩容失败
+     */
+    public void appendTransform(int[] indices, float scale, float dx, float dy)
+            throws IOException {
+        mWriter.reset();
+        mWriter.writeFloat(scale);
+        mWriter.writeFloat(dx);
+        mWriter.writeFloat(dy);
+        mWriter.writeVarInt(indices.length);
+        int prev = 0;
+        for (int index : indices) {
+            mWriter.writeVarInt(index - prev);
+            prev = index;
+        }
+        append(TYPE_TRANSFORM, mWriter);
+        for (int index : indices) {
+            if (index < mLive.getStrokeCount()) {
+                mLive.setStroke(index, mLive.getStroke(index).transformed(scale, dx, dy));
+            }
+        }
+    }
+
+    /**
+     * 将映射内存写回磁盘，抵御断电
+     */
+    public void sync() {
+        mBuffer.force();
+    }
+
+    /**
+     * 日志已写入的字节数
+     *
+     * @return 字节数
+     */
+    public int getSize() {
+        return mPosition;
+    }
+
+    /**
+     * 已失效的字节数，即最后一次清空之前的记录
+     *
+     * @return 字节数
+     */
+    public int getDeadBytes() {
+        return mLiveStart - HEADER_SIZE;
+    }
+
+    /**
+     * 过时的记录数，即恢复时重放的记录比当前文档的笔迹多出的部分
+     *
+     * @return 记录数
+     */
+    public int getObsoleteRecordCount() {
+        return mRecordCount - mLive.getStrokeCount();
+    }
+
+    /**
+     * 当前文档的笔迹数
+     *
+     * @return 笔迹数
+     */
+    public int getLiveStrokeCount() {
+        return mLive.getStrokeCount();
+    }
+
+    /**
+     * 压缩日志：重写为当前文档的快照，每条现存笔迹一条记录，清空和变换记录不再保留。
+     * 先写临时文件再替换，过程中崩溃不会丢失原日志
+     *
+     * @throws IOException 写入失败
+     */
+    public void compact() throws IOException {
+        if (getObsoleteRecordCount() == 0) {
+            return;
+        }
+        File temp = new File(mFile.getPath() + ".compact");
+        if (temp.exists() && !temp.delete()) {
+            throw new IOException("Cannot delete " + temp);
+        }
+        StrokeJournal compacted = open(temp, mBuffer.getInt(4), mBuffer.getInt(8));
+        int position;
+        try {
+            for (int i = 0; i < mLive.getStrokeCount(); i++) {
+                compacted.appendStroke(mLive.getStroke(i));
+            }
+            position = compacted.mPosition;
+        } finally {
+            compacted.close();
+        }
+        unmap();
+        if (!temp.renameTo(mFile)) {
+            throw new IOException("Cannot rename " + temp + " to " + mFile);
+        }
+        map(Math.max(INITIAL_CAPACITY, (int) mFile.length()));
+        mPosition = position;
+        mLiveStart = HEADER_SIZE;
+        mRecordCount = mLive.getStrokeCount();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (mBuffer != null) {
+            mBuffer.force();
+        }
+        unmap();
+    }
+
+    private void create(int width, int height) throws IOException {
+        openChannel();
+        // 清除无法识别的旧内容，重新映射后扩展出的区域全为0
+        mChannel.truncate(0);
+        map(INITIAL_CAPACITY);
+        mBuffer.putInt(0, MAGIC);
+        mBuffer.putInt(4, width);
+        mBuffer.putInt(8, height);
+        mBuffer.putInt(12, 0);
+        mPosition = HEADER_SIZE;
+        mLiveStart = HEADER_SIZE;
+        mRecordCount = 0;
+        mRecovered = new DrawingDocument(width, height);
+        mLive = new DrawingDocument(width, height);
+    }
+
+    /**
+     * 扫描全部有效记录
+     */
+    private void recover() {
+        DrawingDocument document = new DrawingDocument(mBuffer.getInt(4), mBuffer.getInt(8));
+        int position = HEADER_SIZE;
+        int liveStart = HEADER_SIZE;
+        int records = 0;
+        byte[] payload = new byte[256];
+        while (position + RECORD_OVERHEAD <= mBuffer.capacity()) {
+            int length = mBuffer.getInt(position);
+            if (length <= 0 || position + RECORD_OVERHEAD + length - 1 > mBuffer.capacity()) {
+                break;
+            }
+            // length包含类型字节
+            if (payload.length < length) {
+                payload = new byte[length * 2];
+            }
+            for (int i = 0; i < length; i++) {
+                payload[i] = mBuffer.get(position + 4 + i);
+            }
+            mCrc.reset();
+            mCrc.update(payload, 0, length);
+            if ((int) mCrc.getValue() != mBuffer.getInt(position + 4 + length)) {
+                break;
+            }
+            int type = payload[0];
+            try {
+                if (type == TYPE_STROKE) {
+                    document.addStroke(DrawingCodec.readStroke(
+                            new ByteReader(payload, 1, length - 1)));
+                } else if (type == TYPE_CLEAR) {
+                    document.clear();
+                    liveStart = position + 4 + length + 4;
+                } else if (type == TYPE_TRANSFORM) {
+                    applyTransform(document, new ByteReader(payload, 1, length - 1));
+                } else {
+                    break;
+                }
+            } catch (IllegalArgumentException e) {
+                break;
+            }
+            position += 4 + length + 4;
+            records++;
+        }
+        mPosition = position;
+        mLiveStart = liveStart;
+        mRecordCount = records;
+        mRecovered = document;
+        // 笔迹写入后不再修改，两份文档可以共用
+        mLive = new DrawingDocument(document.getWidth(), document.getHeight());
+        for (int i = 0; i < document.getStrokeCount(); i++) {
+            mLive.addStroke(document.getStroke(i));
+        }
+    }
+
+    /**
+     * 恢复时重放变换记录
+     */
+    private static void applyTransform(DrawingDocument document, ByteReader reader) {
+        float scale = reader.readFloat();
+        float dx = reader.readFloat();
+        float dy = reader.readFloat();
+        int count = reader.readVarInt();
+        int index = 0;
+        for (int i = 0; i < count; i++) {
+            index += reader.readVarInt();
+            if (index >= document.getStrokeCount()) {
+                throw new IllegalArgumentException("Bad stroke index: " + index);
+            }
+            document.setStroke(index, document.getStroke(index).transformed(scale, dx, dy));
+        }
+    }
+
+    private void append(int type, ByteWriter body) throws IOException {
+        int length = body.size() + 1;
+        int recordSize = 4 + length + 4;
+        // 保留4字节的0作为结束标记
+        ensureCapacity(mPosition + recordSize + 4);
+        mCrc.reset();
+        mCrc.update(type);
+        mCrc.update(body.getBuffer(), 0, body.size());
+        MappedByteBuffer buffer = mBuffer;
+        // 先写内容、校验和结束标记，最后写长度，长度非0即表示记录完整
+        buffer.position(mPosition + 4);
+        buffer.put((byte) type);
+        buffer.put(body.getBuffer(), 0, body.size());
+        buffer.putInt((int) mCrc.getValue());
+        buffer.putInt(0);
+        buffer.putInt(mPosition, length);
+        mPosition += recordSize;
+        mRecordCount++;
+    }
+
+    private void ensureCapacity(int required) throws IOException {
+        if (required <= mBuffer.capacity()) {
+            return;
+        }
+        int capacity = mBuffer.capacity();
+        while (capacity < required) {
+            capacity *= 2;
+        }
+        mBuffer.force();
+        map(capacity);
+    }
+
+    private void openChannel() throws IOException {
+        if (mChannel == null) {
+            mRandomAccessFile = new RandomAccessFile(mFile, "rw");
+            mChannel = mRandomAccessFile.getChannel();
+        }
+    }
+
+    private void map(int capacity) throws IOException {
+        openChannel();
+        // 映射超出文件长度的区域时文件自动扩展，新增部分为0
+        mBuffer = mChannel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    private void unmap() throws IOException {
+        mBuffer = null;
+        if (mChannel != null) {
+            mChannel.close();
+            mChannel = null;
+        }
+        if (mRandomAccessFile != null) {
+            mRandomAccessFile.close();
+            mRandomAccessFile = null;
+        }
+    }
+}
\ No newline at end of file
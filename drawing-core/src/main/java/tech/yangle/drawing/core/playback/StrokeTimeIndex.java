@@ -0,0 +1,133 @@
+package tech.yangle.drawing.core.playback;
+
+import java.util.List;
+
+import tech.yangle.drawing.core.Stroke;
+
+/**
+ * 笔迹时间索引，回放定位时按二分查找代替逐条扫描
+ * <p>
+ * 时间轴以第一条笔迹的起始时间为0。笔迹按提交顺序排列，结束时间取前缀最大值，保证单调；
+ * 没有采样时间的笔迹视为在上一条结束时瞬间完成。
+ * 超过maxGap的停顿压缩为maxGap，长时间离开不会在回放中留下空白
+ */
+public class StrokeTimeIndex {
+
+    private final List<Stroke> mStrokes;
+    // 各笔迹在时间轴上的起止时间|ms
+    private final long[] mStarts;
+    private final long[] mEnds;
+    // 各笔迹原始时间到时间轴的平移量|ms
+    private final long[] mShifts;
+
+    /**
+     * @param strokes 笔迹，按提交顺序
+     * @param maxGap  笔迹间最大停顿|ms，不大于0时不压缩
+     */
+    public StrokeTimeIndex(List<Stroke> strokes, long maxGap) {
+        int count = strokes.size();
+        mStrokes = strokes;
+        mStarts = new long[count];
+        mEnds = new long[count];
+        mShifts = new long[count];
+        long end = 0;
+        long shift = 0;
+        boolean first = true;
+        for (int i = 0; i < count; i++) {
+            Stroke stroke = strokes.get(i);
+            if (!stroke.hasTimes() || stroke.getPointCount() == 0) {
+                mStarts[i] = end;
+                mEnds[i] = end;
+                continue;
+            }
+            long start = stroke.getStartTime() - shift;
+            if (first) {
+                shift = stroke.getStartTime();
+                start = 0;
+                first = false;
+            } else if (start < end || (maxGap > 0 && start - end > maxGap)) {
+                // 时间倒退或停顿过长，平移到上一条结束之后
+                long target = start < end ? end : end + maxGap;
+                shift += start - target;
+                start = target;
+            }
+            mShifts[i] = shift;
+            mStarts[i] = start;
+            end = Math.max(end, stroke.getEndTime() - shift);
+            mEnds[i] = end;
+        }
+    }
+
+    public int getStrokeCount() {
+        return mStarts.length;
+    }
+
+    /**
+     * 时间轴总时长
+     *
+     * @return 时长|ms
+     */
+    public long getDuration() {
+        return mEnds.length == 0 ? 0 : mEnds[mEnds.length - 1];
+    }
+
+    public long getStartTime(int index) {
+        return mStarts[index];
+    }
+
+    public long getEndTime(int index) {
+        return mEnds[index];
+    }
+
+    /**
+     * 到指定时间已完成的笔迹数，即前若干条笔迹
+     *
+     * @param time 时间轴上的时间|ms
+     * @return 笔迹数
+     */
+    public int countCompletedBy(long time) {
+        // 第一条结束时间大于time的下标
+        int low = 0;
+        int high = mEnds.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (mEnds[mid] <= time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 笔迹到指定时间已画出的点数
+     *
+     * @param index 笔迹下标
+     * @param time  时间轴上的时间|ms
+     * @return 点数，未开始时为0
+     */
+    public int pointCountAt(int index, long time) {
+        Stroke stroke = mStrokes.get(index);
+        int count = stroke.getPointCount();
+        if (time < mStarts[index]) {
+            return 0;
+        }
+        if (!stroke.hasTimes() || time >= mEnds[index]) {
+            return count;
+        }
+        // 最后一个采样时间不晚于time的点
+        long target = time + mShifts[index];
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (stroke.getTime(mid) <= target) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
\ No newline at end of file
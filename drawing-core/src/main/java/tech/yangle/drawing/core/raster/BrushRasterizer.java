@@ -0,0 +1,173 @@
+package tech.yangle.drawing.core.raster;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import tech.yangle.drawing.core.BrushTip;
+import tech.yangle.drawing.core.Stroke;
+
+/**
+ * 纹理笔刷的软件光栅化
+ * <p>
+ * 盖印位置和角度由{@link BrushTip#walk}计算，与画板上的BrushStamper一致。
+ * 每次盖印把输出像素反向旋转到未旋转的蒙版中双线性采样，等价于画板上按角度预先旋转的图集。
+ * 一个实例只绘制一条笔迹的一个裁剪区域，非线程安全
+ */
+final class BrushRasterizer implements BrushTip.Stamper {
+
+    // 蒙版缓存占用内存上限
+    private static final long MAX_MASK_BYTES = 4L << 20;
+    private static final LinkedHashMap<Long, float[]> MASKS =
+            new LinkedHashMap<>(16, 0.75f, true);
+    private static long sMaskBytes;
+
+    private final float mScale;
+    private final int[] mPixels;
+    private final int mOffset;
+    private final int mStride;
+    private final int mClipLeft;
+    private final int mClipTop;
+    private final int mClipRight;
+    private final int mClipBottom;
+    private float[] mMask;
+    private int mSize;
+    // 画笔颜色，透明度已乘以笔尖流量
+    private int mColor;
+    // 输出像素到蒙版像素的缩放比例
+    private float mMaskScale;
+    // 笔尖在输出坐标系中的半径，含双线性采样的1px边缘|px
+    private float mRadius;
+
+    BrushRasterizer(float scale, int[] pixels, int offset, int stride, int clipLeft, int clipTop,
+                    int clipRight, int clipBottom) {
+        mScale = scale;
+        mPixels = pixels;
+        mOffset = offset;
+        mStride = stride;
+        mClipLeft = clipLeft;
+        mClipTop = clipTop;
+        mClipRight = clipRight;
+        mClipBottom = clipBottom;
+    }
+
+    /**
+     * 沿笔迹盖印
+     *
+     * @param stroke 笔迹，已按缩放比例选择细节级别
+     * @param tip    笔尖
+     */
+    void draw(Stroke stroke, BrushTip tip) {
+        float width = stroke.getWidth();
+        // 与画板一致：蒙版按取整的直径生成，绘制时缩放回实际宽度
+        mSize = Math.max(1, Math.round(width));
+        float stampScale = Math.max(width, 1) / mSize * mScale;
+        mMaskScale = 1 / stampScale;
+        mRadius = (mSize / 2f + 1) * stampScale;
+        if (stroke.getLeft() * mScale - mRadius >= mClipRight
+                || stroke.getRight() * mScale + mRadius <= mClipLeft
+                || stroke.getTop() * mScale - mRadius >= mClipBottom
+                || stroke.getBottom() * mScale + mRadius <= mClipTop) {
+            return;
+        }
+        mMask = mask(tip, mSize);
+        int color = stroke.getColor();
+        int alpha = Math.round((color >>> 24) * tip.getFlow());
+        mColor = (alpha << 24) | (color & 0xffffff);
+        tip.walk(stroke.getPoints(), 0, stroke.getPointCount(), tip.getStampSpacing(width), 0,
+                this);
+    }
+
+    @Override
+    public void stampAt(float x, float y, int angleIndex) {
+        float cx = x * mScale;
+        float cy = y * mScale;
+        int left = Math.max(mClipLeft, (int) Math.floor(cx - mRadius));
+        int top = Math.max(mClipTop, (int) Math.floor(cy - mRadius));
+        int right = Math.min(mClipRight, (int) Math.ceil(cx + mRadius));
+        int bottom = Math.min(mClipBottom, (int) Math.ceil(cy + mRadius));
+        if (left >= right || top >= bottom) {
+            return;
+        }
+        double angle = angleIndex * Math.PI * 2 / BrushTip.ANGLE_STEPS;
+        // 反向旋转并缩放到蒙版像素
+        float cos = (float) Math.cos(angle) * mMaskScale;
+        float sin = (float) Math.sin(angle) * mMaskScale;
+        // 蒙版像素中心在i + 0.5，采样坐标减去0.5后按整数格插值
+        float center = mSize / 2f - 0.5f;
+        for (int py = top; py < bottom; py++) {
+            float dy = py + 0.5f - cy;
+            int row = mOffset + (py - mClipTop) * mStride - mClipLeft;
+            for (int px = left; px < right; px++) {
+                float dx = px + 0.5f - cx;
+                float u = dx * cos + dy * sin + center;
+                float v = -dx * sin + dy * cos + center;
+                float a = sample(u, v);
+                if (a > 0) {
+                    mPixels[row + px] = PixelUtils.srcOver(mPixels[row + px], mColor, a);
+                }
+            }
+        }
+    }
+
+    /**
+     * 双线性采样蒙版，蒙版之外为0
+     */
+    private float sample(float u, float v) {
+        if (u <= -1 || v <= -1 || u >= mSize || v >= mSize) {
+            return 0;
+        }
+        int x0 = (int) Math.floor(u);
+        int y0 = (int) Math.floor(v);
+        float fx = u - x0;
+        float fy = v - y0;
+        float top = lerp(texel(x0, y0), texel(x0 + 1, y0), fx);
+        float bottom = lerp(texel(x0, y0 + 1), texel(x0 + 1, y0 + 1), fx);
+        return lerp(top, bottom, fy);
+    }
+
+    private float texel(int x, int y) {
+        if (x < 0 || y < 0 || x >= mSize || y >= mSize) {
+            return 0;
+        }
+        return mMask[y * mSize + x];
+    }
+
+    private static float lerp(float a, float b, float t) {
+        return a + (b - a) * t;
+    }
+
+    /**
+     * 获取笔尖蒙版的透明度，0..1，不存在时生成；按最近使用淘汰
+     */
+    private static float[] mask(BrushTip tip, int size) {
+        long key = ((long) tip.getPenType() << 32) | size;
+        synchronized (MASKS) {
+            float[] mask = MASKS.get(key);
+            if (mask != null) {
+                return mask;
+            }
+        }
+        int[] pixels = tip.renderMask(size);
+        float[] mask = new float[pixels.length];
+        for (int i = 0; i < pixels.length; i++) {
+            mask[i] = (pixels[i] >>> 24) / 255f;
+        }
+        synchronized (MASKS) {
+            // 多个线程同时生成时结果相同，保留先放入的一份
+            float[] existing = MASKS.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            MASKS.put(key, mask);
+            sMaskBytes += mask.length * 4L;
+            Iterator<Map.Entry<Long, float[]>> iterator = MASKS.entrySet().iterator();
+            // 至少保留刚生成的一项
+            while (sMaskBytes > MAX_MASK_BYTES && MASKS.size() > 1) {
+                sMaskBytes -= iterator.next().getValue().length * 4L;
+                iterator.remove();
+            }
+        }
+        return mask;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,72 @@
+package tech.yangle.drawing.core.raster;
+
+import java.util.BitSet;
+
+/**
+ * 填充笔迹的区域掩码
+ * <p>
+ * 填充依赖整张图层的内容，在不高于文档分辨率的掩码分辨率上整张计算一次，
+ * 绘制时按输出坐标最近邻采样，输出放大时不需要输出尺寸的整张图层
+ */
+final class FillMask {
+
+    // 掩码坐标系中的填充区域，[left, right) x [top, bottom)
+    private final int mLeft;
+    private final int mTop;
+    private final int mRight;
+    private final int mBottom;
+    private final BitSet mFilled;
+    // 填充色，预乘ARGB
+    private final int mColor;
+    // 掩码分辨率与输出分辨率之比
+    private final float mRatio;
+
+    /**
+     * @param floodFill 已完成填充的FloodFill
+     * @param color     填充色，预乘ARGB
+     * @param ratio     掩码分辨率与输出分辨率之比，不大于1
+     */
+    FillMask(FloodFill floodFill, int color, float ratio) {
+        mLeft = floodFill.getLeft();
+        mTop = floodFill.getTop();
+        mRight = floodFill.getRight();
+        mBottom = floodFill.getBottom();
+        mFilled = floodFill.getFilledMask();
+        mColor = color;
+        mRatio = ratio;
+    }
+
+    /**
+     * 把填充色写入输出坐标系中矩形区域内被填充的像素
+     *
+     * @param pixels     目标像素，预乘ARGB
+     * @param offset     区域左上角像素在pixels中的下标
+     * @param stride     pixels的行跨度
+     * @param clipLeft   区域左边界（含）
+     * @param clipTop    区域上边界（含）
+     * @param clipRight  区域右边界（不含）
+     * @param clipBottom 区域下边界（不含）
+     */
+    void draw(int[] pixels, int offset, int stride, int clipLeft, int clipTop, int clipRight,
+              int clipBottom) {
+        int left = Math.max(clipLeft, (int) Math.floor(mLeft / mRatio));
+        int top = Math.max(clipTop, (int) Math.floor(mTop / mRatio));
+        int right = Math.min(clipRight, (int) Math.ceil(mRight / mRatio));
+        int bottom = Math.min(clipBottom, (int) Math.ceil(mBottom / mRatio));
+        int width = mRight - mLeft;
+        for (int y = top; y < bottom; y++) {
+            int maskY = (int) ((y + 0.5f) * mRatio);
+            if (maskY < mTop || maskY >= mBottom) {
+                continue;
+            }
+            int maskRow = (maskY - mTop) * width - mLeft;
+            int pixelRow = offset + (y - clipTop) * stride - clipLeft;
+            for (int x = left; x < right; x++) {
+                int maskX = (int) ((x + 0.5f) * mRatio);
+                if (maskX >= mLeft && maskX < mRight && mFilled.get(maskRow + maskX)) {
+                    pixels[pixelRow + x] = mColor;
+                }
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,268 @@
+package tech.yangle.drawing.core.raster;
+
+import java.util.BitSet;
+
+/**
+ * 扫描线填充
+ * <p>
+ * 分三步：按容差计算与种子颜色相近的像素掩码（matchRows）；从种子出发逐行扩展连通区域，
+ * 只在字节掩码上标记（flood）；把标记的像素写为填充色（writeRows）。
+ * 第一步和第三步按行独立，可由调用方拆分为多个行段并行执行；第二步在单线程上进行，
+ * 每个像素只访问常数次。掩码、扫描栈在多次填充间复用。
+ * <p>
+ * 颜色按各通道之差的最大值比较，像素格式由调用方决定，填充色须与像素格式一致。
+ * prepare之后可并发调用matchRows，flood之后可并发调用writeRows，其余方法非线程安全
+ */
+public class FloodFill {
+
+    private static final byte OUTSIDE = 0;
+    private static final byte INSIDE = 1;
+    private static final byte FILLED = 2;
+
+    private int[] mPixels;
+    private int mWidth;
+    private int mHeight;
+    private int mSeedColor;
+    private int mTolerance;
+    private int mSeed = -1;
+    private byte[] mMask = new byte[0];
+    private int[] mStack = new int[256];
+    // 填充区域，[left, right) x [top, bottom)
+    private int mLeft;
+    private int mTop;
+    private int mRight;
+    private int mBottom;
+
+    /**
+     * 准备填充
+     *
+     * @param pixels    像素，按行连续存放
+     * @param width     宽度
+     * @param height    高度
+     * @param x         种子x坐标
+     * @param y         种子y坐标
+     * @param tolerance 容差，0..255，0只填充颜色完全相同的像素
+     * @return false: 种子在范围外
+     */
+    public boolean prepare(int[] pixels, int width, int height, int x, int y, int tolerance) {
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            mSeed = -1;
+            return false;
+        }
+        mPixels = pixels;
+        mWidth = width;
+        mHeight = height;
+        mSeed = y * width + x;
+        mSeedColor = pixels[mSeed];
+        mTolerance = tolerance;
+        if (mMask.length < width * height) {
+            mMask = new byte[width * height];
+        }
+        return true;
+    }
+
+    /**
+     * 计算[from, to)行的掩码，不同行段可在多个线程上并发执行
+     *
+     * @param from 起始行（含）
+     * @param to   结束行（不含）
+     */
+    public void matchRows(int from, int to) {
+        int[] pixels = mPixels;
+        byte[] mask = mMask;
+        int seed = mSeedColor;
+        int tolerance = mTolerance;
+        int end = to * mWidth;
+        for (int i = from * mWidth; i < end; i++) {
+            int color = pixels[i];
+            if (color == seed) {
+                mask[i] = INSIDE;
+                continue;
+            }
+            int da = Math.abs((color >>> 24) - (seed >>> 24));
+            int dr = Math.abs(((color >> 16) & 0xFF) - ((seed >> 16) & 0xFF));
+            int dg = Math.abs(((color >> 8) & 0xFF) - ((seed >> 8) & 0xFF));
+            int db = Math.abs((color & 0xFF) - (seed & 0xFF));
+            mask[i] = Math.max(Math.max(da, dr), Math.max(dg, db)) <= tolerance
+                    ? INSIDE : OUTSIDE;
+        }
+    }
+
+    /**
+     * 从种子开始标记连通区域，只修改掩码，调用前须已对全部行调用matchRows
+     *
+     * @return 标记的像素数，区域见getLeft等
+     */
+    public int flood() {
+        mLeft = mWidth;
+        mTop = mHeight;
+        mRight = 0;
+        mBottom = 0;
+        if (mSeed < 0) {
+            return 0;
+        }
+        byte[] mask = mMask;
+        int width = mWidth;
+        int filled = 0;
+        int size = 0;
+        mStack[size++] = mSeed;
+        while (size > 0) {
+            int index = mStack[--size];
+            if (mask[index] != INSIDE) {
+                continue;
+            }
+            int y = index / width;
+            int rowStart = y * width;
+            int left = index;
+            while (left > rowStart && mask[left - 1] == INSIDE) {
+                left--;
+            }
+            int right = index;
+            int rowEnd = rowStart + width - 1;
+            while (right < rowEnd && mask[right + 1] == INSIDE) {
+                right++;
+            }
+            for (int i = left; i <= right; i++) {
+                mask[i] = FILLED;
+            }
+            filled += right - left + 1;
+            if (left - rowStart < mLeft) mLeft = left - rowStart;
+            if (right - rowStart + 1 > mRight) mRight = right - rowStart + 1;
+            if (y < mTop) mTop = y;
+            if (y + 1 > mBottom) mBottom = y + 1;
+            // 上下两行中每段连续的待填充像素压入一个种子
+            if (y > 0) {
+                size = pushRuns(left - width, right - width, size);
+            }
+            if (y < mHeight - 1) {
+                size = pushRuns(left + width, right + width, size);
+            }
+        }
+        return filled;
+    }
+
+    /**
+     * 把已标记的像素写为填充色，只处理填充区域内的[from, to)行，不同行段可并发执行
+     *
+     * @param from  起始行（含）
+     * @param to    结束行（不含）
+     * @param color 填充色
+     */
+    public void writeRows(int from, int to, int color) {
+        int[] pixels = mPixels;
+        byte[] mask = mMask;
+        int left = mLeft;
+        int right = mRight;
+        for (int y = Math.max(from, mTop); y < Math.min(to, mBottom); y++) {
+            int rowStart = y * mWidth;
+            for (int i = rowStart + left; i < rowStart + right; i++) {
+                if (mask[i] == FILLED) {
+                    pixels[i] = color;
+                }
+            }
+        }
+    }
+
+    /**
+     * 标记连通区域并写入填充色
+     *
+     * @param color 填充色
+     * @return 填充的像素数
+     */
+    public int fill(int color) {
+        int filled = flood();
+        if (filled > 0) {
+            writeRows(mTop, mBottom, color);
+        }
+        return filled;
+    }
+
+    /**
+     * 一次完成掩码计算与填充
+     *
+     * @param pixels    像素
+     * @param width     宽度
+     * @param height    高度
+     * @param x         种子x坐标
+     * @param y         种子y坐标
+     * @param tolerance 容差，0..255
+     * @param color     填充色
+     * @return 填充的像素数
+     */
+    public int fill(int[] pixels, int width, int height, int x, int y, int tolerance, int color) {
+        if (!prepare(pixels, width, height, x, y, tolerance)) {
+            return 0;
+        }
+        matchRows(0, height);
+        return fill(color);
+    }
+
+    /**
+     * 上次填充区域的左边界（含）
+     */
+    public int getLeft() {
+        return mLeft;
+    }
+
+    /**
+     * 上次填充区域的上边界（含）
+     */
+    public int getTop() {
+        return mTop;
+    }
+
+    /**
+     * 上次填充区域的右边界（不含）
+     */
+    public int getRight() {
+        return mRight;
+    }
+
+    /**
+     * 上次填充区域的下边界（不含）
+     */
+    public int getBottom() {
+        return mBottom;
+    }
+
+    /**
+     * 上次填充区域内被填充的像素，按行存放，行跨度为getRight() - getLeft()
+     *
+     * @return 掩码，第i位对应区域内第i个像素
+     */
+    public BitSet getFilledMask() {
+        int width = Math.max(0, mRight - mLeft);
+        BitSet filled = new BitSet(width * Math.max(0, mBottom - mTop));
+        for (int y = mTop; y < mBottom; y++) {
+            int rowStart = y * mWidth + mLeft;
+            int maskRow = (y - mTop) * width;
+            for (int x = 0; x < width; x++) {
+                if (mMask[rowStart + x] == FILLED) {
+                    filled.set(maskRow + x);
+                }
+            }
+        }
+        return filled;
+    }
+
+    private int pushRuns(int from, int to, int size) {
+        byte[] mask = mMask;
+        boolean inRun = false;
+        for (int i = from; i <= to; i++) {
+            if (mask[i] == INSIDE) {
+                if (!inRun) {
+                    if (size == mStack.length) {
+                        int[] stack = new int[size * 2];
+                        System.arraycopy(mStack, 0, stack, 0, size);
+                        mStack = stack;
+                    }
+                    mStack[size++] = i;
+                    inRun = true;
+                }
+            } else {
+                inRun = false;
+            }
+        }
+        return size;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,257 @@
+package tech.yangle.drawing.core.raster;
+
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 压缩存放的一块像素区域
+ * <p>
+ * 单色区域（如空白区域）只记录一个像素值；其他区域按行程编码，
+ * 行程编码效果不好时（抗锯齿边缘多的区域）改用最快级别的deflate，取两者中较小的一种。
+ * 像素值按原样保存，不区分预乘与否，解压后与压缩前逐位一致。对象只读，可跨线程传递
+ */
+public final class PackedRegion {
+
+    // 行程编码达到该压缩比时不再尝试deflate
+    private static final int GOOD_RATIO = 16;
+    // 解压时的数据块大小|byte
+    private static final int CHUNK_SIZE = 16 * 1024;
+
+    private final int mWidth;
+    private final int mHeight;
+    private final int mColor;
+    // 行程编码，count0, value0, count1, value1 ...
+    private final int[] mRuns;
+    // deflate压缩的像素，每个像素4字节，低位在前
+    private final byte[] mDeflated;
+
+    private PackedRegion(int width, int height, int color, int[] runs, byte[] deflated) {
+        mWidth = width;
+        mHeight = height;
+        mColor = color;
+        mRuns = runs;
+        mDeflated = deflated;
+    }
+
+    /**
+     * 单色区域
+     *
+     * @param width  区域宽度
+     * @param height 区域高度
+     * @param color  像素值
+     * @return 压缩的区域
+     */
+    public static PackedRegion uniform(int width, int height, int color) {
+        return new PackedRegion(width, height, color, null, null);
+    }
+
+    /**
+     * 压缩一块像素区域
+     *
+     * @param pixels 像素
+     * @param offset 区域左上角像素的下标
+     * @param stride pixels的行跨度
+     * @param width  区域宽度
+     * @param height 区域高度
+     * @return 压缩的区域
+     */
+    public static PackedRegion pack(int[] pixels, int offset, int stride, int width, int height) {
+        int area = width * height;
+        // 行程编码超过原始大小的1/4时放弃，改用deflate
+        int limit = Math.max(area / 4, 2);
+        int[] runs = new int[Math.min(limit, 256)];
+        int length = 0;
+        int value = pixels[offset];
+        int count = 0;
+        for (int y = 0; y < height && length >= 0; y++) {
+            int index = offset + y * stride;
+            for (int x = 0; x < width; x++) {
+                int pixel = pixels[index + x];
+                if (pixel == value) {
+                    count++;
+                    continue;
+                }
+                if (length + 2 > limit) {
+                    length = -1;
+                    break;
+                }
+                if (length + 2 > runs.length) {
+                    runs = Arrays.copyOf(runs, Math.min(runs.length * 2, limit));
+                }
+                runs[length++] = count;
+                runs[length++] = value;
+                value = pixel;
+                count = 1;
+            }
+        }
+        if (length == 0) {
+            return uniform(width, height, value);
+        }
+        if (length > 0) {
+            if (length + 2 > runs.length) {
+                runs = Arrays.copyOf(runs, length + 2);
+            }
+            runs[length++] = count;
+            runs[length++] = value;
+            if (length * GOOD_RATIO <= area) {
+                return new PackedRegion(width, height, 0, Arrays.copyOf(runs, length), null);
+            }
+        }
+        byte[] deflated = deflate(pixels, offset, stride, width, height);
+        if (length > 0 && length * 4 <= deflated.length) {
+            return new PackedRegion(width, height, 0, Arrays.copyOf(runs, length), null);
+        }
+        return new PackedRegion(width, height, 0, null, deflated);
+    }
+
+    /**
+     * 解压到像素数组
+     *
+     * @param out    目标像素
+     * @param offset 区域左上角像素在out中的下标
+     * @param stride out的行跨度
+     */
+    public void unpack(int[] out, int offset, int stride) {
+        if (mRuns != null) {
+            unpackRuns(out, offset, stride);
+        } else if (mDeflated != null) {
+            inflate(out, offset, stride);
+        } else {
+            for (int y = 0; y < mHeight; y++) {
+                int index = offset + y * stride;
+                Arrays.fill(out, index, index + mWidth, mColor);
+            }
+        }
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * 是否为单色区域
+     *
+     * @return true: 全部像素相同
+     */
+    public boolean isUniform() {
+        return mRuns == null && mDeflated == null;
+    }
+
+    /**
+     * 单色区域的像素值
+     *
+     * @return 像素值，非单色区域为0
+     */
+    public int getColor() {
+        return mColor;
+    }
+
+    /**
+     * 压缩后占用的内存
+     *
+     * @return 字节数
+     */
+    public int getByteCount() {
+        if (mRuns != null) {
+            return mRuns.length * 4;
+        }
+        return mDeflated != null ? mDeflated.length : 4;
+    }
+
+    private void unpackRuns(int[] out, int offset, int stride) {
+        int x = 0;
+        int index = offset;
+        for (int i = 0; i < mRuns.length; i += 2) {
+            int count = mRuns[i];
+            int value = mRuns[i + 1];
+            // 行程可以跨行
+            while (count > 0) {
+                int n = Math.min(count, mWidth - x);
+                Arrays.fill(out, index + x, index + x + n, value);
+                count -= n;
+                x += n;
+                if (x == mWidth) {
+                    x = 0;
+                    index += stride;
+                }
+            }
+        }
+    }
+
+    private static byte[] deflate(int[] pixels, int offset, int stride, int width, int height) {
+        byte[] row = new byte[width * 4];
+        byte[] out = new byte[Math.max(width * height / 8, 64)];
+        int length = 0;
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            for (int y = 0; y < height; y++) {
+                int index = offset + y * stride;
+                for (int x = 0; x < width; x++) {
+                    int pixel = pixels[index + x];
+                    row[x * 4] = (byte) pixel;
+                    row[x * 4 + 1] = (byte) (pixel >> 8);
+                    row[x * 4 + 2] = (byte) (pixel >> 16);
+                    row[x * 4 + 3] = (byte) (pixel >>> 24);
+                }
+                deflater.setInput(row);
+                while (!deflater.needsInput()) {
+                    if (length == out.length) {
+                        out = Arrays.copyOf(out, out.length * 2);
+                    }
+                    length += deflater.deflate(out, length, out.length - length);
+                }
+            }
+            deflater.finish();
+            while (!deflater.finished()) {
+                if (length == out.length) {
+                    out = Arrays.copyOf(out, out.length * 2);
+                }
+                length += deflater.deflate(out, length, out.length - length);
+            }
+        } finally {
+            deflater.end();
+        }
+        return Arrays.copyOf(out, length);
+    }
+
+    private void inflate(int[] out, int offset, int stride) {
+        byte[] chunk = new byte[CHUNK_SIZE];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(mDeflated);
+            int x = 0;
+            int index = offset;
+            int remaining = mWidth * mHeight;
+            int filled = 0;
+            while (remaining > 0) {
+                int n = inflater.inflate(chunk, filled, chunk.length - filled);
+                if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new IllegalStateException("Truncated region data");
+                }
+                filled += n;
+                int whole = filled & ~3;
+                for (int i = 0; i < whole && remaining > 0; i += 4, remaining--) {
+                    out[index + x] = (chunk[i] & 0xFF) | (chunk[i + 1] & 0xFF) << 8
+                            | (chunk[i + 2] & 0xFF) << 16 | (chunk[i + 3] & 0xFF) << 24;
+                    if (++x == mWidth) {
+                        x = 0;
+                        index += stride;
+                    }
+                }
+                // 不足一个像素的字节留到下一块
+                System.arraycopy(chunk, whole, chunk, 0, filled - whole);
+                filled -= whole;
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt region data", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,91 @@
+package tech.yangle.drawing.core.raster;
+
+/**
+ * 像素颜色换算
+ */
+public final class PixelUtils {
+
+    private PixelUtils() {
+    }
+
+    /**
+     * 非预乘ARGB转预乘ARGB
+     *
+     * @param color 非预乘ARGB
+     * @return 预乘ARGB
+     */
+    public static int premultiply(int color) {
+        int a = color >>> 24;
+        if (a == 255) {
+            return color;
+        }
+        if (a == 0) {
+            return 0;
+        }
+        int r = ((color >> 16) & 0xFF) * a / 255;
+        int g = ((color >> 8) & 0xFF) * a / 255;
+        int b = (color & 0xFF) * a / 255;
+        return (a << 24) | (r << 16) | (g << 8) | b;
+    }
+
+    /**
+     * 预乘ARGB转非预乘ARGB
+     *
+     * @param pixel 预乘ARGB
+     * @return 非预乘ARGB
+     */
+    public static int unpremultiply(int pixel) {
+        int a = pixel >>> 24;
+        if (a == 255) {
+            return pixel;
+        }
+        if (a == 0) {
+            return 0;
+        }
+        int half = a / 2;
+        int r = Math.min(255, (((pixel >> 16) & 0xFF) * 255 + half) / a);
+        int g = Math.min(255, (((pixel >> 8) & 0xFF) * 255 + half) / a);
+        int b = Math.min(255, ((pixel & 0xFF) * 255 + half) / a);
+        return (a << 24) | (r << 16) | (g << 8) | b;
+    }
+
+    /**
+     * 源颜色按覆盖率叠加到目标像素上（SRC_OVER）
+     *
+     * @param dst      目标像素，预乘ARGB
+     * @param color    源颜色，非预乘ARGB
+     * @param coverage 覆盖率，0..1
+     * @return 叠加后的像素，预乘ARGB
+     */
+    public static int srcOver(int dst, int color, float coverage) {
+        float sa = (color >>> 24) / 255f * coverage;
+        if (sa <= 0) {
+            return dst;
+        }
+        float inv = 1 - sa;
+        int a = (int) (255 * sa + (dst >>> 24) * inv + 0.5f);
+        int r = (int) (((color >> 16) & 0xFF) * sa + ((dst >> 16) & 0xFF) * inv + 0.5f);
+        int g = (int) (((color >> 8) & 0xFF) * sa + ((dst >> 8) & 0xFF) * inv + 0.5f);
+        int b = (int) ((color & 0xFF) * sa + (dst & 0xFF) * inv + 0.5f);
+        return (a << 24) | (r << 16) | (g << 8) | b;
+    }
+
+    /**
+     * 按覆盖率擦除目标像素（CLEAR）
+     *
+     * @param dst      目标像素，预乘ARGB
+     * @param coverage 覆盖率，0..1
+     * @return 擦除后的像素，预乘ARGB
+     */
+    public static int clear(int dst, float coverage) {
+        if (coverage >= 1) {
+            return 0;
+        }
+        float keep = 1 - coverage;
+        int a = (int) ((dst >>> 24) * keep + 0.5f);
+        int r = (int) (((dst >> 16) & 0xFF) * keep + 0.5f);
+        int g = (int) (((dst >> 8) & 0xFF) * keep + 0.5f);
+        int b = (int) ((dst & 0xFF) * keep + 0.5f);
+        return (a << 24) | (r << 16) | (g << 8) | b;
+    }
+}
@@ -0,0 +1,195 @@
+package tech.yangle.drawing.core.raster;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * 流式PNG编码器，8位RGBA
+ * <p>
+ * 按行顺序写入像素，压缩后的数据分块输出为IDAT，不需要整张图片驻留内存
+ */
+public class PngWriter implements Closeable {
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    // 单个IDAT块的最大数据长度
+    private static final int IDAT_CHUNK_SIZE = 64 * 1024;
+    // PNG行过滤类型：Sub
+    private static final int FILTER_SUB = 1;
+
+    private final OutputStream mOut;
+    private final int mWidth;
+    private final int mHeight;
+    private final IdatOutputStream mIdatOut;
+    private final DeflaterOutputStream mDeflaterOut;
+    private final Deflater mDeflater;
+    // 过滤后的一行数据，首字节为过滤类型
+    private final byte[] mRow;
+    private int mRowsWritten;
+    private boolean mClosed;
+
+    /**
+     * @param out    输出流，close时不会关闭
+     * @param width  图片宽度
+     * @param height 图片高度
+     * @throws IOException 写入失败
+     */
+    public PngWriter(OutputStream out, int width, int height) throws IOException {
+        mOut = out;
+        mWidth = width;
+        mHeight = height;
+        mRow = new byte[width * 4 + 1];
+        mRow[0] = FILTER_SUB;
+        mDeflater = new Deflater(Deflater.BEST_SPEED);
+        mIdatOut = new IdatOutputStream();
+        mDeflaterOut = new DeflaterOutputStream(mIdatOut, mDeflater, IDAT_CHUNK_SIZE);
+
+        mOut.write(SIGNATURE);
+        byte[] header = new byte[13];
+        writeInt(header, 0, width);
+        writeInt(header, 4, height);
+        // 位深度8，颜色类型6（RGBA），压缩、过滤、隔行均为0
+        header[8] = 8;
+        header[9] = 6;
+        writeChunk("IHDR", header, 0, header.length);
+    }
+
+    /**
+     * 写入一行像素
+     *
+     * @param pixels 预乘ARGB像素
+     * @param offset 行首像素下标
+     * @throws IOException 写入失败
+     */
+    public void writeRow(int[] pixels, int offset) throws IOException {
+        if (mRowsWritten >= mHeight) {
+            throw new IllegalStateException("All " + mHeight + " rows already written");
+        }
+        byte[] row = mRow;
+        int prevR = 0, prevG = 0, prevB = 0, prevA = 0;
+        for (int x = 0, i = 1; x < mWidth; x++, i += 4) {
+            int color = PixelUtils.unpremultiply(pixels[offset + x]);
+            int r = (color >> 16) & 0xFF;
+            int g = (color >> 8) & 0xFF;
+            int b = color & 0xFF;
+            int a = color >>> 24;
+            row[i] = (byte) (r - prevR);
+            row[i + 1] = (byte) (g - prevG);
+            row[i + 2] = (byte) (b - prevB);
+            row[i + 3] = (byte) (a - prevA);
+            prevR = r;
+            prevG = g;
+            prevB = b;
+            prevA = a;
+        }
+        mDeflaterOut.write(row);
+        mRowsWritten++;
+    }
+
+    public int getRowsWritten() {
+        return mRowsWritten;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (mClosed) {
+            return;
+        }
+        mClosed = true;
+        if (mRowsWritten != mHeight) {
+            mDeflater.end();
+            throw new IllegalStateException("Expected " + mHeight + " rows but got " + mRowsWritten);
+        }
+        mDeflaterOut.finish();
+        mIdatOut.flush();
+        mDeflater.end();
+        writeChunk("IEND", new byte[0], 0, 0);
+        mOut.flush();
+    }
+
+    /**
+     * 将光栅缓冲区编码为PNG
+     *
+     * @param raster 光栅缓冲区
+     * @param out    输出流，调用方负责关闭
+     * @throws IOException 写入失败
+     */
+    public static void write(Raster raster, OutputStream out) throws IOException {
+        int width = raster.getWidth();
+        try (PngWriter writer = new PngWriter(out, width, raster.getHeight())) {
+            int[] pixels = raster.getPixels();
+            for (int y = 0; y < raster.getHeight(); y++) {
+                writer.writeRow(pixels, y * width);
+            }
+        }
+    }
+
+    private void writeChunk(String type, byte[] data, int offset, int length) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        byte[] lengthBytes = new byte[4];
+        writeInt(lengthBytes, 0, length);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, offset, length);
+        byte[] crcBytes = new byte[4];
+        writeInt(crcBytes, 0, (int) crc.getValue());
+        mOut.write(lengthBytes);
+        mOut.write(typeBytes);
+        mOut.write(data, offset, length);
+        mOut.write(crcBytes);
+    }
+
+    private static void writeInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+
+    /**
+     * 将压缩数据按IDAT块输出
+     */
+    private class IdatOutputStream extends OutputStream {
+
+        private final byte[] mBuffer = new byte[IDAT_CHUNK_SIZE];
+        private int mCount;
+
+        @Override
+        public void write(int b) throws IOException {
+            if (mCount == mBuffer.length) {
+                flushChunk();
+            }
+            mBuffer[mCount++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (mCount == mBuffer.length) {
+                    flushChunk();
+                }
+                int n = Math.min(len, mBuffer.length - mCount);
+                System.arraycopy(b, off, mBuffer, mCount, n);
+                mCount += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            flushChunk();
+        }
+
+        private void flushChunk() throws IOException {
+            if (mCount > 0) {
+                writeChunk("IDAT", mBuffer, 0, mCount);
+                mCount = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package tech.yangle.drawing.core.raster;
+
+/**
+ * 软件光栅缓冲区
+ * <p>
+ * 像素按行存放，格式为预乘透明度的ARGB，与Android Bitmap.Config.ARGB_8888内部格式一致
+ */
+public class Raster {
+
+    private final int mWidth;
+    private final int mHeight;
+    private final int[] mPixels;
+
+    public Raster(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Raster size must be positive: " + width + "x" + height);
+        }
+        mWidth = width;
+        mHeight = height;
+        mPixels = new int[width * height];
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * 获取像素数组，预乘ARGB
+     *
+     * @return 像素数组
+     */
+    public int[] getPixels() {
+        return mPixels;
+    }
+
+    /**
+     * 获取非预乘的ARGB颜色
+     *
+     * @param x x坐标
+     * @param y y坐标
+     * @return ARGB颜色
+     */
+    public int getColor(int x, int y) {
+        return PixelUtils.unpremultiply(mPixels[y * mWidth + x]);
+    }
+
+    /**
+     * 以指定颜色填充
+     *
+     * @param color 非预乘ARGB颜色
+     */
+    public void fill(int color) {
+        java.util.Arrays.fill(mPixels, PixelUtils.premultiply(color));
+    }
+}
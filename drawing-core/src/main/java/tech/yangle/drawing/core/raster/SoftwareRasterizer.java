@@ -0,0 +1,548 @@
+package tech.yangle.drawing.core.raster;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import tech.yangle.drawing.core.DrawingDocument;
+import tech.yangle.drawing.core.Stroke;
+
+/**
+ * 纯JVM软件光栅化器，用于服务端渲染缩略图、打印图
+ * <p>
+ * 输出画布按固定大小切分为图块，图块之间互不重叠，通过fork/join并行绘制。
+ * 每个图块按绘制顺序合成与之相交的笔迹，因此结果与串行绘制完全一致。
+ * <p>
+ * 笔迹按所属图层分别绘制在透明图层上，再按图层顺序、可见性和不透明度叠加到背景上，与画板一致：
+ * 橡皮擦和填充只作用于所在图层，不会擦掉背景和其他图层。图层见{@link Layers}。
+ * 填充依赖整张图层的内容：先在不高于文档分辨率的掩码分辨率上按顺序绘制到最后一个填充，
+ * 每个填充处分段，段内按图块并行，段间执行填充并记下填充区域的掩码{@link FillMask}；
+ * 之后各图块按绘制顺序合成笔迹，遇到填充时按输出坐标采样掩码
+ * <p>
+ * 输出按图块行（带）绘制：同时绘制的带不超过线程数+1，每带依次绘制各图层再合成。
+ * renderPng把绘制完成的带按顺序交给PngWriter，内存占用只与输出宽度有关，与输出高度无关，用于高分辨率打印。
+ * 包含填充时另有计算掩码用的一张文档尺寸的临时图层，在开始输出前释放
+ */
+public class SoftwareRasterizer {
+
+    /**
+     * 默认图块边长|px
+     */
+    public static final int DEFAULT_TILE_SIZE = 128;
+    // 单个子任务最多处理的图块数
+    private static final int TILES_PER_TASK = 2;
+
+    private final ForkJoinPool mPool;
+    private final int mTileSize;
+
+    public SoftwareRasterizer() {
+        this(ForkJoinPool.commonPool(), DEFAULT_TILE_SIZE);
+    }
+
+    public SoftwareRasterizer(ForkJoinPool pool, int tileSize) {
+        if (tileSize <= 0) {
+            throw new IllegalArgumentException("tileSize must be positive: " + tileSize);
+        }
+        mPool = pool;
+        mTileSize = tileSize;
+    }
+
+    public int getTileSize() {
+        return mTileSize;
+    }
+
+    /**
+     * 按原始尺寸渲染文档
+     *
+     * @param document 文档
+     * @return 光栅缓冲区
+     */
+    public Raster render(DrawingDocument document) {
+        return render(document, 1);
+    }
+
+    /**
+     * 按缩放比例渲染文档
+     *
+     * @param document 文档
+     * @param scale    缩放比例，缩略图小于1
+     * @return 光栅缓冲区
+     */
+    public Raster render(DrawingDocument document, float scale) {
+        return render(document, scale, null);
+    }
+
+    /**
+     * 按缩放比例和图层渲染文档
+     *
+     * @param document 文档
+     * @param scale    缩放比例，缩略图小于1
+     * @param layers   图层，为null时见{@link Layers#of(List)}
+     * @return 光栅缓冲区
+     */
+    public Raster render(DrawingDocument document, float scale, Layers layers) {
+        int width = scaledSize(document.getWidth(), scale);
+        int height = scaledSize(document.getHeight(), scale);
+        Raster raster = new Raster(width, height);
+        BandTask[] tasks = startBands(document, scale, layers, null, width, height);
+        int bands = (height + mTileSize - 1) / mTileSize;
+        for (int band = 0; band < bands; band++) {
+            BandTask task = tasks[band % tasks.length];
+            task.join();
+            int rows = Math.min(mTileSize, height - band * mTileSize);
+            System.arraycopy(task.mPixels, 0, raster.getPixels(), band * mTileSize * width,
+                    rows * width);
+            task.schedule(band + tasks.length);
+        }
+        return raster;
+    }
+
+    /**
+     * 渲染文档并编码为PNG
+     *
+     * @param document 文档
+     * @param scale    缩放比例
+     * @param out      输出流，调用方负责关闭
+     * @throws IOException 写入失败
+     */
+    public void renderPng(DrawingDocument document, float scale, OutputStream out)
+            throws IOException {
+        renderPng(document, scale, null, null, out);
+    }
+
+    /**
+     * 按图块行流式渲染文档并编码为PNG，可叠加平台绘制的背景，如画板的背景图
+     * <p>
+     * 同时驻留内存的只有正在绘制和等待写出的若干带，每带高度为图块边长
+     *
+     * @param document   文档
+     * @param scale      缩放比例，打印时大于1
+     * @param layers     图层，为null时见{@link Layers#of(List)}
+     * @param background 背景，绘制在文档背景色之上、笔迹之下，为null时只有背景色
+     * @param out        输出流，调用方负责关闭
+     * @throws IOException 写入失败
+     */
+    public void renderPng(DrawingDocument document, float scale, Layers layers,
+                          Background background, OutputStream out) throws IOException {
+        int width = scaledSize(document.getWidth(), scale);
+        int height = scaledSize(document.getHeight(), scale);
+        BandTask[] tasks = startBands(document, scale, layers, background, width, height);
+        int bands = (height + mTileSize - 1) / mTileSize;
+        try (PngWriter writer = new PngWriter(out, width, height)) {
+            for (int band = 0; band < bands; band++) {
+                BandTask task = tasks[band % tasks.length];
+                task.join();
+                int rows = Math.min(mTileSize, height - band * mTileSize);
+                for (int y = 0; y < rows; y++) {
+                    writer.writeRow(task.mPixels, y * width);
+                }
+                task.schedule(band + tasks.length);
+            }
+        }
+    }
+
+    /**
+     * 计算各图层的填充掩码，开始绘制前若干带
+     *
+     * @return 绘制任务，第i带由第i % length个任务绘制
+     */
+    private BandTask[] startBands(DrawingDocument document, float scale, Layers layers,
+                                  Background background, int width, int height) {
+        List<LayerPlan> plans = planLayers(document, scale, layers);
+        int bands = (height + mTileSize - 1) / mTileSize;
+        BandTask[] tasks = new BandTask[Math.min(bands, mPool.getParallelism() + 1)];
+        for (int i = 0; i < tasks.length; i++) {
+            tasks[i] = new BandTask(plans, scale, background,
+                    PixelUtils.premultiply(document.getBackgroundColor()), width, height, bands);
+            tasks[i].schedule(i);
+        }
+        return tasks;
+    }
+
+    /**
+     * 按图层分组笔迹并计算填充掩码，隐藏和完全透明的图层不绘制
+     */
+    private List<LayerPlan> planLayers(DrawingDocument document, float scale, Layers layers) {
+        List<Stroke> strokes = document.getStrokes();
+        if (layers == null) {
+            layers = Layers.of(strokes);
+        }
+        List<LayerPlan> plans = new ArrayList<>(layers.mSize);
+        if (layers.mSize == 0) {
+            return plans;
+        }
+        List<List<Stroke>> groups = new ArrayList<>(layers.mSize);
+        for (int i = 0; i < layers.mSize; i++) {
+            groups.add(layers.mSize == 1 ? strokes : new ArrayList<Stroke>());
+        }
+        if (layers.mSize > 1) {
+            for (int i = 0, size = strokes.size(); i < size; i++) {
+                Stroke stroke = strokes.get(i);
+                groups.get(layers.indexOf(stroke.getLayer())).add(stroke);
+            }
+        }
+        for (int i = 0; i < layers.mSize; i++) {
+            List<Stroke> group = groups.get(i);
+            if (!layers.mVisible[i] || layers.mOpacities[i] <= 0 || group.isEmpty()) {
+                continue;
+            }
+            plans.add(new LayerPlan(group, prepareFills(group, scale, document.getWidth(),
+                    document.getHeight()), layers.mOpacities[i]));
+        }
+        return plans;
+    }
+
+    /**
+     * 在调用线程上绘制输出坐标系中的一个矩形区域，区域外的笔迹被裁剪
+     *
+     * @param strokes  笔迹，按绘制顺序
+     * @param scale    缩放比例
+     * @param pixels   目标像素，预乘ARGB，通常为透明的笔迹图层
+     * @param offset   区域左上角像素在pixels中的下标
+     * @param stride   pixels的行跨度
+     * @param left     区域左边界（含）
+     * @param top      区域上边界（含）
+     * @param right    区域右边界（不含）
+     * @param bottom   区域下边界（不含）
+     * @param coverage 覆盖率临时缓冲，长度不小于区域面积
+     */
+    public static void renderRegion(List<Stroke> strokes, float scale, int[] pixels, int offset,
+                                    int stride, int left, int top, int right, int bottom,
+                                    float[] coverage) {
+        renderRegion(strokes, null, scale, pixels, offset, stride, left, top, right, bottom,
+                coverage);
+    }
+
+    /**
+     * 绘制一个矩形区域，填充笔迹按掩码写入
+     *
+     * @param fills 与strokes下标对应的填充掩码，为null时忽略填充
+     */
+    private static void renderRegion(List<Stroke> strokes, FillMask[] fills, float scale,
+                                     int[] pixels, int offset, int stride, int left, int top,
+                                     int right, int bottom, float[] coverage) {
+        for (int i = 0, size = strokes.size(); i < size; i++) {
+            if (fills != null && fills[i] != null) {
+                fills[i].draw(pixels, offset, stride, left, top, right, bottom);
+                continue;
+            }
+            Stroke stroke = strokes.get(i);
+            if (!intersects(stroke, scale, left, top, right, bottom)) {
+                continue;
+            }
+            StrokeRasterizer.draw(stroke, scale, pixels, offset, stride, left, top, right,
+                    bottom, coverage);
+        }
+    }
+
+    /**
+     * 笔迹（含画笔宽度）是否与输出坐标系中的矩形相交
+     */
+    private static boolean intersects(Stroke stroke, float scale, int left, int top, int right,
+                                      int bottom) {
+        if (stroke.getPointCount() == 0) {
+            return false;
+        }
+        float pad = Math.max(stroke.getWidth() * scale, 1) / 2 + 1;
+        return stroke.getLeft() * scale - pad < right && stroke.getRight() * scale + pad > left
+                && stroke.getTop() * scale - pad < bottom && stroke.getBottom() * scale + pad > top;
+    }
+
+    /**
+     * 计算填充掩码：在掩码分辨率的透明图层上按顺序绘制到最后一个填充，在每个填充处分段，
+     * 段内按图块并行，段间执行填充。掩码分辨率为输出分辨率，但不超过文档分辨率
+     *
+     * @return 与strokes下标对应的掩码，没有填充时为null
+     */
+    private FillMask[] prepareFills(List<Stroke> strokes, float scale, int documentWidth,
+                                    int documentHeight) {
+        int last = -1;
+        for (int i = 0, size = strokes.size(); i < size; i++) {
+            if (strokes.get(i).isFill()) {
+                last = i;
+            }
+        }
+        if (last < 0) {
+            return null;
+        }
+        float maskScale = Math.min(scale, 1);
+        Raster raster = new Raster(scaledSize(documentWidth, maskScale),
+                scaledSize(documentHeight, maskScale));
+        int columns = (raster.getWidth() + mTileSize - 1) / mTileSize;
+        int rows = (raster.getHeight() + mTileSize - 1) / mTileSize;
+        FillMask[] fills = new FillMask[strokes.size()];
+        FloodFill floodFill = new FloodFill();
+        int start = 0;
+        for (int i = 0; i <= last; i++) {
+            Stroke fill = strokes.get(i);
+            if (!fill.isFill() || fill.getPointCount() == 0) {
+                continue;
+            }
+            if (i > start) {
+                mPool.invoke(new TileTask(strokes.subList(start, i), null, maskScale,
+                        raster.getPixels(), raster.getWidth(), 0, raster.getHeight(), columns,
+                        0, columns * rows));
+            }
+            int color = PixelUtils.premultiply(fill.getColor());
+            if (floodFill.fill(raster.getPixels(), raster.getWidth(), raster.getHeight(),
+                    (int) (fill.getX(0) * maskScale), (int) (fill.getY(0) * maskScale),
+                    (int) fill.getWidth(), color) > 0) {
+                fills[i] = new FillMask(floodFill, color, maskScale / scale);
+            }
+            start = i + 1;
+        }
+        return fills;
+    }
+
+    private static int scaledSize(int size, float scale) {
+        return Math.max(1, (int) Math.ceil(size * scale));
+    }
+
+    /**
+     * 图层的绘制顺序、可见性和不透明度
+     * <p>
+     * 笔迹记录的图层编号不在其中时归入第一个图层，与画板一致
+     */
+    public static final class Layers {
+
+        private int[] mIds = new int[4];
+        private boolean[] mVisible = new boolean[4];
+        private float[] mOpacities = new float[4];
+        private int mSize;
+
+        /**
+         * 按笔迹记录的图层编号从小到大排列，全部可见且不透明，用于没有图层属性的文档，如服务端渲染。
+         * 画板上新图层总是添加在最上方，编号递增，因此与画板上的顺序一致
+         *
+         * @param strokes 笔迹
+         * @return 图层
+         */
+        public static Layers of(List<Stroke> strokes) {
+            TreeSet<Integer> ids = new TreeSet<>();
+            for (int i = 0, size = strokes.size(); i < size; i++) {
+                ids.add(strokes.get(i).getLayer());
+            }
+            Layers layers = new Layers();
+            for (int id : ids) {
+                layers.add(id, true, 1);
+            }
+            return layers;
+        }
+
+        /**
+         * 在最上方添加图层
+         *
+         * @param id      图层编号，即笔迹中记录的图层
+         * @param visible 是否可见，隐藏图层的笔迹不绘制
+         * @param opacity 不透明度，0..1
+         * @return this
+         */
+        public Layers add(int id, boolean visible, float opacity) {
+            if (mSize == mIds.length) {
+                mIds = Arrays.copyOf(mIds, mSize * 2);
+                mVisible = Arrays.copyOf(mVisible, mSize * 2);
+                mOpacities = Arrays.copyOf(mOpacities, mSize * 2);
+            }
+            mIds[mSize] = id;
+            mVisible[mSize] = visible;
+            mOpacities[mSize] = Math.max(0, Math.min(opacity, 1));
+            mSize++;
+            return this;
+        }
+
+        /**
+         * 笔迹所在图层的下标，图层不存在时为0
+         */
+        int indexOf(int id) {
+            for (int i = 0; i < mSize; i++) {
+                if (mIds[i] == id) {
+                    return i;
+                }
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * 一个图层要绘制的笔迹和填充掩码
+     */
+    private static final class LayerPlan {
+
+        final List<Stroke> mStrokes;
+        // 与mStrokes下标对应的填充掩码，没有填充时为null
+        final FillMask[] mFills;
+        final float mOpacity;
+
+        LayerPlan(List<Stroke> strokes, FillMask[] fills, float opacity) {
+            mStrokes = strokes;
+            mFills = fills;
+            mOpacity = opacity;
+        }
+    }
+
+    /**
+     * 流式渲染时由平台绘制的背景
+     */
+    public interface Background {
+        /**
+         * 把输出坐标系中[top, bottom)行的背景叠加到像素上，可能在多个线程上同时调用
+         *
+         * @param pixels 目标像素，预乘ARGB，已填充文档背景色，行跨度为width，首行对应top
+         * @param width  输出宽度
+         * @param top    首行（含）
+         * @param bottom 末行（不含）
+         */
+        void draw(int[] pixels, int width, int top, int bottom);
+    }
+
+    /**
+     * 绘制一带：背景在下，各图层依次绘制在透明的图层缓冲上，再按不透明度叠加，与画板一致，
+     * 橡皮擦不会擦掉背景和其他图层；只有一个不透明的图层且没有背景时直接绘制在输出上
+     */
+    private class BandTask extends RecursiveAction {
+
+        // 只在进程内fork/join，不会序列化
+        private static final long serialVersionUID = 1L;
+
+        private final List<LayerPlan> mLayers;
+        private final float mScale;
+        private final Background mBackground;
+        private final int mBackgroundColor;
+        private final int mWidth;
+        private final int mHeight;
+        private final int mBands;
+        private final int[] mPixels;
+        // 图层缓冲，需要与背景或其他图层分开时使用
+        private final int[] mLayerPixels;
+        private int mTop;
+
+        BandTask(List<LayerPlan> layers, float scale, Background background,
+                 int backgroundColor, int width, int height, int bands) {
+            mLayers = layers;
+            mScale = scale;
+            mBackground = background;
+            mBackgroundColor = backgroundColor;
+            mWidth = width;
+            mHeight = height;
+            mBands = bands;
+            mPixels = new int[width * mTileSize];
+            mLayerPixels = isDirect() || layers.isEmpty() ? null : new int[width * mTileSize];
+        }
+
+        /**
+         * 开始绘制指定的带，已完成的任务可以复用像素缓冲绘制后面的带
+         *
+         * @param band 带的序号，超出范围时不绘制
+         */
+        void schedule(int band) {
+            if (band >= mBands) {
+                return;
+            }
+            reinitialize();
+            mTop = band * mTileSize;
+            mPool.execute(this);
+        }
+
+        private boolean isDirect() {
+            return mLayers.size() == 1 && mLayers.get(0).mOpacity >= 1 && mBackground == null
+                    && mBackgroundColor == 0;
+        }
+
+        @Override
+        protected void compute() {
+            int bottom = Math.min(mHeight, mTop + mTileSize);
+            int size = (bottom - mTop) * mWidth;
+            Arrays.fill(mPixels, 0, size, mBackgroundColor);
+            if (mBackground != null) {
+                mBackground.draw(mPixels, mWidth, mTop, bottom);
+            }
+            int columns = (mWidth + mTileSize - 1) / mTileSize;
+            if (mLayerPixels == null) {
+                if (!mLayers.isEmpty()) {
+                    // 没有背景，直接绘制在透明的输出上
+                    LayerPlan layer = mLayers.get(0);
+                    new TileTask(layer.mStrokes, layer.mFills, mScale, mPixels, mWidth, mTop,
+                            bottom, columns, 0, columns).invoke();
+                }
+                return;
+            }
+            int[] pixels = mLayerPixels;
+            for (int l = 0; l < mLayers.size(); l++) {
+                LayerPlan layer = mLayers.get(l);
+                Arrays.fill(pixels, 0, size, 0);
+                new TileTask(layer.mStrokes, layer.mFills, mScale, pixels, mWidth, mTop, bottom,
+                        columns, 0, columns).invoke();
+                float opacity = layer.mOpacity;
+                for (int i = 0; i < size; i++) {
+                    int pixel = pixels[i];
+                    if (pixel != 0) {
+                        mPixels[i] = PixelUtils.srcOver(mPixels[i],
+                                PixelUtils.unpremultiply(pixel), opacity);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 绘制[from, to)范围内的图块，图块按行优先编号，第0行从origin开始
+     */
+    private class TileTask extends RecursiveAction {
+
+        // 只在进程内fork/join，不会序列化
+        private static final long serialVersionUID = 1L;
+
+        private final List<Stroke> mStrokes;
+        // 与mStrokes下标对应的填充掩码，可为null
+        private final FillMask[] mFills;
+        private final float mScale;
+        // 目标像素，行跨度为mWidth，首行对应mOrigin
+        private final int[] mPixels;
+        private final int mWidth;
+        private final int mOrigin;
+        private final int mBottom;
+        private final int mColumns;
+        private final int mFrom;
+        private final int mTo;
+
+        TileTask(List<Stroke> strokes, FillMask[] fills, float scale, int[] pixels, int width,
+                 int origin, int bottom, int columns, int from, int to) {
+            mStrokes = strokes;
+            mFills = fills;
+            mScale = scale;
+            mPixels = pixels;
+            mWidth = width;
+            mOrigin = origin;
+            mBottom = bottom;
+            mColumns = columns;
+            mFrom = from;
+            mTo = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (mTo - mFrom > TILES_PER_TASK) {
+                int middle = (mFrom + mTo) >>> 1;
+                invokeAll(new TileTask(mStrokes, mFills, mScale, mPixels, mWidth, mOrigin,
+                                mBottom, mColumns, mFrom, middle),
+                        new TileTask(mStrokes, mFills, mScale, mPixels, mWidth, mOrigin,
+                                mBottom, mColumns, middle, mTo));
+                return;
+            }
+            float[] coverage = new float[mTileSize * mTileSize];
+            for (int tile = mFrom; tile < mTo; tile++) {
+                int left = (tile % mColumns) * mTileSize;
+                int top = mOrigin + (tile / mColumns) * mTileSize;
+                int right = Math.min(mWidth, left + mTileSize);
+                int bottom = Math.min(mBottom, top + mTileSize);
+                renderRegion(mStrokes, mFills, mScale, mPixels, (top - mOrigin) * mWidth + left,
+                        mWidth, left, top, right, bottom, coverage);
+            }
+        }
+    }
+}
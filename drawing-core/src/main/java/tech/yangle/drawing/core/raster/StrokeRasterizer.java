@@ -0,0 +1,175 @@
+package tech.yangle.drawing.core.raster;
+
+import tech.yangle.drawing.core.BrushTip;
+import tech.yangle.drawing.core.Stroke;
+import tech.yangle.drawing.core.StrokeLod;
+
+/**
+ * 单条笔迹的软件光栅化
+ * <p>
+ * 圆头圆角的粗折线，按像素中心到线段的距离计算抗锯齿覆盖率。
+ * 同一笔迹内各线段取覆盖率最大值后一次性合成，与Canvas.drawPath对整条路径只着色一次的效果一致，
+ * 半透明笔在自身交叠处不会加深。缩小绘制时使用{@link StrokeLod}。
+ * 纹理笔刷沿笔迹盖印{@link BrushTip}，盖印位置与画板一致
+ */
+public final class StrokeRasterizer {
+
+    // 宽度为0时按1px细线处理，与Paint的hairline一致
+    private static final float MIN_WIDTH = 1;
+
+    private StrokeRasterizer() {
+    }
+
+    /**
+     * 将笔迹绘制到目标像素区域
+     *
+     * @param stroke     笔迹
+     * @param scale      坐标缩放比例
+     * @param pixels     目标像素，预乘ARGB
+     * @param offset     裁剪区域左上角像素在pixels中的下标
+     * @param stride     pixels的行跨度
+     * @param clipLeft   裁剪区域左边界（含），输出坐标系
+     * @param clipTop    裁剪区域上边界（含）
+     * @param clipRight  裁剪区域右边界（不含）
+     * @param clipBottom 裁剪区域下边界（不含）
+     * @param coverage   覆盖率临时缓冲，长度不小于裁剪区域面积，可在多次调用间复用
+     */
+    public static void draw(Stroke stroke, float scale, int[] pixels, int offset, int stride,
+                            int clipLeft, int clipTop, int clipRight, int clipBottom,
+                            float[] coverage) {
+        int count = stroke.getPointCount();
+        // 填充依赖整张画布，由SoftwareRasterizer处理
+        if (count == 0 || stroke.isFill()) {
+            return;
+        }
+        if (scale < 1) {
+            // 缩小时按细节级别绘制，不足一个像素的笔迹只画一个点
+            StrokeLod lod = stroke.getLod();
+            if (lod.isSubPixel(scale)) {
+                drawDot(stroke, scale, pixels, offset, stride, clipLeft, clipTop, clipRight,
+                        clipBottom);
+                return;
+            }
+            stroke = lod.forScale(scale);
+            count = stroke.getPointCount();
+        }
+        BrushTip tip = BrushTip.forPenType(stroke.getPenType());
+        if (tip != null) {
+            new BrushRasterizer(scale, pixels, offset, stride, clipLeft, clipTop, clipRight,
+                    clipBottom).draw(stroke, tip);
+            return;
+        }
+        float radius = Math.max(stroke.getWidth() * scale, MIN_WIDTH) / 2;
+        float pad = radius + 1;
+        int left = Math.max(clipLeft, (int) Math.floor(stroke.getLeft() * scale - pad));
+        int top = Math.max(clipTop, (int) Math.floor(stroke.getTop() * scale - pad));
+        int right = Math.min(clipRight, (int) Math.ceil(stroke.getRight() * scale + pad));
+        int bottom = Math.min(clipBottom, (int) Math.ceil(stroke.getBottom() * scale + pad));
+        if (left >= right || top >= bottom) {
+            return;
+        }
+
+        int clipWidth = clipRight - clipLeft;
+        for (int y = top; y < bottom; y++) {
+            int row = (y - clipTop) * clipWidth - clipLeft;
+            for (int x = left; x < right; x++) {
+                coverage[row + x] = 0;
+            }
+        }
+
+        float[] points = stroke.getPoints();
+        if (count == 1) {
+            float x = points[0] * scale;
+            float y = points[1] * scale;
+            accumulateSegment(x, y, x, y, radius, coverage, clipLeft, clipTop, clipWidth,
+                    left, top, right, bottom);
+        } else {
+            for (int i = 0; i < count - 1; i++) {
+                accumulateSegment(points[i * 2] * scale, points[i * 2 + 1] * scale,
+                        points[i * 2 + 2] * scale, points[i * 2 + 3] * scale, radius, coverage,
+                        clipLeft, clipTop, clipWidth, left, top, right, bottom);
+            }
+        }
+
+        boolean eraser = stroke.isEraser();
+        int color = stroke.getColor();
+        for (int y = top; y < bottom; y++) {
+            int row = (y - clipTop) * clipWidth - clipLeft;
+            int pixelRow = offset + (y - clipTop) * stride - clipLeft;
+            for (int x = left; x < right; x++) {
+                float c = coverage[row + x];
+                if (c <= 0) {
+                    continue;
+                }
+                int index = pixelRow + x;
+                pixels[index] = eraser ? PixelUtils.clear(pixels[index], c)
+                        : PixelUtils.srcOver(pixels[index], color, c);
+            }
+        }
+    }
+
+    /**
+     * 在包围盒中心所在的像素画一个点，与细线一样按完全覆盖合成
+     */
+    private static void drawDot(Stroke stroke, float scale, int[] pixels, int offset, int stride,
+                                int clipLeft, int clipTop, int clipRight, int clipBottom) {
+        int x = (int) Math.floor((stroke.getLeft() + stroke.getRight()) / 2 * scale);
+        int y = (int) Math.floor((stroke.getTop() + stroke.getBottom()) / 2 * scale);
+        if (x < clipLeft || x >= clipRight || y < clipTop || y >= clipBottom) {
+            return;
+        }
+        int index = offset + (y - clipTop) * stride + x - clipLeft;
+        pixels[index] = stroke.isEraser() ? PixelUtils.clear(pixels[index], 1)
+                : PixelUtils.srcOver(pixels[index], stroke.getColor(), 1);
+    }
+
+    /**
+     * 累计一条线段的覆盖率
+     */
+    private static void accumulateSegment(float ax, float ay, float bx, float by, float radius,
+                                          float[] coverage, int clipLeft, int clipTop,
+                                          int clipWidth, int left, int top, int right,
+                                          int bottom) {
+        float pad = radius + 1;
+        int x0 = Math.max(left, (int) Math.floor(Math.min(ax, bx) - pad));
+        int y0 = Math.max(top, (int) Math.floor(Math.min(ay, by) - pad));
+        int x1 = Math.min(right, (int) Math.ceil(Math.max(ax, bx) + pad));
+        int y1 = Math.min(bottom, (int) Math.ceil(Math.max(ay, by) + pad));
+        if (x0 >= x1 || y0 >= y1) {
+            return;
+        }
+        float vx = bx - ax;
+        float vy = by - ay;
+        float lengthSq = vx * vx + vy * vy;
+        float invLengthSq = lengthSq > 0 ? 1 / lengthSq : 0;
+        float outer = radius + 0.5f;
+        float outerSq = outer * outer;
+        float inner = radius - 0.5f;
+        float innerSq = inner > 0 ? inner * inner : -1;
+
+        for (int y = y0; y < y1; y++) {
+            float py = y + 0.5f - ay;
+            int row = (y - clipTop) * clipWidth - clipLeft;
+            for (int x = x0; x < x1; x++) {
+                float px = x + 0.5f - ax;
+                float t = (px * vx + py * vy) * invLengthSq;
+                if (t < 0) {
+                    t = 0;
+                } else if (t > 1) {
+                    t = 1;
+                }
+                float dx = px - t * vx;
+                float dy = py - t * vy;
+                float distSq = dx * dx + dy * dy;
+                if (distSq >= outerSq) {
+                    continue;
+                }
+                float c = distSq <= innerSq ? 1 : outer - (float) Math.sqrt(distSq);
+                int index = row + x;
+                if (c > coverage[index]) {
+                    coverage[index] = c > 1 ? 1 : c;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package tech.yangle.drawing.core.smooth;
+
+/**
+ * 增量输入平滑
+ * <p>
+ * 每个采样点先经过One Euro滤波去除抖动，再以相邻采样点的中点为端点、采样点为控制点拟合二次曲线，
+ * 曲线按弦高误差细分成点输出，输出的点即为绘制和保存的笔迹。
+ * 曲线末端停在最后两个滤波点的中点，拟合滞后半个采样点；默认参数下书写速度的滤波滞后不超过半个采样点。
+ * finish()时补齐到最后一个采样点。
+ * <p>
+ * 状态均为基本类型，add()不分配内存。非线程安全，可在多条笔迹间复用
+ */
+public final class InkSmoother {
+
+    /**
+     * 平滑后的点输出
+     */
+    public interface PointSink {
+        /**
+         * 输出一个点
+         *
+         * @param x x坐标
+         * @param y y坐标
+         */
+        void onPoint(float x, float y);
+    }
+
+    // 曲线细分的弦高误差|px
+    private static final float FLATNESS = 0.25f;
+    private static final int MAX_SUBDIVISIONS = 16;
+    // 时间戳缺失时假定的采样间隔|s
+    private static final float DEFAULT_INTERVAL = 1 / 120f;
+    // 小于该距离的采样点视为重复|px
+    private static final float MIN_DISTANCE_SQ = 0.01f;
+
+    private SmoothingParams mParams = SmoothingParams.NONE;
+    private PointSink mSink;
+    // 滤波状态
+    private float mFilteredX;
+    private float mFilteredY;
+    private float mSpeed;
+    private long mLastTime;
+    // 最后一个原始采样点
+    private float mRawX;
+    private float mRawY;
+    // 已输出曲线的末端
+    private float mEndX;
+    private float mEndY;
+    // 已接收的采样点数
+    private int mSampleCount;
+
+    /**
+     * 设置平滑参数，对下一条笔迹生效
+     *
+     * @param params 平滑参数
+     */
+    public void setParams(SmoothingParams params) {
+        mParams = params != null ? params : SmoothingParams.NONE;
+    }
+
+    public SmoothingParams getParams() {
+        return mParams;
+    }
+
+    /**
+     * 开始一条笔迹，起点原样输出
+     *
+     * @param x         起点x坐标
+     * @param y         起点y坐标
+     * @param timeNanos 采样时间|ns
+     * @param sink      点输出
+     */
+    public void begin(float x, float y, long timeNanos, PointSink sink) {
+        mSink = sink;
+        mFilteredX = x;
+        mFilteredY = y;
+        mSpeed = 0;
+        mLastTime = timeNanos;
+        mRawX = x;
+        mRawY = y;
+        mEndX = x;
+        mEndY = y;
+        mSampleCount = 1;
+        sink.onPoint(x, y);
+    }
+
+    /**
+     * 添加一个采样点，输出上一个采样点附近的曲线段
+     *
+     * @param x         x坐标
+     * @param y         y坐标
+     * @param timeNanos 采样时间|ns
+     */
+    public void add(float x, float y, long timeNanos) {
+        if (mSink == null) {
+            return;
+        }
+        float dt = (timeNanos - mLastTime) / 1e9f;
+        if (dt <= 0) {
+            dt = DEFAULT_INTERVAL;
+        }
+        mLastTime = timeNanos;
+        mRawX = x;
+        mRawY = y;
+        float fx = x;
+        float fy = y;
+        if (mParams.isFilterEnabled()) {
+            float dx = x - mFilteredX;
+            float dy = y - mFilteredY;
+            float speed = (float) Math.sqrt(dx * dx + dy * dy) / dt;
+            mSpeed += alpha(mParams.derivateCutoff, dt) * (speed - mSpeed);
+            float a = alpha(mParams.minCutoff + mParams.beta * mSpeed, dt);
+            fx = mFilteredX + a * dx;
+            fy = mFilteredY + a * dy;
+        }
+        float px = mFilteredX;
+        float py = mFilteredY;
+        float dx = fx - px;
+        float dy = fy - py;
+        if (dx * dx + dy * dy < MIN_DISTANCE_SQ) {
+            return;
+        }
+        mFilteredX = fx;
+        mFilteredY = fy;
+        float midX = (px + fx) / 2;
+        float midY = (py + fy) / 2;
+        if (mSampleCount == 1) {
+            mSink.onPoint(midX, midY);
+        } else {
+            emitQuad(mEndX, mEndY, px, py, midX, midY);
+        }
+        mEndX = midX;
+        mEndY = midY;
+        mSampleCount++;
+    }
+
+    /**
+     * 结束笔迹，以滤波后的点为控制点补齐到最后一个原始采样点，抬笔处不留滤波滞后
+     */
+    public void finish() {
+        if (mSink == null) {
+            return;
+        }
+        if (mSampleCount > 1) {
+            emitQuad(mEndX, mEndY, mFilteredX, mFilteredY, mRawX, mRawY);
+        } else if (mRawX != mEndX || mRawY != mEndY) {
+            mSink.onPoint(mRawX, mRawY);
+        }
+        mSink = null;
+    }
+
+    /**
+     * 按弦高误差细分二次曲线，不含起点
+     */
+    private void emitQuad(float x0, float y0, float cx, float cy, float x1, float y1) {
+        // 二次曲线到弦的最大距离为 |P0 - 2C + P1| / 4，细分n段后误差降为1/n²
+        float ex = x0 - 2 * cx + x1;
+        float ey = y0 - 2 * cy + y1;
+        float deviation = (float) Math.sqrt(ex * ex + ey * ey) / 4;
+        int n = (int) Math.ceil(Math.sqrt(deviation / FLATNESS));
+        if (n < 1) {
+            n = 1;
+        } else if (n > MAX_SUBDIVISIONS) {
+            n = MAX_SUBDIVISIONS;
+        }
+        for (int i = 1; i < n; i++) {
+            float t = (float) i / n;
+            float u = 1 - t;
+            mSink.onPoint(u * u * x0 + 2 * u * t * cx + t * t * x1,
+                    u * u * y0 + 2 * u * t * cy + t * t * y1);
+        }
+        mSink.onPoint(x1, y1);
+    }
+
+    /**
+     * 一阶低通滤波的平滑系数
+     */
+    private static float alpha(float cutoff, float dt) {
+        float tau = 1 / (2 * (float) Math.PI * cutoff);
+        return 1 / (1 + tau / dt);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,68 @@
+package tech.yangle.drawing.core.smooth;
+
+import tech.yangle.drawing.core.PenStyle;
+
+/**
+ * 输入平滑参数，One Euro滤波器的截止频率
+ * <p>
+ * 低速时按minCutoff强平滑以去除抖动，速度越快截止频率越高、滞后越小：
+ * cutoff = minCutoff + beta * |速度|
+ */
+public final class SmoothingParams {
+
+    /**
+     * 不滤波，只做曲线拟合
+     */
+    public static final SmoothingParams NONE = new SmoothingParams(0, 0, 0);
+
+    /**
+     * 低速时的截止频率|Hz，不大于0时不滤波
+     */
+    public final float minCutoff;
+    /**
+     * 截止频率随速度增加的系数|Hz/(px/s)
+     */
+    public final float beta;
+    /**
+     * 速度估计的截止频率|Hz
+     */
+    public final float derivateCutoff;
+
+    public SmoothingParams(float minCutoff, float beta, float derivateCutoff) {
+        this.minCutoff = minCutoff;
+        this.beta = beta;
+        this.derivateCutoff = derivateCutoff;
+    }
+
+    /**
+     * 是否启用滤波
+     *
+     * @return true: 滤波
+     */
+    public boolean isFilterEnabled() {
+        return minCutoff > 0;
+    }
+
+    /**
+     * 获取画笔的默认平滑参数
+     *
+     * @param penType 画笔类型
+     * @return 平滑参数
+     */
+    public static SmoothingParams defaultFor(int penType) {
+        switch (penType) {
+            case PenStyle.ERASER:
+                // 橡皮擦不需要精确跟手，也不在意抖动
+                return NONE;
+
+            case PenStyle.TRANSLUCENT_PEN:
+                // 半透明笔常用于划线标记，平滑更强
+                return new SmoothingParams(1.0f, 0.03f, 1.0f);
+
+            case PenStyle.STANDARD_PEN:
+            default:
+                // 书写速度（约500px/s）下截止频率约25Hz，120Hz采样时滞后小于一个采样点
+                return new SmoothingParams(1.5f, 0.05f, 1.0f);
+        }
+    }
+}
\ No newline at end of file
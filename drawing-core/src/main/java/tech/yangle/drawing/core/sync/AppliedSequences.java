@@ -0,0 +1,212 @@
+package tech.yangle.drawing.core.sync;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+import tech.yangle.drawing.core.io.ByteReader;
+import tech.yangle.drawing.core.io.ByteWriter;
+
+/**
+ * 各来源已应用的操作序号
+ * <p>
+ * 每个来源记录从1开始连续应用到的最大序号，以及在它之后乱序先到的序号；
+ * 缺口补齐后连续序号前移，乱序的序号随之释放，按顺序到达时不占额外内存
+ */
+final class AppliedSequences {
+
+    // 各来源连续应用到的最大序号
+    private final Map<Integer, Integer> mContiguous = new HashMap<>();
+    // 各来源大于连续序号、已经应用的序号
+    private final Map<Integer, TreeSet<Integer>> mAhead = new HashMap<>();
+
+    /**
+     * 是否已应用
+     *
+     * @param origin   来源设备编号
+     * @param sequence 序号
+     * @return true:已应用
+     */
+    boolean contains(int origin, int sequence) {
+        if (sequence <= getContiguous(origin)) {
+            return true;
+        }
+        TreeSet<Integer> ahead = mAhead.get(origin);
+        return ahead != null && ahead.contains(sequence);
+    }
+
+    /**
+     * 记录已应用的序号
+     *
+     * @param origin   来源设备编号
+     * @param sequence 序号
+     */
+    void add(int origin, int sequence) {
+        int contiguous = getContiguous(origin);
+        if (sequence <= contiguous) {
+            return;
+        }
+        TreeSet<Integer> ahead = mAhead.get(origin);
+        if (sequence != contiguous + 1) {
+            if (ahead == null) {
+                ahead = new TreeSet<>();
+                mAhead.put(origin, ahead);
+            }
+            ahead.add(sequence);
+            return;
+        }
+        advance(origin, sequence, ahead);
+    }
+
+    /**
+     * 合并other中的序号
+     *
+     * @param other 已应用的序号
+     */
+    void addAll(AppliedSequences other) {
+        for (Map.Entry<Integer, Integer> entry : other.mContiguous.entrySet()) {
+            int origin = entry.getKey();
+            int contiguous = entry.getValue();
+            if (contiguous <= getContiguous(origin)) {
+                continue;
+            }
+            TreeSet<Integer> ahead = mAhead.get(origin);
+            if (ahead != null) {
+                ahead.headSet(contiguous, true).clear();
+            }
+            advance(origin, contiguous, ahead);
+        }
+        for (Map.Entry<Integer, TreeSet<Integer>> entry : other.mAhead.entrySet()) {
+            for (int sequence : entry.getValue()) {
+                add(entry.getKey(), sequence);
+            }
+        }
+    }
+
+    /**
+     * 连续序号前移到contiguous，并吸收紧随其后的乱序序号
+     */
+    private void advance(int origin, int contiguous, TreeSet<Integer> ahead) {
+        while (ahead != null && !ahead.isEmpty() && ahead.first() == contiguous + 1) {
+            contiguous = ahead.pollFirst();
+        }
+        if (ahead != null && ahead.isEmpty()) {
+            mAhead.remove(origin);
+        }
+        mContiguous.put(origin, contiguous);
+    }
+
+    /**
+     * 连续应用到的最大序号
+     *
+     * @param origin 来源设备编号
+     * @return 序号，没有应用过为0
+     */
+    int getContiguous(int origin) {
+        Integer contiguous = mContiguous.get(origin);
+        return contiguous == null ? 0 : contiguous;
+    }
+
+    /**
+     * 已应用的序号都包含在other中
+     */
+    boolean isCoveredBy(AppliedSequences other) {
+        for (Map.Entry<Integer, Integer> entry : mContiguous.entrySet()) {
+            if (other.getContiguous(entry.getKey()) < entry.getValue()) {
+                return false;
+            }
+        }
+        for (Map.Entry<Integer, TreeSet<Integer>> entry : mAhead.entrySet()) {
+            for (int sequence : entry.getValue()) {
+                if (!other.contains(entry.getKey(), sequence)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    void set(AppliedSequences other) {
+        mContiguous.clear();
+        mContiguous.putAll(other.mContiguous);
+        mAhead.clear();
+        for (Map.Entry<Integer, TreeSet<Integer>> entry : other.mAhead.entrySet()) {
+            mAhead.put(entry.getKey(), new TreeSet<>(entry.getValue()));
+        }
+    }
+
+    /**
+     * 编码为来源数，随后每个来源的编号、连续序号、乱序序号数和乱序序号的差值
+     */
+    void write(ByteWriter writer) {
+        Map<Integer, Integer> origins = new HashMap<>(mContiguous);
+        for (Integer origin : mAhead.keySet()) {
+            if (!origins.containsKey(origin)) {
+                origins.put(origin, 0);
+            }
+        }
+        writer.writeVarInt(origins.size());
+        for (Map.Entry<Integer, Integer> entry : origins.entrySet()) {
+            int contiguous = entry.getValue();
+            writer.writeVarInt(entry.getKey());
+            writer.writeVarInt(contiguous);
+            TreeSet<Integer> ahead = mAhead.get(entry.getKey());
+            if (ahead == null) {
+                writer.writeVarInt(0);
+                continue;
+            }
+            writer.writeVarInt(ahead.size());
+            int prev = contiguous;
+            for (int sequence : ahead) {
+                writer.writeVarInt(sequence - prev);
+                prev = sequence;
+            }
+        }
+    }
+
+    static AppliedSequences read(ByteReader reader) {
+        int count = reader.readVarInt();
+        if (count < 0 || count > reader.remaining()) {
+            throw new IllegalArgumentException("Bad origin count: " + count);
+        }
+        AppliedSequences sequences = new AppliedSequences();
+        for (int i = 0; i < count; i++) {
+            int origin = reader.readVarInt();
+            int contiguous = reader.readVarInt();
+            if (contiguous > 0) {
+                sequences.mContiguous.put(origin, contiguous);
+            }
+            int aheadCount = reader.readVarInt();
+            if (aheadCount < 0 || aheadCount > reader.remaining()) {
+                throw new IllegalArgumentException("Bad sequence count: " + aheadCount);
+            }
+            int sequence = contiguous;
+            for (int j = 0; j < aheadCount; j++) {
+                int delta = reader.readVarInt();
+                if (delta <= 0) {
+                    throw new IllegalArgumentException("Bad sequence delta: " + delta);
+                }
+                sequence += delta;
+                sequences.add(origin, sequence);
+            }
+        }
+        return sequences;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof AppliedSequences)) {
+            return false;
+        }
+        AppliedSequences other = (AppliedSequences) o;
+        return mContiguous.equals(other.mContiguous) && mAhead.equals(other.mAhead);
+    }
+
+    @Override
+    public int hashCode() {
+        return mContiguous.hashCode() * 31 + mAhead.hashCode();
+    }
+}
\ No newline at end of file
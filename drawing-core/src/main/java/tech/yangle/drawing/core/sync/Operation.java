@@ -0,0 +1,201 @@
+package tech.yangle.drawing.core.sync;
+
+import tech.yangle.drawing.core.Stroke;
+
+/**
+ * 操作日志中的一条操作
+ * <p>
+ * 由来源设备编号和该设备上单调递增的序号唯一标识，重复收到时据此去重
+ */
+public final class Operation {
+
+    /**
+     * 添加笔迹
+     */
+    public static final int TYPE_STROKE = 1;
+    /**
+     * 橡皮擦笔迹
+     */
+    public static final int TYPE_ERASE = 2;
+    /**
+     * 清空画布
+     */
+    public static final int TYPE_CLEAR = 3;
+    /**
+     * 切换画笔，记录来源设备之后笔迹使用的画笔
+     */
+    public static final int TYPE_PEN = 4;
+    /**
+     * 缩放平移已有的笔迹：x' = x * scale + dx
+     */
+    public static final int TYPE_TRANSFORM = 5;
+
+    long version;
+    final int origin;
+    final int sequence;
+    final int type;
+    final Stroke stroke;
+    final int penType;
+    final int color;
+    final float width;
+    // 笔迹所属图层
+    final int layer;
+    // 变换的目标笔迹操作编号，见getId()
+    final long[] targets;
+    final float scale;
+    final float dx;
+    final float dy;
+
+    Operation(int origin, int sequence, int type, Stroke stroke, int penType, int color,
+              float width, int layer) {
+        this(origin, sequence, type, stroke, penType, color, width, layer, null, 1, 0, 0);
+    }
+
+    private Operation(int origin, int sequence, int type, Stroke stroke, int penType, int color,
+                      float width, int layer, long[] targets, float scale, float dx, float dy) {
+        this.origin = origin;
+        this.sequence = sequence;
+        this.type = type;
+        this.stroke = stroke;
+        this.penType = penType;
+        this.color = color;
+        this.width = width;
+        this.layer = layer;
+        this.targets = targets;
+        this.scale = scale;
+        this.dx = dx;
+        this.dy = dy;
+    }
+
+    static Operation stroke(int origin, int sequence, Stroke stroke) {
+        return new Operation(origin, sequence, stroke.isEraser() ? TYPE_ERASE : TYPE_STROKE,
+                stroke, stroke.getPenType(), stroke.getColor(), stroke.getWidth(),
+                stroke.getLayer());
+    }
+
+    static Operation clear(int origin, int sequence) {
+        return new Operation(origin, sequence, TYPE_CLEAR, null, 0, 0, 0, 0);
+    }
+
+    static Operation pen(int origin, int sequence, int penType, int color, float width,
+                         int layer) {
+        return new Operation(origin, sequence, TYPE_PEN, null, penType, color, width, layer);
+    }
+
+    static Operation transform(int origin, int sequence, long[] targets, float scale, float dx,
+                               float dy) {
+        return new Operation(origin, sequence, TYPE_TRANSFORM, null, 0, 0, 0, 0, targets, scale,
+                dx, dy);
+    }
+
+    /**
+     * 由来源设备编号和序号组成的操作编号
+     *
+     * @param origin   来源设备编号
+     * @param sequence 序号
+     * @return 操作编号
+     */
+    public static long id(int origin, int sequence) {
+        return ((long) origin << 32) | (sequence & 0xFFFFFFFFL);
+    }
+
+    /**
+     * 操作编号，变换操作以笔迹操作的编号引用笔迹
+     *
+     * @return 操作编号
+     */
+    public long getId() {
+        return id(origin, sequence);
+    }
+
+    /**
+     * 本地日志中的版本号
+     *
+     * @return 版本号
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * 来源设备编号
+     *
+     * @return 设备编号
+     */
+    public int getOrigin() {
+        return origin;
+    }
+
+    /**
+     * 来源设备上的序号
+     *
+     * @return 序号，从1开始
+     */
+    public int getSequence() {
+        return sequence;
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    /**
+     * 笔迹，仅TYPE_STROKE与TYPE_ERASE有效
+     *
+     * @return 笔迹
+     */
+    public Stroke getStroke() {
+        return stroke;
+    }
+
+    public int getPenType() {
+        return penType;
+    }
+
+    public int getColor() {
+        return color;
+    }
+
+    public float getWidth() {
+        return width;
+    }
+
+    /**
+     * 笔迹所属图层，TYPE_PEN时为之后笔迹的图层
+     *
+     * @return 图层编号
+     */
+    public int getLayer() {
+        return layer;
+    }
+
+    /**
+     * 变换的目标笔迹，仅TYPE_TRANSFORM有效
+     *
+     * @return 笔迹操作编号
+     */
+    public long[] getTargets() {
+        return targets;
+    }
+
+    public float getScale() {
+        return scale;
+    }
+
+    public float getDx() {
+        return dx;
+    }
+
+    public float getDy() {
+        return dy;
+    }
+
+    /**
+     * 是否改变画布内容
+     *
+     * @return true: 笔迹或清空 false: 切换画笔
+     */
+    public boolean isDrawing() {
+        return type != TYPE_PEN;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,474 @@
+package tech.yangle.drawing.core.sync;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import tech.yangle.drawing.core.Stroke;
+import tech.yangle.drawing.core.io.ByteReader;
+import tech.yangle.drawing.core.io.ByteWriter;
+import tech.yangle.drawing.core.io.DrawingCodec;
+
+/**
+ * 带版本号的操作日志，用于多设备间增量同步
+ * <p>
+ * 每条操作在本地日志中有单调递增的版本号。exportSince(n)导出版本n之后的全部操作，
+ * 对方apply()后记住导出时的版本，下次从该版本继续，每次传输的数据量只与新增的操作有关，与画布尺寸无关。
+ * <p>
+ * 操作由来源设备编号和序号标识，每个来源记录连续应用到的最大序号和在它之后乱序先到的序号，
+ * 已应用的操作被跳过，重复应用同一份增量没有副作用；经过其他设备转发、与直接收到的顺序不同的操作同样可以去重，
+ * 不要求按来源顺序送达。
+ * <p>
+ * checkpoint()把已有操作压缩为检查点：只保留最后一次清空之后的笔迹和各来源最后的画笔，
+ * 变换直接作用到笔迹上。
+ * 对方请求的版本早于检查点时，增量以检查点开头。
+ * 接收方的全部操作都已包含在检查点中时直接采用检查点；否则以检查点为基础重建，
+ * 先重放检查点，再按原顺序重放检查点未包含的本地操作，检查点中已压缩掉的清空和变换因此不会丢失。
+ * 并发的笔迹按到达顺序叠加，增量中的清空操作会同时清除其他设备尚未同步的笔迹。
+ * <p>
+ * 非线程安全
+ */
+public class OperationLog {
+
+    private static final int MAGIC = 0x44524F00; // "DRO\0"
+    // 版本2的画笔包含图层，版本3的检查点序号包含乱序应用的序号
+    private static final int VERSION = 3;
+    // 类型字节的高位，表示紧跟新的画笔属性
+    private static final int FLAG_PEN = 0x80;
+
+    private final int mOrigin;
+    // 最新版本号
+    private long mVersion;
+    // 检查点覆盖的最大版本号
+    private long mCheckpointVersion;
+    // 检查点内容：各来源最后的画笔，随后是最后一次清空之后的笔迹
+    private final List<Operation> mCheckpoint = new ArrayList<>();
+    // 检查点之后的操作，第i条的版本号为 mCheckpointVersion + i + 1
+    private final List<Operation> mEntries = new ArrayList<>();
+    // 检查点覆盖的各来源序号
+    private final AppliedSequences mCheckpointSequences = new AppliedSequences();
+    // 各来源已应用的序号
+    private final AppliedSequences mSequences = new AppliedSequences();
+    // 各来源最后的画笔
+    private final Map<Integer, Operation> mPens = new HashMap<>();
+    // 编码时各来源当前的画笔，与mPens无关
+    private final Map<Integer, Operation> mEncodePens = new HashMap<>();
+
+    /**
+     * @param origin 本设备编号，参与同步的设备之间不能重复
+     */
+    public OperationLog(int origin) {
+        mOrigin = origin;
+    }
+
+    public int getOrigin() {
+        return mOrigin;
+    }
+
+    /**
+     * 最新版本号
+     *
+     * @return 版本号，空日志为0
+     */
+    public long getVersion() {
+        return mVersion;
+    }
+
+    /**
+     * 检查点覆盖的最大版本号
+     *
+     * @return 版本号，没有检查点时为0
+     */
+    public long getCheckpointVersion() {
+        return mCheckpointVersion;
+    }
+
+    /**
+     * 检查点之后的操作数
+     *
+     * @return 操作数
+     */
+    public int getEntryCount() {
+        return mEntries.size();
+    }
+
+    /**
+     * 记录本地提交的笔迹，画笔与上一笔不同时先记录切换画笔
+     *
+     * @param stroke 笔迹，记录后不能再修改
+     * @return 笔迹操作，变换时以其编号引用该笔迹
+     */
+    public Operation recordStroke(Stroke stroke) {
+        Operation pen = mPens.get(mOrigin);
+        if (pen == null || !samePen(pen, stroke.getPenType(), stroke.getColor(),
+                stroke.getWidth(), stroke.getLayer())) {
+            append(Operation.pen(mOrigin, nextSequence(), stroke.getPenType(), stroke.getColor(),
+                    stroke.getWidth(), stroke.getLayer()));
+        }
+        Operation operation = Operation.stroke(mOrigin, nextSequence(), stroke);
+        append(operation);
+        return operation;
+    }
+
+    /**
+     * 记录本地对已有笔迹的缩放平移
+     *
+     * @param targets 笔迹操作编号
+     * @param scale   缩放比例
+     * @param dx      x方向平移|px
+     * @param dy      y方向平移|px
+     * @return 最新版本号
+     */
+    public long recordTransform(long[] targets, float scale, float dx, float dy) {
+        append(Operation.transform(mOrigin, nextSequence(), targets, scale, dx, dy));
+        return mVersion;
+    }
+
+    /**
+     * 记录本地清空画布
+     *
+     * @return 最新版本号
+     */
+    public long recordClear() {
+        append(Operation.clear(mOrigin, nextSequence()));
+        return mVersion;
+    }
+
+    /**
+     * 把全部操作压缩为检查点
+     */
+    public void checkpoint() {
+        List<Operation> live = new ArrayList<>();
+        Map<Long, Integer> positions = new HashMap<>();
+        collectLive(mCheckpoint, live, positions);
+        collectLive(mEntries, live, positions);
+        mCheckpoint.clear();
+        mCheckpoint.addAll(mPens.values());
+        mCheckpoint.addAll(live);
+        mEntries.clear();
+        mCheckpointVersion = mVersion;
+        mCheckpointSequences.set(mSequences);
+    }
+
+    /**
+     * 导出版本号之后的全部操作
+     *
+     * @param version 对方已有的版本号，0表示全部
+     * @return 增量数据
+     */
+    public byte[] exportSince(long version) {
+        ByteWriter writer = new ByteWriter(256);
+        writer.writeInt(MAGIC | VERSION);
+        writer.writeVarLong(mVersion);
+        int start;
+        if (version < mCheckpointVersion) {
+            writer.writeByte(1);
+            mCheckpointSequences.write(writer);
+            writeOperations(writer, mCheckpoint, 0);
+            start = 0;
+        } else {
+            writer.writeByte(0);
+            start = (int) Math.min(version - mCheckpointVersion, mEntries.size());
+        }
+        writeOperations(writer, mEntries, start);
+        return writer.toByteArray();
+    }
+
+    /**
+     * 应用对方导出的增量，已收到的操作被跳过
+     *
+     * @param delta   增量数据
+     * @param applied 输出新应用的绘制操作，按顺序重放到画布；采用检查点时以清空操作开头
+     * @return 对方导出时的版本号，下次从该版本请求
+     * @throws IllegalArgumentException 数据格式错误
+     */
+    public long apply(byte[] delta, List<Operation> applied) {
+        ByteReader reader = new ByteReader(delta);
+        int header = reader.readInt();
+        if ((header & 0xFFFFFF00) != MAGIC) {
+            throw new IllegalArgumentException("Not an operation delta");
+        }
+        if ((header & 0xFF) != VERSION) {
+            throw new IllegalArgumentException("Unsupported version: " + (header & 0xFF));
+        }
+        long remoteVersion = reader.readVarLong();
+        if (reader.readByte() != 0) {
+            AppliedSequences sequences = AppliedSequences.read(reader);
+            List<Operation> checkpoint = new ArrayList<>();
+            readOperations(reader, checkpoint);
+            // 检查点的操作都已应用过时跳过
+            if (!sequences.isCoveredBy(mSequences)) {
+                if (mSequences.isCoveredBy(sequences)) {
+                    adoptCheckpoint(sequences, checkpoint, applied);
+                } else {
+                    rebaseOnCheckpoint(sequences, checkpoint, applied);
+                }
+            }
+        }
+        List<Operation> operations = new ArrayList<>();
+        readOperations(reader, operations);
+        for (int i = 0; i < operations.size(); i++) {
+            merge(operations.get(i), applied);
+        }
+        return remoteVersion;
+    }
+
+    private int nextSequence() {
+        // 本地操作总是按顺序记录
+        return mSequences.getContiguous(mOrigin) + 1;
+    }
+
+    private void append(Operation operation) {
+        operation.version = ++mVersion;
+        mEntries.add(operation);
+        mSequences.add(operation.origin, operation.sequence);
+        if (operation.type == Operation.TYPE_PEN) {
+            mPens.put(operation.origin, operation);
+        }
+    }
+
+    /**
+     * 去重后追加远端操作
+     */
+    private void merge(Operation operation, List<Operation> applied) {
+        if (mSequences.contains(operation.origin, operation.sequence)) {
+            return;
+        }
+        append(operation);
+        if (operation.isDrawing()) {
+            applied.add(operation);
+        }
+    }
+
+    /**
+     * 以远端检查点替换本地全部内容，新的检查点占用一个版本号
+     */
+    private void adoptCheckpoint(AppliedSequences sequences, List<Operation> checkpoint,
+                                 List<Operation> applied) {
+        mVersion++;
+        mCheckpointVersion = mVersion;
+        mEntries.clear();
+        mCheckpoint.clear();
+        mCheckpoint.addAll(checkpoint);
+        mSequences.set(sequences);
+        mCheckpointSequences.set(sequences);
+        mPens.clear();
+        Operation reset = Operation.clear(0, 0);
+        reset.version = mVersion;
+        applied.add(reset);
+        for (int i = 0; i < checkpoint.size(); i++) {
+            Operation operation = checkpoint.get(i);
+            operation.version = mVersion;
+            if (operation.type == Operation.TYPE_PEN) {
+                mPens.put(operation.origin, operation);
+            } else {
+                applied.add(operation);
+            }
+        }
+    }
+
+    /**
+     * 本地有检查点未包含的操作时，以检查点为基础重建：采用检查点后按原顺序重放这些操作，
+     * 输出的绘制操作同样以清空开头
+     */
+    private void rebaseOnCheckpoint(AppliedSequences sequences, List<Operation> checkpoint,
+                                    List<Operation> applied) {
+        List<Operation> local = new ArrayList<>();
+        collectUncovered(mCheckpoint, sequences, local);
+        collectUncovered(mEntries, sequences, local);
+        AppliedSequences merged = new AppliedSequences();
+        merged.set(mSequences);
+        merged.addAll(sequences);
+        adoptCheckpoint(sequences, checkpoint, applied);
+        for (int i = 0; i < local.size(); i++) {
+            Operation operation = local.get(i);
+            append(operation);
+            if (operation.isDrawing()) {
+                applied.add(operation);
+            }
+        }
+        mSequences.set(merged);
+    }
+
+    private static void collectUncovered(List<Operation> operations, AppliedSequences covered,
+                                         List<Operation> out) {
+        for (int i = 0; i < operations.size(); i++) {
+            Operation operation = operations.get(i);
+            if (!covered.contains(operation.origin, operation.sequence)) {
+                out.add(operation);
+            }
+        }
+    }
+
+    /**
+     * 收集最后一次清空之后的笔迹，遇到清空时丢弃已收集的，遇到变换时替换目标笔迹
+     *
+     * @param positions 笔迹操作编号到live下标的映射
+     */
+    private static void collectLive(List<Operation> operations, List<Operation> live,
+                                    Map<Long, Integer> positions) {
+        for (int i = 0; i < operations.size(); i++) {
+            Operation operation = operations.get(i);
+            switch (operation.type) {
+                case Operation.TYPE_CLEAR:
+                    live.clear();
+                    positions.clear();
+                    break;
+
+                case Operation.TYPE_TRANSFORM:
+                    for (long target : operation.targets) {
+                        Integer position = positions.get(target);
+                        if (position == null) {
+                            continue;
+                        }
+                        Operation stroke = live.get(position);
+                        Operation transformed = Operation.stroke(stroke.origin, stroke.sequence,
+                                stroke.stroke.transformed(operation.scale, operation.dx,
+                                        operation.dy));
+                        transformed.version = stroke.version;
+                        live.set(position, transformed);
+                    }
+                    break;
+
+                case Operation.TYPE_STROKE:
+                case Operation.TYPE_ERASE:
+                    positions.put(operation.getId(), live.size());
+                    live.add(operation);
+                    break;
+
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * 编码操作，笔迹的画笔属性只在与同一来源的上一笔不同时写入
+     */
+    private void writeOperations(ByteWriter writer, List<Operation> operations, int start) {
+        mEncodePens.clear();
+        writer.writeVarInt(operations.size() - start);
+        for (int i = start; i < operations.size(); i++) {
+            Operation operation = operations.get(i);
+            writer.writeVarInt(operation.origin);
+            writer.writeVarInt(operation.sequence);
+            switch (operation.type) {
+                case Operation.TYPE_STROKE:
+                case Operation.TYPE_ERASE:
+                    Operation pen = mEncodePens.get(operation.origin);
+                    if (pen != null && samePen(pen, operation.penType, operation.color,
+                            operation.width, operation.layer)) {
+                        writer.writeByte(operation.type);
+                    } else {
+                        writer.writeByte(operation.type | FLAG_PEN);
+                        writePen(writer, operation);
+                        mEncodePens.put(operation.origin, operation);
+                    }
+                    DrawingCodec.writePoints(writer, operation.stroke);
+                    break;
+
+                case Operation.TYPE_PEN:
+                    writer.writeByte(operation.type);
+                    writePen(writer, operation);
+                    break;
+
+                case Operation.TYPE_TRANSFORM:
+                    writer.writeByte(operation.type);
+                    writer.writeFloat(operation.scale);
+                    writer.writeFloat(operation.dx);
+                    writer.writeFloat(operation.dy);
+                    writer.writeVarInt(operation.targets.length);
+                    for (long target : operation.targets) {
+                        writer.writeVarInt((int) (target >>> 32));
+                        writer.writeVarInt((int) target);
+                    }
+                    break;
+
+                case Operation.TYPE_CLEAR:
+                default:
+                    writer.writeByte(operation.type);
+                    break;
+            }
+        }
+    }
+
+    private void readOperations(ByteReader reader, List<Operation> out) {
+        mEncodePens.clear();
+        int count = reader.readVarInt();
+        if (count < 0 || count > reader.remaining()) {
+            throw new IllegalArgumentException("Bad operation count: " + count);
+        }
+        for (int i = 0; i < count; i++) {
+            int origin = reader.readVarInt();
+            int sequence = reader.readVarInt();
+            int type = reader.readByte();
+            switch (type & ~FLAG_PEN) {
+                case Operation.TYPE_STROKE:
+                case Operation.TYPE_ERASE:
+                    Operation pen;
+                    if ((type & FLAG_PEN) != 0) {
+                        pen = readPen(reader, origin, sequence);
+                        mEncodePens.put(origin, pen);
+                    } else {
+                        pen = mEncodePens.get(origin);
+                        if (pen == null) {
+                            throw new IllegalArgumentException("Missing pen for origin " + origin);
+                        }
+                    }
+                    Stroke stroke = DrawingCodec.readPoints(reader, pen.penType, pen.color,
+                            pen.width);
+                    stroke.setLayer(pen.layer);
+                    out.add(Operation.stroke(origin, sequence, stroke));
+                    break;
+
+                case Operation.TYPE_PEN:
+                    out.add(readPen(reader, origin, sequence));
+                    break;
+
+                case Operation.TYPE_CLEAR:
+                    out.add(Operation.clear(origin, sequence));
+                    break;
+
+                case Operation.TYPE_TRANSFORM:
+                    float scale = reader.readFloat();
+                    float dx = reader.readFloat();
+                    float dy = reader.readFloat();
+                    int targetCount = reader.readVarInt();
+                    if (targetCount < 0 || targetCount > reader.remaining()) {
+                        throw new IllegalArgumentException("Bad target count: " + targetCount);
+                    }
+                    long[] targets = new long[targetCount];
+                    for (int t = 0; t < targetCount; t++) {
+                        targets[t] = Operation.id(reader.readVarInt(), reader.readVarInt());
+                    }
+                    out.add(Operation.transform(origin, sequence, targets, scale, dx, dy));
+                    break;
+
+                default:
+                    throw new IllegalArgumentException("Bad operation type: " + type);
+            }
+        }
+    }
+
+    private static void writePen(ByteWriter writer, Operation operation) {
+        writer.writeSignedVarInt(operation.penType);
+        writer.writeInt(operation.color);
+        writer.writeFloat(operation.width);
+        writer.writeVarInt(operation.layer);
+    }
+
+    private static Operation readPen(ByteReader reader, int origin, int sequence) {
+        int penType = reader.readSignedVarInt();
+        int color = reader.readInt();
+        float width = reader.readFloat();
+        int layer = reader.readVarInt();
+        return Operation.pen(origin, sequence, penType, color, width, layer);
+    }
+
+    private static boolean samePen(Operation pen, int penType, int color, float width,
+                                   int layer) {
+        return pen.penType == penType && pen.color == color && pen.width == width
+                && pen.layer == layer;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,142 @@
+package tech.yangle.drawing.core.sync;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import tech.yangle.drawing.core.PenStyle;
+import tech.yangle.drawing.core.Stroke;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 检查点与接收方尚未同步的本地操作并发时，两端仍能收敛
+ */
+public class OperationLogTest {
+
+    /**
+     * 按应用出的绘制操作维护的画布，笔迹按操作编号记录
+     */
+    private static final class Canvas {
+
+        final OperationLog log;
+        final Map<Long, Stroke> strokes = new LinkedHashMap<>();
+        // 上次应用的绘制操作数
+        int appliedCount;
+
+        Canvas(int origin) {
+            log = new OperationLog(origin);
+        }
+
+        long draw(float x, float y) {
+            Stroke stroke = new Stroke(PenStyle.STANDARD_PEN, 0xFF000000, 4);
+            stroke.addPoint(x, y);
+            stroke.addPoint(x + 10, y + 10);
+            long id = log.recordStroke(stroke).getId();
+            strokes.put(id, stroke);
+            return id;
+        }
+
+        void clear() {
+            log.recordClear();
+            strokes.clear();
+        }
+
+        void transform(long id, float dx) {
+            log.recordTransform(new long[]{id}, 1, dx, 0);
+            strokes.put(id, strokes.get(id).transformed(1, dx, 0));
+        }
+
+        long apply(byte[] delta) {
+            List<Operation> applied = new ArrayList<>();
+            long version = log.apply(delta, applied);
+            for (Operation operation : applied) {
+                if (operation.getType() == Operation.TYPE_CLEAR) {
+                    strokes.clear();
+                } else if (operation.getType() == Operation.TYPE_TRANSFORM) {
+                    for (long target : operation.getTargets()) {
+                        Stroke stroke = strokes.get(target);
+                        if (stroke != null) {
+                            strokes.put(target, stroke.transformed(operation.getScale(),
+                                    operation.getDx(), operation.getDy()));
+                        }
+                    }
+                } else {
+                    strokes.put(operation.getId(), operation.getStroke());
+                }
+            }
+            appliedCount = applied.size();
+            return version;
+        }
+
+        List<String> snapshot() {
+            List<String> result = new ArrayList<>();
+            for (Map.Entry<Long, Stroke> entry : strokes.entrySet()) {
+                result.add(entry.getKey() + "@" + entry.getValue().getX(0));
+            }
+            return result;
+        }
+    }
+
+    @Test
+    public void clearFoldedIntoCheckpointReachesPeerWithLocalStrokes() {
+        Canvas a = new Canvas(1);
+        Canvas b = new Canvas(2);
+        a.draw(0, 0);
+        a.draw(20, 0);
+        long aVersion = b.apply(a.log.exportSince(0));
+        long b1 = b.draw(40, 0);
+
+        a.clear();
+        long s3 = a.draw(60, 0);
+        a.log.checkpoint();
+        b.apply(a.log.exportSince(aVersion));
+
+        List<String> expected = new ArrayList<>();
+        expected.add(s3 + "@60.0");
+        expected.add(b1 + "@40.0");
+        assertEquals(expected, b.snapshot());
+        // 检查点的序号已合并，重复应用不再产生操作
+        b.apply(a.log.exportSince(0));
+        assertEquals(0, b.appliedCount);
+
+        a.apply(b.log.exportSince(0));
+        assertEquals(b.snapshot(), a.snapshot());
+    }
+
+    @Test
+    public void transformFoldedIntoCheckpointReachesPeerWithLocalStrokes() {
+        Canvas a = new Canvas(1);
+        Canvas b = new Canvas(2);
+        long s1 = a.draw(0, 0);
+        long aVersion = b.apply(a.log.exportSince(0));
+        b.draw(40, 0);
+
+        a.transform(s1, 100);
+        a.log.checkpoint();
+        b.apply(a.log.exportSince(aVersion));
+        assertTrue(b.snapshot().contains(s1 + "@100.0"));
+        assertEquals(2, b.snapshot().size());
+
+        a.apply(b.log.exportSince(0));
+        assertEquals(b.snapshot(), a.snapshot());
+    }
+
+    @Test
+    public void repeatedCheckpointIsSkipped() {
+        Canvas a = new Canvas(1);
+        Canvas b = new Canvas(2);
+        a.draw(0, 0);
+        a.log.checkpoint();
+        byte[] delta = a.log.exportSince(0);
+        b.apply(delta);
+        assertEquals(2, b.appliedCount);
+        b.apply(delta);
+        assertEquals(0, b.appliedCount);
+        assertEquals(a.snapshot(), b.snapshot());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,68 @@
+package tech.yangle.drawing;
+
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+/**
+ * 统计一帧中drawBitmap写入目标画布的字节数，用于性能统计
+ * <p>
+ * 每次绘制按目标区域与画布裁剪区域的交集计面积，每像素4字节，与源位图的存储方式无关；
+ * 画板本身被缩放时再乘以缩放后的面积比例，即屏幕上的像素
+ */
+final class BlitCounter {
+
+    private final Rect mClip = new Rect();
+    private final Rect mDst = new Rect();
+    private long mPixels;
+    // 画布坐标系中单位面积对应的屏幕像素
+    private float mAreaScale = 1;
+
+    /**
+     * 开始统计一帧
+     *
+     * @param canvas    目标画布
+     * @param areaScale 画布坐标系中单位面积对应的屏幕像素，即画板横纵缩放比例之积
+     */
+    void start(Canvas canvas, float areaScale) {
+        if (!canvas.getClipBounds(mClip)) {
+            mClip.setEmpty();
+        }
+        mPixels = 0;
+        mAreaScale = areaScale;
+    }
+
+    /**
+     * 记录一次位图绘制
+     *
+     * @param left   目标区域左边界|px
+     * @param top    目标区域上边界|px
+     * @param right  目标区域右边界|px
+     * @param bottom 目标区域下边界|px
+     */
+    void add(int left, int top, int right, int bottom) {
+        mDst.set(left, top, right, bottom);
+        if (mDst.intersect(mClip)) {
+            mPixels += (long) mDst.width() * mDst.height();
+        }
+    }
+
+    /**
+     * 记录一次带变换的位图绘制
+     *
+     * @param dst 变换后的目标区域|px
+     */
+    void add(RectF dst) {
+        dst.roundOut(mDst);
+        add(mDst.left, mDst.top, mDst.right, mDst.bottom);
+    }
+
+    /**
+     * 本帧写入的字节数
+     *
+     * @return 字节数
+     */
+    long getBytes() {
+        return Math.round(mPixels * (double) mAreaScale) * 4;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,129 @@
+package tech.yangle.drawing;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import tech.yangle.drawing.core.Stroke;
+import tech.yangle.drawing.core.raster.FloodFill;
+
+/**
+ * 在位图上执行填充笔迹
+ * <p>
+ * 读出整张位图的像素副本，按行段在多个线程上并行计算容差掩码，单线程扫描线标记连通区域，
+ * 再按行段并行写入填充色，只把填充区域的包围盒写回位图。像素副本在多次填充间复用，非线程安全
+ */
+public class BucketFill {
+
+    // 每个行段最少的行数，行数太少时并行的调度开销大于收益
+    private static final int MIN_BAND_ROWS = 64;
+    private static final int THREAD_COUNT =
+            Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+    private static ExecutorService sExecutor;
+
+    private final FloodFill mFloodFill = new FloodFill();
+    private int[] mPixels = new int[0];
+
+    /**
+     * 填充
+     *
+     * @param bitmap 目标位图，ARGB_8888
+     * @param stroke 填充笔迹，第一个点为种子，宽度为容差
+     * @param dirty  输出被修改的区域，未填充时为空
+     * @return 是否有像素被填充
+     */
+    public boolean fill(Bitmap bitmap, Stroke stroke, Rect dirty) {
+        dirty.setEmpty();
+        if (stroke.getPointCount() == 0) {
+            return false;
+        }
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        if (mPixels.length < width * height) {
+            mPixels = new int[width * height];
+        }
+        bitmap.getPixels(mPixels, 0, width, 0, 0, width, height);
+        if (!mFloodFill.prepare(mPixels, width, height, (int) stroke.getX(0),
+                (int) stroke.getY(0), (int) stroke.getWidth())) {
+            return false;
+        }
+        runInBands(0, height, mFloodFill::matchRows);
+        if (mFloodFill.flood() == 0) {
+            return false;
+        }
+        dirty.set(mFloodFill.getLeft(), mFloodFill.getTop(), mFloodFill.getRight(),
+                mFloodFill.getBottom());
+        final int color = stroke.getColor();
+        runInBands(dirty.top, dirty.bottom, (from, to) -> mFloodFill.writeRows(from, to, color));
+        bitmap.setPixels(mPixels, dirty.top * width + dirty.left, width, dirty.left, dirty.top,
+                dirty.width(), dirty.height());
+        return true;
+    }
+
+    /**
+     * 释放像素副本
+     */
+    public void release() {
+        mPixels = new int[0];
+    }
+
+    /**
+     * 把[from, to)行拆分为行段并行执行，调用线程处理最后一段
+     */
+    private static void runInBands(int from, int to, BandTask task) {
+        int rows = to - from;
+        int bands = Math.min(THREAD_COUNT + 1, rows / MIN_BAND_ROWS);
+        if (bands <= 1) {
+            task.run(from, to);
+            return;
+        }
+        ExecutorService executor = getExecutor();
+        final CountDownLatch latch = new CountDownLatch(bands - 1);
+        int rowsPerBand = (rows + bands - 1) / bands;
+        for (int band = 0; band < bands - 1; band++) {
+            final int bandFrom = from + band * rowsPerBand;
+            final int bandTo = bandFrom + rowsPerBand;
+            executor.execute(() -> {
+                try {
+                    task.run(bandFrom, bandTo);
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+        task.run(from + (bands - 1) * rowsPerBand, to);
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (sExecutor == null) {
+            sExecutor = Executors.newFixedThreadPool(THREAD_COUNT, runnable -> {
+                Thread thread = new Thread(runnable, "BucketFill");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return sExecutor;
+    }
+
+    /**
+     * 处理[from, to)行
+     */
+    private interface BandTask {
+        void run(int from, int to);
+    }
+}
\ No newline at end of file
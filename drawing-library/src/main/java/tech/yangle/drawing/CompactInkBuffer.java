@@ -0,0 +1,229 @@
+package tech.yangle.drawing;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.RectF;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import tech.yangle.drawing.core.Stroke;
+
+/**
+ * 紧凑存储的缓存画布：每种墨水颜色一个ALPHA_8覆盖层，合成时按颜色着色
+ * <p>
+ * 单色签名、批注只需1字节/像素，是ARGB_8888的1/4。
+ * 同一RGB颜色的笔迹（包括不同透明度）在同一层内按透明度叠加，与ARGB结果一致；
+ * 不同颜色按层的创建顺序合成，只有当新笔迹不与更上层的墨迹相交时才能保证与绘制顺序一致，
+ * 否则由调用方转为ARGB存储
+ */
+public class CompactInkBuffer implements InkBuffer {
+
+    private final int mWidth;
+    private final int mHeight;
+    private final int mMaxColors;
+    private final List<Layer> mLayers = new ArrayList<>();
+    private final Paint mTintPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    /**
+     * @param width     画布宽度|px
+     * @param height    画布高度|px
+     * @param maxColors 最多支持的颜色数
+     */
+    public CompactInkBuffer(int width, int height, int maxColors) {
+        mWidth = width;
+        mHeight = height;
+        mMaxColors = maxColors;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public int getColorCount() {
+        return mLayers.size();
+    }
+
+    /**
+     * 能否以紧凑方式绘制该颜色的笔迹，且合成结果与绘制顺序一致
+     *
+     * @param color  墨水颜色
+     * @param bounds 笔迹范围，含画笔宽度
+     * @return false时应转为ARGB存储
+     */
+    public boolean canDraw(int color, RectF bounds) {
+        int index = indexOf(color);
+        if (index < 0) {
+            // 新颜色位于最上层
+            return mLayers.size() < mMaxColors;
+        }
+        for (int i = index + 1; i < mLayers.size(); i++) {
+            if (RectF.intersects(mLayers.get(i).bounds, bounds)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 获取颜色对应覆盖层的画布，不存在时创建
+     *
+     * @param color  墨水颜色
+     * @param bounds 将要绘制的范围，含画笔宽度
+     * @return 覆盖层画布
+     */
+    public Canvas getCanvas(int color, RectF bounds) {
+        int index = indexOf(color);
+        Layer layer;
+        if (index < 0) {
+            layer = new Layer(color & 0xFFFFFF,
+                    Bitmap.createBitmap(mWidth, mHeight, Bitmap.Config.ALPHA_8));
+            mLayers.add(layer);
+        } else {
+            layer = mLayers.get(index);
+        }
+        layer.bounds.union(bounds);
+        return layer.canvas;
+    }
+
+    /**
+     * 全部覆盖层的画布，橡皮擦需要在每一层上擦除
+     *
+     * @param out 输出列表
+     */
+    public void getCanvases(List<Canvas> out) {
+        for (int i = 0; i < mLayers.size(); i++) {
+            out.add(mLayers.get(i).canvas);
+        }
+    }
+
+    /**
+     * 按已提交的笔迹绘制，用于重建
+     *
+     * @param renderer 笔迹绘制器
+     * @param stroke   笔迹
+     * @param bounds   临时矩形
+     * @return false表示无法以紧凑方式绘制
+     */
+    public boolean drawStroke(StrokeRenderer renderer, Stroke stroke, RectF bounds) {
+        if (stroke.getPointCount() == 0) {
+            return true;
+        }
+        if (stroke.isFill()) {
+            // 填充需要读取整张画布的颜色
+            return false;
+        }
+        if (stroke.isEraser()) {
+            for (int i = 0; i < mLayers.size(); i++) {
+                renderer.draw(mLayers.get(i).canvas, stroke);
+            }
+            return true;
+        }
+        float pad = stroke.getWidth() / 2 + 1;
+        bounds.set(stroke.getLeft() - pad, stroke.getTop() - pad, stroke.getRight() + pad,
+                stroke.getBottom() + pad);
+        if (!canDraw(stroke.getColor(), bounds)) {
+            return false;
+        }
+        renderer.draw(getCanvas(stroke.getColor(), bounds), stroke);
+        return true;
+    }
+
+    /**
+     * 着色合成到目标画布
+     *
+     * @param canvas 目标画布
+     */
+    public void draw(Canvas canvas) {
+        draw(canvas, null);
+    }
+
+    @Override
+    public void draw(Canvas canvas, BlitCounter counter) {
+        for (int i = 0; i < mLayers.size(); i++) {
+            Layer layer = mLayers.get(i);
+            // ALPHA_8位图以画笔颜色着色
+            mTintPaint.setColor(0xFF000000 | layer.rgb);
+            canvas.drawBitmap(layer.bitmap, 0, 0, mTintPaint);
+            if (counter != null) {
+                counter.add(0, 0, mWidth, mHeight);
+            }
+        }
+    }
+
+    /**
+     * 合成为ARGB_8888位图
+     *
+     * @return 新位图
+     */
+    public Bitmap toArgb() {
+        Bitmap bitmap = Bitmap.createBitmap(mWidth, mHeight, Bitmap.Config.ARGB_8888);
+        draw(new Canvas(bitmap));
+        return bitmap;
+    }
+
+    /**
+     * 清空全部覆盖层
+     */
+    public void clear() {
+        release();
+    }
+
+    /**
+     * 全部覆盖层占用的内存
+     *
+     * @return 字节数
+     */
+    public long getByteCount() {
+        long bytes = 0;
+        for (int i = 0; i < mLayers.size(); i++) {
+            bytes += mLayers.get(i).bitmap.getAllocationByteCount();
+        }
+        return bytes;
+    }
+
+    /**
+     * 释放全部覆盖层
+     */
+    public void release() {
+        for (int i = 0; i < mLayers.size(); i++) {
+            mLayers.get(i).bitmap.recycle();
+        }
+        mLayers.clear();
+    }
+
+    private int indexOf(int color) {
+        int rgb = color & 0xFFFFFF;
+        for (int i = 0; i < mLayers.size(); i++) {
+            if (mLayers.get(i).rgb == rgb) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 单色覆盖层
+     */
+    private static class Layer {
+
+        final int rgb;
+        final Bitmap bitmap;
+        final Canvas canvas;
+        // 已绘制墨迹的范围，只增不减
+        final RectF bounds = new RectF();
+
+        Layer(int rgb, Bitmap bitmap) {
+            this.rgb = rgb;
+            this.bitmap = bitmap;
+            this.canvas = new Canvas(bitmap);
+            this.canvas.drawColor(Color.TRANSPARENT);
+        }
+    }
+}
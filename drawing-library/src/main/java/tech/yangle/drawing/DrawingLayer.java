@@ -0,0 +1,67 @@
+package tech.yangle.drawing;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+
+/**
+ * 图层
+ * <p>
+ * 笔迹按所属图层分别绘制在各自的位图上，图层可以单独隐藏和调整透明度，不需要重新绘制笔迹。
+ * 当前图层的笔迹绘制在画板的缓存画布上，其余图层各自持有一张位图。
+ * 属性通过DrawingView修改，以便更新合成结果
+ */
+public class DrawingLayer {
+
+    /**
+     * 没有指定画笔
+     */
+    public static final int NO_PEN = Integer.MIN_VALUE;
+
+    private final int mId;
+    boolean mVisible = true;
+    // 不透明度，0..1
+    float mOpacity = 1;
+    // 指定的画笔类型，选择该画笔时自动切换到此图层
+    int mPenType = NO_PEN;
+    // 非当前图层的位图，当前图层时为null
+    Bitmap mBitmap;
+    Canvas mCanvas;
+
+    DrawingLayer(int id) {
+        mId = id;
+    }
+
+    /**
+     * 图层编号，即笔迹中记录的图层
+     *
+     * @return 图层编号
+     */
+    public int getId() {
+        return mId;
+    }
+
+    public boolean isVisible() {
+        return mVisible;
+    }
+
+    public float getOpacity() {
+        return mOpacity;
+    }
+
+    /**
+     * 指定的画笔类型
+     *
+     * @return {@link PenType}，未指定时为{@link #NO_PEN}
+     */
+    public int getPenType() {
+        return mPenType;
+    }
+
+    void releaseBitmap() {
+        if (mBitmap != null) {
+            mBitmap.recycle();
+            mBitmap = null;
+            mCanvas = null;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,108 @@
+package tech.yangle.drawing;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+/**
+ * 画板低分辨率预览，用于列表缩略图
+ * <p>
+ * 只在笔迹提交、擦除时按脏区域增量更新：脏区域先对齐到预览像素网格，
+ * 再从背景图和缓存画布中缩放绘制这一小块，不会整张重新缩放
+ */
+public class DrawingPreview {
+
+    private final float mScale;
+    private final Bitmap mBitmap;
+    private final Canvas mCanvas;
+    private final Paint mPaint = new Paint(Paint.FILTER_BITMAP_FLAG | Paint.DITHER_FLAG);
+    // 预览坐标系中的脏区域
+    private final Rect mDirty = new Rect();
+    private final Rect mBounds;
+
+    /**
+     * @param width  画布宽度|px
+     * @param height 画布高度|px
+     * @param scale  预览相对画布的比例，0..1
+     */
+    public DrawingPreview(int width, int height, float scale) {
+        mScale = scale;
+        int previewWidth = Math.max(1, (int) Math.ceil(width * scale));
+        int previewHeight = Math.max(1, (int) Math.ceil(height * scale));
+        mBitmap = Bitmap.createBitmap(previewWidth, previewHeight, Bitmap.Config.ARGB_8888);
+        mCanvas = new Canvas(mBitmap);
+        mBounds = new Rect(0, 0, previewWidth, previewHeight);
+    }
+
+    public float getScale() {
+        return mScale;
+    }
+
+    public Bitmap getBitmap() {
+        return mBitmap;
+    }
+
+    /**
+     * 标记画布坐标系中的脏区域
+     *
+     * @param dirty 脏区域|px
+     */
+    public void invalidate(RectF dirty) {
+        // 向外取整到预览像素，保证脏区域边缘的预览像素完整重采样
+        int left = (int) Math.floor(dirty.left * mScale);
+        int top = (int) Math.floor(dirty.top * mScale);
+        int right = (int) Math.ceil(dirty.right * mScale);
+        int bottom = (int) Math.ceil(dirty.bottom * mScale);
+        mDirty.union(left, top, right, bottom);
+        if (!mDirty.intersect(mBounds)) {
+            mDirty.setEmpty();
+        }
+    }
+
+    /**
+     * 标记整个预览为脏区域，背景图变化时使用
+     */
+    public void invalidateAll() {
+        mDirty.set(mBounds);
+    }
+
+    /**
+     * 重绘脏区域，缓存画布为当前图层，按图层顺序合成
+     *
+     * @param background       背景图，可为null
+     * @param backgroundMatrix 背景图在画布坐标系中的变换
+     * @param layers           图层
+     * @param buffer           缓存画布位图，紧凑存储或分区存储时为null
+     * @param packedBuffer     紧凑存储或分区存储的缓存画布，ARGB存储时为null
+     */
+    void update(Bitmap background, Matrix backgroundMatrix, LayerStack layers, Bitmap buffer,
+                InkBuffer packedBuffer) {
+        if (mDirty.isEmpty()) {
+            return;
+        }
+        mCanvas.save();
+        mCanvas.clipRect(mDirty);
+        mCanvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+        mCanvas.scale(mScale, mScale);
+        if (background != null && !background.isRecycled()) {
+            mCanvas.drawBitmap(background, backgroundMatrix, mPaint);
+        }
+        layers.drawBelow(mCanvas, null);
+        layers.drawActive(mCanvas, buffer, packedBuffer, null);
+        layers.drawAbove(mCanvas, null);
+        mCanvas.restore();
+        mDirty.setEmpty();
+    }
+
+    /**
+     * 释放预览位图
+     */
+    public void release() {
+        mBitmap.recycle();
+    }
+}
@@ -8,14 +8,40 @@ import android.graphics.Color;
 import android.graphics.Matrix;
 import android.graphics.Path;
 import android.graphics.PointF;
+import android.graphics.PorterDuff;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.AttributeSet;
+import android.util.SparseArray;
 import android.view.MotionEvent;
 import android.view.View;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import tech.yangle.drawing.core.DrawingDocument;
+import tech.yangle.drawing.core.LassoSelector;
+import tech.yangle.drawing.core.PenStyle;
+import tech.yangle.drawing.core.Stroke;
+import tech.yangle.drawing.core.smooth.InkSmoother;
+import tech.yangle.drawing.core.smooth.SmoothingParams;
+import tech.yangle.drawing.memory.DrawingMemoryManager;
+import tech.yangle.drawing.memory.MemoryConsumer;
+import tech.yangle.drawing.metrics.DrawingMetrics;
 import tech.yangle.drawing.pen.BasePen;
+import tech.yangle.drawing.pen.BrushPen;
 import tech.yangle.drawing.pen.Eraser;
+import tech.yangle.drawing.pen.FillPen;
+import tech.yangle.drawing.pen.LassoPen;
 import tech.yangle.drawing.pen.StandardPen;
 import tech.yangle.drawing.pen.TranslucentPen;
+import tech.yangle.drawing.utils.DensityUtils;
 
 /**
  * 画板
@@ -25,6 +51,25 @@ import tech.yangle.drawing.pen.TranslucentPen;
  */
 public class DrawingView extends View {
 
+    /**
+     * 紧凑存储最多支持的墨水颜色数，再多时ALPHA_8覆盖层不再比ARGB_8888节省内存
+     */
+    public static final int COMPACT_MAX_COLORS = 3;
+    /**
+     * 多指书写最多同时跟踪的手指数
+     */
+    public static final int MAX_POINTERS = 10;
+    /**
+     * 分区压缩存储时，区域默认空闲多久后压缩|ms
+     */
+    public static final long DEFAULT_REGION_IDLE_MILLIS = 5000;
+    // 选区缩放手柄的触摸半径|dp
+    private static final float HANDLE_RADIUS_DP = 16;
+    // 拖动选区的方式
+    private static final int DRAG_NONE = 0;
+    private static final int DRAG_MOVE = 1;
+    private static final int DRAG_SCALE = 2;
+
     private BasePen mPaint;
     private BasePen mTriPaint;
     private Path mPath;
@@ -41,6 +86,8 @@ public class DrawingView extends View {
     private float mScale = 1;
     // 坐标偏移量
     private final PointF mOffset = new PointF(0, 0);
+    // 当前触摸点的画布坐标，每个事件复用
+    private final PointF mTouchPoint = new PointF();
     // 当前路径
     private PointPath mCurrentPath;
     // 画笔当前宽度
@@ -50,6 +97,90 @@ public class DrawingView extends View {
     private float mBitmapFactor;
     private float dx;
     private float dy;
+    // 背景图绘制矩阵
+    private final Matrix mBgMatrix = new Matrix();
+    // 笔迹数据，与平台无关，可编码后交给服务端渲染
+    private DrawingDocument mDocument = new DrawingDocument(0, 0);
+    // 缓存画布位图是否由画板自己创建，多页模式下由DrawingNotebook持有
+    private boolean mOwnsBuffer;
+    // 渲染与输入统计，为null时不统计
+    private DrawingMetrics mMetrics;
+    // 统计每帧位图绘制写入的字节数
+    private final BlitCounter mBlitCounter = new BlitCounter();
+    private final RectF mBlitRect = new RectF();
+    // 低分辨率预览，为null时不维护
+    private DrawingPreview mPreview;
+    // 预览相对画布的比例，0表示关闭
+    private float mPreviewScale;
+    private final RectF mDirtyRect = new RectF();
+    // 缓存画布是否因内存紧张被释放，下次使用时按笔迹重建
+    private boolean mBufferTrimmed;
+    private StrokeRenderer mStrokeRenderer;
+    private final MemoryConsumer mMemoryConsumer = new BufferMemoryConsumer();
+    // 是否使用紧凑存储
+    private boolean mCompactEnabled;
+    // 紧凑存储的缓存画布，为null时使用mBufferBitmap
+    private CompactInkBuffer mCompactBuffer;
+    private final List<Canvas> mLayerCanvases = new ArrayList<>();
+    // 是否分区压缩存储
+    private boolean mRegionEnabled;
+    // 分区存储的缓存画布，为null时使用mBufferBitmap或mCompactBuffer
+    private RegionInkBuffer mRegionBuffer;
+    // 区域空闲多久后压缩|ms
+    private long mRegionIdleMillis = DEFAULT_REGION_IDLE_MILLIS;
+    private ExecutorService mRegionExecutor;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable mCompressRegions = this::compressIdleRegions;
+    private final Runnable mOnRegionsCompressed = this::updateMetricsBitmapBytes;
+    // 输入平滑，各画笔类型的参数，未设置时使用默认参数
+    private final InkSmoother mSmoother = new InkSmoother();
+    private final SparseArray<SmoothingParams> mSmoothingParams = new SparseArray<>();
+    private boolean mSmoothingEnabled = true;
+    // 填充容差，0..255
+    private int mFillTolerance = PenStyle.FILL_TOLERANCE;
+    // 墙上时间与事件时间的差|ms
+    private long mClockOffset;
+    // 笔迹变化监听
+    private final List<OnDocumentChangeListener> mDocumentListeners = new ArrayList<>();
+    // 移动中的采样点按帧合并处理
+    private final InputScheduler mInputScheduler = new InputScheduler(new InputScheduler.Callback() {
+        @Override
+        public void onSample(int slot, float x, float y, long timeNanos) {
+            PointPath path = mMultiPointerEnabled ? mPointerPaths[slot] : mCurrentPath;
+            if (path != null) {
+                path.savePointToPath(x, y, timeNanos);
+            }
+        }
+
+        @Override
+        public void onFrame() {
+            invalidate();
+        }
+    });
+    // 多指书写：每个槽位对应一个手指的笔迹，槽位和平滑器预先分配，按下时不查找映射表
+    private boolean mMultiPointerEnabled;
+    private final PointPath[] mPointerPaths = new PointPath[MAX_POINTERS];
+    private final int[] mPointerIds = new int[MAX_POINTERS];
+    private final InkSmoother[] mPointerSmoothers = new InkSmoother[MAX_POINTERS];
+    private final PointF mPointerPoint = new PointF();
+    // 套索轨迹，x0, y0, x1, y1 ...
+    private final LassoSelector mLassoSelector = new LassoSelector();
+    private final Path mLassoPath = new Path();
+    private float[] mLassoPoints = new float[128];
+    private int mLassoPointCount;
+    private BasePen mLassoPaint;
+    // 浮起的选中笔迹，为null时没有选区
+    private FloatingSelection mSelection;
+    private int mSelectionDrag = DRAG_NONE;
+    private float mLastLassoX;
+    private float mLastLassoY;
+    // 局部重绘区域
+    private final Rect mRegion = new Rect();
+    private final Rect mTargetRegion = new Rect();
+    private final RectF mStrokeRect = new RectF();
+    private final Rect mLayerRegion = new Rect();
+    // 图层，缓存画布为当前图层的位图
+    private final LayerStack mLayers = new LayerStack();
 
     public DrawingView(Context context) {
         this(context, null);
@@ -73,10 +204,13 @@ public class DrawingView extends View {
         // 不使用硬件加速
         setLayerType(View.LAYER_TYPE_SOFTWARE, null);
 
-        // 双缓存机制
-        mBufferBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
-        mBufferCanvas = new Canvas(mBufferBitmap);
-        mBufferCanvas.drawColor(Color.TRANSPARENT);
+        // 尺寸变化前先落下浮起的选区
+        dropSelection();
+        // 双缓存机制，已有笔迹（如恢复的文档）按新尺寸重新绘制
+        mDocument.setSize(width, height);
+        mBufferTrimmed = false;
+        rebuildBuffer();
+        createPreview();
 
         // 默认画笔
         mPaint = new StandardPen(getContext());
@@ -86,6 +220,8 @@ public class DrawingView extends View {
         mPath = new Path();
         // 外部调用，笔迹路径
         mTriPath = new Path();
+        // 套索轨迹和选区边框
+        mLassoPaint = new LassoPen(getContext());
     }
 
     @Override
@@ -94,30 +230,67 @@ public class DrawingView extends View {
         init(w, h);
     }
 
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        DrawingMemoryManager.getInstance(getContext()).register(mMemoryConsumer);
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        mInputScheduler.flush();
+        mInputScheduler.clear();
+        DrawingMemoryManager.getInstance(getContext()).unregister(mMemoryConsumer);
+    }
+
     @Override
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
+        BlitCounter counter = null;
+        if (mMetrics != null) {
+            mMetrics.onDrawStart();
+            counter = mBlitCounter;
+            counter.start(canvas, getScaleX() * getScaleY());
+        }
+        ensureBuffer();
         // ACTION_MOVE时，将笔迹临时绘制在画布上
         if (mCurrentPath != null) {
-            mCurrentPath.disPlayPath(getContext(), mBufferCanvas);
+            drawCurrentPath();
+        }
+        if (mMultiPointerEnabled) {
+            drawPointerPaths();
         }
 
         // 显示背景图片
         if (mBgBitmap != null) {
-            controlPicBorder();
-            @SuppressLint("DrawAllocation")
-            Matrix matrix = new Matrix();
-            // 将图片设置到DrawingView中
-            matrix.postScale(mBitmapFactor, mBitmapFactor);
-            // 将图片平移到屏幕中心
-            matrix.postTranslate(dx, dy);
             // 使用矩阵绘制位图
+            Matrix matrix = updateBgMatrix();
             canvas.drawBitmap(mBgBitmap, matrix, null);
+            if (counter != null) {
+                mBlitRect.set(0, 0, mBgBitmap.getWidth(), mBgBitmap.getHeight());
+                matrix.mapRect(mBlitRect);
+                counter.add(mBlitRect);
+            }
         }
 
-        // 将前面画的位图显示出来
-        if (mBufferBitmap != null) {
-            canvas.drawBitmap(mBufferBitmap, 0, 0, null);
+        // 将前面画的位图显示出来，当前图层夹在上下两侧图层的合成缓存之间
+        mLayers.drawBelow(canvas, counter);
+        mLayers.drawActive(canvas, mBufferBitmap, getPackedBuffer(), counter);
+        mLayers.drawAbove(canvas, counter);
+
+        // 浮起的选区只按矩阵绘制缓存的位图
+        if (mSelection != null) {
+            mSelection.draw(canvas, mLassoPaint, DensityUtils.dp2px(getContext(),
+                    HANDLE_RADIUS_DP), counter);
+        }
+        if (mLassoPointCount > 0) {
+            canvas.drawPath(mLassoPath, mLassoPaint);
+        }
+
+        if (counter != null) {
+            mMetrics.onBlit(counter.getBytes());
+            mMetrics.onDrawEnd();
         }
     }
 
@@ -140,43 +313,81 @@ public class DrawingView extends View {
                 mTouchListener.onTouch(event);
             }
         }
+        if (mMetrics != null) {
+            mMetrics.onInputEvent(event);
+        }
+        ensureBuffer();
+        if (event.getActionMasked() != MotionEvent.ACTION_MOVE) {
+            // 书写期间不压缩，按下和抬起时重新计算空闲时间
+            scheduleRegionCompression();
+        }
         float x = event.getX();
         float y = event.getY();
-        PointF currentPoint = new PointF((x - mOffset.x) / mScale, (y - mOffset.y) / mScale);
+        PointF currentPoint = mTouchPoint;
+        currentPoint.set((x - mOffset.x) / mScale, (y - mOffset.y) / mScale);
+        BasePen pen = isTriDraw ? mTriPaint : mPaint;
+        if (pen.mPenType == PenType.LASSO) {
+            onLassoTouch(event.getAction(), currentPoint.x, currentPoint.y);
+            return true;
+        }
+        if (pen.mPenType == PenType.FILL) {
+            // 填充在抬起时执行一次
+            if (event.getAction() == MotionEvent.ACTION_UP) {
+                mClockOffset = System.currentTimeMillis() - SystemClock.uptimeMillis();
+                Stroke fill = new Stroke(PenType.FILL, pen.getColor(), mFillTolerance, 1);
+                fill.addPoint(currentPoint.x, currentPoint.y, eventTimeNanos(event) / 1_000_000L);
+                fill.setLayer(mLayers.getActive().getId());
+                addStroke(fill);
+            }
+            return true;
+        }
+        if (mMultiPointerEnabled && !isTriDraw) {
+            onMultiPointerTouch(event, pen);
+            return true;
+        }
         switch (event.getAction()) {
             case MotionEvent.ACTION_DOWN:
-                if (isTriDraw) {
-                    mCurrentPath = PointPath.getInstance(currentPoint, mTriPaint);
-                    mCurrentPath.setCurrentPathType(mTriPaint.mPenType);
-                    mCurrentPath.setCurrentWidth(mCurrentWidth);
-                    mCurrentPath.setCurrentColor(mTriPaint.getColor());
-                } else {
-                    mCurrentPath = PointPath.getInstance(currentPoint, mPaint);
-                    mCurrentPath.setCurrentPathType(mPaint.mPenType);
-                    mCurrentPath.setCurrentWidth(mCurrentWidth);
-                    mCurrentPath.setCurrentColor(mPaint.getColor());
-                }
+                // 上一笔未抬起时剩余的采样点属于上一笔
+                mInputScheduler.flush();
+                // 事件时间基于开机时长，换算为墙上时间，跨重启的笔迹时间仍然有序
+                mClockOffset = System.currentTimeMillis() - SystemClock.uptimeMillis();
+                mCurrentPath = startPath(currentPoint, pen, mSmoother, eventTimeNanos(event));
                 invalidate();
                 break;
 
             case MotionEvent.ACTION_MOVE:
                 if (mCurrentPath == null) break;
-                mCurrentPath.savePointToPath(currentPoint);
-                invalidate();
+                // 采样点在下一帧统一处理并重绘，包括两次事件之间的历史采样点
+                for (int h = 0; h < event.getHistorySize(); h++) {
+                    mInputScheduler.add((event.getHistoricalX(h) - mOffset.x) / mScale,
+                            (event.getHistoricalY(h) - mOffset.y) / mScale,
+                            (event.getHistoricalEventTime(h) + mClockOffset) * 1_000_000L);
+                }
+                mInputScheduler.add(currentPoint.x, currentPoint.y, eventTimeNanos(event));
                 break;
 
             case MotionEvent.ACTION_UP:
+                mInputScheduler.flush();
                 // ACTION_UP时，将当前一笔的笔迹，绘制到缓存画布上
                 if (isTriDraw) {
-                    mBufferCanvas.drawPath(mTriPath, mTriPaint);
+                    if (mBufferCanvas != null) {
+                        mBufferCanvas.drawPath(mTriPath, mTriPaint);
+                    }
                     mTriPath.reset();
                 } else {
-                    mBufferCanvas.drawPath(mPath, mPaint);
+                    if (mBufferCanvas != null) {
+                        mBufferCanvas.drawPath(mPath, mPaint);
+                    }
                     mPath.reset();
                 }
                 if (mCurrentPath != null) {
                     // 将一条完整的一条路径保存下来
-                    mCurrentPath.savePointToPath(currentPoint);
+                    mCurrentPath.savePointToPath(currentPoint.x, currentPoint.y,
+                            eventTimeNanos(event));
+                    mCurrentPath.finishPath();
+                    // 最后一段在置空前补画到缓存画布上
+                    drawCurrentPath();
+                    commitPath(mCurrentPath);
                 }
                 // 重新置空
                 mCurrentPath = null;
@@ -188,229 +399,1752 @@ public class DrawingView extends View {
     }
 
     /**
-     * 在画布上的控制位图边界
-     */
-    private void controlPicBorder() {
-        // 图片宽高
-        float width = (float) mBgBitmap.getWidth();
-        float height = (float) mBgBitmap.getHeight();
-        float dsPicWidth, dsPicHeight;
-        if (width > height) {
-            dsPicWidth = getWidth() - 2;
-            dsPicHeight = height / width * dsPicWidth;
-            mBitmapFactor = dsPicHeight / dsPicWidth;
-        } else {
-            dsPicHeight = getHeight() - 2;
-            dsPicWidth = width / height * dsPicHeight;
-            mBitmapFactor = dsPicWidth / dsPicHeight;
-        }
-        dy = (getHeight() - (height * mBitmapFactor)) / 2;
-        dx = (getWidth() - (width * mBitmapFactor)) / 2;
-    }
-
-    /**
-     * 设置画笔类型
+     * 多指书写：每个手指各自一条笔迹，采样点带着手指槽位进入同一个按帧合并的队列。
+     * 超过{@link #MAX_POINTERS}的手指被忽略
      *
-     * @param penType {@link PenType}
+     * @param event MotionEvent
+     * @param pen   画笔
      */
-    public void setPenType(int penType) {
-        switch (penType) {
-            case PenType.ERASER: // 橡皮擦
-                mPaint = new Eraser(getContext());
+    private void onMultiPointerTouch(MotionEvent event, BasePen pen) {
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+            case MotionEvent.ACTION_POINTER_DOWN: {
+                int index = event.getActionIndex();
+                int slot = findPointerSlot(-1);
+                if (slot < 0) {
+                    break;
+                }
+                mClockOffset = System.currentTimeMillis() - SystemClock.uptimeMillis();
+                if (mPointerSmoothers[slot] == null) {
+                    mPointerSmoothers[slot] = new InkSmoother();
+                }
+                toCanvasPoint(event.getX(index), event.getY(index), mPointerPoint);
+                mPointerIds[slot] = event.getPointerId(index);
+                mPointerPaths[slot] = startPath(mPointerPoint, pen, mPointerSmoothers[slot],
+                        eventTimeNanos(event));
+                invalidate();
                 break;
+            }
 
-            case PenType.STANDARD_PEN: // 标准笔
-            default:
-                mPaint = new StandardPen(getContext());
+            case MotionEvent.ACTION_MOVE:
+                for (int p = 0; p < event.getPointerCount(); p++) {
+                    int slot = findPointerSlot(event.getPointerId(p));
+                    if (slot < 0) {
+                        continue;
+                    }
+                    for (int h = 0; h < event.getHistorySize(); h++) {
+                        mInputScheduler.add(slot, (event.getHistoricalX(p, h) - mOffset.x) / mScale,
+                                (event.getHistoricalY(p, h) - mOffset.y) / mScale,
+                                (event.getHistoricalEventTime(h) + mClockOffset) * 1_000_000L);
+                    }
+                    mInputScheduler.add(slot, (event.getX(p) - mOffset.x) / mScale,
+                            (event.getY(p) - mOffset.y) / mScale, eventTimeNanos(event));
+                }
                 break;
 
-            case PenType.TRANSLUCENT_PEN: // 透明笔
-                mPaint = new TranslucentPen(getContext());
+            case MotionEvent.ACTION_POINTER_UP:
+            case MotionEvent.ACTION_UP: {
+                mInputScheduler.flush();
+                int index = event.getActionIndex();
+                int slot = findPointerSlot(event.getPointerId(index));
+                if (slot >= 0) {
+                    toCanvasPoint(event.getX(index), event.getY(index), mPointerPoint);
+                    mPointerPaths[slot].savePointToPath(mPointerPoint.x, mPointerPoint.y,
+                            eventTimeNanos(event));
+                    endPointerPath(slot);
+                }
+                if (event.getActionMasked() == MotionEvent.ACTION_UP) {
+                    // 最后一个手指抬起时结束所有笔迹，防止丢失的抬起事件留下未完成的笔迹
+                    endPointerPaths();
+                }
+                invalidate();
+                break;
+            }
+
+            case MotionEvent.ACTION_CANCEL:
+                mInputScheduler.flush();
+                endPointerPaths();
+                invalidate();
+                break;
+
+            default:
                 break;
         }
     }
 
     /**
-     * 设置三方画笔类型
+     * 查找手指所在的槽位
      *
-     * @param penType {@link PenType}
+     * @param pointerId 手指id，-1查找空闲槽位
+     * @return 槽位，没有时为-1
      */
-    public void setTriPenType(int penType) {
-        switch (penType) {
-            case PenType.ERASER: // 橡皮擦
-                mTriPaint = new Eraser(getContext());
-                break;
+    private int findPointerSlot(int pointerId) {
+        for (int i = 0; i < MAX_POINTERS; i++) {
+            if (pointerId < 0 ? mPointerPaths[i] == null
+                    : mPointerPaths[i] != null && mPointerIds[i] == pointerId) {
+                return i;
+            }
+        }
+        return -1;
+    }
 
-            case PenType.STANDARD_PEN: // 标准笔
-            default:
-                mTriPaint = new StandardPen(getContext());
-                break;
+    /**
+     * 结束一个手指的笔迹：补画最后一段并提交
+     */
+    private void endPointerPath(int slot) {
+        PointPath path = mPointerPaths[slot];
+        mPointerPaths[slot] = null;
+        path.finishPath();
+        drawPointerPath(path);
+        commitPath(path);
+    }
 
-            case PenType.TRANSLUCENT_PEN: // 透明笔
-                mTriPaint = new TranslucentPen(getContext());
-                break;
+    private boolean hasPointerPaths() {
+        for (int i = 0; i < MAX_POINTERS; i++) {
+            if (mPointerPaths[i] != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void endPointerPaths() {
+        for (int i = 0; i < MAX_POINTERS; i++) {
+            if (mPointerPaths[i] != null) {
+                endPointerPath(i);
+            }
         }
     }
 
     /**
-     * 设置画笔宽度
-     *
-     * @param penWidth 画笔宽度|px
+     * 每帧一次按槽位顺序绘制各手指新增的线段
      */
-    public void setPenWidth(int penWidth) {
-        mCurrentWidth = penWidth;
-        if (mPaint != null) {
-            mPaint.setStrokeWidth(penWidth);
+    private void drawPointerPaths() {
+        for (int i = 0; i < MAX_POINTERS; i++) {
+            if (mPointerPaths[i] != null) {
+                drawPointerPath(mPointerPaths[i]);
+            }
         }
     }
 
     /**
-     * 设置三方画笔宽度
-     *
-     * @param penWidth 画笔宽度|px
+     * 增量绘制一个手指的笔迹。各手指的颜色交错，紧凑存储无法保证顺序；
+     * 增量绘制的线段不能重复画到多个区域上，分区存储也先转为ARGB存储
      */
-    public void setTriPenWidth(int penWidth) {
-        mCurrentWidth = penWidth;
-        if (mTriPaint != null) {
-            mTriPaint.setStrokeWidth(penWidth);
+    private void drawPointerPath(PointPath path) {
+        if (mCompactBuffer != null || mRegionBuffer != null) {
+            expandToArgb();
+        }
+        if (mBufferCanvas != null) {
+            path.disPlayNewSegments(getContext(), mBufferCanvas);
         }
     }
 
     /**
-     * 设置画笔颜色
+     * 按画笔属性开始一条笔迹
      *
-     * @param penColor 画笔颜色
+     * @param point     起点，画布坐标
+     * @param pen       画笔
+     * @param smoother  该笔迹使用的平滑器
+     * @param timeNanos 起点的采样时间|ns
+     * @return 笔迹
      */
-    public void setPenColor(int penColor) {
-        if (mPaint != null) {
-            mPaint.setColor(penColor);
+    private PointPath startPath(PointF point, BasePen pen, InkSmoother smoother,
+                                long timeNanos) {
+        PointPath path = PointPath.getInstance(point, pen);
+        path.setCurrentPathType(pen.mPenType);
+        path.setCurrentWidth(mCurrentWidth);
+        path.setCurrentColor(pen.getColor());
+        path.setStartTime(timeNanos);
+        if (mSmoothingEnabled) {
+            smoother.setParams(getSmoothingParams(pen.mPenType));
+            path.setSmoother(smoother, timeNanos);
         }
+        return path;
     }
 
     /**
-     * 设置三方画笔颜色
-     *
-     * @param penColor 画笔颜色
+     * 提交已绘制到缓存画布上的笔迹，写入当前图层并通知监听
      */
-    public void setTriPenColor(int penColor) {
-        if (mTriPaint != null) {
-            mTriPaint.setColor(penColor);
+    private void commitPath(PointPath path) {
+        Stroke stroke = path.toStroke(getContext());
+        stroke.setLayer(mLayers.getActive().getId());
+        mDocument.addStroke(stroke);
+        onStrokeCommitted(stroke);
+        for (int i = 0; i < mDocumentListeners.size(); i++) {
+            mDocumentListeners.get(i).onStrokeAdded(stroke);
         }
     }
 
     /**
-     * 设置画笔透明度
+     * 丢弃未完成的笔迹，包括多指书写中各手指的笔迹
+     */
+    private void cancelPaths() {
+        mInputScheduler.clear();
+        mCurrentPath = null;
+        Arrays.fill(mPointerPaths, null);
+    }
+
+    private void toCanvasPoint(float x, float y, PointF out) {
+        out.set((x - mOffset.x) / mScale, (y - mOffset.y) / mScale);
+    }
+
+    /**
+     * 套索：在选区外按下时画出套索，抬起时选中圈住的笔迹并浮起；
+     * 在选区内拖动移动选区，拖动右下角手柄缩放选区
      *
-     * @param penAlpha 画笔透明度，0..255
+     * @param action 触摸动作
+     * @param x      画布x坐标|px
+     * @param y      画布y坐标|px
      */
-    public void setPenAlpha(int penAlpha) {
-        if (mPaint != null) {
-            mPaint.setAlpha(penAlpha);
+    private void onLassoTouch(int action, float x, float y) {
+        switch (action) {
+            case MotionEvent.ACTION_DOWN:
+                mSelectionDrag = DRAG_NONE;
+                if (mSelection != null) {
+                    if (mSelection.isOnHandle(x, y,
+                            DensityUtils.dp2px(getContext(), HANDLE_RADIUS_DP))) {
+                        mSelectionDrag = DRAG_SCALE;
+                    } else if (mSelection.contains(x, y)) {
+                        mSelectionDrag = DRAG_MOVE;
+                    } else {
+                        dropSelection();
+                    }
+                }
+                if (mSelectionDrag == DRAG_NONE) {
+                    mLassoPath.rewind();
+                    mLassoPath.moveTo(x, y);
+                    mLassoPointCount = 0;
+                    addLassoPoint(x, y);
+                }
+                break;
+
+            case MotionEvent.ACTION_MOVE:
+                if (mSelectionDrag == DRAG_MOVE) {
+                    mSelection.translate(x - mLastLassoX, y - mLastLassoY);
+                } else if (mSelectionDrag == DRAG_SCALE) {
+                    mSelection.scaleTo(x, y);
+                } else if (mLassoPointCount > 0) {
+                    mLassoPath.lineTo(x, y);
+                    addLassoPoint(x, y);
+                }
+                break;
+
+            case MotionEvent.ACTION_UP:
+                if (mSelectionDrag == DRAG_NONE && mLassoPointCount > 0) {
+                    addLassoPoint(x, y);
+                    liftSelection(retainActiveLayer(mLassoSelector.select(mDocument.getStrokes(),
+                            mLassoPoints, mLassoPointCount, LassoSelector.DEFAULT_MIN_INSIDE)));
+                }
+                mSelectionDrag = DRAG_NONE;
+                mLassoPointCount = 0;
+                mLassoPath.rewind();
+                break;
+
+            default:
+                break;
+        }
+        mLastLassoX = x;
+        mLastLassoY = y;
+        invalidate();
+    }
+
+    private void addLassoPoint(float x, float y) {
+        if (mLassoPointCount * 2 + 2 > mLassoPoints.length) {
+            mLassoPoints = Arrays.copyOf(mLassoPoints, mLassoPoints.length * 2);
         }
+        mLassoPoints[mLassoPointCount * 2] = x;
+        mLassoPoints[mLassoPointCount * 2 + 1] = y;
+        mLassoPointCount++;
     }
 
     /**
-     * 设置三方画笔透明度
+     * 只保留当前图层的笔迹
      *
-     * @param penAlpha 画笔透明度，0..255
+     * @param indices 笔迹下标，升序
+     * @return 当前图层的笔迹下标，升序
      */
-    public void setTriPenAlpha(int penAlpha) {
-        if (mTriPaint != null) {
-            mTriPaint.setAlpha(penAlpha);
+    private int[] retainActiveLayer(int[] indices) {
+        if (!mLayers.hasLayers()) {
+            return indices;
+        }
+        int count = 0;
+        for (int index : indices) {
+            if (isActiveLayer(mDocument.getStroke(index))) {
+                indices[count++] = index;
+            }
         }
+        return count == indices.length ? indices : Arrays.copyOf(indices, count);
     }
 
     /**
-     * 设置绘制模式
-     *
-     * @param isCanDraw true: 绘制模式 false: 非绘制模式
+     * 笔迹是否属于当前图层，图层不存在的笔迹属于基础图层
      */
-    public void setIsCanDraw(boolean isCanDraw) {
-        this.mIsCanDraw = isCanDraw;
+    private boolean isActiveLayer(Stroke stroke) {
+        return mLayers.resolve(stroke.getLayer()) == mLayers.getActive();
     }
 
     /**
-     * 清除画布
+     * 把选中的笔迹浮起：渲染到选区大小的位图上，再按笔迹只重绘缓存画布上的选区，
+     * 重绘时跳过选中的笔迹。紧凑存储和分区存储无法局部重绘，先转为ARGB存储
+     *
+     * @param indices 选中笔迹的下标，升序
      */
-    public void clear() {
-        if (mBufferBitmap == null) {
+    private void liftSelection(int[] indices) {
+        if (indices.length == 0 || !hasBuffer()) {
             return;
         }
-        mBufferBitmap.eraseColor(Color.TRANSPARENT);
-        invalidate();
+        computeBounds(indices, mRegion);
+        if (mRegion.isEmpty()) {
+            return;
+        }
+        if (mCompactBuffer != null || mRegionBuffer != null) {
+            expandToArgb();
+        }
+        mSelection = new FloatingSelection(indices, mRegion);
+        Canvas canvas = mSelection.newCanvas();
+        for (int index : indices) {
+            mStrokeRenderer.draw(canvas, mDocument.getStroke(index));
+        }
+        redrawRegion(mRegion, indices);
     }
 
     /**
-     * 获取画布Bitmap数据
-     *
-     * @return 画布Bitmap数据
+     * 落下浮起的选区，移动或缩放过时把变换写入笔迹，只重绘目标区域
      */
-    public Bitmap getBitmap() {
-        return mBufferBitmap;
+    private void dropSelection() {
+        FloatingSelection selection = mSelection;
+        if (selection == null) {
+            return;
+        }
+        mSelection = null;
+        mSelectionDrag = DRAG_NONE;
+        if (selection.isTransformed()) {
+            // 浮起时已重绘原区域
+            applyTransform(selection.getIndices(), selection.getScale(), selection.getDx(),
+                    selection.getDy(), false);
+        } else if (mBufferCanvas != null) {
+            redrawRegion(selection.getBounds(), null);
+        }
+        selection.release();
+        invalidate();
     }
 
     /**
-     * 释放资源
+     * 丢弃浮起的选区，不写入笔迹，用于画布被清除或替换
      */
-    public void release() {
-        destroyDrawingCache();
-        if (mBufferBitmap != null) {
-            mBufferBitmap.recycle();
-            mBufferBitmap = null;
+    private void discardSelection() {
+        if (mSelection != null) {
+            mSelection.release();
+            mSelection = null;
         }
+        mSelectionDrag = DRAG_NONE;
+        mLassoPointCount = 0;
+        mLassoPath.rewind();
     }
 
     /**
-     * 设置屏幕触摸监听
+     * 把缩放平移写入笔迹并局部重绘，笔迹保持原来的绘制顺序
      *
-     * @param onTouchListener OnTouchListener
+     * @param indices      笔迹下标
+     * @param scale        缩放比例
+     * @param dx           x方向平移|px
+     * @param dy           y方向平移|px
+     * @param redrawSource 是否重绘原区域
      */
-    public void setOnTouchListener(OnTouchListener onTouchListener) {
-        this.mTouchListener = onTouchListener;
+    private void applyTransform(int[] indices, float scale, float dx, float dy,
+                                boolean redrawSource) {
+        computeBounds(indices, mRegion);
+        mDirtyRect.set(mRegion);
+        Stroke[] previous = new Stroke[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            previous[i] = mDocument.getStroke(indices[i]);
+            mDocument.setStroke(indices[i], previous[i].transformed(scale, dx, dy));
+        }
+        computeBounds(indices, mTargetRegion);
+        mDirtyRect.union(mTargetRegion.left, mTargetRegion.top, mTargetRegion.right,
+                mTargetRegion.bottom);
+        if (mLayers.hasLayers()) {
+            // 其他图层的笔迹没有浮起，原区域和目标区域都要重绘
+            mLayerRegion.set(mRegion);
+            mLayerRegion.union(mTargetRegion);
+            redrawLayers(indices, mLayerRegion);
+        }
+        if (!redrawSource) {
+            mRegion.setEmpty();
+        }
+        mRegion.union(mTargetRegion);
+        scheduleRegionCompression();
+        if (mCompactBuffer != null) {
+            // 紧凑存储按颜色分层，无法局部重绘
+            rebuildBuffer();
+        } else if (!mRegion.isEmpty()) {
+            if (mRegionBuffer != null) {
+                // 局部重绘可能包含需要读取整张画布的填充，先转为ARGB存储，空闲后重新分区
+                expandToArgb();
+            }
+            if (mBufferCanvas != null) {
+                redrawRegion(mRegion, null);
+            }
+        }
+        if (mPreview != null) {
+            mPreview.invalidate(mDirtyRect);
+            updatePreview();
+        }
+        for (int i = 0; i < mDocumentListeners.size(); i++) {
+            mDocumentListeners.get(i).onStrokesTransformed(indices, previous, scale, dx, dy);
+        }
     }
 
     /**
-     * 设置原始的屏幕触摸监听
+     * 按笔迹重绘缓存画布的局部区域
      *
-     * @param onOriginTouchListener OnTouchListener
+     * @param region   区域
+     * @param excluded 跳过的笔迹下标，升序，可为null
      */
-    public void setOnOriginTouchListener(OnTouchListener onOriginTouchListener) {
-        this.mOriginTouchListener = onOriginTouchListener;
+    private void redrawRegion(Rect region, int[] excluded) {
+        redrawRegion(mLayers.getActive(), mBufferCanvas, mBufferBitmap, region, excluded);
     }
 
     /**
-     * 屏幕触摸监听
+     * 按笔迹重绘图层的局部区域，只绘制该图层中与区域相交的笔迹。
+     * 填充的结果取决于整个图层，图层有填充时重绘整个图层
+     *
+     * @param layer    图层
+     * @param canvas   图层的画布
+     * @param bitmap   图层的位图
+     * @param region   区域
+     * @param excluded 跳过的笔迹下标，升序，可为null
+     * @return true: 重绘了整个图层
      */
-    public interface OnTouchListener {
-        /**
-         * 回调方法
-         *
-         * @param motionEvent MotionEvent
-         */
-        void onTouch(MotionEvent motionEvent);
+    private boolean redrawRegion(DrawingLayer layer, Canvas canvas, Bitmap bitmap, Rect region,
+                                 int[] excluded) {
+        int count = mDocument.getStrokeCount();
+        boolean hasFill = false;
+        for (int i = 0; i < count && !hasFill; i++) {
+            Stroke stroke = mDocument.getStroke(i);
+            hasFill = stroke.isFill() && mLayers.resolve(stroke.getLayer()) == layer;
+        }
+        canvas.save();
+        if (!hasFill) {
+            canvas.clipRect(region);
+        }
+        canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+        int next = 0;
+        for (int i = 0; i < count; i++) {
+            if (excluded != null && next < excluded.length && excluded[next] == i) {
+                next++;
+                continue;
+            }
+            Stroke stroke = mDocument.getStroke(i);
+            if (mLayers.resolve(stroke.getLayer()) != layer
+                    || (!hasFill && !intersects(stroke, region))) {
+                continue;
+            }
+            mStrokeRenderer.draw(canvas, bitmap, stroke);
+        }
+        canvas.restore();
+        return hasFill;
     }
 
     /**
-     * 放大画板后，对pointPath坐标进行缩放平移坐标点
+     * 重绘笔迹所在的非当前图层的局部区域，并只在该区域重新合成
      *
-     * @param scaleX       缩放值
-     * @param matrixValue1 x轴 坐标点偏移量
-     * @param matrixValue2 y轴 坐标点偏移量
+     * @param indices 笔迹下标
+     * @param region  区域
      */
-    public void setScaleAndOffset(float scaleX, float matrixValue1, float matrixValue2) {
-        mScale = scaleX;
-        mCurrentWidth = PointPath.NORMAL_LINE_WIDTH / mScale;
-        mOffset.x = matrixValue1;
-        mOffset.y = matrixValue2;
+    private void redrawLayers(int[] indices, Rect region) {
+        if (region.isEmpty()) {
+            return;
+        }
+        DrawingLayer active = mLayers.getActive();
+        for (int i = 0; i < mLayers.size(); i++) {
+            DrawingLayer layer = mLayers.get(i);
+            if (layer == active || layer.mCanvas == null) {
+                continue;
+            }
+            for (int index : indices) {
+                if (mLayers.resolve(mDocument.getStroke(index).getLayer()) == layer) {
+                    boolean all = redrawRegion(layer, layer.mCanvas, layer.mBitmap, region, null);
+                    mLayers.invalidate(layer, all ? null : region);
+                    break;
+                }
+            }
+        }
     }
 
     /**
-     * 设置图片涂鸦
-     *
+     * 笔迹包围盒（含画笔宽度）是否与区域相交
+     */
+    private boolean intersects(Stroke stroke, Rect region) {
+        if (stroke.getPointCount() == 0) {
+            return false;
+        }
+        float pad = stroke.getWidth() / 2 + 1;
+        return stroke.getLeft() - pad < region.right && stroke.getRight() + pad > region.left
+                && stroke.getTop() - pad < region.bottom && stroke.getBottom() + pad > region.top;
+    }
+
+    /**
+     * 计算笔迹在画布内的包围区域，含画笔宽度
+     *
+     * @param indices 笔迹下标
+     * @param out     包围区域，与画布不相交时为空
+     */
+    private void computeBounds(int[] indices, Rect out) {
+        mStrokeRect.setEmpty();
+        for (int index : indices) {
+            Stroke stroke = mDocument.getStroke(index);
+            if (stroke.getPointCount() == 0) {
+                continue;
+            }
+            // 圆头画笔向外扩展半个线宽，再留1px抗锯齿边缘
+            float pad = stroke.getWidth() / 2 + 1;
+            mStrokeRect.union(stroke.getLeft() - pad, stroke.getTop() - pad,
+                    stroke.getRight() + pad, stroke.getBottom() + pad);
+        }
+        mStrokeRect.roundOut(out);
+        if (!out.intersect(0, 0, mDocument.getWidth(), mDocument.getHeight())) {
+            out.setEmpty();
+        }
+    }
+
+    /**
+     * 事件的墙上时间
+     *
+     * @param event MotionEvent
+     * @return 时间|ns
+     */
+    private long eventTimeNanos(MotionEvent event) {
+        return (event.getEventTime() + mClockOffset) * 1_000_000L;
+    }
+
+    /**
+     * 将当前笔迹绘制到缓存画布上，紧凑存储无法保证绘制顺序时转为ARGB存储
+     */
+    private void drawCurrentPath() {
+        if (mRegionBuffer != null) {
+            if (!mCurrentPath.isBrush()) {
+                // 实心笔每帧重画整条路径，画到路径范围内的各区域上
+                mCurrentPath.computeBounds(getContext(), mDirtyRect);
+                mLayerCanvases.clear();
+                mRegionBuffer.getCanvases(mDirtyRect, mLayerCanvases);
+                for (int i = 0; i < mLayerCanvases.size(); i++) {
+                    mCurrentPath.disPlayPath(getContext(), mLayerCanvases.get(i));
+                }
+                mLayerCanvases.clear();
+                return;
+            }
+            // 笔刷只盖印新增的线段，不能重复画到多个区域上
+            expandToArgb();
+        }
+        if (mCompactBuffer != null) {
+            if (mCurrentPath.isEraser()) {
+                mLayerCanvases.clear();
+                mCompactBuffer.getCanvases(mLayerCanvases);
+                for (int i = 0; i < mLayerCanvases.size(); i++) {
+                    mCurrentPath.disPlayPath(getContext(), mLayerCanvases.get(i));
+                }
+                mLayerCanvases.clear();
+                return;
+            }
+            mCurrentPath.computeBounds(getContext(), mDirtyRect);
+            int color = mCurrentPath.getCurrentColor();
+            if (mCompactBuffer.canDraw(color, mDirtyRect)) {
+                mCurrentPath.disPlayPath(getContext(), mCompactBuffer.getCanvas(color, mDirtyRect));
+                return;
+            }
+            expandToArgb();
+        }
+        mCurrentPath.disPlayPath(getContext(), mBufferCanvas);
+    }
+
+    /**
+     * 紧凑存储或分区存储转为ARGB_8888存储，内容不变
+     */
+    private void expandToArgb() {
+        mBufferBitmap = mCompactBuffer != null ? mCompactBuffer.toArgb() : mRegionBuffer.toArgb();
+        mBufferCanvas = new Canvas(mBufferBitmap);
+        releaseCompactBuffer();
+        releaseRegionBuffer();
+        updateMetricsBitmapBytes();
+    }
+
+    private void releaseCompactBuffer() {
+        if (mCompactBuffer != null) {
+            mCompactBuffer.release();
+            mCompactBuffer = null;
+        }
+    }
+
+    private void releaseRegionBuffer() {
+        if (mRegionBuffer != null) {
+            mRegionBuffer.release();
+            mRegionBuffer = null;
+        }
+    }
+
+    /**
+     * 紧凑存储或分区存储的缓存画布
+     *
+     * @return ARGB存储时为null
+     */
+    private InkBuffer getPackedBuffer() {
+        return mCompactBuffer != null ? mCompactBuffer : mRegionBuffer;
+    }
+
+    /**
+     * 是否有缓存画布，未初始化或因内存紧张被释放时为false
+     */
+    private boolean hasBuffer() {
+        return mBufferBitmap != null || mCompactBuffer != null || mRegionBuffer != null;
+    }
+
+    /**
+     * 以紧凑存储或分区存储绘制已提交的笔迹
+     *
+     * @param stroke 笔迹
+     * @return false表示无法绘制，应转为ARGB存储
+     */
+    private boolean drawPackedStroke(Stroke stroke) {
+        return mCompactBuffer != null
+                ? mCompactBuffer.drawStroke(mStrokeRenderer, stroke, mDirtyRect)
+                : mRegionBuffer.drawStroke(mStrokeRenderer, stroke, mDirtyRect);
+    }
+
+    /**
+     * 缓存画布可能变化时调用：重新开始计算空闲时间
+     */
+    private void scheduleRegionCompression() {
+        mMainHandler.removeCallbacks(mCompressRegions);
+        if (mRegionEnabled) {
+            mMainHandler.postDelayed(mCompressRegions, mRegionIdleMillis);
+        }
+    }
+
+    /**
+     * 当前能否压缩缓存画布：书写、选区编辑期间不压缩，多页模式下缓存画布不归画板所有
+     */
+    private boolean canCompressRegions() {
+        return mRegionEnabled && !mCompactEnabled && mOwnsBuffer && !mBufferTrimmed
+                && mCurrentPath == null && !hasPointerPaths() && mSelection == null;
+    }
+
+    /**
+     * 空闲时压缩缓存画布：分区存储时在后台压缩空闲的区域；
+     * 临时转为ARGB存储的缓存画布整张交给分区存储，由后台线程读取并切分压缩，主线程不复制像素
+     */
+    private void compressIdleRegions() {
+        if (!canCompressRegions()) {
+            return;
+        }
+        if (mRegionBuffer != null) {
+            long next = mRegionBuffer.compressIdle(mRegionIdleMillis, obtainRegionExecutor(),
+                    mMainHandler, mOnRegionsCompressed);
+            if (next >= 0) {
+                // 最近书写过的区域到期后再压缩
+                mMainHandler.postDelayed(mCompressRegions, next);
+            }
+            return;
+        }
+        if (mBufferBitmap == null) {
+            return;
+        }
+        // 此后不再写入原位图，由分区存储在压缩完成后回收
+        mRegionBuffer = RegionInkBuffer.adopt(mBufferBitmap, obtainRegionExecutor(),
+                mMainHandler, mOnRegionsCompressed);
+        mBufferBitmap = null;
+        mBufferCanvas = null;
+        updateMetricsBitmapBytes();
+    }
+
+    private ExecutorService obtainRegionExecutor() {
+        if (mRegionExecutor == null) {
+            mRegionExecutor = Executors.newSingleThreadExecutor(
+                    runnable -> new Thread(runnable, "DrawingView-region"));
+        }
+        return mRegionExecutor;
+    }
+
+    /**
+     * 笔迹提交到缓存画布后，增量更新预览
+     *
+     * @param stroke 笔迹
+     */
+    private void onStrokeCommitted(Stroke stroke) {
+        if (mPreview == null || stroke.getPointCount() == 0) {
+            return;
+        }
+        if (stroke.isFill()) {
+            // 填充区域不由笔迹几何决定
+            mPreview.invalidateAll();
+            updatePreview();
+            return;
+        }
+        // 圆头画笔向外扩展半个线宽，再留1px抗锯齿边缘
+        float pad = stroke.getWidth() / 2 + 1;
+        mDirtyRect.set(stroke.getLeft() - pad, stroke.getTop() - pad,
+                stroke.getRight() + pad, stroke.getBottom() + pad);
+        mPreview.invalidate(mDirtyRect);
+        updatePreview();
+    }
+
+    /**
+     * 按背景图和缓存画布重绘预览的脏区域
+     */
+    private void updatePreview() {
+        if (mPreview == null) {
+            return;
+        }
+        mPreview.update(mBgBitmap, mBgBitmap != null ? updateBgMatrix() : null, mLayers,
+                mBufferBitmap, getPackedBuffer());
+    }
+
+    /**
+     * 缓存画布被释放后，按笔迹重建
+     */
+    private void ensureBuffer() {
+        if (!mBufferTrimmed) {
+            return;
+        }
+        mBufferTrimmed = false;
+        rebuildBuffer();
+    }
+
+    /**
+     * 按当前存储方式新建缓存画布，并按笔迹重新绘制
+     */
+    private void rebuildBuffer() {
+        if (mOwnsBuffer && mBufferBitmap != null) {
+            mBufferBitmap.recycle();
+        }
+        mBufferBitmap = null;
+        mBufferCanvas = null;
+        releaseCompactBuffer();
+        releaseRegionBuffer();
+        mOwnsBuffer = true;
+        scheduleRegionCompression();
+        if (mStrokeRenderer == null) {
+            mStrokeRenderer = new StrokeRenderer();
+        }
+        int width = mDocument.getWidth();
+        int height = mDocument.getHeight();
+        rebuildLayers(width, height);
+        int start = 0;
+        if (mCompactEnabled || mRegionEnabled) {
+            if (mCompactEnabled) {
+                mCompactBuffer = new CompactInkBuffer(width, height, COMPACT_MAX_COLORS);
+            } else {
+                mRegionBuffer = new RegionInkBuffer(width, height);
+            }
+            int count = mDocument.getStrokeCount();
+            // 缓存画布只绘制当前图层的笔迹
+            while (start < count && (!isActiveLayer(mDocument.getStroke(start))
+                    || drawPackedStroke(mDocument.getStroke(start)))) {
+                start++;
+            }
+            if (start == count) {
+                updateMetricsBitmapBytes();
+                return;
+            }
+            expandToArgb();
+        } else {
+            mBufferBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            mBufferCanvas = new Canvas(mBufferBitmap);
+        }
+        for (int i = start; i < mDocument.getStrokeCount(); i++) {
+            Stroke stroke = mDocument.getStroke(i);
+            if (isActiveLayer(stroke)) {
+                mStrokeRenderer.draw(mBufferCanvas, mBufferBitmap, stroke);
+            }
+        }
+        updateMetricsBitmapBytes();
+    }
+
+    /**
+     * 新建非当前图层的位图，按笔迹重新绘制并合成；只有基础图层时不占用内存
+     *
+     * @param width  画布宽度
+     * @param height 画布高度
+     */
+    private void rebuildLayers(int width, int height) {
+        if (!mLayers.hasLayers() || width <= 0 || height <= 0) {
+            mLayers.releaseBitmaps();
+            return;
+        }
+        mLayers.allocate(width, height);
+        mLayers.clear();
+        DrawingLayer active = mLayers.getActive();
+        for (int i = 0; i < mDocument.getStrokeCount(); i++) {
+            Stroke stroke = mDocument.getStroke(i);
+            DrawingLayer layer = mLayers.resolve(stroke.getLayer());
+            if (layer != active) {
+                mStrokeRenderer.draw(layer.mCanvas, layer.mBitmap, stroke);
+            }
+        }
+        mLayers.recomposite(null);
+    }
+
+    /**
+     * 按当前画布尺寸创建预览
+     */
+    private void createPreview() {
+        if (mPreview != null) {
+            mPreview.release();
+            mPreview = null;
+        }
+        if (mPreviewScale <= 0 || !hasBuffer()) {
+            return;
+        }
+        mPreview = new DrawingPreview(mDocument.getWidth(), mDocument.getHeight(), mPreviewScale);
+        mPreview.invalidateAll();
+        updatePreview();
+    }
+
+    /**
+     * 计算背景图绘制矩阵
+     *
+     * @return 背景图绘制矩阵
+     */
+    private Matrix updateBgMatrix() {
+        controlPicBorder();
+        mBgMatrix.reset();
+        // 将图片设置到DrawingView中
+        mBgMatrix.postScale(mBitmapFactor, mBitmapFactor);
+        // 将图片平移到屏幕中心
+        mBgMatrix.postTranslate(dx, dy);
+        return mBgMatrix;
+    }
+
+    /**
+     * 在画布上的控制位图边界
+     */
+    private void controlPicBorder() {
+        // 图片宽高
+        float width = (float) mBgBitmap.getWidth();
+        float height = (float) mBgBitmap.getHeight();
+        float dsPicWidth, dsPicHeight;
+        if (width > height) {
+            dsPicWidth = getWidth() - 2;
+            dsPicHeight = height / width * dsPicWidth;
+            mBitmapFactor = dsPicHeight / dsPicWidth;
+        } else {
+            dsPicHeight = getHeight() - 2;
+            dsPicWidth = width / height * dsPicHeight;
+            mBitmapFactor = dsPicWidth / dsPicHeight;
+        }
+        dy = (getHeight() - (height * mBitmapFactor)) / 2;
+        dx = (getWidth() - (width * mBitmapFactor)) / 2;
+    }
+
+    /**
+     * 设置画笔类型
+     *
+     * @param penType {@link PenType}
+     */
+    public void setPenType(int penType) {
+        if (penType != PenType.LASSO) {
+            dropSelection();
+        }
+        switch (penType) {
+            case PenType.ERASER: // 橡皮擦
+                mPaint = new Eraser(getContext());
+                break;
+
+            case PenType.STANDARD_PEN: // 标准笔
+            default:
+                mPaint = new StandardPen(getContext());
+                break;
+
+            case PenType.TRANSLUCENT_PEN: // 透明笔
+                mPaint = new TranslucentPen(getContext());
+                break;
+
+            case PenType.FILL: // 填充
+                mPaint = new FillPen(getContext());
+                break;
+
+            case PenType.LASSO: // 套索
+                mPaint = new LassoPen(getContext());
+                break;
+
+            case PenType.PENCIL: // 铅笔
+            case PenType.MARKER: // 马克笔
+            case PenType.AIRBRUSH: // 喷枪
+                mPaint = new BrushPen(getContext(), penType);
+                break;
+        }
+        // 画笔指定了图层时切换到该图层
+        DrawingLayer layer = mLayers.findByPen(penType);
+        if (layer != null) {
+            setActiveLayer(layer.getId());
+        }
+    }
+
+    /**
+     * 设置填充容差
+     *
+     * @param tolerance 与点击处颜色各通道之差不超过该值的像素被填充，0..255
+     */
+    public void setFillTolerance(int tolerance) {
+        mFillTolerance = Math.max(0, Math.min(255, tolerance));
+    }
+
+    /**
+     * 开启多指书写，每个手指各自画一条笔迹，如多人同时在一块屏幕上书写。
+     * 只作用于描边类画笔，套索和填充仍只响应一个手指；进行中的笔迹按已有的点提交
+     *
+     * @param enabled true: 多指书写 false: 单指书写
+     */
+    public void setMultiPointerEnabled(boolean enabled) {
+        if (mMultiPointerEnabled == enabled) {
+            return;
+        }
+        mInputScheduler.flush();
+        if (mCurrentPath != null) {
+            mCurrentPath.finishPath();
+            drawCurrentPath();
+            commitPath(mCurrentPath);
+            mCurrentPath = null;
+        }
+        endPointerPaths();
+        mMultiPointerEnabled = enabled;
+        invalidate();
+    }
+
+    public boolean isMultiPointerEnabled() {
+        return mMultiPointerEnabled;
+    }
+
+    /**
+     * 设置每帧处理输入的时间预算，超出预算的采样点留到下一帧处理
+     *
+     * @param budgetNanos 时间预算|ns，默认4ms
+     */
+    public void setInputFrameBudget(long budgetNanos) {
+        mInputScheduler.setFrameBudget(budgetNanos);
+    }
+
+    /**
+     * 设置画笔的输入平滑参数
+     *
+     * @param penType {@link PenType}
+     * @param params  平滑参数，{@link SmoothingParams#NONE}只做曲线拟合不滤波，null恢复默认参数
+     */
+    public void setSmoothingParams(int penType, SmoothingParams params) {
+        if (params == null) {
+            mSmoothingParams.remove(penType);
+        } else {
+            mSmoothingParams.put(penType, params);
+        }
+    }
+
+    /**
+     * 获取画笔的输入平滑参数
+     *
+     * @param penType {@link PenType}
+     * @return 平滑参数
+     */
+    public SmoothingParams getSmoothingParams(int penType) {
+        SmoothingParams params = mSmoothingParams.get(penType);
+        if (params == null) {
+            params = SmoothingParams.defaultFor(penType);
+            mSmoothingParams.put(penType, params);
+        }
+        return params;
+    }
+
+    /**
+     * 设置是否启用输入平滑，关闭时按原始采样点绘制，对下一笔生效
+     *
+     * @param enabled true: 启用（默认） false: 关闭
+     */
+    public void setSmoothingEnabled(boolean enabled) {
+        mSmoothingEnabled = enabled;
+    }
+
+    /**
+     * 设置三方画笔类型
+     *
+     * @param penType {@link PenType}
+     */
+    public void setTriPenType(int penType) {
+        switch (penType) {
+            case PenType.ERASER: // 橡皮擦
+                mTriPaint = new Eraser(getContext());
+                break;
+
+            case PenType.STANDARD_PEN: // 标准笔
+            default:
+                mTriPaint = new StandardPen(getContext());
+                break;
+
+            case PenType.TRANSLUCENT_PEN: // 透明笔
+                mTriPaint = new TranslucentPen(getContext());
+                break;
+
+            case PenType.FILL: // 填充
+                mTriPaint = new FillPen(getContext());
+                break;
+
+            case PenType.LASSO: // 套索
+                mTriPaint = new LassoPen(getContext());
+                break;
+
+            case PenType.PENCIL: // 铅笔
+            case PenType.MARKER: // 马克笔
+            case PenType.AIRBRUSH: // 喷枪
+                mTriPaint = new BrushPen(getContext(), penType);
+                break;
+        }
+    }
+
+    /**
+     * 设置画笔宽度
+     *
+     * @param penWidth 画笔宽度|px
+     */
+    public void setPenWidth(int penWidth) {
+        mCurrentWidth = penWidth;
+        if (mPaint != null) {
+            mPaint.setStrokeWidth(penWidth);
+        }
+    }
+
+    /**
+     * 设置三方画笔宽度
+     *
+     * @param penWidth 画笔宽度|px
+     */
+    public void setTriPenWidth(int penWidth) {
+        mCurrentWidth = penWidth;
+        if (mTriPaint != null) {
+            mTriPaint.setStrokeWidth(penWidth);
+        }
+    }
+
+    /**
+     * 设置画笔颜色
+     *
+     * @param penColor 画笔颜色
+     */
+    public void setPenColor(int penColor) {
+        if (mPaint != null) {
+            mPaint.setColor(penColor);
+        }
+    }
+
+    /**
+     * 设置三方画笔颜色
+     *
+     * @param penColor 画笔颜色
+     */
+    public void setTriPenColor(int penColor) {
+        if (mTriPaint != null) {
+            mTriPaint.setColor(penColor);
+        }
+    }
+
+    /**
+     * 设置画笔透明度
+     *
+     * @param penAlpha 画笔透明度，0..255
+     */
+    public void setPenAlpha(int penAlpha) {
+        if (mPaint != null) {
+            mPaint.setAlpha(penAlpha);
+        }
+    }
+
+    /**
+     * 设置三方画笔透明度
+     *
+     * @param penAlpha 画笔透明度，0..255
+     */
+    public void setTriPenAlpha(int penAlpha) {
+        if (mTriPaint != null) {
+            mTriPaint.setAlpha(penAlpha);
+        }
+    }
+
+    /**
+     * 设置绘制模式
+     *
+     * @param isCanDraw true: 绘制模式 false: 非绘制模式
+     */
+    public void setIsCanDraw(boolean isCanDraw) {
+        this.mIsCanDraw = isCanDraw;
+    }
+
+    /**
+     * 清除画布
+     */
+    public void clear() {
+        discardSelection();
+        ensureBuffer();
+        scheduleRegionCompression();
+        if (mCompactBuffer != null) {
+            mCompactBuffer.clear();
+        } else if (mRegionBuffer != null) {
+            mRegionBuffer.clear();
+        } else if (mBufferBitmap != null) {
+            mBufferBitmap.eraseColor(Color.TRANSPARENT);
+        }
+        mLayers.clear();
+        // 未完成布局时也清除已保存的笔迹
+        mDocument.clear();
+        if (mPreview != null) {
+            mPreview.invalidateAll();
+            updatePreview();
+        }
+        for (int i = 0; i < mDocumentListeners.size(); i++) {
+            mDocumentListeners.get(i).onCleared();
+        }
+        invalidate();
+    }
+
+    /**
+     * 获取画布Bitmap数据
+     *
+     * @return 画布Bitmap数据
+     */
+    public Bitmap getBitmap() {
+        ensureBuffer();
+        if (mLayers.hasLayers() && hasBuffer()) {
+            // 有多个图层时每次合成新的位图
+            Bitmap bitmap = Bitmap.createBitmap(mDocument.getWidth(), mDocument.getHeight(),
+                    Bitmap.Config.ARGB_8888);
+            Canvas canvas = new Canvas(bitmap);
+            mLayers.drawBelow(canvas, null);
+            mLayers.drawActive(canvas, mBufferBitmap, getPackedBuffer(), null);
+            mLayers.drawAbove(canvas, null);
+            return bitmap;
+        }
+        if (mCompactBuffer != null) {
+            // 紧凑存储时每次合成新的位图
+            return mCompactBuffer.toArgb();
+        }
+        if (mRegionBuffer != null) {
+            // 分区存储时每次合成新的位图，已压缩的区域不会因此常驻内存
+            return mRegionBuffer.toArgb();
+        }
+        return mBufferBitmap;
+    }
+
+    /**
+     * 获取笔迹数据
+     *
+     * @return 按绘制顺序保存的全部笔迹
+     */
+    public DrawingDocument getDocument() {
+        return mDocument;
+    }
+
+    /**
+     * 添加一条来自外部的笔迹，如同步自其他设备，与手绘提交的笔迹一样通知监听
+     *
+     * @param stroke 笔迹，添加后不能再修改
+     */
+    public void addStroke(Stroke stroke) {
+        ensureBuffer();
+        scheduleRegionCompression();
+        if (mStrokeRenderer == null) {
+            mStrokeRenderer = new StrokeRenderer();
+        }
+        DrawingLayer layer = mLayers.resolve(stroke.getLayer());
+        if (layer != mLayers.getActive()) {
+            // 其他图层的笔迹绘制在该图层上，只重新合成笔迹所在区域
+            if (layer.mCanvas != null) {
+                Rect filled = mStrokeRenderer.draw(layer.mCanvas, layer.mBitmap, stroke);
+                if (stroke.isFill()) {
+                    mLayers.invalidate(layer, filled);
+                } else if (stroke.getPointCount() > 0) {
+                    mStrokeRect.set(stroke.getLeft(), stroke.getTop(), stroke.getRight(),
+                            stroke.getBottom());
+                    float pad = stroke.getWidth() / 2 + 1;
+                    mStrokeRect.inset(-pad, -pad);
+                    mStrokeRect.roundOut(mLayerRegion);
+                    mLayers.invalidate(layer, mLayerRegion);
+                }
+            }
+        } else if (mCompactBuffer != null || mRegionBuffer != null) {
+            if (!drawPackedStroke(stroke)) {
+                expandToArgb();
+                mStrokeRenderer.draw(mBufferCanvas, mBufferBitmap, stroke);
+            }
+        } else if (mBufferCanvas != null) {
+            mStrokeRenderer.draw(mBufferCanvas, mBufferBitmap, stroke);
+        }
+        // 未完成布局时只保存笔迹，布局后按笔迹绘制
+        mDocument.addStroke(stroke);
+        onStrokeCommitted(stroke);
+        for (int i = 0; i < mDocumentListeners.size(); i++) {
+            mDocumentListeners.get(i).onStrokeAdded(stroke);
+        }
+        invalidate();
+    }
+
+    /**
+     * 缩放平移已有的笔迹：x' = x * scale + dx，如同步自其他设备的移动。
+     * 只重绘笔迹原来和现在所在的区域，与套索移动一样通知监听
+     *
+     * @param indices 笔迹在文档中的下标
+     * @param scale   缩放比例
+     * @param dx      x方向平移|px
+     * @param dy      y方向平移|px
+     */
+    public void transformStrokes(int[] indices, float scale, float dx, float dy) {
+        // 浮起的笔迹先落下，保证下标对应的笔迹都已绘制在缓存画布上
+        dropSelection();
+        ensureBuffer();
+        if (mStrokeRenderer == null) {
+            mStrokeRenderer = new StrokeRenderer();
+        }
+        applyTransform(indices, scale, dx, dy, true);
+        invalidate();
+    }
+
+    /**
+     * 载入笔迹，替换当前内容，如恢复自动保存的文档
+     * <p>
+     * 未完成布局时先保存笔迹，布局后按画板尺寸绘制
+     *
+     * @param document 笔迹
+     */
+    public void loadDocument(DrawingDocument document) {
+        cancelPaths();
+        discardSelection();
+        int width = mDocument.getWidth();
+        int height = mDocument.getHeight();
+        mDocument = document;
+        if (mOwnsBuffer && width > 0 && height > 0) {
+            document.setSize(width, height);
+            mBufferTrimmed = false;
+            rebuildBuffer();
+            if (mPreview != null) {
+                mPreview.invalidateAll();
+                updatePreview();
+            }
+            invalidate();
+        }
+    }
+
+    /**
+     * 添加笔迹变化监听
+     *
+     * @param listener OnDocumentChangeListener
+     */
+    public void addOnDocumentChangeListener(OnDocumentChangeListener listener) {
+        if (!mDocumentListeners.contains(listener)) {
+            mDocumentListeners.add(listener);
+        }
+    }
+
+    /**
+     * 移除笔迹变化监听
+     *
+     * @param listener OnDocumentChangeListener
+     */
+    public void removeOnDocumentChangeListener(OnDocumentChangeListener listener) {
+        mDocumentListeners.remove(listener);
+    }
+
+    /**
+     * 在最上方添加图层，新笔迹仍画在当前图层。多页模式下只使用基础图层
+     *
+     * @return 图层编号
+     */
+    public int addLayer() {
+        if (!mOwnsBuffer && mBufferBitmap != null) {
+            throw new IllegalStateException("Layers are not supported for notebook pages");
+        }
+        DrawingLayer layer = mLayers.add();
+        if (hasBuffer()) {
+            mLayers.allocate(mDocument.getWidth(), mDocument.getHeight());
+            mLayers.recomposite(null);
+            updateMetricsBitmapBytes();
+        }
+        return layer.getId();
+    }
+
+    /**
+     * 切换当前图层，之后的笔迹和套索只作用于该图层
+     * <p>
+     * 只交换位图，不重新绘制笔迹；图层不存在时忽略
+     *
+     * @param layerId 图层编号
+     */
+    public void setActiveLayer(int layerId) {
+        DrawingLayer layer = mLayers.find(layerId);
+        if (layer == null || layer == mLayers.getActive()) {
+            return;
+        }
+        // 未完成的笔迹和浮起的选区属于原图层
+        cancelPaths();
+        dropSelection();
+        ensureBuffer();
+        scheduleRegionCompression();
+        if (mCompactBuffer != null || mRegionBuffer != null) {
+            // 图层之间只交换ARGB位图，空闲后重新分区
+            expandToArgb();
+        }
+        mBufferBitmap = mLayers.setActive(layer, mBufferBitmap);
+        mBufferCanvas = mBufferBitmap != null ? new Canvas(mBufferBitmap) : null;
+        updateMetricsBitmapBytes();
+        invalidate();
+    }
+
+    /**
+     * 获取当前图层
+     *
+     * @return 图层编号
+     */
+    public int getActiveLayer() {
+        return mLayers.getActive().getId();
+    }
+
+    /**
+     * 获取全部图层
+     *
+     * @return 按绘制顺序的只读列表，下标0在最下方
+     */
+    public List<DrawingLayer> getLayers() {
+        return mLayers.asList();
+    }
+
+    /**
+     * 笔迹所在图层是否可见，图层不存在的笔迹属于基础图层
+     *
+     * @param layerId 笔迹记录的图层编号
+     * @return true: 可见
+     */
+    public boolean isLayerVisible(int layerId) {
+        return mLayers.resolve(layerId).isVisible();
+    }
+
+    /**
+     * 显示或隐藏图层，只重新合成，不重新绘制笔迹
+     *
+     * @param layerId 图层编号
+     * @param visible true: 显示
+     */
+    public void setLayerVisible(int layerId, boolean visible) {
+        DrawingLayer layer = mLayers.find(layerId);
+        if (layer == null || layer.mVisible == visible) {
+            return;
+        }
+        layer.mVisible = visible;
+        onLayerChanged(layer);
+    }
+
+    /**
+     * 设置图层不透明度，只重新合成，不重新绘制笔迹
+     *
+     * @param layerId 图层编号
+     * @param opacity 不透明度，0..1
+     */
+    public void setLayerOpacity(int layerId, float opacity) {
+        DrawingLayer layer = mLayers.find(layerId);
+        opacity = Math.max(0, Math.min(1, opacity));
+        if (layer == null || layer.mOpacity == opacity) {
+            return;
+        }
+        layer.mOpacity = opacity;
+        onLayerChanged(layer);
+    }
+
+    /**
+     * 为图层指定画笔，选择该画笔时自动切换到此图层，如荧光笔始终画在文字下方。
+     * 一种画笔只对应一个图层
+     *
+     * @param layerId 图层编号
+     * @param penType {@link PenType}，{@link DrawingLayer#NO_PEN}取消指定
+     */
+    public void setLayerPen(int layerId, int penType) {
+        DrawingLayer layer = mLayers.find(layerId);
+        if (layer == null) {
+            return;
+        }
+        DrawingLayer previous = mLayers.findByPen(penType);
+        if (previous != null) {
+            previous.mPenType = DrawingLayer.NO_PEN;
+        }
+        layer.mPenType = penType;
+    }
+
+    /**
+     * 图层显示属性变化后重新合成该图层所在一侧，并更新预览
+     */
+    private void onLayerChanged(DrawingLayer layer) {
+        mLayers.invalidate(layer, null);
+        if (mPreview != null) {
+            mPreview.invalidateAll();
+            updatePreview();
+        }
+        invalidate();
+    }
+
+    /**
+     * 切换显示的页面，用于多页文档
+     * <p>
+     * 位图由调用方持有，画板不会回收它
+     *
+     * @param document 页面笔迹
+     * @param buffer   页面缓存画布位图，尺寸与画板一致
+     */
+    public void setPage(DrawingDocument document, Bitmap buffer) {
+        if (mOwnsBuffer && mBufferBitmap != null && mBufferBitmap != buffer) {
+            mBufferBitmap.recycle();
+        }
+        releaseCompactBuffer();
+        releaseRegionBuffer();
+        mOwnsBuffer = false;
+        mBufferTrimmed = false;
+        // 多页模式只使用基础图层
+        mLayers.reset();
+        cancelPaths();
+        discardSelection();
+        mDocument = document;
+        mBufferBitmap = buffer;
+        mBufferCanvas = new Canvas(buffer);
+        if (mPreview != null) {
+            mPreview.invalidateAll();
+            updatePreview();
+        }
+        updateMetricsBitmapBytes();
+        invalidate();
+    }
+
+    /**
+     * 释放资源
+     */
+    public void release() {
+        destroyDrawingCache();
+        discardSelection();
+        if (mBufferBitmap != null) {
+            if (mOwnsBuffer) {
+                mBufferBitmap.recycle();
+            }
+            mBufferBitmap = null;
+        }
+        mBufferTrimmed = false;
+        releaseCompactBuffer();
+        releaseRegionBuffer();
+        mMainHandler.removeCallbacks(mCompressRegions);
+        if (mRegionExecutor != null) {
+            mRegionExecutor.shutdownNow();
+            mRegionExecutor = null;
+        }
+        mLayers.releaseBitmaps();
+        if (mPreview != null) {
+            mPreview.release();
+            mPreview = null;
+        }
+        updateMetricsBitmapBytes();
+    }
+
+    /**
+     * 设置屏幕触摸监听
+     *
+     * @param onTouchListener OnTouchListener
+     */
+    public void setOnTouchListener(OnTouchListener onTouchListener) {
+        this.mTouchListener = onTouchListener;
+    }
+
+    /**
+     * 设置原始的屏幕触摸监听
+     *
+     * @param onOriginTouchListener OnTouchListener
+     */
+    public void setOnOriginTouchListener(OnTouchListener onOriginTouchListener) {
+        this.mOriginTouchListener = onOriginTouchListener;
+    }
+
+    /**
+     * 屏幕触摸监听
+     */
+    public interface OnTouchListener {
+        /**
+         * 回调方法
+         *
+         * @param motionEvent MotionEvent
+         */
+        void onTouch(MotionEvent motionEvent);
+    }
+
+    /**
+     * 笔迹变化监听，在主线程回调
+     */
+    public interface OnDocumentChangeListener {
+        /**
+         * 一条笔迹提交到画布
+         *
+         * @param stroke 笔迹，提交后不再修改
+         */
+        void onStrokeAdded(Stroke stroke);
+
+        /**
+         * 画布被清除
+         */
+        void onCleared();
+
+        /**
+         * 已有笔迹被缩放平移：x' = x * scale + dx，文档中对应下标已替换为新笔迹
+         *
+         * @param indices  笔迹在文档中的下标
+         * @param previous 变换前的笔迹，与indices一一对应
+         * @param scale    缩放比例
+         * @param dx       x方向平移|px
+         * @param dy       y方向平移|px
+         */
+        void onStrokesTransformed(int[] indices, Stroke[] previous, float scale, float dx,
+                                  float dy);
+    }
+
+    /**
+     * 放大画板后，对pointPath坐标进行缩放平移坐标点
+     *
+     * @param scaleX       缩放值
+     * @param matrixValue1 x轴 坐标点偏移量
+     * @param matrixValue2 y轴 坐标点偏移量
+     */
+    public void setScaleAndOffset(float scaleX, float matrixValue1, float matrixValue2) {
+        mScale = scaleX;
+        mCurrentWidth = PointPath.NORMAL_LINE_WIDTH / mScale;
+        mOffset.x = matrixValue1;
+        mOffset.y = matrixValue2;
+    }
+
+    /**
+     * 设置图片涂鸦
+     *
      * @param bitmap 位图对象
      */
     public void setBackgroundPic(Bitmap bitmap) {
         mBgBitmap = bitmap;
+        if (mPreview != null) {
+            mPreview.invalidateAll();
+            updatePreview();
+        }
+        updateMetricsBitmapBytes();
         invalidate();
     }
-}
+
+    /**
+     * 获取背景图
+     *
+     * @return 背景图，未设置时为null
+     */
+    public Bitmap getBackgroundPic() {
+        return mBgBitmap;
+    }
+
+    /**
+     * 获取背景图在画布上的绘制矩阵，用于按其他分辨率重新渲染
+     *
+     * @return 矩阵副本，未设置背景图时为null
+     */
+    public Matrix getBackgroundMatrix() {
+        return mBgBitmap != null ? new Matrix(updateBgMatrix()) : null;
+    }
+
+    /**
+     * 设置是否使用紧凑存储
+     * <p>
+     * 开启后每种墨水颜色用一个ALPHA_8覆盖层保存，合成时着色，单色笔迹内存约为ARGB_8888的1/4，
+     * 显示效果不变。颜色超过{@link #COMPACT_MAX_COLORS}种，或不同颜色的笔迹交叠导致合成顺序
+     * 无法保证时，自动转为ARGB_8888存储
+     *
+     * @param enabled true: 紧凑存储 false: ARGB_8888存储
+     */
+    public void setCompactBufferEnabled(boolean enabled) {
+        if (mCompactEnabled == enabled) {
+            return;
+        }
+        mCompactEnabled = enabled;
+        // 已初始化且缓存画布归画板所有时，按笔迹以新的存储方式重建
+        if (mOwnsBuffer && hasBuffer()) {
+            cancelPaths();
+            dropSelection();
+            rebuildBuffer();
+            if (mPreview != null) {
+                mPreview.invalidateAll();
+                updatePreview();
+            }
+            invalidate();
+        }
+    }
+
+    /**
+     * 设置是否分区压缩存储
+     * <p>
+     * 开启后缓存画布切分为固定大小的区域，空白区域不占用位图；有墨迹的区域空闲一段时间后在后台线程压缩，
+     * 单色区域只保存一个颜色，其他区域按行程编码或deflate压缩，
+     * 显示时经中转位图绘制，在其上书写时才解压为位图，显示效果不变。
+     * 填充、套索、切换图层、笔刷和多指书写时临时转为ARGB_8888存储，空闲后重新分区压缩。
+     * 开启紧凑存储时以紧凑存储为准；多页模式下缓存画布由DrawingNotebook管理，不压缩
+     *
+     * @param enabled true: 分区压缩存储 false: ARGB_8888存储
+     */
+    public void setRegionCompressionEnabled(boolean enabled) {
+        if (mRegionEnabled == enabled) {
+            return;
+        }
+        mRegionEnabled = enabled;
+        scheduleRegionCompression();
+        // 已初始化且缓存画布归画板所有时，按笔迹以新的存储方式重建
+        if (!mCompactEnabled && mOwnsBuffer && hasBuffer()) {
+            cancelPaths();
+            dropSelection();
+            rebuildBuffer();
+            if (mPreview != null) {
+                mPreview.invalidateAll();
+                updatePreview();
+            }
+            invalidate();
+        }
+    }
+
+    /**
+     * 设置分区压缩存储时区域空闲多久后压缩
+     *
+     * @param millis 空闲时间|ms，默认{@link #DEFAULT_REGION_IDLE_MILLIS}
+     */
+    public void setRegionIdleTime(long millis) {
+        mRegionIdleMillis = Math.max(0, millis);
+        scheduleRegionCompression();
+    }
+
+    /**
+     * 设置预览比例，开启后画板会增量维护一张低分辨率预览
+     *
+     * @param scale 预览相对画布的比例，如0.125f；0关闭预览
+     */
+    public void setPreviewScale(float scale) {
+        mPreviewScale = Math.max(0, Math.min(1, scale));
+        createPreview();
+        updateMetricsBitmapBytes();
+    }
+
+    /**
+     * 获取低分辨率预览，内容始终与已提交的笔迹一致
+     *
+     * @return 预览位图，未开启预览时为null
+     */
+    public Bitmap getPreviewBitmap() {
+        if (mPreview == null && mPreviewScale > 0) {
+            // 因内存紧张被释放过，按需重建
+            ensureBuffer();
+            createPreview();
+            updateMetricsBitmapBytes();
+        }
+        return mPreview != null ? mPreview.getBitmap() : null;
+    }
+
+    /**
+     * 设置渲染与输入统计
+     *
+     * @param metrics 统计对象，传null关闭统计
+     */
+    public void setMetrics(DrawingMetrics metrics) {
+        mMetrics = metrics;
+        updateMetricsBitmapBytes();
+    }
+
+    /**
+     * 获取渲染与输入统计
+     *
+     * @return 统计对象，未开启时为null
+     */
+    public DrawingMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    /**
+     * 更新统计中的位图内存
+     */
+    private void updateMetricsBitmapBytes() {
+        if (mMetrics == null) {
+            return;
+        }
+        long bytes = 0;
+        if (mBufferBitmap != null) {
+            bytes += mBufferBitmap.getAllocationByteCount();
+        }
+        if (mCompactBuffer != null) {
+            bytes += mCompactBuffer.getByteCount();
+        }
+        if (mRegionBuffer != null) {
+            bytes += mRegionBuffer.getByteCount();
+        }
+        bytes += mLayers.getByteCount();
+        if (mBgBitmap != null && !mBgBitmap.isRecycled()) {
+            bytes += mBgBitmap.getAllocationByteCount();
+        }
+        if (mPreview != null) {
+            bytes += mPreview.getBitmap().getAllocationByteCount();
+        }
+        mMetrics.setBitmapBytes(bytes);
+    }
+
+    /**
+     * 画板位图的内存统计与回收
+     */
+    private class BufferMemoryConsumer implements MemoryConsumer {
+
+        @Override
+        public long getMemoryBytes() {
+            long bytes = 0;
+            // 多页模式下缓存画布由DrawingNotebook统计
+            if (mOwnsBuffer && mBufferBitmap != null) {
+                bytes += mBufferBitmap.getAllocationByteCount();
+            }
+            if (mCompactBuffer != null) {
+                bytes += mCompactBuffer.getByteCount();
+            }
+            if (mRegionBuffer != null) {
+                bytes += mRegionBuffer.getByteCount();
+            }
+            bytes += mLayers.getByteCount();
+            if (mPreview != null) {
+                bytes += mPreview.getBitmap().getAllocationByteCount();
+            }
+            // 背景图由调用方持有，只统计不释放
+            if (mBgBitmap != null && !mBgBitmap.isRecycled()) {
+                bytes += mBgBitmap.getAllocationByteCount();
+            }
+            return bytes;
+        }
+
+        @Override
+        public void trimMemory(int tier) {
+            if (tier >= DrawingMemoryManager.TIER_CACHE && mPreview != null) {
+                mPreview.release();
+                mPreview = null;
+            }
+            if (tier >= DrawingMemoryManager.TIER_CACHE && mStrokeRenderer != null) {
+                mStrokeRenderer.trimMemory();
+            }
+            if (tier >= DrawingMemoryManager.TIER_CACHE && mRegionBuffer != null
+                    && canCompressRegions()) {
+                // 不等空闲时间，压缩全部驻留的区域
+                mRegionBuffer.compressIdle(0, obtainRegionExecutor(), mMainHandler,
+                        mOnRegionsCompressed);
+            }
+            if (tier >= DrawingMemoryManager.TIER_VISIBLE && mOwnsBuffer && hasBuffer()
+                    && mCurrentPath == null && !hasPointerPaths() && mSelection == null) {
+                if (mBufferBitmap != null) {
+                    mBufferBitmap.recycle();
+                }
+                mBufferBitmap = null;
+                mBufferCanvas = null;
+                releaseCompactBuffer();
+                releaseRegionBuffer();
+                mLayers.releaseBitmaps();
+                mBufferTrimmed = true;
+            }
+            updateMetricsBitmapBytes();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,177 @@
+package tech.yangle.drawing;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+/**
+ * 套索选中后浮起的笔迹
+ * <p>
+ * 选中的笔迹只在浮起时渲染一次到选区大小的位图上，拖动和缩放只改变绘制矩阵，
+ * 不重新绘制笔迹。变换为 x' = x * scale + dx，缩放以选区左上角为锚点
+ */
+class FloatingSelection {
+
+    // 最小、最大缩放比例
+    private static final float MIN_SCALE = 0.1f;
+    private static final float MAX_SCALE = 10f;
+
+    // 选中笔迹在文档中的下标，升序
+    private final int[] mIndices;
+    // 浮起时选区在画布上的位置，含画笔宽度
+    private final Rect mBounds;
+    private Bitmap mBitmap;
+    private final Matrix mMatrix = new Matrix();
+    private final RectF mMapped = new RectF();
+    private float mScale = 1;
+    private float mDx;
+    private float mDy;
+
+    /**
+     * @param indices 选中笔迹的下标
+     * @param bounds  选区，不能为空
+     */
+    FloatingSelection(int[] indices, Rect bounds) {
+        mIndices = indices;
+        mBounds = new Rect(bounds);
+        mBitmap = Bitmap.createBitmap(bounds.width(), bounds.height(), Bitmap.Config.ARGB_8888);
+        updateMatrix();
+    }
+
+    /**
+     * 获取浮起图层的画布，坐标已平移到画布坐标系
+     *
+     * @return 画布
+     */
+    Canvas newCanvas() {
+        Canvas canvas = new Canvas(mBitmap);
+        canvas.translate(-mBounds.left, -mBounds.top);
+        return canvas;
+    }
+
+    Bitmap getBitmap() {
+        return mBitmap;
+    }
+
+    int[] getIndices() {
+        return mIndices;
+    }
+
+    Rect getBounds() {
+        return mBounds;
+    }
+
+    float getScale() {
+        return mScale;
+    }
+
+    float getDx() {
+        return mDx;
+    }
+
+    float getDy() {
+        return mDy;
+    }
+
+    /**
+     * 是否已移动或缩放
+     *
+     * @return true: 已变换
+     */
+    boolean isTransformed() {
+        return mScale != 1 || mDx != 0 || mDy != 0;
+    }
+
+    /**
+     * 变换后的选区
+     *
+     * @return 选区，只读
+     */
+    RectF getMappedBounds() {
+        return mMapped;
+    }
+
+    /**
+     * 点是否在变换后的选区内
+     */
+    boolean contains(float x, float y) {
+        return mMapped.contains(x, y);
+    }
+
+    /**
+     * 点是否在右下角的缩放手柄上
+     *
+     * @param radius 手柄半径|px
+     */
+    boolean isOnHandle(float x, float y, float radius) {
+        return Math.abs(x - mMapped.right) <= radius && Math.abs(y - mMapped.bottom) <= radius;
+    }
+
+    /**
+     * 平移选区
+     *
+     * @param dx x方向平移|px
+     * @param dy y方向平移|px
+     */
+    void translate(float dx, float dy) {
+        mDx += dx;
+        mDy += dy;
+        updateMatrix();
+    }
+
+    /**
+     * 拖动右下角缩放选区，左上角保持不动
+     *
+     * @param x 手柄位置x坐标|px
+     * @param y 手柄位置y坐标|px
+     */
+    void scaleTo(float x, float y) {
+        float anchorX = mMapped.left;
+        float anchorY = mMapped.top;
+        float diagonal = (float) Math.hypot(mBounds.width(), mBounds.height());
+        float scale = (float) Math.hypot(x - anchorX, y - anchorY) / diagonal;
+        mScale = Math.max(MIN_SCALE, Math.min(MAX_SCALE, scale));
+        mDx = anchorX - mBounds.left * mScale;
+        mDy = anchorY - mBounds.top * mScale;
+        updateMatrix();
+    }
+
+    /**
+     * 绘制浮起的笔迹和选区边框
+     *
+     * @param canvas       画布
+     * @param outlinePaint 边框画笔
+     * @param handleRadius 缩放手柄半径|px
+     * @param counter      统计写入的字节数，可为null
+     */
+    void draw(Canvas canvas, Paint outlinePaint, float handleRadius, BlitCounter counter) {
+        if (mBitmap == null) {
+            return;
+        }
+        canvas.drawBitmap(mBitmap, mMatrix, null);
+        if (counter != null) {
+            counter.add(mMapped);
+        }
+        canvas.drawRect(mMapped, outlinePaint);
+        canvas.drawRect(mMapped.right - handleRadius / 2, mMapped.bottom - handleRadius / 2,
+                mMapped.right + handleRadius / 2, mMapped.bottom + handleRadius / 2, outlinePaint);
+    }
+
+    void release() {
+        if (mBitmap != null) {
+            mBitmap.recycle();
+            mBitmap = null;
+        }
+    }
+
+    private void updateMatrix() {
+        mMatrix.setTranslate(mBounds.left, mBounds.top);
+        mMatrix.postScale(mScale, mScale);
+        mMatrix.postTranslate(mDx, mDy);
+        mMapped.set(mBounds.left * mScale + mDx, mBounds.top * mScale + mDy,
+                mBounds.right * mScale + mDx, mBounds.bottom * mScale + mDy);
+    }
+}
\ No newline at end of file
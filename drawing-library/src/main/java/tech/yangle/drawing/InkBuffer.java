@@ -0,0 +1,17 @@
+package tech.yangle.drawing;
+
+import android.graphics.Canvas;
+
+/**
+ * 不以单张ARGB_8888位图保存的缓存画布，只能整体合成到目标画布
+ */
+interface InkBuffer {
+
+    /**
+     * 合成到目标画布
+     *
+     * @param canvas  目标画布
+     * @param counter 统计写入的字节数，可为null
+     */
+    void draw(Canvas canvas, BlitCounter counter);
+}
\ No newline at end of file
@@ -0,0 +1,162 @@
+package tech.yangle.drawing;
+
+import android.view.Choreographer;
+
+import java.util.Arrays;
+
+/**
+ * 按帧合并输入
+ * <p>
+ * 触摸采样点先进入队列，每个Choreographer帧回调中按顺序处理，处理时间不超过每帧预算，
+ * 未处理完的留到下一帧；每帧处理完后只通知一次重绘，不会渲染显示前就被覆盖的帧。
+ * 按下、抬起等需要保证顺序的事件之前调用flush()处理完队列。多指书写时每个采样点带有所属手指的槽位，
+ * 各手指的采样点在同一个队列中按到达顺序处理。只能在主线程使用
+ */
+class InputScheduler implements Choreographer.FrameCallback {
+
+    /**
+     * 默认每帧处理输入的时间预算|ns
+     */
+    static final long DEFAULT_FRAME_BUDGET_NANOS = 4_000_000L;
+    // 每处理若干个点检查一次时间
+    private static final int TIME_CHECK_INTERVAL = 8;
+
+    private final Callback mCallback;
+    // x0, y0, x1, y1 ...
+    private float[] mPoints = new float[64];
+    private long[] mTimes = new long[32];
+    private int[] mSlots = new int[32];
+    // 队首下标和队列长度
+    private int mHead;
+    private int mCount;
+    private boolean mPosted;
+    private long mFrameBudgetNanos = DEFAULT_FRAME_BUDGET_NANOS;
+
+    InputScheduler(Callback callback) {
+        mCallback = callback;
+    }
+
+    /**
+     * 设置每帧处理输入的时间预算，每帧至少处理一个点
+     *
+     * @param budgetNanos 时间预算|ns
+     */
+    void setFrameBudget(long budgetNanos) {
+        mFrameBudgetNanos = Math.max(0, budgetNanos);
+    }
+
+    /**
+     * 采样点入队，并在下一帧处理
+     *
+     * @param x         x坐标
+     * @param y         y坐标
+     * @param timeNanos 采样时间|ns
+     */
+    void add(float x, float y, long timeNanos) {
+        add(0, x, y, timeNanos);
+    }
+
+    /**
+     * 某个手指的采样点入队，并在下一帧处理
+     *
+     * @param slot      手指槽位
+     * @param x         x坐标
+     * @param y         y坐标
+     * @param timeNanos 采样时间|ns
+     */
+    void add(int slot, float x, float y, long timeNanos) {
+        if (mHead + mCount == mTimes.length) {
+            if (mHead > 0) {
+                // 前面已处理的空间足够时搬移，否则扩容
+                System.arraycopy(mPoints, mHead * 2, mPoints, 0, mCount * 2);
+                System.arraycopy(mTimes, mHead, mTimes, 0, mCount);
+                System.arraycopy(mSlots, mHead, mSlots, 0, mCount);
+                mHead = 0;
+            }
+            if (mCount == mTimes.length) {
+                mPoints = Arrays.copyOf(mPoints, mPoints.length * 2);
+                mTimes = Arrays.copyOf(mTimes, mTimes.length * 2);
+                mSlots = Arrays.copyOf(mSlots, mSlots.length * 2);
+            }
+        }
+        int index = mHead + mCount;
+        mPoints[index * 2] = x;
+        mPoints[index * 2 + 1] = y;
+        mTimes[index] = timeNanos;
+        mSlots[index] = slot;
+        mCount++;
+        if (!mPosted) {
+            mPosted = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    /**
+     * 立即处理队列中的全部采样点，不通知重绘
+     */
+    void flush() {
+        while (mCount > 0) {
+            next();
+        }
+    }
+
+    /**
+     * 丢弃队列中的采样点
+     */
+    void clear() {
+        mHead = 0;
+        mCount = 0;
+        if (mPosted) {
+            mPosted = false;
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        mPosted = false;
+        if (mCount == 0) {
+            return;
+        }
+        long deadline = System.nanoTime() + mFrameBudgetNanos;
+        int processed = 0;
+        do {
+            next();
+            processed++;
+        } while (mCount > 0
+                && (processed % TIME_CHECK_INTERVAL != 0 || System.nanoTime() < deadline));
+        mCallback.onFrame();
+        if (mCount > 0) {
+            mPosted = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    private void next() {
+        int index = mHead;
+        mHead++;
+        mCount--;
+        if (mCount == 0) {
+            mHead = 0;
+        }
+        mCallback.onSample(mSlots[index], mPoints[index * 2], mPoints[index * 2 + 1],
+                mTimes[index]);
+    }
+
+    interface Callback {
+        /**
+         * 处理一个采样点
+         *
+         * @param slot      手指槽位，单指书写时为0
+         * @param x         x坐标
+         * @param y         y坐标
+         * @param timeNanos 采样时间|ns
+         */
+        void onSample(int slot, float x, float y, long timeNanos);
+
+        /**
+         * 本帧的采样点处理完毕
+         */
+        void onFrame();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,374 @@
+package tech.yangle.drawing;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.Rect;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 图层栈与合成缓存
+ * <p>
+ * 当前图层之下和之上的可见图层分别合成到一张缓存位图上，绘制一帧时只需绘制下方缓存、
+ * 当前图层和上方缓存，与图层数量无关；某一侧只有一个图层时直接绘制该图层，不占用缓存。
+ * 非当前图层变化时只在变化区域内重新合成它所在一侧的缓存。只能在主线程使用
+ */
+class LayerStack {
+
+    // 按绘制顺序，下标0在最下方
+    private final List<DrawingLayer> mLayers = new ArrayList<>();
+    private int mActiveIndex;
+    private int mNextId = 1;
+    private Bitmap mBelow;
+    private Canvas mBelowCanvas;
+    private Bitmap mAbove;
+    private Canvas mAboveCanvas;
+    private final Paint mPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    LayerStack() {
+        mLayers.add(new DrawingLayer(0));
+    }
+
+    /**
+     * 在最上方添加图层
+     *
+     * @return 新图层
+     */
+    DrawingLayer add() {
+        DrawingLayer layer = new DrawingLayer(mNextId++);
+        mLayers.add(layer);
+        return layer;
+    }
+
+    /**
+     * 只保留基础图层
+     */
+    void reset() {
+        releaseBitmaps();
+        mLayers.subList(1, mLayers.size()).clear();
+        mActiveIndex = 0;
+        mNextId = 1;
+    }
+
+    /**
+     * 全部图层，按绘制顺序
+     *
+     * @return 只读列表
+     */
+    List<DrawingLayer> asList() {
+        return Collections.unmodifiableList(mLayers);
+    }
+
+    int size() {
+        return mLayers.size();
+    }
+
+    DrawingLayer get(int index) {
+        return mLayers.get(index);
+    }
+
+    DrawingLayer getActive() {
+        return mLayers.get(mActiveIndex);
+    }
+
+    /**
+     * 是否有基础图层之外的图层
+     */
+    boolean hasLayers() {
+        return mLayers.size() > 1;
+    }
+
+    /**
+     * 按编号查找图层
+     *
+     * @param id 图层编号
+     * @return 图层，不存在时为null
+     */
+    DrawingLayer find(int id) {
+        for (int i = 0; i < mLayers.size(); i++) {
+            if (mLayers.get(i).getId() == id) {
+                return mLayers.get(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 笔迹所在的图层，图层不存在时（如来自其他设备）归入基础图层
+     *
+     * @param id 笔迹记录的图层编号
+     * @return 图层
+     */
+    DrawingLayer resolve(int id) {
+        DrawingLayer layer = find(id);
+        return layer != null ? layer : mLayers.get(0);
+    }
+
+    /**
+     * 按指定的画笔查找图层
+     *
+     * @param penType 画笔类型
+     * @return 图层，没有图层指定该画笔时为null
+     */
+    DrawingLayer findByPen(int penType) {
+        for (int i = 0; i < mLayers.size(); i++) {
+            if (mLayers.get(i).mPenType == penType) {
+                return mLayers.get(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 切换当前图层：原当前图层接管画板的缓存位图，新当前图层交出自己的位图
+     *
+     * @param layer  新的当前图层
+     * @param buffer 画板的缓存位图，ARGB_8888
+     * @return 新当前图层的位图，作为画板的缓存位图
+     */
+    Bitmap setActive(DrawingLayer layer, Bitmap buffer) {
+        DrawingLayer previous = getActive();
+        previous.mBitmap = buffer;
+        previous.mCanvas = buffer != null ? new Canvas(buffer) : null;
+        mActiveIndex = mLayers.indexOf(layer);
+        Bitmap bitmap = layer.mBitmap;
+        layer.mBitmap = null;
+        layer.mCanvas = null;
+        updateCaches(buffer != null ? buffer.getWidth() : 0,
+                buffer != null ? buffer.getHeight() : 0);
+        recomposite(null);
+        return bitmap;
+    }
+
+    /**
+     * 为非当前图层分配位图，已有的位图保留内容，之后需要重新合成
+     *
+     * @param width  宽度
+     * @param height 高度
+     */
+    void allocate(int width, int height) {
+        for (int i = 0; i < mLayers.size(); i++) {
+            DrawingLayer layer = mLayers.get(i);
+            if (i == mActiveIndex) {
+                layer.releaseBitmap();
+                continue;
+            }
+            if (layer.mBitmap != null && (layer.mBitmap.getWidth() != width
+                    || layer.mBitmap.getHeight() != height)) {
+                layer.releaseBitmap();
+            }
+            if (layer.mBitmap == null) {
+                layer.mBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+                layer.mCanvas = new Canvas(layer.mBitmap);
+            }
+        }
+        updateCaches(width, height);
+    }
+
+    /**
+     * 释放全部图层位图和合成缓存
+     */
+    void releaseBitmaps() {
+        for (int i = 0; i < mLayers.size(); i++) {
+            mLayers.get(i).releaseBitmap();
+        }
+        releaseCaches();
+    }
+
+    /**
+     * 清空非当前图层和合成缓存
+     */
+    void clear() {
+        for (int i = 0; i < mLayers.size(); i++) {
+            Bitmap bitmap = mLayers.get(i).mBitmap;
+            if (bitmap != null) {
+                bitmap.eraseColor(Color.TRANSPARENT);
+            }
+        }
+        if (mBelow != null) {
+            mBelow.eraseColor(Color.TRANSPARENT);
+        }
+        if (mAbove != null) {
+            mAbove.eraseColor(Color.TRANSPARENT);
+        }
+    }
+
+    /**
+     * 非当前图层在区域内发生变化，只重新合成它所在一侧
+     *
+     * @param layer  图层
+     * @param region 变化区域，为null时为整个图层
+     */
+    void invalidate(DrawingLayer layer, Rect region) {
+        int index = mLayers.indexOf(layer);
+        if (index < mActiveIndex) {
+            composite(mBelowCanvas, 0, mActiveIndex, region);
+        } else if (index > mActiveIndex) {
+            composite(mAboveCanvas, mActiveIndex + 1, mLayers.size(), region);
+        }
+    }
+
+    /**
+     * 重新合成两侧的缓存
+     *
+     * @param region 区域，为null时为整个画布
+     */
+    void recomposite(Rect region) {
+        composite(mBelowCanvas, 0, mActiveIndex, region);
+        composite(mAboveCanvas, mActiveIndex + 1, mLayers.size(), region);
+    }
+
+    /**
+     * 绘制当前图层之下的图层
+     *
+     * @param canvas  目标画布
+     * @param counter 统计写入的字节数，可为null
+     */
+    void drawBelow(Canvas canvas, BlitCounter counter) {
+        drawSide(canvas, mBelow, 0, mActiveIndex, counter);
+    }
+
+    /**
+     * 绘制当前图层之上的图层
+     *
+     * @param canvas  目标画布
+     * @param counter 统计写入的字节数，可为null
+     */
+    void drawAbove(Canvas canvas, BlitCounter counter) {
+        drawSide(canvas, mAbove, mActiveIndex + 1, mLayers.size(), counter);
+    }
+
+    /**
+     * 按当前图层的可见性和透明度绘制画板的缓存画布
+     *
+     * @param canvas  目标画布
+     * @param buffer  缓存位图，紧凑存储或分区存储时为null
+     * @param packed  紧凑存储或分区存储的缓存画布
+     * @param counter 统计写入的字节数，可为null
+     */
+    void drawActive(Canvas canvas, Bitmap buffer, InkBuffer packed, BlitCounter counter) {
+        DrawingLayer active = getActive();
+        if (!active.mVisible) {
+            return;
+        }
+        if (buffer != null && !buffer.isRecycled()) {
+            mPaint.setAlpha(Math.round(active.mOpacity * 255));
+            drawBitmap(canvas, buffer, mPaint, counter);
+        } else if (packed != null) {
+            if (active.mOpacity < 1) {
+                canvas.saveLayerAlpha(null, Math.round(active.mOpacity * 255));
+                packed.draw(canvas, counter);
+                canvas.restore();
+            } else {
+                packed.draw(canvas, counter);
+            }
+        }
+    }
+
+    /**
+     * 图层位图和合成缓存占用的内存
+     *
+     * @return 字节数
+     */
+    long getByteCount() {
+        long bytes = 0;
+        for (int i = 0; i < mLayers.size(); i++) {
+            Bitmap bitmap = mLayers.get(i).mBitmap;
+            if (bitmap != null) {
+                bytes += bitmap.getAllocationByteCount();
+            }
+        }
+        if (mBelow != null) {
+            bytes += mBelow.getAllocationByteCount();
+        }
+        if (mAbove != null) {
+            bytes += mAbove.getAllocationByteCount();
+        }
+        return bytes;
+    }
+
+    private void drawSide(Canvas canvas, Bitmap cache, int from, int to,
+                          BlitCounter counter) {
+        if (cache != null) {
+            drawBitmap(canvas, cache, null, counter);
+        } else if (to - from == 1) {
+            drawLayer(canvas, mLayers.get(from), counter);
+        }
+    }
+
+    private void drawLayer(Canvas canvas, DrawingLayer layer, BlitCounter counter) {
+        if (!layer.mVisible || layer.mBitmap == null) {
+            return;
+        }
+        mPaint.setAlpha(Math.round(layer.mOpacity * 255));
+        drawBitmap(canvas, layer.mBitmap, mPaint, counter);
+    }
+
+    private static void drawBitmap(Canvas canvas, Bitmap bitmap, Paint paint,
+                                   BlitCounter counter) {
+        canvas.drawBitmap(bitmap, 0, 0, paint);
+        if (counter != null) {
+            counter.add(0, 0, bitmap.getWidth(), bitmap.getHeight());
+        }
+    }
+
+    /**
+     * 在区域内把[from, to)的图层合成到缓存上
+     */
+    private void composite(Canvas cache, int from, int to, Rect region) {
+        if (cache == null) {
+            return;
+        }
+        cache.save();
+        if (region != null) {
+            cache.clipRect(region);
+        }
+        cache.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+        for (int i = from; i < to; i++) {
+            drawLayer(cache, mLayers.get(i), null);
+        }
+        cache.restore();
+    }
+
+    /**
+     * 某一侧有两个以上图层时才使用合成缓存
+     */
+    private void updateCaches(int width, int height) {
+        boolean below = mActiveIndex >= 2 && width > 0;
+        boolean above = mLayers.size() - mActiveIndex - 1 >= 2 && width > 0;
+        if (!below && mBelow != null) {
+            mBelow.recycle();
+            mBelow = null;
+            mBelowCanvas = null;
+        } else if (below && mBelow == null) {
+            mBelow = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            mBelowCanvas = new Canvas(mBelow);
+        }
+        if (!above && mAbove != null) {
+            mAbove.recycle();
+            mAbove = null;
+            mAboveCanvas = null;
+        } else if (above && mAbove == null) {
+            mAbove = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            mAboveCanvas = new Canvas(mAbove);
+        }
+    }
+
+    private void releaseCaches() {
+        if (mBelow != null) {
+            mBelow.recycle();
+            mBelow = null;
+            mBelowCanvas = null;
+        }
+        if (mAbove != null) {
+            mAbove.recycle();
+            mAbove = null;
+            mAboveCanvas = null;
+        }
+    }
+}
\ No newline at end of file
@@ -1,5 +1,7 @@
 package tech.yangle.drawing;
 
+import tech.yangle.drawing.core.PenStyle;
+
 /**
  * 画笔类型
  * Created by yangle on 2020/10/16.
@@ -9,13 +11,33 @@ public class PenType {
     /**
      * 橡皮擦
      */
-    public static final int ERASER = -1;
+    public static final int ERASER = PenStyle.ERASER;
     /**
      * 标准笔
      */
-    public static final int STANDARD_PEN = 0;
+    public static final int STANDARD_PEN = PenStyle.STANDARD_PEN;
     /**
      * 半透明币
      */
-    public static final int TRANSLUCENT_PEN = 1;
-}
+    public static final int TRANSLUCENT_PEN = PenStyle.TRANSLUCENT_PEN;
+    /**
+     * 填充
+     */
+    public static final int FILL = PenStyle.FILL;
+    /**
+     * 套索选择，圈选笔迹后可拖动和缩放
+     */
+    public static final int LASSO = PenStyle.LASSO;
+    /**
+     * 铅笔，纹理笔刷
+     */
+    public static final int PENCIL = PenStyle.PENCIL;
+    /**
+     * 马克笔，纹理笔刷
+     */
+    public static final int MARKER = PenStyle.MARKER;
+    /**
+     * 喷枪，纹理笔刷
+     */
+    public static final int AIRBRUSH = PenStyle.AIRBRUSH;
+}
\ No newline at end of file
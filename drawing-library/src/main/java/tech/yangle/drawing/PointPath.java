@@ -6,8 +6,15 @@ import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Path;
 import android.graphics.PointF;
+import android.graphics.RectF;
 
+import java.util.Arrays;
+
+import tech.yangle.drawing.core.PenStyle;
+import tech.yangle.drawing.core.Stroke;
+import tech.yangle.drawing.core.smooth.InkSmoother;
 import tech.yangle.drawing.pen.BasePen;
+import tech.yangle.drawing.pen.BrushPen;
 import tech.yangle.drawing.pen.Eraser;
 import tech.yangle.drawing.pen.StandardPen;
 import tech.yangle.drawing.pen.TranslucentPen;
@@ -20,18 +27,42 @@ import tech.yangle.drawing.utils.DensityUtils;
  */
 public class PointPath {
 
-    private final Path mPath;
+    private final Path mPath = new Path();
     private Paint mPaint;
+    // 实际绘制使用的画笔，按笔迹属性创建一次，避免每帧新建
+    private BasePen mDisplayPaint;
     private PointF mPrePoint;
     private float currentWidth;
     private int currentColor = Color.BLACK;
     // 画笔类型
     private int mCurrentType = PenType.STANDARD_PEN;
+    // 原始坐标点，x0, y0, x1, y1 ...
+    private float[] mPoints = new float[64];
+    private int mPointCount;
+    // 坐标点范围，不含画笔宽度
+    private float mLeft = Float.MAX_VALUE;
+    private float mTop = Float.MAX_VALUE;
+    private float mRight = -Float.MAX_VALUE;
+    private float mBottom = -Float.MAX_VALUE;
+    // 各点的采样时间|ms，未设置起始时间时为null
+    private long[] mTimes;
+    // 当前采样时间|ms
+    private long mCurrentTime = -1;
+    // 增量绘制已绘制到的点数，以及笔刷距下一次盖印还需前进的距离
+    private int mDrawnCount;
+    private float mStampCarry;
+    // 增量绘制的新增线段
+    private Path mSegmentPath;
+    // 输入平滑，为null时按原始采样点绘制
+    private InkSmoother mSmoother;
+    private final InkSmoother.PointSink mSmoothSink = (x, y) -> {
+        mPath.lineTo(x, y);
+        addPoint(x, y);
+    };
     // 画笔默认宽度
     public static final float NORMAL_LINE_WIDTH = 4;
 
     public PointPath(Paint paint) {
-        mPath = new Path();
         mPaint = paint;
     }
 
@@ -39,14 +70,157 @@ public class PointPath {
         PointPath mPointPath = new PointPath(paint);
         // 把画笔移动(pointF.x，pointF.y)出开始绘制
         mPointPath.mPath.moveTo(pointF.x, pointF.y);
-        mPointPath.mPrePoint = pointF;
+        mPointPath.mPrePoint = new PointF(pointF.x, pointF.y);
+        mPointPath.addPoint(pointF.x, pointF.y);
         return mPointPath;
     }
 
+    /**
+     * 记录采样时间，在getInstance之后调用，之后添加的点按各自的采样时间记录
+     *
+     * @param timeNanos 起点的采样时间|ns
+     */
+    public void setStartTime(long timeNanos) {
+        mCurrentTime = timeNanos / 1_000_000L;
+        mTimes = new long[mPoints.length / 2];
+        Arrays.fill(mTimes, 0, mPointCount, mCurrentTime);
+    }
+
+    /**
+     * 启用输入平滑，在getInstance之后、添加后续点之前调用
+     *
+     * @param smoother  平滑器，已设置好当前画笔的参数
+     * @param timeNanos 起点的采样时间|ns
+     */
+    public void setSmoother(InkSmoother smoother, long timeNanos) {
+        mSmoother = smoother;
+        // 起点已由getInstance写入，重置路径后由平滑器重新输出
+        mPath.rewind();
+        mPath.moveTo(mPrePoint.x, mPrePoint.y);
+        mPointCount = 0;
+        smoother.begin(mPrePoint.x, mPrePoint.y, timeNanos, mSmoothSink);
+    }
+
     public void savePointToPath(PointF mCurrentPoint) {
         // 绘制圆滑曲线
         mPath.quadTo(mPrePoint.x, mPrePoint.y, mCurrentPoint.x, mCurrentPoint.y);
-        mPrePoint = mCurrentPoint;
+        mPrePoint.set(mCurrentPoint.x, mCurrentPoint.y);
+        addPoint(mCurrentPoint.x, mCurrentPoint.y);
+    }
+
+    /**
+     * 添加采样点，启用平滑时输出平滑后的曲线
+     *
+     * @param x         x坐标
+     * @param y         y坐标
+     * @param timeNanos 采样时间|ns
+     */
+    public void savePointToPath(float x, float y, long timeNanos) {
+        if (mTimes != null) {
+            mCurrentTime = timeNanos / 1_000_000L;
+        }
+        if (mSmoother == null) {
+            mPath.quadTo(mPrePoint.x, mPrePoint.y, x, y);
+            mPrePoint.set(x, y);
+            addPoint(x, y);
+            return;
+        }
+        mSmoother.add(x, y, timeNanos);
+    }
+
+    /**
+     * 结束笔迹，平滑时补齐到最后一个采样点
+     */
+    public void finishPath() {
+        if (mSmoother != null) {
+            mSmoother.finish();
+            mSmoother = null;
+        }
+    }
+
+    private void addPoint(float x, float y) {
+        if (mPointCount * 2 + 2 > mPoints.length) {
+            mPoints = Arrays.copyOf(mPoints, mPoints.length * 2);
+        }
+        if (mTimes != null) {
+            if (mPointCount == mTimes.length) {
+                mTimes = Arrays.copyOf(mTimes, mTimes.length * 2);
+            }
+            mTimes[mPointCount] = mCurrentTime;
+        }
+        mPoints[mPointCount * 2] = x;
+        mPoints[mPointCount * 2 + 1] = y;
+        mPointCount++;
+        mLeft = Math.min(mLeft, x);
+        mTop = Math.min(mTop, y);
+        mRight = Math.max(mRight, x);
+        mBottom = Math.max(mBottom, y);
+    }
+
+    /**
+     * 计算笔迹的绘制范围，含画笔宽度和抗锯齿边缘
+     *
+     * @param context 上下文
+     * @param out     输出范围
+     */
+    public void computeBounds(Context context, RectF out) {
+        float width = mCurrentType == PenType.ERASER
+                ? DensityUtils.dp2px(context, PenStyle.ERASER_WIDTH_DP)
+                : DensityUtils.dp2px(context, currentWidth);
+        float pad = Math.max(width, 1) / 2 + 1;
+        out.set(mLeft - pad, mTop - pad, mRight + pad, mBottom + pad);
+    }
+
+    /**
+     * 是否为橡皮擦笔迹
+     *
+     * @return true: 橡皮擦
+     */
+    public boolean isEraser() {
+        return mCurrentType == PenType.ERASER;
+    }
+
+    /**
+     * 是否为纹理笔刷笔迹，笔刷逐段盖印，每次只绘制新增的线段
+     *
+     * @return true: 纹理笔刷
+     */
+    public boolean isBrush() {
+        return PenStyle.isBrush(mCurrentType);
+    }
+
+    /**
+     * 获取画笔当前颜色
+     *
+     * @return 当前颜色值
+     */
+    public int getCurrentColor() {
+        return currentColor;
+    }
+
+    /**
+     * 转换为与平台无关的笔迹，画笔属性与disPlayPath实际绘制时一致
+     *
+     * @param context 上下文
+     * @return 笔迹
+     */
+    public Stroke toStroke(Context context) {
+        Stroke stroke;
+        if (mCurrentType == PenType.ERASER) {
+            stroke = new Stroke(mCurrentType, Color.TRANSPARENT,
+                    DensityUtils.dp2px(context, PenStyle.ERASER_WIDTH_DP), mPointCount);
+        } else {
+            stroke = new Stroke(mCurrentType, currentColor,
+                    DensityUtils.dp2px(context, currentWidth), mPointCount);
+        }
+        for (int i = 0; i < mPointCount; i++) {
+            if (mTimes != null) {
+                stroke.addPoint(mPoints[i * 2], mPoints[i * 2 + 1], mTimes[i]);
+            } else {
+                stroke.addPoint(mPoints[i * 2], mPoints[i * 2 + 1]);
+            }
+        }
+        return stroke;
     }
 
     /**
@@ -56,21 +230,78 @@ public class PointPath {
      * @param canvas  画布
      */
     public void disPlayPath(Context context, Canvas canvas) {
-        if (mPaint == null) {
-            mPaint = new BasePen(context);
+        if (mDisplayPaint == null) {
+            mDisplayPaint = createDisplayPaint(context);
         }
-        if (mCurrentType == PenType.ERASER) {
-            mPaint = new Eraser(context);
-        } else if (mCurrentType == PenType.TRANSLUCENT_PEN) {
-            mPaint = new TranslucentPen(context);
-            mPaint.setColor(currentColor);
-            mPaint.setStrokeWidth(DensityUtils.dp2px(context, currentWidth));
+        if (mDisplayPaint instanceof BrushPen) {
+            // 笔刷只盖印新增的线段，已盖印的部分不重复叠加
+            displayNewSegments(canvas);
+            return;
+        }
+        canvas.drawPath(mPath, mDisplayPaint);
+    }
+
+    /**
+     * 只绘制上次绘制之后新增的线段，用于多指同时书写，每帧的开销只与新增的点数有关。
+     * 圆头线段在衔接处与圆角拐角的效果一致
+     *
+     * @param context 上下文
+     * @param canvas  画布
+     */
+    public void disPlayNewSegments(Context context, Canvas canvas) {
+        if (mDisplayPaint == null) {
+            mDisplayPaint = createDisplayPaint(context);
+        }
+        displayNewSegments(canvas);
+    }
+
+    private void displayNewSegments(Canvas canvas) {
+        if (mPointCount <= mDrawnCount) {
+            return;
+        }
+        int from = Math.max(mDrawnCount - 1, 0);
+        if (mDisplayPaint instanceof BrushPen) {
+            mStampCarry = ((BrushPen) mDisplayPaint).stamp(canvas, mPoints, from, mPointCount,
+                    mStampCarry);
         } else {
-            mPaint = new StandardPen(context);
-            mPaint.setColor(currentColor);
-            mPaint.setStrokeWidth(DensityUtils.dp2px(context, currentWidth));
+            if (mSegmentPath == null) {
+                mSegmentPath = new Path();
+            }
+            mSegmentPath.rewind();
+            mSegmentPath.moveTo(mPoints[from * 2], mPoints[from * 2 + 1]);
+            if (mPointCount - from == 1) {
+                // 单点也画出圆点
+                mSegmentPath.lineTo(mPoints[from * 2], mPoints[from * 2 + 1]);
+            }
+            for (int i = from + 1; i < mPointCount; i++) {
+                mSegmentPath.lineTo(mPoints[i * 2], mPoints[i * 2 + 1]);
+            }
+            canvas.drawPath(mSegmentPath, mDisplayPaint);
+        }
+        mDrawnCount = mPointCount;
+    }
+
+    /**
+     * 按画笔类型、颜色和宽度创建绘制画笔
+     *
+     * @param context 上下文
+     * @return 画笔
+     */
+    private BasePen createDisplayPaint(Context context) {
+        if (mCurrentType == PenType.ERASER) {
+            return new Eraser(context);
+        }
+        if (PenStyle.isBrush(mCurrentType)) {
+            BasePen brush = new BrushPen(context, mCurrentType);
+            brush.setColor(currentColor);
+            brush.setStrokeWidth(DensityUtils.dp2px(context, currentWidth));
+            return brush;
         }
-        canvas.drawPath(mPath, mPaint);
+        BasePen paint = mCurrentType == PenType.TRANSLUCENT_PEN
+                ? new TranslucentPen(context) : new StandardPen(context);
+        paint.setColor(currentColor);
+        paint.setStrokeWidth(DensityUtils.dp2px(context, currentWidth));
+        return paint;
     }
 
     /**
@@ -80,6 +311,7 @@ public class PointPath {
      */
     public void setCurrentPathType(int currentPathType) {
         mCurrentType = currentPathType;
+        mDisplayPaint = null;
     }
 
     /**
@@ -89,6 +321,7 @@ public class PointPath {
      */
     public void setCurrentWidth(float currentWidth) {
         this.currentWidth = currentWidth;
+        mDisplayPaint = null;
     }
 
     /**
@@ -98,5 +331,6 @@ public class PointPath {
      */
     public void setCurrentColor(int currentColor) {
         this.currentColor = currentColor;
+        mDisplayPaint = null;
     }
 }
@@ -0,0 +1,546 @@
+package tech.yangle.drawing;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.os.Handler;
+import android.os.SystemClock;
+
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import tech.yangle.drawing.core.Stroke;
+import tech.yangle.drawing.core.raster.PackedRegion;
+
+/**
+ * 分区存储的缓存画布
+ * <p>
+ * 画布按{@link #REGION_SIZE}切分为区域，每个区域单独保存：最近使用过的区域是一张ARGB_8888位图，
+ * 空闲超过一定时间的区域在后台线程压缩为{@link PackedRegion}，空白和单色区域只记录一个像素值。
+ * 合成到屏幕时已压缩的区域经同一张中转位图绘制，不会常驻；只有在其上书写时才解压为位图，
+ * 常驻内存只与最近书写过的区域数量有关。
+ * 由整张ARGB位图转来时，各区域先直接引用原位图，后台线程逐个区域读取原位图并压缩，主线程不复制整张画布；
+ * 空闲区域的位图同样直接交给后台线程读取，主线程不复制像素。后台线程只使用一个区域大小的中转缓冲。
+ * 像素以位图内存中的原始值压缩，解压后与压缩前逐位一致。只能在主线程使用
+ */
+class RegionInkBuffer implements InkBuffer {
+
+    /**
+     * 区域边长|px
+     */
+    static final int REGION_SIZE = 256;
+
+    private final int mWidth;
+    private final int mHeight;
+    private final int mColumns;
+    private final int mRows;
+    private final Region[] mRegions;
+    // 解压时的像素中转，按REGION_SIZE的行跨度存放，首次使用时分配
+    private int[] mPixels;
+    private IntBuffer mPixelBuffer;
+    private Bitmap mScratchBitmap;
+    // 单色区域以1x1位图放大绘制
+    private Bitmap mColorBitmap;
+    private final IntBuffer mColorBuffer = IntBuffer.allocate(1);
+    // 转换来源的整张位图，后台压缩期间只读，压缩完成后回收
+    private Bitmap mSource;
+    private final Paint mCopyPaint = new Paint();
+    private final Rect mClip = new Rect();
+    private final Rect mSrc = new Rect();
+    private final Rect mDst = new Rect();
+    private final List<Canvas> mCanvases = new ArrayList<>();
+    private boolean mReleased;
+
+    /**
+     * 空白画布
+     *
+     * @param width  画布宽度|px
+     * @param height 画布高度|px
+     */
+    RegionInkBuffer(int width, int height) {
+        mWidth = width;
+        mHeight = height;
+        mColumns = (width + REGION_SIZE - 1) / REGION_SIZE;
+        mRows = (height + REGION_SIZE - 1) / REGION_SIZE;
+        mRegions = new Region[mColumns * mRows];
+        for (int row = 0; row < mRows; row++) {
+            for (int column = 0; column < mColumns; column++) {
+                int left = column * REGION_SIZE;
+                int top = row * REGION_SIZE;
+                Region region = new Region(left, top, Math.min(left + REGION_SIZE, width),
+                        Math.min(top + REGION_SIZE, height));
+                region.packed = PackedRegion.uniform(region.width(), region.height(), 0);
+                mRegions[row * mColumns + column] = region;
+            }
+        }
+        mCopyPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC));
+    }
+
+    /**
+     * 接管整张ARGB位图并在后台压缩全部区域。主线程只切换引用，压缩完成前各区域从原位图绘制，
+     * 被书写的区域单独复制出来；调用方此后不能再写入或回收该位图
+     *
+     * @param source       ARGB_8888位图，尺寸即画布尺寸
+     * @param executor     后台线程
+     * @param handler      主线程Handler
+     * @param onCompressed 压缩完成的回调，在主线程执行
+     * @return 新画布
+     */
+    static RegionInkBuffer adopt(Bitmap source, Executor executor, Handler handler,
+                                 Runnable onCompressed) {
+        RegionInkBuffer buffer = new RegionInkBuffer(source.getWidth(), source.getHeight());
+        buffer.mSource = source;
+        for (Region region : buffer.mRegions) {
+            region.packed = null;
+            region.pending = true;
+        }
+        executor.execute(() -> {
+            // 主线程不再写入原位图，与主线程同时读取是安全的
+            Packer packer = new Packer();
+            PackedRegion[] packed = new PackedRegion[buffer.mRegions.length];
+            for (int i = 0; i < packed.length; i++) {
+                packed[i] = packer.pack(source, buffer.mRegions[i]);
+            }
+            packer.release();
+            handler.post(() -> {
+                for (int i = 0; i < packed.length; i++) {
+                    Region region = buffer.mRegions[i];
+                    if (region.pending) {
+                        region.pending = false;
+                        region.packed = packed[i];
+                    }
+                }
+                // 释放后也在这里回收，合成或转换可能仍在读取原位图
+                buffer.mSource = null;
+                source.recycle();
+                if (!buffer.mReleased) {
+                    onCompressed.run();
+                }
+            });
+        });
+        return buffer;
+    }
+
+    int getWidth() {
+        return mWidth;
+    }
+
+    int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * 合成到目标画布，只处理裁剪范围内的区域，已压缩的区域经中转位图绘制，不会因此常驻
+     *
+     * @param canvas  目标画布
+     * @param counter 统计写入的字节数，可为null
+     */
+    @Override
+    public void draw(Canvas canvas, BlitCounter counter) {
+        if (!canvas.getClipBounds(mClip)) {
+            return;
+        }
+        int left = Math.max(mClip.left, 0) / REGION_SIZE;
+        int top = Math.max(mClip.top, 0) / REGION_SIZE;
+        int right = (Math.min(mClip.right, mWidth) - 1) / REGION_SIZE;
+        int bottom = (Math.min(mClip.bottom, mHeight) - 1) / REGION_SIZE;
+        for (int row = top; row <= bottom; row++) {
+            for (int column = left; column <= right; column++) {
+                drawRegion(canvas, mRegions[row * mColumns + column], counter);
+            }
+        }
+    }
+
+    /**
+     * 获取与范围相交的区域的画布，已压缩的区域先解压为常驻位图；画布坐标已平移到画布坐标系。
+     * 调用方在书写结束后重新安排空闲压缩
+     *
+     * @param bounds 将要绘制的范围，含画笔宽度
+     * @param out    输出列表
+     */
+    void getCanvases(RectF bounds, List<Canvas> out) {
+        bounds.roundOut(mClip);
+        if (!mClip.intersect(0, 0, mWidth, mHeight)) {
+            return;
+        }
+        long now = SystemClock.uptimeMillis();
+        int left = mClip.left / REGION_SIZE;
+        int top = mClip.top / REGION_SIZE;
+        int right = (mClip.right - 1) / REGION_SIZE;
+        int bottom = (mClip.bottom - 1) / REGION_SIZE;
+        for (int row = top; row <= bottom; row++) {
+            for (int column = left; column <= right; column++) {
+                Region region = mRegions[row * mColumns + column];
+                if (region.bitmap == null) {
+                    restore(region);
+                }
+                region.lastUsed = now;
+                out.add(region.canvas);
+            }
+        }
+    }
+
+    /**
+     * 按已提交的笔迹绘制
+     *
+     * @param renderer 笔迹绘制器
+     * @param stroke   笔迹
+     * @param bounds   临时矩形
+     * @return false表示无法分区绘制
+     */
+    boolean drawStroke(StrokeRenderer renderer, Stroke stroke, RectF bounds) {
+        if (stroke.getPointCount() == 0) {
+            return true;
+        }
+        if (stroke.isFill()) {
+            // 填充需要读取整张画布的颜色
+            return false;
+        }
+        float pad = stroke.getWidth() / 2 + 1;
+        bounds.set(stroke.getLeft() - pad, stroke.getTop() - pad, stroke.getRight() + pad,
+                stroke.getBottom() + pad);
+        getCanvases(bounds, mCanvases);
+        for (int i = 0; i < mCanvases.size(); i++) {
+            renderer.draw(mCanvases.get(i), stroke);
+        }
+        mCanvases.clear();
+        return true;
+    }
+
+    /**
+     * 合成为ARGB_8888位图，已压缩的区域不会因此解压为常驻位图
+     *
+     * @return 新位图
+     */
+    Bitmap toArgb() {
+        Bitmap bitmap = Bitmap.createBitmap(mWidth, mHeight, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        for (Region region : mRegions) {
+            drawRegion(canvas, region, null);
+        }
+        return bitmap;
+    }
+
+    /**
+     * 在后台线程压缩空闲的区域，完成后在主线程替换位图。
+     * 空闲区域的位图交给后台线程只读，主线程照常从中绘制；压缩期间被书写的区域另行复制出位图，保持不变
+     *
+     * @param idleMillis   区域最近一次使用后至少空闲的时间|ms
+     * @param executor     后台线程
+     * @param handler      主线程Handler
+     * @param onCompressed 替换完成的回调，在主线程执行
+     * @return 仍驻留的区域中最早空闲到期的剩余时间|ms，没有时为-1
+     */
+    long compressIdle(long idleMillis, Executor executor, Handler handler,
+                      Runnable onCompressed) {
+        long now = SystemClock.uptimeMillis();
+        long next = -1;
+        List<Region> regions = new ArrayList<>();
+        List<Bitmap> bitmaps = new ArrayList<>();
+        for (Region region : mRegions) {
+            if (region.bitmap == null) {
+                // 已压缩、正在压缩或仍引用原位图
+                continue;
+            }
+            long remaining = region.lastUsed + idleMillis - now;
+            if (remaining > 0) {
+                next = next < 0 ? remaining : Math.min(next, remaining);
+                continue;
+            }
+            // 只交出引用，此后主线程不再写入该位图，由压缩完成时回收
+            regions.add(region);
+            bitmaps.add(region.bitmap);
+            region.detached = region.bitmap;
+            region.bitmap = null;
+            region.canvas = null;
+        }
+        if (regions.isEmpty()) {
+            return next;
+        }
+        executor.execute(() -> {
+            Packer packer = new Packer();
+            PackedRegion[] packed = new PackedRegion[bitmaps.size()];
+            for (int i = 0; i < packed.length; i++) {
+                packed[i] = packer.pack(bitmaps.get(i));
+            }
+            handler.post(() -> {
+                for (int i = 0; i < packed.length; i++) {
+                    Region region = regions.get(i);
+                    Bitmap bitmap = bitmaps.get(i);
+                    // 压缩期间被书写或清空的区域已不再引用该位图，结果丢弃
+                    if (region.detached == bitmap) {
+                        region.detached = null;
+                        if (!mReleased) {
+                            region.packed = packed[i];
+                        }
+                    }
+                    bitmap.recycle();
+                }
+                if (!mReleased) {
+                    onCompressed.run();
+                }
+            });
+        });
+        return next;
+    }
+
+    /**
+     * 清空画布，全部区域变为空白
+     */
+    void clear() {
+        for (Region region : mRegions) {
+            region.pending = false;
+            // 正在压缩的位图由压缩完成时回收
+            region.detached = null;
+            if (region.bitmap != null) {
+                region.bitmap.recycle();
+                region.bitmap = null;
+                region.canvas = null;
+            }
+            if (region.packed == null || !region.packed.isUniform()
+                    || region.packed.getColor() != 0) {
+                region.packed = PackedRegion.uniform(region.width(), region.height(), 0);
+            }
+        }
+    }
+
+    /**
+     * 驻留的位图和压缩数据占用的内存
+     *
+     * @return 字节数
+     */
+    long getByteCount() {
+        long bytes = 0;
+        for (Region region : mRegions) {
+            if (region.bitmap != null) {
+                bytes += region.bitmap.getAllocationByteCount();
+            } else if (region.detached != null) {
+                bytes += region.detached.getAllocationByteCount();
+            } else if (region.packed != null) {
+                bytes += region.packed.getByteCount();
+            }
+        }
+        if (mSource != null) {
+            bytes += mSource.getAllocationByteCount();
+        }
+        if (mPixels != null) {
+            bytes += mPixels.length * 4L;
+        }
+        if (mScratchBitmap != null) {
+            bytes += mScratchBitmap.getAllocationByteCount();
+        }
+        return bytes;
+    }
+
+    /**
+     * 释放全部位图，进行中的压缩结果被丢弃，原位图和正在压缩的位图在后台压缩结束后回收
+     */
+    void release() {
+        mReleased = true;
+        for (Region region : mRegions) {
+            if (region.bitmap != null) {
+                region.bitmap.recycle();
+                region.bitmap = null;
+                region.canvas = null;
+            }
+        }
+        if (mColorBitmap != null) {
+            mColorBitmap.recycle();
+            mColorBitmap = null;
+        }
+        if (mScratchBitmap != null) {
+            mScratchBitmap.recycle();
+            mScratchBitmap = null;
+        }
+        mPixels = null;
+        mPixelBuffer = null;
+    }
+
+    /**
+     * 绘制一个区域：常驻或正在压缩的直接绘制，仍引用原位图的绘制原位图的对应部分，
+     * 已压缩的按REGION_SIZE的行跨度解压到中转位图，再绘制其中区域大小的部分。
+     * 画板以软件方式绘制，中转位图画出后即可复用
+     */
+    private void drawRegion(Canvas canvas, Region region, BlitCounter counter) {
+        if (counter != null && (region.packed == null || !region.packed.isUniform()
+                || region.packed.getColor() != 0)) {
+            // 完全透明的区域不绘制
+            counter.add(region.left, region.top, region.right, region.bottom);
+        }
+        Bitmap bitmap = region.bitmap != null ? region.bitmap : region.detached;
+        if (bitmap != null) {
+            canvas.drawBitmap(bitmap, region.left, region.top, null);
+            return;
+        }
+        mDst.set(region.left, region.top, region.right, region.bottom);
+        if (region.pending) {
+            canvas.drawBitmap(mSource, mDst, mDst, null);
+            return;
+        }
+        if (region.packed.isUniform()) {
+            drawUniform(canvas, region);
+            return;
+        }
+        obtainPixels();
+        region.packed.unpack(mPixels, 0, REGION_SIZE);
+        if (mScratchBitmap == null) {
+            mScratchBitmap = Bitmap.createBitmap(REGION_SIZE, REGION_SIZE,
+                    Bitmap.Config.ARGB_8888);
+        }
+        mPixelBuffer.rewind();
+        mScratchBitmap.copyPixelsFromBuffer(mPixelBuffer);
+        mSrc.set(0, 0, region.width(), region.height());
+        canvas.drawBitmap(mScratchBitmap, mSrc, mDst, null);
+    }
+
+    /**
+     * 解压为常驻位图，正在压缩或仍引用原位图的区域复制相应的位图
+     */
+    private void restore(Region region) {
+        Bitmap bitmap = Bitmap.createBitmap(region.width(), region.height(),
+                Bitmap.Config.ARGB_8888);
+        PackedRegion packed = region.packed;
+        if (region.detached != null) {
+            // 后台线程可能仍在读取，复制一份，原位图由压缩完成时回收
+            new Canvas(bitmap).drawBitmap(region.detached, 0, 0, mCopyPaint);
+            region.detached = null;
+        } else if (region.pending) {
+            mSrc.set(region.left, region.top, region.right, region.bottom);
+            mDst.set(0, 0, region.width(), region.height());
+            new Canvas(bitmap).drawBitmap(mSource, mSrc, mDst, mCopyPaint);
+            region.pending = false;
+        } else if (!packed.isUniform() || packed.getColor() != 0) {
+            // 新位图已是透明的，其他内容按区域宽度的行跨度解压后整块复制
+            obtainPixels();
+            packed.unpack(mPixels, 0, region.width());
+            mPixelBuffer.rewind();
+            bitmap.copyPixelsFromBuffer(mPixelBuffer);
+        }
+        region.bitmap = bitmap;
+        region.canvas = new Canvas(bitmap);
+        region.canvas.translate(-region.left, -region.top);
+        region.packed = null;
+        region.lastUsed = SystemClock.uptimeMillis();
+    }
+
+    /**
+     * 绘制单色区域，透明区域不绘制
+     */
+    private void drawUniform(Canvas canvas, Region region) {
+        int color = region.packed.getColor();
+        if (color == 0) {
+            return;
+        }
+        if (mColorBitmap == null) {
+            mColorBitmap = Bitmap.createBitmap(1, 1, Bitmap.Config.ARGB_8888);
+        }
+        // 像素值是位图内存中的原始值，写回1x1位图后按最近邻放大，颜色不经过换算
+        mColorBuffer.put(0, color);
+        mColorBuffer.rewind();
+        mColorBitmap.copyPixelsFromBuffer(mColorBuffer);
+        mDst.set(region.left, region.top, region.right, region.bottom);
+        canvas.drawBitmap(mColorBitmap, null, mDst, null);
+    }
+
+    private void obtainPixels() {
+        if (mPixels == null) {
+            mPixels = new int[REGION_SIZE * REGION_SIZE];
+            mPixelBuffer = IntBuffer.wrap(mPixels);
+        }
+    }
+
+    /**
+     * 后台线程的压缩器，经一个区域大小的中转缓冲读取像素，只在创建它的后台线程使用
+     */
+    private static final class Packer {
+
+        private final int[] mPixels = new int[REGION_SIZE * REGION_SIZE];
+        private final IntBuffer mPixelBuffer = IntBuffer.wrap(mPixels);
+        private final Paint mCopyPaint = new Paint();
+        private final Rect mSrc = new Rect();
+        private final Rect mDst = new Rect();
+        private Bitmap mScratchBitmap;
+        private Canvas mScratchCanvas;
+
+        Packer() {
+            mCopyPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC));
+        }
+
+        /**
+         * 压缩一张区域位图
+         */
+        PackedRegion pack(Bitmap bitmap) {
+            mPixelBuffer.rewind();
+            bitmap.copyPixelsToBuffer(mPixelBuffer);
+            return PackedRegion.pack(mPixels, 0, bitmap.getWidth(), bitmap.getWidth(),
+                    bitmap.getHeight());
+        }
+
+        /**
+         * 压缩整张原位图中的一个区域，先按原始像素值复制到中转位图
+         */
+        PackedRegion pack(Bitmap source, Region region) {
+            if (mScratchBitmap == null) {
+                mScratchBitmap = Bitmap.createBitmap(REGION_SIZE, REGION_SIZE,
+                        Bitmap.Config.ARGB_8888);
+                mScratchCanvas = new Canvas(mScratchBitmap);
+            }
+            mSrc.set(region.left, region.top, region.right, region.bottom);
+            mDst.set(0, 0, region.width(), region.height());
+            mScratchCanvas.drawBitmap(source, mSrc, mDst, mCopyPaint);
+            mPixelBuffer.rewind();
+            mScratchBitmap.copyPixelsToBuffer(mPixelBuffer);
+            return PackedRegion.pack(mPixels, 0, REGION_SIZE, region.width(), region.height());
+        }
+
+        void release() {
+            if (mScratchBitmap != null) {
+                mScratchBitmap.recycle();
+                mScratchBitmap = null;
+            }
+        }
+    }
+
+    /**
+     * 一个区域
+     */
+    private static class Region {
+
+        final int left;
+        final int top;
+        final int right;
+        final int bottom;
+        // 驻留时的位图和画布，压缩后为null
+        Bitmap bitmap;
+        Canvas canvas;
+        // 交给后台线程压缩的位图，只读，压缩完成或被书写后为null
+        Bitmap detached;
+        // 压缩后的像素，驻留时或仍引用原位图时为null
+        PackedRegion packed;
+        // 仍引用转换来源的原位图，后台压缩完成前为true
+        boolean pending;
+        // 最近一次书写或解压的时间|ms
+        long lastUsed;
+
+        Region(int left, int top, int right, int bottom) {
+            this.left = left;
+            this.top = top;
+            this.right = right;
+            this.bottom = bottom;
+        }
+
+        int width() {
+            return right - left;
+        }
+
+        int height() {
+            return bottom - top;
+        }
+    }
+}
\ No newline at end of file
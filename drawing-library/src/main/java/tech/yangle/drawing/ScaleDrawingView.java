@@ -3,10 +3,14 @@ package tech.yangle.drawing;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.PointF;
+import android.view.Choreographer;
 import android.view.MotionEvent;
 import android.view.ViewGroup;
 import android.widget.RelativeLayout;
 
+import tech.yangle.drawing.core.smooth.SmoothingParams;
+import tech.yangle.drawing.metrics.DrawingMetrics;
+
 /**
  * 支持可缩放的绘画板
  * <p>
@@ -23,7 +27,19 @@ public class ScaleDrawingView extends RelativeLayout {
     // 是否两个触控点接触屏幕
     private boolean isTranslate;
     private float mOldDistance;
-    private PointF mOldPointer;
+    // 双指中点，缩放过程中复用
+    private final PointF mOldPointer = new PointF();
+    private final PointF mNewPointer = new PointF();
+    private final PointF mBorderOffset = new PointF();
+    // 尚未应用的缩放平移，每帧合并应用一次
+    private float mPendingScale = 1;
+    private float mPendingDx;
+    private float mPendingDy;
+    private boolean mGesturePosted;
+    private final Choreographer.FrameCallback mGestureFrame = frameTimeNanos -> {
+        mGesturePosted = false;
+        applyGesture();
+    };
 
     public ScaleDrawingView(Context context) {
         super(context);
@@ -36,6 +52,10 @@ public class ScaleDrawingView extends RelativeLayout {
 
     @Override
     public boolean dispatchTouchEvent(MotionEvent ev) {
+        if (drawingView.isMultiPointerEnabled()) {
+            // 多指书写时每个手指都是一条笔迹，不再双指缩放
+            return drawingView.onTouchEvent(ev);
+        }
         switch (ev.getAction() & MotionEvent.ACTION_MASK) {
             case MotionEvent.ACTION_DOWN:
                 return drawingView.onTouchEvent(ev);
@@ -43,7 +63,7 @@ public class ScaleDrawingView extends RelativeLayout {
             case MotionEvent.ACTION_POINTER_DOWN:
                 isTranslate = true;
                 mOldDistance = spacingOfTwoFinger(ev);
-                mOldPointer = middleOfTwoFinger(ev);
+                middleOfTwoFinger(ev, mOldPointer);
                 break;
 
             case MotionEvent.ACTION_MOVE:
@@ -53,16 +73,19 @@ public class ScaleDrawingView extends RelativeLayout {
                 if (ev.getPointerCount() == 2) {
                     float newDistance = spacingOfTwoFinger(ev);
                     float scaleFactor = newDistance / mOldDistance;
-                    scaleFactor = checkingScale(drawingView.getScaleX(), scaleFactor);
-                    // 设置缩放比例
-                    drawingView.setScaleX(drawingView.getScaleY() * scaleFactor);
-                    drawingView.setScaleY(drawingView.getScaleY() * scaleFactor);
+                    scaleFactor = checkingScale(drawingView.getScaleX() * mPendingScale,
+                            scaleFactor);
+                    // 累计缩放比例和平移，下一帧统一设置
+                    mPendingScale *= scaleFactor;
                     mOldDistance = newDistance;
-                    PointF newPointer = middleOfTwoFinger(ev);
-                    drawingView.setX(drawingView.getX() + newPointer.x - mOldPointer.x);
-                    drawingView.setY(drawingView.getY() + newPointer.y - mOldPointer.y);
-                    mOldPointer = newPointer;
-                    checkingBorder();
+                    middleOfTwoFinger(ev, mNewPointer);
+                    mPendingDx += mNewPointer.x - mOldPointer.x;
+                    mPendingDy += mNewPointer.y - mOldPointer.y;
+                    mOldPointer.set(mNewPointer);
+                    if (!mGesturePosted) {
+                        mGesturePosted = true;
+                        Choreographer.getInstance().postFrameCallback(mGestureFrame);
+                    }
                 }
 
             case MotionEvent.ACTION_POINTER_UP:
@@ -72,6 +95,12 @@ public class ScaleDrawingView extends RelativeLayout {
                 if (!isTranslate) {
                     return drawingView.onTouchEvent(ev);
                 }
+                // 先应用尚未到帧的缩放平移
+                if (mGesturePosted) {
+                    mGesturePosted = false;
+                    Choreographer.getInstance().removeFrameCallback(mGestureFrame);
+                    applyGesture();
+                }
                 // 获取当前缩放比例
                 drawingView.getMatrix().getValues(mMatrixValues);
                 drawingView.setScaleAndOffset(drawingView.getScaleX(), mMatrixValues[2],
@@ -104,6 +133,21 @@ public class ScaleDrawingView extends RelativeLayout {
         return scaleFactor;
     }
 
+    /**
+     * 应用累计的缩放平移，每帧只设置一次画板的缩放和位置
+     */
+    private void applyGesture() {
+        // 设置缩放比例
+        drawingView.setScaleX(drawingView.getScaleY() * mPendingScale);
+        drawingView.setScaleY(drawingView.getScaleY() * mPendingScale);
+        drawingView.setX(drawingView.getX() + mPendingDx);
+        drawingView.setY(drawingView.getY() + mPendingDy);
+        mPendingScale = 1;
+        mPendingDx = 0;
+        mPendingDy = 0;
+        checkingBorder();
+    }
+
     private void checkingBorder() {
         PointF offset = offsetBorder();
         drawingView.setX(drawingView.getX() + offset.x);
@@ -115,7 +159,8 @@ public class ScaleDrawingView extends RelativeLayout {
     }
 
     private PointF offsetBorder() {
-        PointF offset = new PointF(0, 0);
+        PointF offset = mBorderOffset;
+        offset.set(0, 0);
         if (drawingView.getScaleX() > 1) {
             drawingView.getMatrix().getValues(mMatrixValues);
             if (mMatrixValues[2] > -(mBorderX * (drawingView.getScaleX() - 1))) {
@@ -161,9 +206,19 @@ public class ScaleDrawingView extends RelativeLayout {
      * @return 坐标点
      */
     public PointF middleOfTwoFinger(MotionEvent event) {
-        float mx = (event.getX(0) + event.getX(1)) / 2;
-        float my = (event.getY(0) + event.getY(1)) / 2;
-        return new PointF(mx, my);
+        return middleOfTwoFinger(event, new PointF());
+    }
+
+    /**
+     * 获取两个触点中间的坐标点，写入已有对象，缩放过程中不产生新对象
+     *
+     * @param event 触控事件
+     * @param out   输出坐标点
+     * @return out
+     */
+    private PointF middleOfTwoFinger(MotionEvent event, PointF out) {
+        out.set((event.getX(0) + event.getX(1)) / 2, (event.getY(0) + event.getY(1)) / 2);
+        return out;
     }
 
     /**
@@ -208,4 +263,143 @@ public class ScaleDrawingView extends RelativeLayout {
     public void setBackgroundPic(Bitmap bitmap) {
         drawingView.setBackgroundPic(bitmap);
     }
-}
+
+    /**
+     * 设置渲染与输入统计
+     *
+     * @param metrics 统计对象，传null关闭统计
+     */
+    public void setMetrics(DrawingMetrics metrics) {
+        drawingView.setMetrics(metrics);
+    }
+
+    /**
+     * 设置预览比例
+     *
+     * @param scale 预览相对画布的比例，0关闭预览
+     */
+    public void setPreviewScale(float scale) {
+        drawingView.setPreviewScale(scale);
+    }
+
+    /**
+     * 获取低分辨率预览
+     *
+     * @return 预览位图，未开启预览时为null
+     */
+    public Bitmap getPreviewBitmap() {
+        return drawingView.getPreviewBitmap();
+    }
+
+    /**
+     * 设置是否使用紧凑存储
+     *
+     * @param enabled true: 紧凑存储 false: ARGB_8888存储
+     */
+    public void setCompactBufferEnabled(boolean enabled) {
+        drawingView.setCompactBufferEnabled(enabled);
+    }
+
+    /**
+     * 设置是否分区压缩存储
+     *
+     * @param enabled true: 分区压缩存储 false: ARGB_8888存储
+     */
+    public void setRegionCompressionEnabled(boolean enabled) {
+        drawingView.setRegionCompressionEnabled(enabled);
+    }
+
+    /**
+     * 设置画笔的输入平滑参数
+     *
+     * @param penType {@link PenType}
+     * @param params  平滑参数，null恢复默认参数
+     */
+    public void setSmoothingParams(int penType, SmoothingParams params) {
+        drawingView.setSmoothingParams(penType, params);
+    }
+
+    /**
+     * 设置是否启用输入平滑
+     *
+     * @param enabled true: 启用（默认） false: 关闭
+     */
+    public void setSmoothingEnabled(boolean enabled) {
+        drawingView.setSmoothingEnabled(enabled);
+    }
+
+    /**
+     * 设置填充容差
+     *
+     * @param tolerance 0..255
+     */
+    public void setFillTolerance(int tolerance) {
+        drawingView.setFillTolerance(tolerance);
+    }
+
+    /**
+     * 设置每帧处理输入的时间预算
+     *
+     * @param budgetNanos 时间预算|ns
+     */
+    public void setInputFrameBudget(long budgetNanos) {
+        drawingView.setInputFrameBudget(budgetNanos);
+    }
+
+    /**
+     * 在最上方添加图层
+     *
+     * @return 图层编号
+     */
+    public int addLayer() {
+        return drawingView.addLayer();
+    }
+
+    /**
+     * 切换当前图层
+     *
+     * @param layerId 图层编号
+     */
+    public void setActiveLayer(int layerId) {
+        drawingView.setActiveLayer(layerId);
+    }
+
+    /**
+     * 显示或隐藏图层
+     *
+     * @param layerId 图层编号
+     * @param visible true: 显示
+     */
+    public void setLayerVisible(int layerId, boolean visible) {
+        drawingView.setLayerVisible(layerId, visible);
+    }
+
+    /**
+     * 设置图层不透明度
+     *
+     * @param layerId 图层编号
+     * @param opacity 不透明度，0..1
+     */
+    public void setLayerOpacity(int layerId, float opacity) {
+        drawingView.setLayerOpacity(layerId, opacity);
+    }
+
+    /**
+     * 为图层指定画笔
+     *
+     * @param layerId 图层编号
+     * @param penType {@link PenType}
+     */
+    public void setLayerPen(int layerId, int penType) {
+        drawingView.setLayerPen(layerId, penType);
+    }
+
+    /**
+     * 开启多指书写，开启后不再双指缩放
+     *
+     * @param enabled true: 多指书写
+     */
+    public void setMultiPointerEnabled(boolean enabled) {
+        drawingView.setMultiPointerEnabled(enabled);
+    }
+}
\ No newline at end of file
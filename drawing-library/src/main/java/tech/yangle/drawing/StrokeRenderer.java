@@ -0,0 +1,164 @@
+package tech.yangle.drawing;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
+import android.graphics.Rect;
+
+import java.util.List;
+
+import tech.yangle.drawing.core.BrushTip;
+import tech.yangle.drawing.core.DrawingDocument;
+import tech.yangle.drawing.core.Stroke;
+import tech.yangle.drawing.pen.BrushStamper;
+import tech.yangle.drawing.pen.StampAtlas;
+
+/**
+ * 将与平台无关的笔迹绘制到Canvas上，画笔属性与pen包中的画笔一致
+ * <p>
+ * Path与Paint在多次绘制间复用；非线程安全，每个线程使用各自的实例。
+ * 填充需要读写位图像素，只在传入画布对应的位图时绘制。
+ * 总是按原始笔迹绘制；缩小时的细节级别只用于服务端的StrokeRasterizer，
+ * 画板的预览从缓存画布缩放，不经过这里
+ */
+public class StrokeRenderer {
+
+    private final Path mPath = new Path();
+    private final Paint mPaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG);
+    private final PorterDuffXfermode mClearMode = new PorterDuffXfermode(PorterDuff.Mode.CLEAR);
+    private final Rect mFillRect = new Rect();
+    private BucketFill mBucketFill;
+    // 纹理笔刷按需创建
+    private BrushStamper mStamper;
+
+    public StrokeRenderer() {
+        // 与BasePen一致：描边、圆角、圆头
+        mPaint.setStyle(Paint.Style.STROKE);
+        mPaint.setStrokeJoin(Paint.Join.ROUND);
+        mPaint.setStrokeCap(Paint.Cap.ROUND);
+    }
+
+    /**
+     * 绘制一条笔迹
+     *
+     * @param canvas 画布
+     * @param stroke 笔迹
+     */
+    public void draw(Canvas canvas, Stroke stroke) {
+        draw(canvas, stroke, stroke.getPointCount());
+    }
+
+    /**
+     * 绘制笔迹的前若干个点，用于回放书写过程
+     *
+     * @param canvas 画布
+     * @param stroke 笔迹
+     * @param count  点数，不超过笔迹的点数
+     */
+    public void draw(Canvas canvas, Stroke stroke, int count) {
+        if (count == 0 || stroke.isFill()) {
+            return;
+        }
+        BrushTip tip = BrushTip.forPenType(stroke.getPenType());
+        if (tip != null) {
+            if (mStamper == null) {
+                mStamper = new BrushStamper();
+            }
+            mStamper.set(tip, stroke.getColor(), stroke.getWidth());
+            mStamper.stamp(canvas, stroke.getPoints(), 0, count, 0);
+            return;
+        }
+        float[] points = stroke.getPoints();
+        mPath.rewind();
+        mPath.moveTo(points[0], points[1]);
+        if (count == 1) {
+            // 单点也画出圆点
+            mPath.lineTo(points[0], points[1]);
+        }
+        for (int i = 1; i < count; i++) {
+            // PointPath以上一个点为控制点的二次曲线即为直线段
+            mPath.lineTo(points[i * 2], points[i * 2 + 1]);
+        }
+        mPaint.setStrokeWidth(stroke.getWidth());
+        if (stroke.isEraser()) {
+            mPaint.setColor(0);
+            mPaint.setXfermode(mClearMode);
+        } else {
+            mPaint.setColor(stroke.getColor());
+            mPaint.setXfermode(null);
+        }
+        canvas.drawPath(mPath, mPaint);
+    }
+
+    /**
+     * 绘制一条笔迹，包括填充
+     *
+     * @param canvas 画布
+     * @param bitmap 画布对应的位图，为null时跳过填充
+     * @param stroke 笔迹
+     * @return 填充时为被修改的区域，否则为null
+     */
+    public Rect draw(Canvas canvas, Bitmap bitmap, Stroke stroke) {
+        if (!stroke.isFill()) {
+            draw(canvas, stroke);
+            return null;
+        }
+        if (bitmap == null) {
+            return null;
+        }
+        if (mBucketFill == null) {
+            mBucketFill = new BucketFill();
+        }
+        return mBucketFill.fill(bitmap, stroke, mFillRect) ? mFillRect : null;
+    }
+
+    /**
+     * 按顺序绘制多条笔迹，包括填充
+     *
+     * @param canvas  画布
+     * @param bitmap  画布对应的位图，为null时跳过填充
+     * @param strokes 笔迹
+     */
+    public void draw(Canvas canvas, Bitmap bitmap, List<Stroke> strokes) {
+        for (int i = 0, size = strokes.size(); i < size; i++) {
+            draw(canvas, bitmap, strokes.get(i));
+        }
+    }
+
+    /**
+     * 释放填充使用的像素副本和笔尖图集
+     */
+    public void trimMemory() {
+        if (mBucketFill != null) {
+            mBucketFill.release();
+        }
+        StampAtlas.getInstance().clear();
+    }
+
+    /**
+     * 按顺序绘制多条笔迹
+     *
+     * @param canvas  画布
+     * @param strokes 笔迹
+     */
+    public void draw(Canvas canvas, List<Stroke> strokes) {
+        for (int i = 0, size = strokes.size(); i < size; i++) {
+            draw(canvas, strokes.get(i));
+        }
+    }
+
+    /**
+     * 绘制文档中的全部笔迹
+     *
+     * @param canvas   画布
+     * @param document 文档
+     */
+    public void draw(Canvas canvas, DrawingDocument document) {
+        for (int i = 0; i < document.getStrokeCount(); i++) {
+            draw(canvas, document.getStroke(i));
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package tech.yangle.drawing.autosave;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import tech.yangle.drawing.DrawingView;
+import tech.yangle.drawing.core.DrawingDocument;
+import tech.yangle.drawing.core.Stroke;
+import tech.yangle.drawing.core.io.StrokeJournal;
+
+/**
+ * 画板自动保存
+ * <p>
+ * 每条笔迹提交时追加到内存映射的笔迹日志，应用崩溃或被杀后重新启动即可恢复。
+ * 打开日志、追加、压缩和定期刷盘都在单独的IO线程上进行，主线程只负责派发。
+ * <p>
+ * 所有公开方法都应在主线程调用
+ */
+public class DrawingAutosave implements DrawingView.OnDocumentChangeListener {
+
+    private static final String TAG = "DrawingAutosave";
+    // 定期刷盘间隔|ms
+    private static final long SYNC_INTERVAL = 10_000;
+    // 清空后失效字节超过该值时压缩日志|byte
+    private static final int COMPACT_THRESHOLD = 64 * 1024;
+    // 过时记录达到该数量且不少于现存笔迹数时，把日志重写为当前文档的快照
+    private static final int COMPACT_RECORDS = 256;
+
+    private final DrawingView mView;
+    private final File mFile;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final ScheduledExecutorService mIoExecutor = Executors.newSingleThreadScheduledExecutor(
+            runnable -> new Thread(runnable, "DrawingAutosave-io"));
+    private ScheduledFuture<?> mSyncFuture;
+    // 仅在IO线程使用
+    private StrokeJournal mJournal;
+    // 日志中恢复出的笔迹数，仅在IO线程使用
+    private int mRecoveredCount;
+    // 恢复完成前画布被清除，恢复出的笔迹已失效
+    private boolean mClearedBeforeRecovery;
+    private boolean mRecovered;
+    private boolean mStopped;
+
+    /**
+     * @param view 画板
+     * @param file 日志文件
+     */
+    public DrawingAutosave(DrawingView view, File file) {
+        mView = view;
+        mFile = file;
+    }
+
+    /**
+     * 开始自动保存，并在后台恢复日志中的笔迹，恢复完成后载入画板。
+     * 恢复期间新画的笔迹保留在恢复的笔迹之上
+     */
+    public void start() {
+        mView.addOnDocumentChangeListener(this);
+        final int width = mView.getWidth();
+        final int height = mView.getHeight();
+        mIoExecutor.execute(() -> {
+            try {
+                mJournal = StrokeJournal.open(mFile, width, height);
+            } catch (IOException e) {
+                Log.w(TAG, "[start] cannot open journal " + mFile, e);
+                return;
+            }
+            final DrawingDocument recovered = mJournal.getRecoveredDocument();
+            mRecoveredCount = recovered.getStrokeCount();
+            mMainHandler.post(() -> onRecovered(recovered));
+        });
+        mSyncFuture = mIoExecutor.scheduleWithFixedDelay(() -> {
+            if (mJournal != null) {
+                mJournal.sync();
+            }
+        }, SYNC_INTERVAL, SYNC_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 停止自动保存，刷盘后关闭日志，日志文件保留
+     */
+    public void stop() {
+        if (mStopped) {
+            return;
+        }
+        mStopped = true;
+        mView.removeOnDocumentChangeListener(this);
+        mMainHandler.removeCallbacksAndMessages(null);
+        if (mSyncFuture != null) {
+            mSyncFuture.cancel(false);
+        }
+        mIoExecutor.execute(this::closeJournal);
+        mIoExecutor.shutdown();
+    }
+
+    /**
+     * 停止自动保存并删除日志文件，如用户主动保存或放弃后
+     */
+    public void discard() {
+        if (!mStopped) {
+            mStopped = true;
+            mView.removeOnDocumentChangeListener(this);
+            mMainHandler.removeCallbacksAndMessages(null);
+            if (mSyncFuture != null) {
+                mSyncFuture.cancel(false);
+            }
+        }
+        if (mIoExecutor.isShutdown()) {
+            // 已停止，关闭任务排在前面
+            new Thread(this::deleteJournal, "DrawingAutosave-discard").start();
+            return;
+        }
+        mIoExecutor.execute(() -> {
+            closeJournal();
+            deleteJournal();
+        });
+        mIoExecutor.shutdown();
+    }
+
+    /**
+     * 日志是否已恢复并载入画板
+     *
+     * @return true:已恢复
+     */
+    public boolean isRecovered() {
+        return mRecovered;
+    }
+
+    @Override
+    public void onStrokeAdded(final Stroke stroke) {
+        mIoExecutor.execute(() -> {
+            if (mJournal == null) {
+                return;
+            }
+            try {
+                mJournal.appendStroke(stroke);
+                compactIfNeeded();
+            } catch (IOException e) {
+                Log.w(TAG, "[onStrokeAdded] append failed", e);
+                closeJournal();
+            }
+        });
+    }
+
+    @Override
+    public void onCleared() {
+        if (!mRecovered) {
+            mClearedBeforeRecovery = true;
+        }
+        mIoExecutor.execute(() -> {
+            if (mJournal == null) {
+                return;
+            }
+            try {
+                mJournal.appendClear();
+                compactIfNeeded();
+            } catch (IOException e) {
+                Log.w(TAG, "[onCleared] append failed", e);
+                closeJournal();
+            }
+        });
+    }
+
+    @Override
+    public void onStrokesTransformed(int[] indices, Stroke[] previous, final float scale,
+                                     final float dx, final float dy) {
+        // 恢复完成前画板上只有新画的笔迹，日志中它们排在恢复的笔迹之后
+        final boolean beforeRecovery = !mRecovered && !mClearedBeforeRecovery;
+        final int[] targets = indices.clone();
+        mIoExecutor.execute(() -> {
+            if (mJournal == null) {
+                return;
+            }
+            if (beforeRecovery) {
+                for (int i = 0; i < targets.length; i++) {
+                    targets[i] += mRecoveredCount;
+                }
+            }
+            try {
+                mJournal.appendTransform(targets, scale, dx, dy);
+                compactIfNeeded();
+            } catch (IOException e) {
+                Log.w(TAG, "[onStrokesTransformed] append failed", e);
+                closeJournal();
+            }
+        });
+    }
+
+    /**
+     * 主线程合并恢复的笔迹：恢复的笔迹在下，恢复期间新画的笔迹在上。
+     * 新画的笔迹已排队写入日志，位于恢复的记录之后，因此日志与画板保持一致
+     *
+     * @param recovered 恢复的笔迹
+     */
+    private void onRecovered(DrawingDocument recovered) {
+        if (mStopped) {
+            return;
+        }
+        mRecovered = true;
+        if (mClearedBeforeRecovery || recovered.getStrokeCount() == 0) {
+            return;
+        }
+        DrawingDocument current = mView.getDocument();
+        for (int i = 0; i < current.getStrokeCount(); i++) {
+            recovered.addStroke(current.getStroke(i));
+        }
+        mView.loadDocument(recovered);
+    }
+
+    /**
+     * IO线程压缩日志：清空留下的失效记录过多，或过时记录使日志大致超过当前内容的两倍时，
+     * 重写为当前文档的快照，避免恢复时重放大量变换
+     *
+     * @throws IOException 写入失败
+     */
+    private void compactIfNeeded() throws IOException {
+        int obsolete = mJournal.getObsoleteRecordCount();
+        if (mJournal.getDeadBytes() > COMPACT_THRESHOLD
+                || obsolete >= COMPACT_RECORDS && obsolete >= mJournal.getLiveStrokeCount()) {
+            mJournal.compact();
+        }
+    }
+
+    /**
+     * IO线程关闭日志
+     */
+    private void closeJournal() {
+        if (mJournal == null) {
+            return;
+        }
+        try {
+            mJournal.sync();
+            mJournal.close();
+        } catch (IOException e) {
+            Log.w(TAG, "[closeJournal] close failed", e);
+        }
+        mJournal = null;
+    }
+
+    /**
+     * 删除日志文件
+     */
+    private void deleteJournal() {
+        if (mFile.exists() && !mFile.delete()) {
+            Log.w(TAG, "[deleteJournal] cannot delete " + mFile);
+        }
+    }
+}
\ No newline at end of file
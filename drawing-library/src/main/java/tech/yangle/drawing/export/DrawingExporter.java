@@ -0,0 +1,195 @@
+package tech.yangle.drawing.export;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+import tech.yangle.drawing.DrawingLayer;
+import tech.yangle.drawing.DrawingView;
+import tech.yangle.drawing.core.DrawingDocument;
+import tech.yangle.drawing.core.raster.PixelUtils;
+import tech.yangle.drawing.core.raster.SoftwareRasterizer;
+
+/**
+ * 高分辨率导出，用于打印
+ * <p>
+ * 不读取屏幕分辨率的缓存画布，而是按目标分辨率重新渲染笔迹和背景图：
+ * 输出按图块行切分，在有界线程池上并行绘制，按顺序逐行写入PNG编码器，
+ * 峰值内存只有若干带的像素，与输出高度无关。
+ * 各图层分别绘制后按画板上的顺序、可见性和不透明度合成
+ */
+public class DrawingExporter {
+
+    // 图块边长|px，一带的高度
+    private static final int TILE_SIZE = SoftwareRasterizer.DEFAULT_TILE_SIZE;
+
+    private final ForkJoinPool mPool;
+    private final SoftwareRasterizer mRasterizer;
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor(
+            runnable -> new Thread(runnable, "DrawingExporter"));
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    public DrawingExporter() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param threads 绘制线程数
+     */
+    public DrawingExporter(int threads) {
+        mPool = new ForkJoinPool(Math.max(1, threads));
+        mRasterizer = new SoftwareRasterizer(mPool, TILE_SIZE);
+    }
+
+    /**
+     * 导出画板当前内容，在主线程调用
+     * <p>
+     * 调用时拷贝笔迹列表和图层属性，之后画板上的修改不影响本次导出；背景图在回调前不能回收
+     *
+     * @param view     画板
+     * @param scale    相对画板的缩放比例，如屏幕160dpi打印300dpi时约为1.9
+     * @param file     输出文件，失败时删除
+     * @param listener 完成回调，在主线程调用，可为null
+     */
+    public void exportPng(DrawingView view, final float scale, final File file,
+                          final OnExportListener listener) {
+        DrawingDocument source = view.getDocument();
+        final DrawingDocument document = new DrawingDocument(source.getWidth(),
+                source.getHeight());
+        document.setBackgroundColor(source.getBackgroundColor());
+        for (int i = 0; i < source.getStrokeCount(); i++) {
+            document.addStroke(source.getStroke(i));
+        }
+        final SoftwareRasterizer.Layers layers = new SoftwareRasterizer.Layers();
+        List<DrawingLayer> viewLayers = view.getLayers();
+        for (int i = 0; i < viewLayers.size(); i++) {
+            DrawingLayer layer = viewLayers.get(i);
+            layers.add(layer.getId(), layer.isVisible(), layer.getOpacity());
+        }
+        final Bitmap background = view.getBackgroundPic();
+        final Matrix matrix = view.getBackgroundMatrix();
+        mExecutor.execute(() -> {
+            IOException error = null;
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+                exportPng(document, layers, background, matrix, scale, out);
+            } catch (IOException e) {
+                error = e;
+            }
+            if (error != null && file.exists() && !file.delete()) {
+                file.deleteOnExit();
+            }
+            if (listener == null) {
+                return;
+            }
+            final IOException result = error;
+            mMainHandler.post(() -> {
+                if (result == null) {
+                    listener.onExported(file);
+                } else {
+                    listener.onError(result);
+                }
+            });
+        });
+    }
+
+    /**
+     * 渲染并编码为PNG，阻塞到完成，不要在主线程调用
+     *
+     * @param document         笔迹，导出期间不能修改
+     * @param layers           图层，为null时见{@link SoftwareRasterizer.Layers#of(List)}
+     * @param background       背景图，可为null
+     * @param backgroundMatrix 背景图在画板坐标系中的绘制矩阵
+     * @param scale            相对画板的缩放比例
+     * @param out              输出流，调用方负责关闭
+     * @throws IOException 写入失败
+     */
+    public void exportPng(DrawingDocument document, SoftwareRasterizer.Layers layers,
+                          Bitmap background, Matrix backgroundMatrix, float scale,
+                          OutputStream out) throws IOException {
+        SoftwareRasterizer.Background layer = null;
+        if (background != null && !background.isRecycled()) {
+            Matrix matrix = new Matrix();
+            if (backgroundMatrix != null) {
+                matrix.set(backgroundMatrix);
+            }
+            matrix.postScale(scale, scale);
+            layer = new BitmapBackground(background, matrix);
+        }
+        mRasterizer.renderPng(document, scale, layers, layer, out);
+    }
+
+    /**
+     * 停止导出线程，正在进行的导出会继续完成
+     */
+    public void release() {
+        mExecutor.shutdown();
+        mPool.shutdown();
+        mMainHandler.removeCallbacksAndMessages(null);
+    }
+
+    /**
+     * 导出完成回调
+     */
+    public interface OnExportListener {
+        /**
+         * 导出成功
+         *
+         * @param file 输出文件
+         */
+        void onExported(File file);
+
+        /**
+         * 导出失败，输出文件已删除
+         *
+         * @param e 异常
+         */
+        void onError(IOException e);
+    }
+
+    /**
+     * 按带绘制背景图：每带绘制到同样大小的临时位图上，再叠加到像素上
+     */
+    private static class BitmapBackground implements SoftwareRasterizer.Background {
+
+        private final Bitmap mBitmap;
+        // 背景图在输出坐标系中的绘制矩阵
+        private final Matrix mMatrix;
+
+        BitmapBackground(Bitmap bitmap, Matrix matrix) {
+            mBitmap = bitmap;
+            mMatrix = matrix;
+        }
+
+        @Override
+        public void draw(int[] pixels, int width, int top, int bottom) {
+            int rows = bottom - top;
+            Bitmap band = Bitmap.createBitmap(width, rows, Bitmap.Config.ARGB_8888);
+            Canvas canvas = new Canvas(band);
+            canvas.translate(0, -top);
+            canvas.concat(mMatrix);
+            canvas.drawBitmap(mBitmap, 0, 0, new Paint(Paint.FILTER_BITMAP_FLAG));
+            int[] colors = new int[width * rows];
+            // getPixels返回非预乘ARGB
+            band.getPixels(colors, 0, width, 0, 0, width, rows);
+            band.recycle();
+            for (int i = 0; i < colors.length; i++) {
+                if (colors[i] >>> 24 != 0) {
+                    pixels[i] = PixelUtils.srcOver(pixels[i], colors[i], 1);
+                }
+            }
+        }
+    }
+}
\ No newline at end of file
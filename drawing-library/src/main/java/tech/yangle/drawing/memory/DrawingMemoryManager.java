@@ -0,0 +1,144 @@
+package tech.yangle.drawing.memory;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 位图内存管理
+ * <p>
+ * 统计画板持有的全部位图内存，并按系统的onTrimMemory级别逐级释放：
+ * 先丢弃预览等可随时重建的缓存，再淘汰屏幕外的页面，应用进入后台且系统即将回收进程时
+ * 才释放当前可见内容。被释放的内容在下次使用时按需恢复。
+ * 所有方法都应在主线程调用
+ */
+public final class DrawingMemoryManager implements ComponentCallbacks2 {
+
+    /**
+     * 可随时重建的缓存：预览、缩略图、多级缩放图
+     */
+    public static final int TIER_CACHE = 0;
+    /**
+     * 屏幕外的内容：非当前页、不可见的图块
+     */
+    public static final int TIER_OFFSCREEN = 1;
+    /**
+     * 当前可见的内容，可由笔迹重建
+     */
+    public static final int TIER_VISIBLE = 2;
+
+    private static DrawingMemoryManager sInstance;
+
+    private final List<MemoryConsumer> mConsumers = new ArrayList<>();
+
+    private DrawingMemoryManager() {
+    }
+
+    /**
+     * 获取实例，首次调用时注册系统内存回调
+     *
+     * @param context 上下文
+     * @return 内存管理实例
+     */
+    public static DrawingMemoryManager getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new DrawingMemoryManager();
+            context.getApplicationContext().registerComponentCallbacks(sInstance);
+        }
+        return sInstance;
+    }
+
+    /**
+     * 注册内存消费者
+     *
+     * @param consumer 内存消费者
+     */
+    public void register(MemoryConsumer consumer) {
+        if (!mConsumers.contains(consumer)) {
+            mConsumers.add(consumer);
+        }
+    }
+
+    /**
+     * 注销内存消费者
+     *
+     * @param consumer 内存消费者
+     */
+    public void unregister(MemoryConsumer consumer) {
+        mConsumers.remove(consumer);
+    }
+
+    /**
+     * 全部消费者持有的位图内存
+     *
+     * @return 字节数
+     */
+    public long getTotalBytes() {
+        long bytes = 0;
+        for (int i = 0; i < mConsumers.size(); i++) {
+            bytes += mConsumers.get(i).getMemoryBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * 按层级释放内存
+     *
+     * @param tier 最高释放层级
+     */
+    public void trimMemory(int tier) {
+        // 复制一份，回调中可能注销自身
+        List<MemoryConsumer> consumers = new ArrayList<>(mConsumers);
+        for (MemoryConsumer consumer : consumers) {
+            consumer.trimMemory(tier);
+        }
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        int tier = tierForLevel(level);
+        if (tier >= 0) {
+            trimMemory(tier);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        // 不区分前后台，应用可能仍在前台，可见内容保留
+        trimMemory(TIER_OFFSCREEN);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+
+    /**
+     * 系统内存级别对应的释放层级
+     *
+     * @param level ComponentCallbacks2.TRIM_MEMORY_*
+     * @return 释放层级，-1表示不释放
+     */
+    static int tierForLevel(int level) {
+        if (level >= TRIM_MEMORY_MODERATE) {
+            // 后台且处于回收列表中部以后，随时可能被杀
+            return TIER_VISIBLE;
+        }
+        if (level >= TRIM_MEMORY_BACKGROUND) {
+            return TIER_OFFSCREEN;
+        }
+        if (level >= TRIM_MEMORY_UI_HIDDEN) {
+            return TIER_CACHE;
+        }
+        if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            // 前台运行时内存紧张，可见内容保留
+            return TIER_OFFSCREEN;
+        }
+        if (level >= TRIM_MEMORY_RUNNING_MODERATE) {
+            return TIER_CACHE;
+        }
+        return -1;
+    }
+}
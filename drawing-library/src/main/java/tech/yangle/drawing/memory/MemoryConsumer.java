@@ -0,0 +1,22 @@
+package tech.yangle.drawing.memory;
+
+/**
+ * 持有位图内存的组件，由DrawingMemoryManager统一统计与回收
+ */
+public interface MemoryConsumer {
+
+    /**
+     * 当前持有的位图内存
+     *
+     * @return 字节数
+     */
+    long getMemoryBytes();
+
+    /**
+     * 释放指定层级及以下的内存，被释放的内容应在下次使用时按需恢复
+     *
+     * @param tier 最高释放层级 {@link DrawingMemoryManager#TIER_CACHE}、
+     *             {@link DrawingMemoryManager#TIER_OFFSCREEN}、{@link DrawingMemoryManager#TIER_VISIBLE}
+     */
+    void trimMemory(int tier);
+}
@@ -0,0 +1,203 @@
+package tech.yangle.drawing.metrics;
+
+import android.view.MotionEvent;
+
+/**
+ * 画板渲染与输入统计
+ * <p>
+ * 通过DrawingView.setMetrics开启，未设置时画板不做任何统计。
+ * 记录过程不分配对象，可在线上版本中开启，定期读取直方图的百分位上报。
+ * 所有方法都应在主线程调用
+ * <p>
+ * 输入延迟以MotionEvent.getEventTime()为起点，它与System.nanoTime()同为CLOCK_MONOTONIC时钟
+ */
+public class DrawingMetrics {
+
+    private static final long NANOS_PER_MILLI = 1000000L;
+    private static final long NANOS_PER_SECOND = 1000000000L;
+
+    // onDraw耗时分布|us
+    private final Histogram mDrawDuration = new Histogram();
+    // 输入到绘制完成的延迟分布|us
+    private final Histogram mInputLatency = new Histogram();
+    private final FrameMetrics mFrame = new FrameMetrics();
+    private OnFrameMetricsListener mListener;
+    // 每隔多少帧回调一次
+    private int mSampleInterval = 1;
+
+    private long mFrameCount;
+    private long mTotalPoints;
+    private long mTotalBytesBlitted;
+    private long mBitmapBytes;
+    // 尚未绘制的最早输入事件时间|ms，-1表示没有
+    private long mPendingEventTime = -1;
+    private int mPendingPoints;
+    private long mDrawStartNanos;
+    private long mFrameBytesBlitted;
+    // 采样点速率统计窗口
+    private long mWindowStartNanos;
+    private long mWindowPoints;
+    private float mPointsPerSecond;
+
+    /**
+     * 记录一个输入事件
+     *
+     * @param event 触控事件
+     */
+    public void onInputEvent(MotionEvent event) {
+        int historySize = event.getHistorySize();
+        if (mPendingEventTime < 0) {
+            mPendingEventTime = historySize > 0 ? event.getHistoricalEventTime(0)
+                    : event.getEventTime();
+        }
+        int points = historySize + 1;
+        mPendingPoints += points;
+        mTotalPoints += points;
+        mWindowPoints += points;
+    }
+
+    /**
+     * onDraw开始
+     */
+    public void onDrawStart() {
+        mDrawStartNanos = System.nanoTime();
+        mFrameBytesBlitted = 0;
+    }
+
+    /**
+     * 记录位图绘制
+     *
+     * @param bytes 写入目标画布的字节数，按目标区域面积每像素4字节计
+     */
+    public void onBlit(long bytes) {
+        mFrameBytesBlitted += bytes;
+    }
+
+    /**
+     * onDraw结束，汇总本帧数据
+     */
+    public void onDrawEnd() {
+        long now = System.nanoTime();
+        long drawNanos = now - mDrawStartNanos;
+        mDrawDuration.record(drawNanos / 1000);
+
+        long latencyNanos = -1;
+        if (mPendingEventTime >= 0) {
+            latencyNanos = now - mPendingEventTime * NANOS_PER_MILLI;
+            mInputLatency.record(latencyNanos / 1000);
+        }
+
+        if (mWindowStartNanos == 0) {
+            mWindowStartNanos = now;
+        } else if (now - mWindowStartNanos >= NANOS_PER_SECOND) {
+            mPointsPerSecond = mWindowPoints * (float) NANOS_PER_SECOND / (now - mWindowStartNanos);
+            mWindowStartNanos = now;
+            mWindowPoints = 0;
+        }
+
+        mTotalBytesBlitted += mFrameBytesBlitted;
+        FrameMetrics frame = mFrame;
+        frame.frameIndex = mFrameCount;
+        frame.drawDurationNanos = drawNanos;
+        frame.inputLatencyNanos = latencyNanos;
+        frame.pointsIngested = mPendingPoints;
+        frame.bytesBlitted = mFrameBytesBlitted;
+        frame.bitmapBytes = mBitmapBytes;
+        mPendingEventTime = -1;
+        mPendingPoints = 0;
+
+        if (mListener != null && mFrameCount % mSampleInterval == 0) {
+            mListener.onFrame(frame);
+        }
+        mFrameCount++;
+    }
+
+    /**
+     * 更新画板持有的位图内存
+     *
+     * @param bytes 位图内存|byte
+     */
+    public void setBitmapBytes(long bytes) {
+        mBitmapBytes = bytes;
+    }
+
+    /**
+     * 设置逐帧回调
+     *
+     * @param listener       回调，传null取消
+     * @param sampleInterval 每隔多少帧回调一次，1为每帧回调
+     */
+    public void setOnFrameMetricsListener(OnFrameMetricsListener listener, int sampleInterval) {
+        mListener = listener;
+        mSampleInterval = Math.max(1, sampleInterval);
+    }
+
+    /**
+     * onDraw耗时分布
+     *
+     * @return 直方图|us
+     */
+    public Histogram getDrawDuration() {
+        return mDrawDuration;
+    }
+
+    /**
+     * 输入到绘制完成的延迟分布
+     *
+     * @return 直方图|us
+     */
+    public Histogram getInputLatency() {
+        return mInputLatency;
+    }
+
+    public long getFrameCount() {
+        return mFrameCount;
+    }
+
+    public long getTotalPoints() {
+        return mTotalPoints;
+    }
+
+    /**
+     * 最近一个统计窗口（约1秒）的采样点速率
+     *
+     * @return 点/秒
+     */
+    public float getPointsPerSecond() {
+        return mPointsPerSecond;
+    }
+
+    public long getTotalBytesBlitted() {
+        return mTotalBytesBlitted;
+    }
+
+    public long getBitmapBytes() {
+        return mBitmapBytes;
+    }
+
+    /**
+     * 清空累计数据，便于按周期上报
+     */
+    public void reset() {
+        mDrawDuration.reset();
+        mInputLatency.reset();
+        mFrameCount = 0;
+        mTotalPoints = 0;
+        mTotalBytesBlitted = 0;
+        mWindowStartNanos = 0;
+        mWindowPoints = 0;
+        mPointsPerSecond = 0;
+    }
+
+    /**
+     * 逐帧统计回调
+     */
+    public interface OnFrameMetricsListener {
+        /**
+         * 回调方法
+         *
+         * @param frame 本帧数据，回调返回后会被复用
+         */
+        void onFrame(FrameMetrics frame);
+    }
+}
@@ -0,0 +1,56 @@
+package tech.yangle.drawing.metrics;
+
+/**
+ * 单帧统计数据
+ * <p>
+ * 同一个实例在每帧之间复用，回调返回后内容即被覆盖，需要保存时请自行复制
+ */
+public class FrameMetrics {
+
+    // 帧序号，从0开始
+    long frameIndex;
+    // onDraw耗时|ns
+    long drawDurationNanos;
+    // 本帧最早一个未绘制的输入事件到绘制完成的延迟|ns，本帧没有输入时为-1
+    long inputLatencyNanos = -1;
+    // 本帧消费的触控采样点数，包含历史采样点
+    int pointsIngested;
+    // 本帧位图绘制写入屏幕画布的字节数，按目标区域面积每像素4字节计
+    long bytesBlitted;
+    // 画板当前持有的位图内存|byte
+    long bitmapBytes;
+
+    public long getFrameIndex() {
+        return frameIndex;
+    }
+
+    public long getDrawDurationNanos() {
+        return drawDurationNanos;
+    }
+
+    public long getInputLatencyNanos() {
+        return inputLatencyNanos;
+    }
+
+    public int getPointsIngested() {
+        return pointsIngested;
+    }
+
+    public long getBytesBlitted() {
+        return bytesBlitted;
+    }
+
+    public long getBitmapBytes() {
+        return bitmapBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "FrameMetrics{frame=" + frameIndex
+                + ", draw=" + drawDurationNanos / 1000 + "us"
+                + ", latency=" + (inputLatencyNanos < 0 ? "-" : inputLatencyNanos / 1000 + "us")
+                + ", points=" + pointsIngested
+                + ", blitted=" + bytesBlitted
+                + ", bitmap=" + bitmapBytes + "}";
+    }
+}
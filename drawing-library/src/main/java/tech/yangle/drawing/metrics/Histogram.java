@@ -0,0 +1,121 @@
+package tech.yangle.drawing.metrics;
+
+/**
+ * 对数分桶直方图，用于统计耗时分布
+ * <p>
+ * 每个2的幂区间再线性划分为16个子桶，相对误差不超过1/16。
+ * 记录时只做数组自增，没有对象分配；非线程安全，应在同一线程记录与读取
+ */
+public class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final long[] mCounts = new long[BUCKETS];
+    private long mCount;
+    private long mSum;
+    private long mMin = Long.MAX_VALUE;
+    private long mMax;
+
+    /**
+     * 记录一个值
+     *
+     * @param value 非负值，负值按0处理
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        mCounts[bucketOf(value)]++;
+        mCount++;
+        mSum += value;
+        if (value < mMin) mMin = value;
+        if (value > mMax) mMax = value;
+    }
+
+    public long getCount() {
+        return mCount;
+    }
+
+    public long getMin() {
+        return mCount == 0 ? 0 : mMin;
+    }
+
+    public long getMax() {
+        return mMax;
+    }
+
+    public double getMean() {
+        return mCount == 0 ? 0 : (double) mSum / mCount;
+    }
+
+    /**
+     * 获取百分位值
+     *
+     * @param percentile 百分位，0..100
+     * @return 该百分位所在桶的上界，不超过最大记录值
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (mCount == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(mCount * Math.min(100, Math.max(0, percentile)) / 100);
+        if (target < 1) {
+            target = 1;
+        }
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += mCounts[i];
+            if (seen >= target) {
+                return Math.min(upperBoundOf(i), mMax);
+            }
+        }
+        return mMax;
+    }
+
+    /**
+     * 将另一个直方图的数据累加进来
+     *
+     * @param other 直方图
+     */
+    public void add(Histogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            mCounts[i] += other.mCounts[i];
+        }
+        mCount += other.mCount;
+        mSum += other.mSum;
+        if (other.mCount > 0) {
+            mMin = Math.min(mMin, other.mMin);
+            mMax = Math.max(mMax, other.mMax);
+        }
+    }
+
+    /**
+     * 清空数据
+     */
+    public void reset() {
+        java.util.Arrays.fill(mCounts, 0);
+        mCount = 0;
+        mSum = 0;
+        mMin = Long.MAX_VALUE;
+        mMax = 0;
+    }
+
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    private static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long base = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return base + (1L << shift) - 1;
+    }
+}
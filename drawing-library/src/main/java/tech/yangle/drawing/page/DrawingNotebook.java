@@ -0,0 +1,344 @@
+package tech.yangle.drawing.page;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import tech.yangle.drawing.DrawingView;
+import tech.yangle.drawing.StrokeRenderer;
+import tech.yangle.drawing.core.DrawingDocument;
+import tech.yangle.drawing.core.Stroke;
+import tech.yangle.drawing.memory.DrawingMemoryManager;
+import tech.yangle.drawing.memory.MemoryConsumer;
+
+/**
+ * 多页文档
+ * <p>
+ * 每页的笔迹始终保存在内存中，光栅位图只为当前页及其相邻页保留。
+ * 驻留的位图按LRU顺序受字节预算约束，超出预算时淘汰最久未访问的页面：
+ * 设置了溢出目录时压缩写盘，之后直接读回；否则丢弃，之后按笔迹重新绘制。
+ * 翻页时预取相邻页，命中时翻页只是切换位图引用。
+ * <p>
+ * 系统内存紧张时由DrawingMemoryManager通知，淘汰全部屏幕外页面。
+ * 所有公开方法都应在主线程调用，写盘和读回在单独的IO线程上进行
+ */
+public class DrawingNotebook implements MemoryConsumer {
+
+    private static final String TAG = "DrawingNotebook";
+
+    private final DrawingView mView;
+    private final int mPageWidth;
+    private final int mPageHeight;
+    // 溢出目录，为null时淘汰的页面按笔迹重建
+    private final File mSpillDir;
+    private long mMemoryBudget;
+    private final List<Page> mPages = new ArrayList<>();
+    // 驻留内存的页面，按访问顺序排列，最久未访问的在前
+    private final LinkedHashMap<Page, Boolean> mResident = new LinkedHashMap<>(16, 0.75f, true);
+    private long mResidentBytes;
+    private int mCurrentIndex = -1;
+    private boolean mReleased;
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService mIoExecutor = Executors.newSingleThreadExecutor(
+            runnable -> new Thread(runnable, "DrawingNotebook-io"));
+    // 仅在IO线程使用
+    private final RasterSpill mIoSpill = new RasterSpill();
+    private final StrokeRenderer mIoRenderer = new StrokeRenderer();
+    // 仅在主线程使用，预取未命中时同步加载
+    private final RasterSpill mMainSpill = new RasterSpill();
+    private final StrokeRenderer mMainRenderer = new StrokeRenderer();
+
+    /**
+     * 在画板完成布局后创建，页面尺寸与画板一致
+     *
+     * @param view         画板
+     * @param memoryBudget 页面位图的内存预算|byte，当前页始终驻留，不受预算限制
+     * @param spillDir     溢出目录，为null时不写盘
+     */
+    public DrawingNotebook(DrawingView view, long memoryBudget, File spillDir) {
+        if (view.getWidth() <= 0 || view.getHeight() <= 0) {
+            throw new IllegalStateException("DrawingView has not been laid out yet");
+        }
+        mView = view;
+        mPageWidth = view.getWidth();
+        mPageHeight = view.getHeight();
+        mMemoryBudget = memoryBudget;
+        mSpillDir = spillDir;
+        if (spillDir != null && !spillDir.isDirectory() && !spillDir.mkdirs()) {
+            Log.w(TAG, "[DrawingNotebook] cannot create spill dir " + spillDir);
+        }
+        DrawingMemoryManager.getInstance(view.getContext()).register(this);
+    }
+
+    /**
+     * 在末尾追加空白页
+     *
+     * @return 新页面的下标
+     */
+    public int addPage() {
+        int index = mPages.size();
+        File spillFile = mSpillDir != null ? new File(mSpillDir, "page-" + index + ".raw") : null;
+        mPages.add(new Page(new DrawingDocument(mPageWidth, mPageHeight), spillFile));
+        return index;
+    }
+
+    public int getPageCount() {
+        return mPages.size();
+    }
+
+    public int getCurrentPageIndex() {
+        return mCurrentIndex;
+    }
+
+    /**
+     * 获取页面笔迹
+     *
+     * @param index 页面下标
+     * @return 页面笔迹
+     */
+    public DrawingDocument getPage(int index) {
+        return mPages.get(index).document;
+    }
+
+    /**
+     * 显示指定页面，并预取相邻页
+     *
+     * @param index 页面下标
+     */
+    public void showPage(int index) {
+        Page page = mPages.get(index);
+        if (page.bitmap == null) {
+            if (page.spilling != null) {
+                // 仍在写盘，位图内容完好，直接收回
+                page.bitmap = page.spilling;
+                page.spilling = null;
+            } else {
+                page.bitmap = load(page.spillFile, isSpillValid(page), page.document.getStrokes(),
+                        mMainSpill, mMainRenderer);
+            }
+            mResidentBytes += page.bitmap.getAllocationByteCount();
+        }
+        mResident.put(page, Boolean.TRUE);
+        mCurrentIndex = index;
+        mView.setPage(page.document, page.bitmap);
+        prefetch(index - 1);
+        prefetch(index + 1);
+        trim();
+    }
+
+    /**
+     * 设置内存预算，超出时立即淘汰
+     *
+     * @param memoryBudget 页面位图的内存预算|byte
+     */
+    public void setMemoryBudget(long memoryBudget) {
+        mMemoryBudget = memoryBudget;
+        trim();
+    }
+
+    public long getMemoryBudget() {
+        return mMemoryBudget;
+    }
+
+    /**
+     * 当前驻留内存的页面位图字节数
+     *
+     * @return 字节数
+     */
+    public long getResidentBytes() {
+        return mResidentBytes;
+    }
+
+    /**
+     * 释放全部页面位图并删除溢出文件，应在画板不再显示后调用
+     */
+    public void release() {
+        mReleased = true;
+        DrawingMemoryManager.getInstance(mView.getContext()).unregister(this);
+        mIoExecutor.shutdownNow();
+        for (Page page : mPages) {
+            if (page.bitmap != null) {
+                page.bitmap.recycle();
+                page.bitmap = null;
+            }
+            if (page.spillFile != null && !page.spillFile.delete() && page.spillFile.exists()) {
+                Log.w(TAG, "[release] cannot delete " + page.spillFile);
+            }
+        }
+        mResident.clear();
+        mResidentBytes = 0;
+        mMainSpill.trim();
+    }
+
+    @Override
+    public long getMemoryBytes() {
+        return mResidentBytes;
+    }
+
+    /**
+     * 内存紧张时释放：缓存层释放读写中转缓冲，屏幕外层淘汰除当前页外的全部页面。
+     * 当前页正在显示，不在此释放；淘汰的页面在翻页时按需恢复
+     *
+     * @param tier 最高释放层级
+     */
+    @Override
+    public void trimMemory(int tier) {
+        if (tier >= DrawingMemoryManager.TIER_CACHE) {
+            mMainSpill.trim();
+            mIoExecutor.execute(mIoSpill::trim);
+        }
+        if (tier >= DrawingMemoryManager.TIER_OFFSCREEN) {
+            long budget = mMemoryBudget;
+            mMemoryBudget = 0;
+            trim();
+            mMemoryBudget = budget;
+        }
+    }
+
+    /**
+     * 在IO线程上预取页面
+     */
+    private void prefetch(int index) {
+        if (index < 0 || index >= mPages.size()) {
+            return;
+        }
+        final Page page = mPages.get(index);
+        if (page.bitmap != null || page.spilling != null || page.loading) {
+            return;
+        }
+        page.loading = true;
+        // 在主线程上取快照，IO线程不直接访问正在变化的文档
+        final List<Stroke> strokes = new ArrayList<>(page.document.getStrokes());
+        final boolean spillValid = isSpillValid(page);
+        mIoExecutor.execute(() -> {
+            final Bitmap bitmap = load(page.spillFile, spillValid, strokes, mIoSpill,
+                    mIoRenderer);
+            mMainHandler.post(() -> {
+                page.loading = false;
+                if (mReleased || page.bitmap != null) {
+                    bitmap.recycle();
+                    return;
+                }
+                page.bitmap = bitmap;
+                mResidentBytes += bitmap.getAllocationByteCount();
+                mResident.put(page, Boolean.TRUE);
+                trim();
+            });
+        });
+    }
+
+    /**
+     * 加载页面位图：溢出文件有效时读回，否则按笔迹重新绘制
+     */
+    private Bitmap load(File spillFile, boolean spillValid, List<Stroke> strokes,
+                        RasterSpill spill, StrokeRenderer renderer) {
+        Bitmap bitmap = Bitmap.createBitmap(mPageWidth, mPageHeight, Bitmap.Config.ARGB_8888);
+        if (spillValid && spillFile.exists()) {
+            try {
+                spill.read(spillFile, bitmap);
+                return bitmap;
+            } catch (IOException e) {
+                Log.w(TAG, "[load] spill read failed, rebuilding from strokes", e);
+                bitmap.eraseColor(0);
+            }
+        }
+        renderer.draw(new Canvas(bitmap), bitmap, strokes);
+        return bitmap;
+    }
+
+    /**
+     * 溢出文件是否与当前笔迹一致
+     */
+    private static boolean isSpillValid(Page page) {
+        return page.spillFile != null && page.spilledRevision == page.document.getRevision();
+    }
+
+    /**
+     * 按LRU顺序淘汰页面，直到满足内存预算，当前页不淘汰
+     */
+    private void trim() {
+        if (mResidentBytes <= mMemoryBudget) {
+            return;
+        }
+        Page current = mCurrentIndex >= 0 ? mPages.get(mCurrentIndex) : null;
+        Iterator<Page> iterator = mResident.keySet().iterator();
+        while (mResidentBytes > mMemoryBudget && iterator.hasNext()) {
+            Page page = iterator.next();
+            if (page == current) {
+                continue;
+            }
+            iterator.remove();
+            evict(page);
+        }
+    }
+
+    /**
+     * 淘汰页面位图，内容有变化时先写盘
+     */
+    private void evict(final Page page) {
+        final Bitmap bitmap = page.bitmap;
+        page.bitmap = null;
+        mResidentBytes -= bitmap.getAllocationByteCount();
+        final long revision = page.document.getRevision();
+        if (page.spillFile == null || page.spilledRevision == revision) {
+            bitmap.recycle();
+            return;
+        }
+        page.spilling = bitmap;
+        mIoExecutor.execute(() -> {
+            boolean success;
+            try {
+                mIoSpill.write(bitmap, page.spillFile);
+                success = true;
+            } catch (IOException e) {
+                Log.w(TAG, "[evict] spill write failed", e);
+                success = false;
+            }
+            final boolean written = success;
+            mMainHandler.post(() -> {
+                if (written) {
+                    page.spilledRevision = revision;
+                }
+                // 写盘期间页面可能已被收回
+                if (page.spilling == bitmap) {
+                    page.spilling = null;
+                    bitmap.recycle();
+                }
+            });
+        });
+    }
+
+    /**
+     * 页面状态，只在主线程修改
+     */
+    private static class Page {
+
+        final DrawingDocument document;
+        final File spillFile;
+        // 驻留内存时非null
+        Bitmap bitmap;
+        // 正在写盘的位图
+        Bitmap spilling;
+        // 溢出文件对应的文档版本号，-1表示没有有效的溢出文件
+        long spilledRevision = -1;
+        // 是否正在预取
+        boolean loading;
+
+        Page(DrawingDocument document, File spillFile) {
+            this.document = document;
+            this.spillFile = spillFile;
+        }
+    }
+}
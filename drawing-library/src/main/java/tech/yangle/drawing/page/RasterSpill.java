@@ -0,0 +1,100 @@
+package tech.yangle.drawing.page;
+
+import android.graphics.Bitmap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 页面光栅数据的磁盘读写
+ * <p>
+ * 直接保存位图内存中的像素（预乘ARGB），按最快级别deflate压缩。
+ * 手写页面大部分是透明像素，压缩率通常在20倍以上，读回时无需解码PNG。
+ * 像素中转缓冲在多次读写间复用，非线程安全，应在同一个IO线程中使用
+ */
+class RasterSpill {
+
+    private static final int MAGIC = 0x52535031; // "RSP1"
+    private static final int IO_BUFFER_SIZE = 64 * 1024;
+
+    private ByteBuffer mPixels;
+
+    /**
+     * 写入位图
+     *
+     * @param bitmap 位图，写入期间不能被修改
+     * @param file   目标文件
+     * @throws IOException 写入失败
+     */
+    void write(Bitmap bitmap, File file) throws IOException {
+        ByteBuffer pixels = obtainBuffer(bitmap.getByteCount());
+        bitmap.copyPixelsToBuffer(pixels);
+        File temp = new File(file.getPath() + ".tmp");
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp), IO_BUFFER_SIZE), deflater,
+                IO_BUFFER_SIZE))) {
+            out.writeInt(MAGIC);
+            out.writeInt(bitmap.getWidth());
+            out.writeInt(bitmap.getHeight());
+            out.write(pixels.array(), 0, pixels.position());
+        } finally {
+            deflater.end();
+        }
+        // 先写临时文件再改名，进程中途被杀也不会留下残缺文件
+        if (!temp.renameTo(file)) {
+            throw new IOException("Failed to rename " + temp + " to " + file);
+        }
+    }
+
+    /**
+     * 读取位图
+     *
+     * @param file   源文件
+     * @param bitmap 目标位图，尺寸必须与写入时一致
+     * @throws IOException 读取失败或尺寸不符
+     */
+    void read(File file, Bitmap bitmap) throws IOException {
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(
+                new BufferedInputStream(new FileInputStream(file), IO_BUFFER_SIZE)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Bad spill file " + file);
+            }
+            int width = in.readInt();
+            int height = in.readInt();
+            if (width != bitmap.getWidth() || height != bitmap.getHeight()) {
+                throw new IOException("Spill size " + width + "x" + height + " != bitmap "
+                        + bitmap.getWidth() + "x" + bitmap.getHeight());
+            }
+            ByteBuffer pixels = obtainBuffer(bitmap.getByteCount());
+            in.readFully(pixels.array(), 0, bitmap.getByteCount());
+            bitmap.copyPixelsFromBuffer(pixels);
+        }
+    }
+
+    /**
+     * 释放中转缓冲
+     */
+    void trim() {
+        mPixels = null;
+    }
+
+    private ByteBuffer obtainBuffer(int size) {
+        if (mPixels == null || mPixels.capacity() < size) {
+            mPixels = ByteBuffer.allocate(size);
+        }
+        mPixels.clear();
+        mPixels.limit(size);
+        return mPixels;
+    }
+}
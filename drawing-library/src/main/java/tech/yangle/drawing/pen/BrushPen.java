@@ -0,0 +1,58 @@
+package tech.yangle.drawing.pen;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+
+import tech.yangle.drawing.core.BrushTip;
+import tech.yangle.drawing.core.PenStyle;
+import tech.yangle.drawing.utils.DensityUtils;
+
+/**
+ * 纹理笔刷：铅笔、马克笔、喷枪
+ * <p>
+ * 不描边路径，而是沿笔迹按间距盖印缓存在{@link StampAtlas}中的笔尖，
+ * 书写时只盖印新增的线段
+ */
+public class BrushPen extends BasePen {
+
+    private final BrushTip mTip;
+    private final BrushStamper mStamper = new BrushStamper();
+
+    /**
+     * @param context 上下文
+     * @param penType {@link tech.yangle.drawing.PenType#PENCIL}、MARKER或AIRBRUSH
+     */
+    public BrushPen(Context context, int penType) {
+        super(context);
+        if (!PenStyle.isBrush(penType)) {
+            throw new IllegalArgumentException("Not a brush pen type: " + penType);
+        }
+        // 画笔类型
+        mPenType = penType;
+        mTip = BrushTip.forPenType(penType);
+        // 画笔宽度
+        setStrokeWidth(DensityUtils.dp2px(context, PenStyle.defaultWidthDp(penType)));
+        // 画笔颜色
+        setColor(Color.BLACK);
+    }
+
+    public BrushTip getTip() {
+        return mTip;
+    }
+
+    /**
+     * 按当前颜色和宽度沿折线盖印
+     *
+     * @param canvas 画布
+     * @param points 坐标，x0, y0, x1, y1 ...
+     * @param from   起点下标
+     * @param to     终点下标（不含）
+     * @param carry  上一段返回的值，新笔迹为0
+     * @return 下一段折线的carry
+     */
+    public float stamp(Canvas canvas, float[] points, int from, int to, float carry) {
+        mStamper.set(mTip, getColor(), getStrokeWidth());
+        return mStamper.stamp(canvas, points, from, to, carry);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,72 @@
+package tech.yangle.drawing.pen;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+import tech.yangle.drawing.core.BrushTip;
+
+/**
+ * 沿折线按间距盖印笔尖
+ * <p>
+ * 盖印位置由{@link BrushTip#walk}计算，书写时分段盖印与重绘时一次盖印的结果一致。
+ * 每次盖印只是从图集中复制一个格子，不分配对象；非线程安全，每个线程使用各自的实例
+ */
+public class BrushStamper implements BrushTip.Stamper {
+
+    private final Paint mPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Rect mSrc = new Rect();
+    private final RectF mDst = new RectF();
+    private BrushTip mTip;
+    private StampAtlas.Entry mEntry;
+    // 正在盖印的画布
+    private Canvas mCanvas;
+    // 盖印间距|px
+    private float mSpacing;
+    // 格子在画布上的半边长|px
+    private float mHalf;
+
+    /**
+     * 设置笔尖、颜色和宽度
+     *
+     * @param tip   笔尖
+     * @param color 画笔颜色，ARGB，透明度再乘以笔尖流量
+     * @param width 笔尖直径|px
+     */
+    public void set(BrushTip tip, int color, float width) {
+        mTip = tip;
+        int size = Math.max(1, Math.round(width));
+        mEntry = StampAtlas.getInstance().get(tip, size);
+        mPaint.setColor(color);
+        mPaint.setAlpha(Math.round(Color.alpha(color) * tip.getFlow()));
+        mSpacing = tip.getStampSpacing(width);
+        // 图集按取整的直径生成，绘制时缩放回实际宽度
+        mHalf = mEntry.getCell() / 2f * Math.max(width, 1) / size;
+    }
+
+    /**
+     * 沿折线盖印，在set之后调用
+     *
+     * @param canvas 画布
+     * @param points 坐标，x0, y0, x1, y1 ...
+     * @param from   起点下标
+     * @param to     终点下标（不含）
+     * @param carry  距下一次盖印还需前进的距离|px，新笔迹为0
+     * @return 下一段折线的carry
+     */
+    public float stamp(Canvas canvas, float[] points, int from, int to, float carry) {
+        mCanvas = canvas;
+        carry = mTip.walk(points, from, to, mSpacing, carry, this);
+        mCanvas = null;
+        return carry;
+    }
+
+    @Override
+    public void stampAt(float x, float y, int angleIndex) {
+        mEntry.getCell(angleIndex, mSrc);
+        mDst.set(x - mHalf, y - mHalf, x + mHalf, y + mHalf);
+        mCanvas.drawBitmap(mEntry.getBitmap(), mSrc, mDst, mPaint);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,25 @@
+package tech.yangle.drawing.pen;
+
+import android.content.Context;
+import android.graphics.Color;
+import android.graphics.Paint;
+
+import tech.yangle.drawing.PenType;
+
+/**
+ * 填充
+ * <p>
+ * 点击处与之颜色相近的连通区域被填充为画笔颜色
+ */
+public class FillPen extends BasePen {
+
+    public FillPen(Context context) {
+        super(context);
+        // 画笔类型
+        mPenType = PenType.FILL;
+        // 画笔模式为填充
+        setStyle(Paint.Style.FILL);
+        // 画笔颜色
+        setColor(Color.BLACK);
+    }
+}
\ No newline at end of file
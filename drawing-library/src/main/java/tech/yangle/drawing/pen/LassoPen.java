@@ -0,0 +1,29 @@
+package tech.yangle.drawing.pen;
+
+import android.content.Context;
+import android.graphics.Color;
+import android.graphics.DashPathEffect;
+
+import tech.yangle.drawing.PenType;
+import tech.yangle.drawing.utils.DensityUtils;
+
+/**
+ * 套索
+ * <p>
+ * 只用于显示套索轨迹和选区边框，不绘制到画布上
+ */
+public class LassoPen extends BasePen {
+
+    public LassoPen(Context context) {
+        super(context);
+        // 画笔类型
+        mPenType = PenType.LASSO;
+        // 画笔宽度
+        setStrokeWidth(DensityUtils.dp2px(context, 1));
+        // 画笔颜色
+        setColor(Color.DKGRAY);
+        // 虚线
+        float dash = DensityUtils.dp2px(context, 4);
+        setPathEffect(new DashPathEffect(new float[]{dash, dash}, 0));
+    }
+}
\ No newline at end of file
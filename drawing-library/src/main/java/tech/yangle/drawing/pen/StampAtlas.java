@@ -0,0 +1,148 @@
+package tech.yangle.drawing.pen;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import tech.yangle.drawing.core.BrushTip;
+
+/**
+ * 笔尖图集
+ * <p>
+ * 每种笔尖的每个尺寸生成一次，预先旋转为{@link #ANGLE_STEPS}个角度排成一行，存为ALPHA_8位图。
+ * ALPHA_8位图绘制时直接按画笔颜色着色，同一图集可用于任意颜色和任意笔迹。
+ * 按最近使用淘汰，淘汰的位图不回收，正在其他线程绘制的图集不受影响。线程安全
+ */
+public final class StampAtlas {
+
+    /**
+     * 预先旋转的角度数，覆盖360°
+     */
+    public static final int ANGLE_STEPS = BrushTip.ANGLE_STEPS;
+    // 图集占用内存上限
+    private static final long MAX_BYTES = 4L << 20;
+
+    private static StampAtlas sInstance;
+
+    private final LinkedHashMap<Long, Entry> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Paint mPaint = new Paint(Paint.FILTER_BITMAP_FLAG | Paint.ANTI_ALIAS_FLAG);
+    private final Matrix mMatrix = new Matrix();
+    private long mBytes;
+
+    private StampAtlas() {
+    }
+
+    public static synchronized StampAtlas getInstance() {
+        if (sInstance == null) {
+            sInstance = new StampAtlas();
+        }
+        return sInstance;
+    }
+
+    /**
+     * 获取笔尖图集，不存在时生成
+     *
+     * @param tip  笔尖
+     * @param size 笔尖直径|px，不小于1
+     * @return 图集
+     */
+    public synchronized Entry get(BrushTip tip, int size) {
+        long key = ((long) tip.getPenType() << 32) | size;
+        Entry entry = mEntries.get(key);
+        if (entry == null) {
+            entry = create(tip, size);
+            mEntries.put(key, entry);
+            mBytes += entry.mBitmap.getAllocationByteCount();
+            trim(MAX_BYTES);
+        }
+        return entry;
+    }
+
+    /**
+     * 丢弃全部图集，用于内存紧张时
+     */
+    public synchronized void clear() {
+        trim(0);
+    }
+
+    private void trim(long maxBytes) {
+        Iterator<Map.Entry<Long, Entry>> iterator = mEntries.entrySet().iterator();
+        // 至少保留刚生成的一项
+        while (mBytes > maxBytes && mEntries.size() > (maxBytes > 0 ? 1 : 0)) {
+            Entry entry = iterator.next().getValue();
+            iterator.remove();
+            mBytes -= entry.mBitmap.getAllocationByteCount();
+        }
+    }
+
+    private Entry create(BrushTip tip, int size) {
+        Bitmap mask = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        mask.setPixels(tip.renderMask(size), 0, size, 0, 0, size, size);
+        // 旋转后的包围盒不超过对角线，再留1px过滤边缘
+        int cell = (int) Math.ceil(size * Math.sqrt(2)) + 2;
+        Bitmap bitmap = Bitmap.createBitmap(cell * ANGLE_STEPS, cell, Bitmap.Config.ALPHA_8);
+        Canvas canvas = new Canvas(bitmap);
+        for (int i = 0; i < ANGLE_STEPS; i++) {
+            mMatrix.setTranslate(-size / 2f, -size / 2f);
+            mMatrix.postRotate(i * 360f / ANGLE_STEPS);
+            mMatrix.postTranslate(i * cell + cell / 2f, cell / 2f);
+            canvas.drawBitmap(mask, mMatrix, mPaint);
+        }
+        mask.recycle();
+        return new Entry(bitmap, cell, size);
+    }
+
+    /**
+     * 一种笔尖一个尺寸的图集
+     */
+    public static final class Entry {
+
+        private final Bitmap mBitmap;
+        private final int mCell;
+        private final int mSize;
+
+        Entry(Bitmap bitmap, int cell, int size) {
+            mBitmap = bitmap;
+            mCell = cell;
+            mSize = size;
+        }
+
+        public Bitmap getBitmap() {
+            return mBitmap;
+        }
+
+        /**
+         * 格子边长，笔尖位于格子中心
+         *
+         * @return 边长|px
+         */
+        public int getCell() {
+            return mCell;
+        }
+
+        /**
+         * 笔尖直径
+         *
+         * @return 直径|px
+         */
+        public int getSize() {
+            return mSize;
+        }
+
+        /**
+         * 获取角度对应的格子
+         *
+         * @param angleIndex 角度序号，0..ANGLE_STEPS-1
+         * @param out        格子在图集中的位置
+         */
+        public void getCell(int angleIndex, Rect out) {
+            out.set(angleIndex * mCell, 0, (angleIndex + 1) * mCell, mCell);
+        }
+    }
+}
\ No newline at end of file
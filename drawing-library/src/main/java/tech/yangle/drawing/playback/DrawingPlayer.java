@@ -0,0 +1,439 @@
+package tech.yangle.drawing.playback;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import tech.yangle.drawing.StrokeRenderer;
+import tech.yangle.drawing.core.DrawingDocument;
+import tech.yangle.drawing.core.Stroke;
+import tech.yangle.drawing.core.playback.StrokeTimeIndex;
+import tech.yangle.drawing.memory.DrawingMemoryManager;
+import tech.yangle.drawing.memory.MemoryConsumer;
+
+/**
+ * 按采样时间回放笔迹，支持暂停、变速和任意位置跳转
+ * <p>
+ * 已完成的笔迹累积绘制在一张位图上，正在书写的笔迹每帧按已画出的点数叠加绘制。
+ * 创建后在后台线程每隔固定笔迹数生成一个关键帧，间隔由内存预算决定：预算能容纳的关键帧均匀覆盖整个会话，
+ * 最小32笔。跳转时按时间索引二分查找到目标位置已完成的笔迹数，
+ * 从不晚于该位置的最近关键帧恢复，最多重放一个间隔的笔迹。
+ * 关键帧是缓存，内存紧张时由DrawingMemoryManager释放，之后回放经过缺少关键帧的位置时重新保存。
+ * <p>
+ * 所有方法都应在主线程调用
+ */
+public class DrawingPlayer implements Choreographer.FrameCallback, MemoryConsumer {
+
+    // 默认关键帧内存预算|byte
+    private static final long DEFAULT_KEYFRAME_BUDGET = 64L * 1024 * 1024;
+    // 关键帧之间的最小笔迹数
+    private static final int MIN_KEYFRAME_INTERVAL = 32;
+    // 笔迹间最长停顿|ms
+    private static final long MAX_GAP = 3000;
+
+    private final Context mContext;
+    private final List<Stroke> mStrokes;
+    private final StrokeTimeIndex mIndex;
+    private final StrokeRenderer mRenderer = new StrokeRenderer();
+    private final Paint mCopyPaint = new Paint();
+    private final Bitmap mCommitted;
+    private final Canvas mCommittedCanvas;
+    private final Bitmap mFrame;
+    private final Canvas mFrameCanvas;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private ExecutorService mKeyframeExecutor;
+    // 关键帧，键为已绘制的笔迹数，按访问顺序排列，最先的是最久未使用的
+    private final Map<Integer, Bitmap> mKeyframes = new LinkedHashMap<>(16, 0.75f, true);
+    private final long mKeyframeBudget;
+    // 关键帧之间的笔迹数，全部关键帧都能放进预算
+    private final int mKeyframeInterval;
+    // 后台生成关键帧的批次，释放关键帧后旧批次的结果作废
+    private volatile int mKeyframeGeneration;
+    // mCommitted上已绘制的笔迹数
+    private int mCommittedCount;
+    // 上一帧正在书写的笔迹已画出的点数
+    private int mPartialCount;
+    private long mPosition;
+    private float mSpeed = 1;
+    private boolean mPlaying;
+    private long mLastFrameNanos;
+    private boolean mReleased;
+    private OnPlaybackListener mListener;
+
+    /**
+     * @param context  上下文
+     * @param document 回放的笔迹，只回放创建时已有的笔迹
+     */
+    public DrawingPlayer(Context context, DrawingDocument document) {
+        this(context, document, DEFAULT_KEYFRAME_BUDGET);
+    }
+
+    /**
+     * @param context        上下文
+     * @param document       回放的笔迹，只回放创建时已有的笔迹
+     * @param keyframeBudget 关键帧占用内存的上限|byte，每个关键帧占用一张画布大小的位图
+     */
+    public DrawingPlayer(Context context, DrawingDocument document, long keyframeBudget) {
+        mContext = context.getApplicationContext();
+        mStrokes = new ArrayList<>(document.getStrokes());
+        mIndex = new StrokeTimeIndex(mStrokes, MAX_GAP);
+        int width = Math.max(document.getWidth(), 1);
+        int height = Math.max(document.getHeight(), 1);
+        mCommitted = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        mCommittedCanvas = new Canvas(mCommitted);
+        mFrame = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        mFrameCanvas = new Canvas(mFrame);
+        mCopyPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC));
+        mKeyframeBudget = Math.max(keyframeBudget, 0);
+        mKeyframeInterval = keyframeInterval(mStrokes.size(),
+                mKeyframeBudget / mCommitted.getAllocationByteCount());
+        DrawingMemoryManager.getInstance(mContext).register(this);
+        buildKeyframes();
+    }
+
+    /**
+     * 设置回放监听
+     *
+     * @param listener OnPlaybackListener
+     */
+    public void setOnPlaybackListener(OnPlaybackListener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * 从当前位置开始播放，已播放到结尾时从头开始
+     */
+    public void play() {
+        if (mPlaying || mReleased) {
+            return;
+        }
+        if (mPosition >= getDuration()) {
+            seekTo(0);
+        }
+        mPlaying = true;
+        mLastFrameNanos = 0;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    /**
+     * 暂停，停留在当前画面
+     */
+    public void pause() {
+        if (!mPlaying) {
+            return;
+        }
+        mPlaying = false;
+        Choreographer.getInstance().removeFrameCallback(this);
+    }
+
+    public boolean isPlaying() {
+        return mPlaying;
+    }
+
+    /**
+     * 设置播放速度
+     *
+     * @param speed 倍速，1为原速
+     */
+    public void setSpeed(float speed) {
+        mSpeed = Math.max(speed, 0);
+    }
+
+    public float getSpeed() {
+        return mSpeed;
+    }
+
+    /**
+     * 总时长，超过3秒的停顿按3秒计算
+     *
+     * @return 时长|ms
+     */
+    public long getDuration() {
+        return mIndex.getDuration();
+    }
+
+    /**
+     * 当前位置
+     *
+     * @return 位置|ms
+     */
+    public long getPosition() {
+        return mPosition;
+    }
+
+    /**
+     * 跳转到指定位置并立即刷新画面，播放状态不变
+     *
+     * @param position 位置|ms
+     */
+    public void seekTo(long position) {
+        if (mReleased) {
+            return;
+        }
+        mPosition = Math.max(0, Math.min(position, getDuration()));
+        mLastFrameNanos = 0;
+        render(true);
+    }
+
+    /**
+     * 当前画面
+     *
+     * @return 画面位图，透明背景，内容随回放更新
+     */
+    public Bitmap getFrame() {
+        return mFrame;
+    }
+
+    /**
+     * 停止播放并释放位图
+     */
+    public void release() {
+        pause();
+        mReleased = true;
+        DrawingMemoryManager.getInstance(mContext).unregister(this);
+        trimKeyframes();
+        if (mKeyframeExecutor != null) {
+            mKeyframeExecutor.shutdown();
+        }
+        mCommitted.recycle();
+        mFrame.recycle();
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!mPlaying) {
+            return;
+        }
+        if (mLastFrameNanos != 0) {
+            long elapsed = (long) ((frameTimeNanos - mLastFrameNanos) / 1_000_000f * mSpeed);
+            mPosition = Math.min(mPosition + elapsed, getDuration());
+        }
+        mLastFrameNanos = frameTimeNanos;
+        render(false);
+        if (mPosition >= getDuration()) {
+            mPlaying = false;
+            if (mListener != null) {
+                mListener.onComplete();
+            }
+            return;
+        }
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    @Override
+    public long getMemoryBytes() {
+        if (mReleased) {
+            return 0;
+        }
+        long bytes = mCommitted.getAllocationByteCount() + mFrame.getAllocationByteCount();
+        for (Bitmap keyframe : mKeyframes.values()) {
+            bytes += keyframe.getAllocationByteCount();
+        }
+        return bytes;
+    }
+
+    @Override
+    public void trimMemory(int tier) {
+        if (tier >= DrawingMemoryManager.TIER_CACHE) {
+            trimKeyframes();
+        }
+    }
+
+    /**
+     * 按当前位置更新画面
+     *
+     * @param force 内容未变化时也通知监听
+     */
+    private void render(boolean force) {
+        int completed = mIndex.countCompletedBy(mPosition);
+        boolean changed = force;
+        if (completed < mCommittedCount) {
+            restore(completed);
+            changed = true;
+        } else if (completed > mCommittedCount) {
+            replay(completed);
+            changed = true;
+        }
+        int partial = completed < mStrokes.size() ? mIndex.pointCountAt(completed, mPosition) : 0;
+        if (!changed && partial == mPartialCount) {
+            return;
+        }
+        mPartialCount = partial;
+        mFrameCanvas.drawBitmap(mCommitted, 0, 0, mCopyPaint);
+        if (partial > 0) {
+            mRenderer.draw(mFrameCanvas, mStrokes.get(completed), partial);
+        }
+        if (mListener != null) {
+            mListener.onFrame(mFrame, mPosition);
+        }
+    }
+
+    /**
+     * 后退时从最近的关键帧恢复，再重放到目标位置
+     */
+    private void restore(int completed) {
+        int count = findKeyframe(completed);
+        if (count > 0) {
+            mCommittedCanvas.drawBitmap(mKeyframes.get(count), 0, 0, mCopyPaint);
+        } else {
+            mCommitted.eraseColor(0);
+        }
+        mCommittedCount = count;
+        replay(completed);
+    }
+
+    /**
+     * 向前重放笔迹，经过缺少关键帧的位置时保存关键帧
+     */
+    private void replay(int completed) {
+        int start = mCommittedCount;
+        if (completed - start > mKeyframeInterval) {
+            // 跳过较远时先从关键帧恢复
+            int count = findKeyframe(completed);
+            if (count > start) {
+                mCommittedCanvas.drawBitmap(mKeyframes.get(count), 0, 0, mCopyPaint);
+                start = count;
+            }
+        }
+        for (int i = start; i < completed; i++) {
+            mRenderer.draw(mCommittedCanvas, mCommitted, mStrokes.get(i));
+            int count = i + 1;
+            if (count % mKeyframeInterval == 0 && !mKeyframes.containsKey(count)
+                    && canKeepKeyframes()) {
+                putKeyframe(count, mCommitted.copy(Bitmap.Config.ARGB_8888, false));
+            }
+        }
+        mCommittedCount = completed;
+    }
+
+    /**
+     * 不晚于指定笔迹数的最近关键帧，不改变访问顺序
+     *
+     * @return 关键帧的笔迹数，没有时为0
+     */
+    private int findKeyframe(int completed) {
+        for (int count = completed / mKeyframeInterval * mKeyframeInterval; count > 0;
+             count -= mKeyframeInterval) {
+            if (mKeyframes.containsKey(count)) {
+                return count;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 关键帧间隔：不小于最小间隔，且按该间隔生成的关键帧数不超过预算能容纳的数量
+     *
+     * @param strokes 笔迹数
+     * @param slots   预算能容纳的关键帧数
+     */
+    private static int keyframeInterval(int strokes, long slots) {
+        if (slots <= 0) {
+            return MIN_KEYFRAME_INTERVAL;
+        }
+        return (int) Math.max(MIN_KEYFRAME_INTERVAL, (strokes + slots - 1) / slots);
+    }
+
+    /**
+     * 预算至少能容纳一个关键帧
+     */
+    private boolean canKeepKeyframes() {
+        return mKeyframeBudget >= mCommitted.getAllocationByteCount();
+    }
+
+    /**
+     * 保存关键帧，超出预算时淘汰最久未使用的关键帧；按间隔生成的关键帧总能放进预算，淘汰只是兜底
+     */
+    private void putKeyframe(int count, Bitmap keyframe) {
+        if (mReleased || mKeyframes.containsKey(count)) {
+            keyframe.recycle();
+            return;
+        }
+        mKeyframes.put(count, keyframe);
+        long bytes = (long) mKeyframes.size() * keyframe.getAllocationByteCount();
+        Iterator<Bitmap> iterator = mKeyframes.values().iterator();
+        while (bytes > mKeyframeBudget && iterator.hasNext()) {
+            Bitmap eldest = iterator.next();
+            bytes -= eldest.getAllocationByteCount();
+            eldest.recycle();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * 后台按关键帧间隔绘制全部笔迹并保存关键帧，主线程收下结果
+     */
+    private void buildKeyframes() {
+        if (mStrokes.size() < mKeyframeInterval || !canKeepKeyframes()) {
+            return;
+        }
+        if (mKeyframeExecutor == null) {
+            mKeyframeExecutor = Executors.newSingleThreadExecutor(
+                    runnable -> new Thread(runnable, "DrawingPlayer-keyframes"));
+        }
+        final int generation = mKeyframeGeneration;
+        final int width = mCommitted.getWidth();
+        final int height = mCommitted.getHeight();
+        mKeyframeExecutor.execute(() -> {
+            Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            Canvas canvas = new Canvas(bitmap);
+            // StrokeRenderer带有绘制状态，不能与主线程共用
+            StrokeRenderer renderer = new StrokeRenderer();
+            for (int i = 0; i < mStrokes.size() && generation == mKeyframeGeneration; i++) {
+                renderer.draw(canvas, bitmap, mStrokes.get(i));
+                final int count = i + 1;
+                if (count % mKeyframeInterval == 0) {
+                    final Bitmap keyframe = bitmap.copy(Bitmap.Config.ARGB_8888, false);
+                    mMainHandler.post(() -> {
+                        if (generation == mKeyframeGeneration) {
+                            putKeyframe(count, keyframe);
+                        } else {
+                            keyframe.recycle();
+                        }
+                    });
+                }
+            }
+            bitmap.recycle();
+        });
+    }
+
+    private void trimKeyframes() {
+        mKeyframeGeneration++;
+        for (Bitmap keyframe : mKeyframes.values()) {
+            keyframe.recycle();
+        }
+        mKeyframes.clear();
+    }
+
+    /**
+     * 回放监听
+     */
+    public interface OnPlaybackListener {
+        /**
+         * 画面更新
+         *
+         * @param frame    当前画面，透明背景，内容随回放更新，不要保存引用
+         * @param position 当前位置|ms
+         */
+        void onFrame(Bitmap frame, long position);
+
+        /**
+         * 播放到结尾
+         */
+        void onComplete();
+    }
+}
\ No newline at end of file
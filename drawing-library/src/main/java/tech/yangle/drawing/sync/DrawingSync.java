@@ -0,0 +1,210 @@
+package tech.yangle.drawing.sync;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import tech.yangle.drawing.DrawingView;
+import tech.yangle.drawing.core.DrawingDocument;
+import tech.yangle.drawing.core.Stroke;
+import tech.yangle.drawing.core.sync.Operation;
+import tech.yangle.drawing.core.sync.OperationLog;
+
+/**
+ * 画板增量同步
+ * <p>
+ * 把画板上提交的笔迹、笔迹的移动缩放和清空记录到OperationLog，导出增量交给调用方传输；
+ * 收到其他设备的增量后去重并重放到画板。传输方式由调用方决定，本类不涉及网络。
+ * <p>
+ * 变换以笔迹操作的编号引用笔迹，各设备上笔迹在文档中的下标可能不同。
+ * <p>
+ * 所有方法都应在主线程调用
+ */
+public class DrawingSync implements DrawingView.OnDocumentChangeListener {
+
+    // 检查点之后的操作超过该数量时自动压缩
+    private static final int DEFAULT_CHECKPOINT_INTERVAL = 512;
+
+    private final DrawingView mView;
+    private final OperationLog mLog;
+    private final List<Operation> mApplied = new ArrayList<>();
+    // 画板上的笔迹与笔迹操作编号的对应关系
+    private final Map<Stroke, Long> mStrokeIds = new IdentityHashMap<>();
+    private final Map<Long, Stroke> mStrokesById = new HashMap<>();
+    private int mCheckpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+    // 正在重放远端操作，不再记录为本地操作
+    private boolean mApplying;
+
+    /**
+     * @param view   画板
+     * @param origin 本设备编号，参与同步的设备之间不能重复
+     */
+    public DrawingSync(DrawingView view, int origin) {
+        mView = view;
+        mLog = new OperationLog(origin);
+        view.addOnDocumentChangeListener(this);
+    }
+
+    /**
+     * 停止记录本地操作
+     */
+    public void release() {
+        mView.removeOnDocumentChangeListener(this);
+    }
+
+    /**
+     * 本地日志的最新版本号
+     *
+     * @return 版本号
+     */
+    public long getVersion() {
+        return mLog.getVersion();
+    }
+
+    public OperationLog getLog() {
+        return mLog;
+    }
+
+    /**
+     * 导出对方尚未收到的操作
+     *
+     * @param version 对方上次应用本设备增量时返回的版本号，0表示全部
+     * @return 增量数据
+     */
+    public byte[] exportSince(long version) {
+        return mLog.exportSince(version);
+    }
+
+    /**
+     * 应用其他设备导出的增量并重放到画板，重复应用没有副作用
+     *
+     * @param delta 增量数据
+     * @return 对方导出时的版本号，下次从该版本请求
+     * @throws IllegalArgumentException 数据格式错误
+     */
+    public long apply(byte[] delta) {
+        mApplied.clear();
+        long version = mLog.apply(delta, mApplied);
+        mApplying = true;
+        try {
+            for (int i = 0; i < mApplied.size(); i++) {
+                Operation operation = mApplied.get(i);
+                if (operation.getType() == Operation.TYPE_CLEAR) {
+                    mView.clear();
+                    mStrokeIds.clear();
+                    mStrokesById.clear();
+                } else if (operation.getType() == Operation.TYPE_TRANSFORM) {
+                    applyTransform(operation);
+                } else {
+                    mView.addStroke(operation.getStroke());
+                    bind(operation.getStroke(), operation.getId());
+                }
+            }
+        } finally {
+            mApplying = false;
+            mApplied.clear();
+        }
+        return version;
+    }
+
+    /**
+     * 设置自动压缩的间隔
+     *
+     * @param interval 检查点之后的操作数，不大于0时不自动压缩
+     */
+    public void setCheckpointInterval(int interval) {
+        mCheckpointInterval = interval;
+    }
+
+    /**
+     * 立即把日志压缩为检查点
+     */
+    public void checkpoint() {
+        mLog.checkpoint();
+    }
+
+    @Override
+    public void onStrokeAdded(Stroke stroke) {
+        if (mApplying) {
+            return;
+        }
+        bind(stroke, mLog.recordStroke(stroke).getId());
+        checkpointIfNeeded();
+    }
+
+    @Override
+    public void onCleared() {
+        if (mApplying) {
+            return;
+        }
+        mStrokeIds.clear();
+        mStrokesById.clear();
+        mLog.recordClear();
+        checkpointIfNeeded();
+    }
+
+    @Override
+    public void onStrokesTransformed(int[] indices, Stroke[] previous, float scale, float dx,
+                                     float dy) {
+        // 远端的变换也要更新对应关系，只是不再记录
+        DrawingDocument document = mView.getDocument();
+        long[] targets = new long[indices.length];
+        int count = 0;
+        for (int i = 0; i < indices.length; i++) {
+            Long id = mStrokeIds.remove(previous[i]);
+            if (id != null) {
+                bind(document.getStroke(indices[i]), id);
+                targets[count++] = id;
+            }
+        }
+        if (mApplying || count == 0) {
+            return;
+        }
+        mLog.recordTransform(Arrays.copyOf(targets, count), scale, dx, dy);
+        checkpointIfNeeded();
+    }
+
+    /**
+     * 重放远端的变换：按编号找到画板上的笔迹，只扫描一遍文档
+     */
+    private void applyTransform(Operation operation) {
+        long[] targets = operation.getTargets();
+        Map<Stroke, Boolean> wanted = new IdentityHashMap<>();
+        for (long target : targets) {
+            Stroke stroke = mStrokesById.get(target);
+            if (stroke != null) {
+                wanted.put(stroke, Boolean.TRUE);
+            }
+        }
+        if (wanted.isEmpty()) {
+            return;
+        }
+        DrawingDocument document = mView.getDocument();
+        int[] indices = new int[wanted.size()];
+        int count = 0;
+        for (int i = 0; i < document.getStrokeCount() && count < indices.length; i++) {
+            if (wanted.containsKey(document.getStroke(i))) {
+                indices[count++] = i;
+            }
+        }
+        mView.transformStrokes(Arrays.copyOf(indices, count), operation.getScale(),
+                operation.getDx(), operation.getDy());
+    }
+
+    private void bind(Stroke stroke, long id) {
+        Stroke old = mStrokesById.put(id, stroke);
+        if (old != null && old != stroke) {
+            mStrokeIds.remove(old);
+        }
+        mStrokeIds.put(stroke, id);
+    }
+
+    private void checkpointIfNeeded() {
+        if (mCheckpointInterval > 0 && mLog.getEntryCount() >= mCheckpointInterval) {
+            mLog.checkpoint();
+        }
+    }
+}
\ No newline at end of file
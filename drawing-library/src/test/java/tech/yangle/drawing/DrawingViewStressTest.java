@@ -0,0 +1,424 @@
+package tech.yangle.drawing;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.SystemClock;
+import android.view.InputDevice;
+import android.view.MotionEvent;
+import android.view.View;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import tech.yangle.drawing.metrics.DrawingMetrics;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 书写压力测试
+ * <p>
+ * 按固定随机种子生成触控事件流，经ScaleDrawingView逐个派发，每个事件后推进一个采样间隔的主线程时钟，
+ * 让按帧合并的输入和双指缩放得到处理，再像屏幕刷新一样绘制一次。
+ * 场景包括手写、快速涂抹、超长笔迹和双指缩放，每个场景与stress-baseline.properties中的基线比较：
+ * <ul>
+ * <li>每个事件的内存分配，超出容差即失败</li>
+ * <li>每帧位图绘制写入的字节数，由绘制路径决定，与机器无关，超出即失败</li>
+ * <li>onDraw耗时与同一次运行中空闲帧耗时的比值，每个手势后绘制若干空闲帧作为参照，不受机器快慢影响</li>
+ * </ul>
+ * 使用Robolectric的原生图形，绘制走真实的Skia。
+ * <p>
+ * 修改绘制路径后重新生成基线：
+ * ./gradlew :drawing-library:testDebugUnitTest -Pdrawing.stress.updateBaseline=true
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 30)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class DrawingViewStressTest {
+
+    private static final String BASELINE = "stress-baseline.properties";
+    private static final String UPDATE_PROPERTY = "drawing.stress.updateBaseline";
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+    // 预热的笔迹数，不计入统计
+    private static final int WARMUP_STROKES = 20;
+    // 每个手势后绘制的空闲帧数，作为耗时参照
+    private static final int REFERENCE_FRAMES = 10;
+    // 采样间隔|ms，模拟120Hz
+    private static final long SAMPLE_INTERVAL = 8;
+    // 分配的绝对余量|byte，避免基线接近0时偶发的分配导致失败
+    private static final long ALLOCATION_SLACK = 64;
+
+    private ScaleDrawingView mScaleView;
+    private DrawingView mView;
+    private Canvas mScreen;
+    private Bitmap mScreenBitmap;
+    private final Random mRandom = new Random(20201019);
+    private long mEventTime;
+    // 测量期间画板的最大缩放比例
+    private float mMaxScale;
+
+    @Before
+    public void setUp() {
+        mScaleView = new ScaleDrawingView(RuntimeEnvironment.getApplication());
+        mScaleView.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        // 布局触发onSizeChanged，按尺寸创建缓存画布
+        mScaleView.layout(0, 0, WIDTH, HEIGHT);
+        mView = (DrawingView) mScaleView.getChildAt(0);
+        mScreenBitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+        mScreen = new Canvas(mScreenBitmap);
+        mEventTime = SystemClock.uptimeMillis();
+    }
+
+    @After
+    public void tearDown() {
+        mView.release();
+        mScreenBitmap.recycle();
+    }
+
+    @Test
+    public void handwritingStaysWithinBaseline() throws IOException {
+        measure("handwriting", 60, this::handwriting);
+    }
+
+    @Test
+    public void fastScribbleStaysWithinBaseline() throws IOException {
+        measure("scribble", 30, this::scribble);
+    }
+
+    @Test
+    public void longStrokeStaysWithinBaseline() throws IOException {
+        measure("longStroke", 4, this::longStroke);
+    }
+
+    @Test
+    public void pinchZoomStaysWithinBaseline() throws IOException {
+        measure("pinchZoom", 12, this::pinch);
+        // 缩放在Choreographer的下一帧才应用，确认确实经过了这条路径
+        assertTrue("pinch did not zoom, max scale " + mMaxScale, mMaxScale > 2);
+    }
+
+    /**
+     * 预热后测量一个场景并与基线比较，更新基线时只写入测量值
+     *
+     * @param name   场景名，基线中的键前缀
+     * @param count  手势数
+     * @param script 手势生成
+     */
+    private void measure(String name, int count, Script script) throws IOException {
+        for (int i = 0; i < WARMUP_STROKES; i++) {
+            replay(handwriting(i));
+        }
+        List<List<MotionEvent>> gestures = new ArrayList<>();
+        int eventCount = 0;
+        for (int i = 0; i < count; i++) {
+            List<MotionEvent> events = script.create(i);
+            gestures.add(events);
+            eventCount += events.size();
+        }
+        // 事件提前生成，只统计画板处理事件和绘制时的分配
+        DrawingMetrics metrics = new DrawingMetrics();
+        DrawingMetrics reference = new DrawingMetrics();
+        long allocated = 0;
+        mMaxScale = 1;
+        for (int i = 0; i < gestures.size(); i++) {
+            mView.setMetrics(metrics);
+            long before = allocatedBytes();
+            replay(gestures.get(i));
+            allocated += allocatedBytes() - before;
+            // 同样的画布状态下没有输入的帧，与被测帧交替进行，机器快慢和JIT状态对两者的影响相同
+            mView.setMetrics(reference);
+            for (int j = 0; j < REFERENCE_FRAMES; j++) {
+                mScaleView.draw(mScreen);
+            }
+        }
+        mView.setMetrics(null);
+        assertTrue("no frames drawn", metrics.getFrameCount() > 0);
+        long bytesPerEvent = allocated / eventCount;
+        long blitBytesPerFrame = metrics.getTotalBytesBlitted() / metrics.getFrameCount();
+        long referenceMicros = Math.max(1,
+                reference.getDrawDuration().getValueAtPercentile(50));
+        float frameRatio = (float) metrics.getDrawDuration().getValueAtPercentile(50)
+                / referenceMicros;
+        float slowFrameRatio = (float) metrics.getDrawDuration().getValueAtPercentile(95)
+                / referenceMicros;
+
+        if (Boolean.getBoolean(UPDATE_PROPERTY)) {
+            // 各场景依次写入同一个文件，从源文件而不是类路径读取，保留之前场景刚写入的值
+            Properties baseline = readBaseline(new FileInputStream(baselineFile()));
+            baseline.setProperty(name + ".bytesPerEvent", String.valueOf(bytesPerEvent));
+            baseline.setProperty(name + ".blitBytesPerFrame", String.valueOf(blitBytesPerFrame));
+            baseline.setProperty(name + ".frameRatioP50", formatRatio(frameRatio));
+            baseline.setProperty(name + ".frameRatioP95", formatRatio(slowFrameRatio));
+            writeBaseline(baseline);
+            return;
+        }
+        Properties baseline = readBaseline(
+                DrawingViewStressTest.class.getResourceAsStream(BASELINE));
+        float allocationTolerance = Float.parseFloat(
+                baseline.getProperty("allocation.tolerance"));
+        float blitTolerance = Float.parseFloat(baseline.getProperty("blit.tolerance"));
+        float frameTolerance = Float.parseFloat(baseline.getProperty("frame.tolerance"));
+        assertWithin(name + " bytes per event", bytesPerEvent,
+                Long.parseLong(baseline.getProperty(name + ".bytesPerEvent")),
+                allocationTolerance, ALLOCATION_SLACK);
+        assertWithin(name + " blitted bytes per frame", blitBytesPerFrame,
+                Long.parseLong(baseline.getProperty(name + ".blitBytesPerFrame")),
+                blitTolerance, 0);
+        assertRatioWithin(name + " p50 frame / idle frame", frameRatio,
+                Float.parseFloat(baseline.getProperty(name + ".frameRatioP50")), frameTolerance);
+        assertRatioWithin(name + " p95 frame / idle frame", slowFrameRatio,
+                Float.parseFloat(baseline.getProperty(name + ".frameRatioP95")), frameTolerance);
+    }
+
+    /**
+     * 依次派发一个手势的事件，每个事件后处理一帧的输入并绘制，派发后回收
+     */
+    private void replay(List<MotionEvent> events) {
+        for (int i = 0; i < events.size(); i++) {
+            MotionEvent event = events.get(i);
+            mScaleView.dispatchTouchEvent(event);
+            ShadowLooper.idleMainLooper(SAMPLE_INTERVAL, TimeUnit.MILLISECONDS);
+            mScaleView.draw(mScreen);
+            mMaxScale = Math.max(mMaxScale, mView.getScaleX());
+            event.recycle();
+        }
+    }
+
+    /**
+     * 生成一笔手写的触控事件：横向前进叠加环形摆动，叠加数字化仪的抖动
+     *
+     * @param index 第几笔，决定起笔位置
+     * @return 按下、移动、抬起事件
+     */
+    private List<MotionEvent> handwriting(int index) {
+        int samples = 60 + mRandom.nextInt(60);
+        float startX = 80 + index % 6 * 150;
+        float startY = 120 + index / 6 % 12 * 140;
+        float size = 24 + mRandom.nextFloat() * 12;
+        float phase = mRandom.nextFloat() * 6.28f;
+        List<MotionEvent> events = new ArrayList<>(samples);
+        long downTime = mEventTime;
+        for (int i = 0; i < samples; i++) {
+            double angle = i / 30.0 * Math.PI * 2 + phase;
+            float x = startX + i * 1.6f + (float) Math.cos(angle) * size * 0.5f
+                    + (mRandom.nextFloat() - 0.5f) * 1.2f;
+            float y = startY + (float) Math.sin(angle) * size
+                    + (mRandom.nextFloat() - 0.5f) * 1.2f;
+            events.add(singleTouch(downTime, i, samples, x, y));
+        }
+        // 两笔之间留出抬笔的间隔
+        mEventTime += 200;
+        return events;
+    }
+
+    /**
+     * 生成一次快速涂抹：在宽带内来回折返，相邻采样点相距数百像素，每帧的脏区域很大
+     *
+     * @param index 第几次，决定所在的带
+     * @return 按下、移动、抬起事件
+     */
+    private List<MotionEvent> scribble(int index) {
+        int samples = 80;
+        float top = 100 + index % 8 * 220;
+        List<MotionEvent> events = new ArrayList<>(samples);
+        long downTime = mEventTime;
+        for (int i = 0; i < samples; i++) {
+            float x = (i % 2 == 0 ? 60 : WIDTH - 60) + (mRandom.nextFloat() - 0.5f) * 80;
+            float y = top + i * 2 + (mRandom.nextFloat() - 0.5f) * 40;
+            events.add(singleTouch(downTime, i, samples, x, y));
+        }
+        mEventTime += 200;
+        return events;
+    }
+
+    /**
+     * 生成一条超长笔迹：在整张画布上之字形往返，检查每帧的开销不随笔迹长度增长
+     *
+     * @param index 第几笔，决定起笔位置
+     * @return 按下、移动、抬起事件
+     */
+    private List<MotionEvent> longStroke(int index) {
+        int samples = 1500;
+        float row = 90;
+        float y = 60 + index * 20;
+        List<MotionEvent> events = new ArrayList<>(samples);
+        long downTime = mEventTime;
+        float x = 60;
+        float dx = 6;
+        for (int i = 0; i < samples; i++) {
+            x += dx;
+            if (x < 60 || x > WIDTH - 60) {
+                // 到达边缘后换行折返
+                dx = -dx;
+                x += dx;
+                y += row;
+            }
+            events.add(singleTouch(downTime, i, samples,
+                    x + (mRandom.nextFloat() - 0.5f) * 1.2f,
+                    y + (mRandom.nextFloat() - 0.5f) * 1.2f));
+        }
+        mEventTime += 200;
+        return events;
+    }
+
+    /**
+     * 生成一次双指缩放：偶数次两指张开放大到约3倍并平移，奇数次捏合缩回
+     *
+     * @param index 第几次
+     * @return 按下、第二指按下、移动、第二指抬起、抬起事件
+     */
+    private List<MotionEvent> pinch(int index) {
+        int moves = 40;
+        boolean zoomIn = index % 2 == 0;
+        float fromSpan = zoomIn ? 200 : 600;
+        float toSpan = zoomIn ? 600 : 200;
+        float centerX = WIDTH / 2f + (mRandom.nextFloat() - 0.5f) * 200;
+        float centerY = HEIGHT / 2f + (mRandom.nextFloat() - 0.5f) * 200;
+        float panX = (mRandom.nextFloat() - 0.5f) * 300;
+        float panY = (mRandom.nextFloat() - 0.5f) * 300;
+        List<MotionEvent> events = new ArrayList<>(moves + 4);
+        long downTime = mEventTime;
+        events.add(twoFingers(downTime, MotionEvent.ACTION_DOWN, 1, centerX, centerY,
+                fromSpan));
+        events.add(twoFingers(downTime, MotionEvent.ACTION_POINTER_DOWN
+                | 1 << MotionEvent.ACTION_POINTER_INDEX_SHIFT, 2, centerX, centerY, fromSpan));
+        for (int i = 1; i <= moves; i++) {
+            float t = (float) i / moves;
+            events.add(twoFingers(downTime, MotionEvent.ACTION_MOVE, 2, centerX + panX * t,
+                    centerY + panY * t, fromSpan + (toSpan - fromSpan) * t));
+        }
+        events.add(twoFingers(downTime, MotionEvent.ACTION_POINTER_UP
+                        | 1 << MotionEvent.ACTION_POINTER_INDEX_SHIFT, 2, centerX + panX,
+                centerY + panY, toSpan));
+        events.add(twoFingers(downTime, MotionEvent.ACTION_UP, 1, centerX + panX,
+                centerY + panY, toSpan));
+        mEventTime += 200;
+        return events;
+    }
+
+    private MotionEvent singleTouch(long downTime, int index, int samples, float x, float y) {
+        int action = index == 0 ? MotionEvent.ACTION_DOWN
+                : index == samples - 1 ? MotionEvent.ACTION_UP : MotionEvent.ACTION_MOVE;
+        MotionEvent event = MotionEvent.obtain(downTime, mEventTime, action, x, y, 0);
+        mEventTime += SAMPLE_INTERVAL;
+        return event;
+    }
+
+    /**
+     * 两指沿水平方向对称分布在中点两侧
+     *
+     * @param pointerCount 1时只有第一指
+     * @param span         两指间距|px
+     */
+    private MotionEvent twoFingers(long downTime, int action, int pointerCount, float centerX,
+                                   float centerY, float span) {
+        MotionEvent.PointerProperties[] properties =
+                new MotionEvent.PointerProperties[pointerCount];
+        MotionEvent.PointerCoords[] coords = new MotionEvent.PointerCoords[pointerCount];
+        for (int i = 0; i < pointerCount; i++) {
+            properties[i] = new MotionEvent.PointerProperties();
+            properties[i].id = i;
+            properties[i].toolType = MotionEvent.TOOL_TYPE_FINGER;
+            coords[i] = new MotionEvent.PointerCoords();
+            coords[i].x = centerX + (i == 0 ? -span : span) / 2;
+            coords[i].y = centerY;
+            coords[i].pressure = 1;
+            coords[i].size = 1;
+        }
+        MotionEvent event = MotionEvent.obtain(downTime, mEventTime, action, pointerCount,
+                properties, coords, 0, 0, 1, 1, 0, 0, InputDevice.SOURCE_TOUCHSCREEN, 0);
+        mEventTime += SAMPLE_INTERVAL;
+        return event;
+    }
+
+    private static void assertWithin(String name, long actual, long baseline, float tolerance,
+                                     long slack) {
+        long limit = (long) (baseline * tolerance) + slack;
+        assertTrue(String.format(Locale.US, "%s regressed: %d > %d (baseline %d x %.2f)",
+                name, actual, limit, baseline, tolerance), actual <= limit);
+    }
+
+    private static void assertRatioWithin(String name, float actual, float baseline,
+                                          float tolerance) {
+        float limit = baseline * tolerance;
+        assertTrue(String.format(Locale.US, "%s regressed: %.2f > %.2f (baseline %.2f x %.2f)",
+                name, actual, limit, baseline, tolerance), actual <= limit);
+    }
+
+    private static String formatRatio(float ratio) {
+        return String.format(Locale.US, "%.2f", ratio);
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static Properties readBaseline(InputStream in) throws IOException {
+        assertNotNull("Missing " + BASELINE, in);
+        Properties properties = new Properties();
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+        return properties;
+    }
+
+    /**
+     * 重写基线，键按字母顺序排列，容差沿用原值
+     */
+    private static void writeBaseline(Properties baseline) throws IOException {
+        StringBuilder content = new StringBuilder()
+                .append("# DrawingViewStressTest的基线，由测试以 -P").append(UPDATE_PROPERTY)
+                .append("=true 运行时生成\n")
+                .append("# <场景>.bytesPerEvent: 每个触控事件的平均分配|byte\n")
+                .append("# <场景>.blitBytesPerFrame: 每帧位图绘制写入的平均字节数\n")
+                .append("# <场景>.frameRatioP50/P95: onDraw耗时的中位数、95百分位与空闲帧中位数之比\n");
+        for (String key : new TreeSet<>(baseline.stringPropertyNames())) {
+            content.append(key).append('=').append(baseline.getProperty(key)).append('\n');
+        }
+        OutputStream out = new FileOutputStream(baselineFile());
+        try {
+            out.write(content.toString().getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+
+    private static File baselineFile() {
+        // 单元测试的工作目录是模块目录
+        return new File("src/test/resources/tech/yangle/drawing/" + BASELINE);
+    }
+
+    /**
+     * 生成一个手势的事件
+     */
+    private interface Script {
+        List<MotionEvent> create(int index);
+    }
+}
\ No newline at end of file